@@ -1,7 +1,10 @@
 package com.example.gestion_pharmacie.Config;
 
 
+import com.example.gestion_pharmacie.Security.CurrentActor;
+import com.example.gestion_pharmacie.Security.PrincipalCache;
 import com.example.gestion_pharmacie.Services.JwtService;
+import com.example.gestion_pharmacie.Services.ParsedToken;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -25,14 +28,20 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final PrincipalCache principalCache;
+    private final CurrentActor currentActor;
 
     public JwtAuthenticationFilter(
             JwtService jwtService,
             UserDetailsService userDetailsService,
+            PrincipalCache principalCache,
+            CurrentActor currentActor,
             HandlerExceptionResolver handlerExceptionResolver
     ) {
         this.jwtService = jwtService;
         this.userDetailsService = userDetailsService;
+        this.principalCache = principalCache;
+        this.currentActor = currentActor;
         this.handlerExceptionResolver = handlerExceptionResolver;
     }
 
@@ -51,14 +60,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         try {
             final String jwt = authHeader.substring(7);
-            final String userEmail = jwtService.extractUsername(jwt);
+            // Signature and expiry are verified once here; the parsed token is reused below
+            final ParsedToken token = jwtService.parse(jwt);
+            final String userEmail = token.getSubject();
 
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 
             if (userEmail != null && authentication == null) {
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+                UserDetails userDetails = principalCache.get(userEmail, userDetailsService::loadUserByUsername);
 
-                if (jwtService.isTokenValid(jwt, userDetails)) {
+                if (jwtService.isTokenValid(token, userDetails)) {
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                             userDetails,
                             null,
@@ -67,6 +78,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
                     authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(authToken);
+                    currentActor.bind(userDetails.getUsername());
                 }
             }
 
@@ -0,0 +1,33 @@
+package com.example.gestion_pharmacie.Config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread, between {@link #start()} and
+ * {@link #stop()}. Registered through {@code hibernate.session_factory.statement_inspector}; statements
+ * issued outside a counted section (scheduled jobs, startup) are passed through untouched.
+ */
+public class QueryCountInspector implements StatementInspector {
+
+    private static final ThreadLocal<long[]> COUNT = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        long[] count = COUNT.get();
+        if (count != null) {
+            count[0]++;
+        }
+        return sql;
+    }
+
+    public static void start() {
+        COUNT.set(new long[1]);
+    }
+
+    /** Statements counted since {@link #start()}; stops counting on this thread. */
+    public static long stop() {
+        long[] count = COUNT.get();
+        COUNT.remove();
+        return count == null ? 0 : count[0];
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.gestion_pharmacie.Config;
+
+import com.example.gestion_pharmacie.Services.JsoupPageFetcher;
+import com.example.gestion_pharmacie.Services.PageFetcher;
+import com.example.gestion_pharmacie.Services.ThrottledPageFetcher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ScraperConfiguration {
+
+    @Bean
+    PageFetcher pageFetcher(ScraperProperties scraperProperties) {
+        return new ThrottledPageFetcher(new JsoupPageFetcher(scraperProperties),
+                scraperProperties.getMaxConcurrentPerHost(), scraperProperties.getRatePerSecond());
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.gestion_pharmacie.Config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ScraperProperties {
+
+    private final String baseUrl;
+    private final String userAgent;
+    private final int timeoutMs;
+    private final int maxPages;
+    private final int maxConcurrentPerHost;
+    private final double ratePerSecond;
+    private final boolean mirrorEnabled;
+    private final int detailRefreshHours;
+    private final int maxDetailsPerRun;
+
+    public ScraperProperties(@Value("${scraper.base-url:https://medicament.ma}") String baseUrl,
+                             @Value("${scraper.user-agent:Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36}") String userAgent,
+                             @Value("${scraper.timeout-ms:5000}") int timeoutMs,
+                             @Value("${scraper.max-pages:30}") int maxPages,
+                             @Value("${scraper.fetch.max-concurrent-per-host:4}") int maxConcurrentPerHost,
+                             @Value("${scraper.fetch.rate-per-second:8}") double ratePerSecond,
+                             @Value("${scraper.mirror.enabled:false}") boolean mirrorEnabled,
+                             @Value("${scraper.mirror.detail-refresh-hours:168}") int detailRefreshHours,
+                             @Value("${scraper.mirror.max-details-per-run:500}") int maxDetailsPerRun) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.userAgent = userAgent;
+        this.timeoutMs = timeoutMs;
+        this.maxPages = maxPages;
+        this.maxConcurrentPerHost = maxConcurrentPerHost;
+        this.ratePerSecond = ratePerSecond;
+        this.mirrorEnabled = mirrorEnabled;
+        this.detailRefreshHours = detailRefreshHours;
+        this.maxDetailsPerRun = maxDetailsPerRun;
+    }
+
+    public String listingUrl(char letter, int page) {
+        return baseUrl + "/listing-des-medicaments/page/" + page + "/?lettre=" + letter;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public String getUserAgent() {
+        return userAgent;
+    }
+
+    public int getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    public int getMaxPages() {
+        return maxPages;
+    }
+
+    public int getMaxConcurrentPerHost() {
+        return maxConcurrentPerHost;
+    }
+
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public boolean isMirrorEnabled() {
+        return mirrorEnabled;
+    }
+
+    public int getDetailRefreshHours() {
+        return detailRefreshHours;
+    }
+
+    public int getMaxDetailsPerRun() {
+        return maxDetailsPerRun;
+    }
+}
@@ -1,7 +1,9 @@
 package com.example.gestion_pharmacie.Config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -37,6 +39,8 @@ public class SecurityConfiguration {
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/auth/register","/auth/login", "/api/utilisateurs/**").permitAll() // Allow public access to auth endpoints
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll() // Async dispatch of already authorized requests (progressive search SSE, exports, chat)
+                        .requestMatchers(HttpMethod.GET, "/medicaments/export", "/commandes/export").hasAnyRole("PHARMACIEN", "FOURNISSEUR") // Bulk exports, not for clients
                         .anyRequest().authenticated() // Secure all other requests
                 )
                 .sessionManagement(session -> session
@@ -59,7 +63,7 @@ public class SecurityConfiguration {
 //        configuration.setAllowedHeaders(List.of("Authorization","Content-Type" , "Accept"));
 
         configuration.setAllowedHeaders(List.of("*"));
-        configuration.setExposedHeaders(List.of("Authorization"));
+        configuration.setExposedHeaders(List.of("Authorization", "X-Next-Cursor"));
 
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
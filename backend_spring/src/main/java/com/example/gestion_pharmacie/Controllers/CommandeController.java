@@ -1,23 +1,35 @@
 package com.example.gestion_pharmacie.Controllers;
 
+import com.example.gestion_pharmacie.DTO.CommandeCursor;
+import com.example.gestion_pharmacie.DTO.CommandePage;
 import com.example.gestion_pharmacie.DTO.CommandeResponseDto;
+import com.example.gestion_pharmacie.DTO.CommandeSearch;
 import com.example.gestion_pharmacie.DTO.CreateCommandeRequest;
 import com.example.gestion_pharmacie.Services.CommandeService;
+import com.example.gestion_pharmacie.Services.ExportFormat;
+import com.example.gestion_pharmacie.Services.ExportService;
 import com.example.gestion_pharmacie.entites.StatutCommande;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/commandes")
 public class CommandeController {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final CommandeService commandeService;
+    private final ExportService exportService;
 
-    public CommandeController(CommandeService commandeService) {
+    public CommandeController(CommandeService commandeService, ExportService exportService) {
         this.commandeService = commandeService;
+        this.exportService = exportService;
     }
 
     @PreAuthorize("hasRole('PHARMACIEN')")
@@ -26,19 +38,60 @@ public class CommandeController {
         return ResponseEntity.ok(commandeService.createCommande(request));
     }
 
+    /*
+     * The list endpoints stay unbounded when called without parameters. With any of cursor, size, statut,
+     * from or to they return one keyset page, newest first; the cursor of the next page is sent in the
+     * X-Next-Cursor header and is absent on the last page.
+     */
     @GetMapping("/current_pharmacien")
-    public ResponseEntity<List<CommandeResponseDto>> getCommandesForCurrentPharmacien() {
-        return ResponseEntity.ok(commandeService.getCommandesForCurrentPharmacien());
+    public ResponseEntity<List<CommandeResponseDto>> getCommandesForCurrentPharmacien(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) StatutCommande statut,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        CommandeSearch search = search(cursor, size, statut, from, to);
+        if (search == null) {
+            return ResponseEntity.ok(commandeService.getCommandesForCurrentPharmacien());
+        }
+        return page(commandeService.getCommandesPageForCurrentPharmacien(search));
     }
 
     @GetMapping("/current_fournisseur")
-    public ResponseEntity<List<CommandeResponseDto>> getCommandesForCurrentFournisseur() {
-        return ResponseEntity.ok(commandeService.getCommandesForCurrentFournisseur());
+    public ResponseEntity<List<CommandeResponseDto>> getCommandesForCurrentFournisseur(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) StatutCommande statut,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        CommandeSearch search = search(cursor, size, statut, from, to);
+        if (search == null) {
+            return ResponseEntity.ok(commandeService.getCommandesForCurrentFournisseur());
+        }
+        return page(commandeService.getCommandesPageForCurrentFournisseur(search));
     }
 
     @GetMapping("/all")
-    public ResponseEntity<List<CommandeResponseDto>> getAllCommands() {
-        return ResponseEntity.ok(commandeService.getAllCommandes());
+    public ResponseEntity<List<CommandeResponseDto>> getAllCommands(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) StatutCommande statut,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        CommandeSearch search = search(cursor, size, statut, from, to);
+        if (search == null) {
+            return ResponseEntity.ok(commandeService.getAllCommandes());
+        }
+        return page(commandeService.getCommandesPage(search));
+    }
+
+    /** Same content as GET /commandes/all, streamed: a JSON array, or one commande per line with format=NDJSON. */
+    @PreAuthorize("hasAnyRole('PHARMACIEN', 'FOURNISSEUR')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportCommandes(@RequestParam(defaultValue = "JSON") ExportFormat format) {
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .body(out -> exportService.exportCommandes(out, format));
     }
 
     @GetMapping("/{id}")
@@ -61,4 +114,26 @@ public class CommandeController {
     public ResponseEntity<CommandeResponseDto> markCommandeAsLivree(@PathVariable Long id) {
         return ResponseEntity.ok(commandeService.updateCommandeToLivree(id));
     }
-}
\ No newline at end of file
+
+    private static CommandeSearch search(String cursor, Integer size, StatutCommande statut,
+                                         LocalDateTime from, LocalDateTime to) {
+        if (cursor == null && size == null && statut == null && from == null && to == null) {
+            return null;
+        }
+        CommandeSearch search = new CommandeSearch();
+        search.setAfter(cursor != null ? CommandeCursor.decode(cursor) : null);
+        search.setSize(size != null ? size : CommandeService.DEFAULT_PAGE_SIZE);
+        search.setStatut(statut);
+        search.setFrom(from);
+        search.setTo(to);
+        return search;
+    }
+
+    private static ResponseEntity<List<CommandeResponseDto>> page(CommandePage page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getCommandes());
+    }
+}
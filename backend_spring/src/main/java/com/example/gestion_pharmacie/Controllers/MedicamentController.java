@@ -1,35 +1,52 @@
 package com.example.gestion_pharmacie.Controllers;
 
+import com.example.gestion_pharmacie.DTO.ImportResultDto;
 import com.example.gestion_pharmacie.Repositorys.MedicamentRepository;
 import com.example.gestion_pharmacie.Services.ExcelLoaderService;
+import com.example.gestion_pharmacie.Services.ExportFormat;
+import com.example.gestion_pharmacie.Services.ExportService;
+import com.example.gestion_pharmacie.Services.MedicamentImportService;
 import com.example.gestion_pharmacie.Services.MedicamentScraperService;
+import com.example.gestion_pharmacie.Services.MedicamentSearchService;
 import com.example.gestion_pharmacie.Services.MedicamentService;
 import com.example.gestion_pharmacie.entites.Medicament;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 
 @RestController
 @RequestMapping("/medicaments")
 public class MedicamentController {
+    private static final long PROGRESSIVE_SEARCH_TIMEOUT_MS = 120_000;
+
     private final MedicamentService medicamentService;
     private final ExcelLoaderService excelLoaderService;
     private final MedicamentScraperService medicamentScraperService;
     private final MedicamentRepository medicamentRepository;
+    private final MedicamentImportService medicamentImportService;
+    private final ExportService exportService;
 
 
 
-    public MedicamentController(MedicamentService medicamentService, ExcelLoaderService excelLoaderService, MedicamentScraperService medicamentScraperService, MedicamentRepository medicamentRepository) {
+    public MedicamentController(MedicamentService medicamentService, ExcelLoaderService excelLoaderService, MedicamentScraperService medicamentScraperService, MedicamentRepository medicamentRepository, MedicamentImportService medicamentImportService, ExportService exportService) {
         this.medicamentService = medicamentService;
         this.excelLoaderService = excelLoaderService;
         this.medicamentScraperService = medicamentScraperService;
         this.medicamentRepository = medicamentRepository;
+        this.medicamentImportService = medicamentImportService;
+        this.exportService = exportService;
     }
 
     @PreAuthorize("hasAnyRole('FOURNISSEUR', 'PHARMACIEN')")
@@ -38,6 +55,16 @@ public class MedicamentController {
         return ResponseEntity.ok(medicamentService.saveMedicament(medicament));
     }
 
+    @PreAuthorize("hasAnyRole('FOURNISSEUR', 'PHARMACIEN')")
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ImportResultDto> importMedicaments(@RequestParam("file") MultipartFile file) {
+        try {
+            return ResponseEntity.ok(medicamentImportService.importMedicaments(file));
+        } catch (IllegalArgumentException | IOException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ImportResultDto.erreur(e.getMessage()));
+        }
+    }
+
 //    @PostMapping("/add-from-excel")
 //    public ResponseEntity<Medicament> addMedicamentFromExcel(@RequestParam String code) {
 //        return ResponseEntity.ok(medicamentService.addMedicamentFromExcel(code));
@@ -76,6 +103,18 @@ public class MedicamentController {
         return ResponseEntity.ok(medicamentService.getAllMedicaments());
     }
 
+    /**
+     * Same medicaments as GET /medicaments, streamed: a JSON array, or one medicament per line with format=NDJSON.
+     * The owner is written as id and name only.
+     */
+    @PreAuthorize("hasAnyRole('PHARMACIEN', 'FOURNISSEUR')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportMedicaments(@RequestParam(defaultValue = "JSON") ExportFormat format) {
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .body(out -> exportService.exportMedicaments(out, format));
+    }
+
 //    @GetMapping("/excel")
 //    public List<List<String>> getExcelData() {
 //        return excelLoaderService.readExcelData();
@@ -83,8 +122,10 @@ public class MedicamentController {
 
     @PreAuthorize("hasAnyRole('PHARMACIEN', 'FOURNISSEUR')")
     @GetMapping("/search")
-    public ResponseEntity<List<Medicament>> searchMedicaments(@RequestParam String nom) {
-        return ResponseEntity.ok(medicamentService.searchMedicaments(nom));
+    public ResponseEntity<List<Medicament>> searchMedicaments(@RequestParam String nom,
+                                                              @RequestParam(defaultValue = "0") int page,
+                                                              @RequestParam(defaultValue = "" + MedicamentSearchService.DEFAULT_PAGE_SIZE) int size) {
+        return ResponseEntity.ok(medicamentService.searchMedicaments(nom, page, size));
     }
 
     @PreAuthorize("hasRole('FOURNISSEUR')")
@@ -120,6 +161,41 @@ public class MedicamentController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
     }
+    /**
+     * Server-sent events: one "medicament" event per result as the crawl finds it, then "done".
+     * The crawl is cancelled as soon as the stream ends, whether it timed out or the client went away.
+     */
+    @GetMapping(value = "/progressive-search/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter progressiveSearchStream(@RequestParam String query) {
+        SseEmitter emitter = new SseEmitter(PROGRESSIVE_SEARCH_TIMEOUT_MS);
+        CompletableFuture<List<Medicament>> search = medicamentScraperService.progressiveSearchAsync(query, medicament -> {
+            try {
+                emitter.send(SseEmitter.event().name("medicament").data(medicament));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        emitter.onTimeout(() -> search.cancel(true));
+        emitter.onError(error -> search.cancel(true));
+        emitter.onCompletion(() -> search.cancel(true));
+        search.whenComplete((results, error) -> {
+            if (search.isCancelled()) {
+                return; // The stream is already closed
+            }
+            if (error != null) {
+                emitter.completeWithError(error);
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().name("done").data(results.size()));
+                emitter.complete();
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
     @PostMapping("/detailed-scrape")
     public ResponseEntity<Medicament> getDetailedMedicamentInfo(@RequestBody Map<String, String> payload) {
         try {
@@ -0,0 +1,21 @@
+package com.example.gestion_pharmacie.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * One medicament a supplier has shipped, with one alerte set on it; the alerte fields are null when the
+ * medicament has none. Built by the JPQL constructor expression of {@code AlerteRepository.findFournisseurAlerteRows}.
+ */
+@Data
+@AllArgsConstructor
+public class AlerteFournisseurRow {
+    private Long medicamentId;
+    private Long alerteId;
+    private String message;
+    private LocalDateTime dateCreation;
+    private Integer minimumQuantite;
+    private Integer nombreMedicaments;
+}
@@ -0,0 +1,18 @@
+package com.example.gestion_pharmacie.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * One (alerte, medicament) pair with the threshold of the alerte, as loaded by the alert engine.
+ * Built by the JPQL constructor expression of {@code AlerteRepository.findAllSeuils}.
+ */
+@Data
+@AllArgsConstructor
+public class AlerteSeuilRow {
+    private Long alerteId;
+    private Long utilisateurId;
+    private int minimumQuantite;
+    private String message;
+    private Long medicamentId;
+}
@@ -0,0 +1,36 @@
+package com.example.gestion_pharmacie.DTO;
+
+import com.example.gestion_pharmacie.Erreurs.CurseurInvalideException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Position of the last commande of a page in the {@code (dateCommande, id)} order, handed to the client
+ * as an opaque URL-safe string and sent back to fetch the next page.
+ */
+@Data
+@AllArgsConstructor
+public class CommandeCursor {
+    private LocalDateTime dateCommande;
+    private Long id;
+
+    public String encode() {
+        String raw = dateCommande + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static CommandeCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return new CommandeCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new CurseurInvalideException("Curseur invalide: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.gestion_pharmacie.DTO;
+
+import com.example.gestion_pharmacie.entites.StatutCommande;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row of the flat commande read projection: a commande with its pharmacien and fournisseur, and
+ * one of its lignes with the medicament (ligne and medicament columns are null for an empty commande).
+ * Built by the JPQL constructor expressions of {@code CommandeRepository}.
+ */
+@Data
+@AllArgsConstructor
+public class CommandeLigneRow {
+    private Long commandeId;
+    private LocalDateTime dateCommande;
+    private StatutCommande statut;
+
+    private Long pharmacienId;
+    private String pharmacienNom;
+    private String pharmacienPrenom;
+
+    private Long fournisseurId;
+    private String fournisseurNom;
+    private String fournisseurPrenom;
+
+    private Long ligneId;
+    private Integer quantite;
+
+    private Long medicamentId;
+    private String medicamentNom;
+    private Float prixHospitalier;
+    private Float prixPublic;
+    private Integer medicamentQuantite;
+}
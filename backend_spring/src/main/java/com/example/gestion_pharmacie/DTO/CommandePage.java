@@ -0,0 +1,14 @@
+package com.example.gestion_pharmacie.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class CommandePage {
+    private List<CommandeResponseDto> commandes;
+    // null on the last page
+    private String nextCursor;
+}
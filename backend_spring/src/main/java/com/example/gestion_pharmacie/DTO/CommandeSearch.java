@@ -0,0 +1,21 @@
+package com.example.gestion_pharmacie.DTO;
+
+import com.example.gestion_pharmacie.entites.StatutCommande;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filters and position of a commande history page. {@code from} is inclusive and {@code to} exclusive;
+ * the owner ids are set by the service from the authenticated user.
+ */
+@Data
+public class CommandeSearch {
+    private Long pharmacienId;
+    private Long fournisseurId;
+    private StatutCommande statut;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private CommandeCursor after;
+    private int size;
+}
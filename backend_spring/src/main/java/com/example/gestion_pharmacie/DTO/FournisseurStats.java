@@ -0,0 +1,13 @@
+package com.example.gestion_pharmacie.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/** Counts behind the supplier's chat statistics, computed by the database. */
+@Data
+@AllArgsConstructor
+public class FournisseurStats {
+    private Long totalCommandes;
+    private Long totalLignesCommandes;
+    private Long pharmaciensUniques;
+}
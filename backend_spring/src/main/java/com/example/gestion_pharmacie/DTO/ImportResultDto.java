@@ -0,0 +1,34 @@
+package com.example.gestion_pharmacie.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ImportResultDto {
+    private long totalRows;
+    private long imported;
+    private long rejected;
+    private long durationMs;
+    private double rowsPerSecond;
+    private List<RowRejectDto> rejects = new ArrayList<>();
+    /** Why the whole file was refused (unsupported format, unreadable file, bad header), null otherwise. */
+    private String erreur;
+
+    public static ImportResultDto erreur(String erreur) {
+        ImportResultDto result = new ImportResultDto();
+        result.setErreur(erreur);
+        return result;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowRejectDto {
+        private long ligne;
+        private String raison;
+    }
+}
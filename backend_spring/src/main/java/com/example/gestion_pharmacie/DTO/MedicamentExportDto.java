@@ -0,0 +1,27 @@
+package com.example.gestion_pharmacie.DTO;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/** A medicament as written by GET /medicaments/export: the owner is reduced to its public fields. */
+@Data
+public class MedicamentExportDto {
+    private Long id;
+    private String nom;
+    private String code_ATC;
+    private String dosage;
+    private String presentation;
+    private float prix_hospitalier;
+    private float prix_public;
+    private float prix_conseille;
+    private String composition;
+    private String classe_therapeutique;
+    private int quantite;
+    private Date date_expiration;
+    private String indications;
+    private String natureDuProduit;
+    private String tableau;
+    private boolean en_vente;
+    private CommandeResponseDto.UserBasicInfoDto utilisateur;
+}
@@ -0,0 +1,13 @@
+package com.example.gestion_pharmacie.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/** A pharmacist as listed to a supplier, read without loading the entity. */
+@Data
+@AllArgsConstructor
+public class PharmacienRow {
+    private Long id;
+    private String nom;
+    private String prenom;
+}
@@ -0,0 +1,13 @@
+package com.example.gestion_pharmacie.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/** Counts behind the pharmacist's chat statistics, computed by the database. */
+@Data
+@AllArgsConstructor
+public class PharmacienStats {
+    private Long totalMedicaments;
+    private Long totalCommandes;
+    private Long totalAlertes;
+}
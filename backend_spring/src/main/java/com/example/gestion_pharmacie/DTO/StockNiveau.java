@@ -0,0 +1,13 @@
+package com.example.gestion_pharmacie.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/** Current stock of a medicament, read without loading the entity. */
+@Data
+@AllArgsConstructor
+public class StockNiveau {
+    private Long medicamentId;
+    private String nom;
+    private int quantite;
+}
@@ -0,0 +1,12 @@
+package com.example.gestion_pharmacie.Erreurs;
+
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class CurseurInvalideException extends RuntimeException {
+    public CurseurInvalideException(String message) {
+        super(message);
+    }
+}
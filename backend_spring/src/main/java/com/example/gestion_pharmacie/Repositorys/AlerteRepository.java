@@ -1,7 +1,11 @@
 package com.example.gestion_pharmacie.Repositorys;
 
+import com.example.gestion_pharmacie.DTO.AlerteFournisseurRow;
+import com.example.gestion_pharmacie.DTO.AlerteSeuilRow;
 import com.example.gestion_pharmacie.entites.Alerte;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
@@ -9,4 +13,21 @@ public interface AlerteRepository extends JpaRepository<Alerte, Long> {
     List<Alerte> findByUtilisateurId(Long userId);
     List<Alerte> findByMedicamentsId(Long medicamentId);
 
+    // Every watched (alerte, medicament) pair, for the in-memory index of AlerteEngine
+    @Query("select new com.example.gestion_pharmacie.DTO.AlerteSeuilRow(a.id, u.id, a.minimumQuantite, a.message, m.id) "
+            + "from Alerte a join a.medicaments m left join a.utilisateur u order by a.id")
+    List<AlerteSeuilRow> findAllSeuils();
+
+    // Medicaments shipped by the supplier, each joined through alerte_medicament to the alertes set on it,
+    // in one statement
+    @Query("select distinct new com.example.gestion_pharmacie.DTO.AlerteFournisseurRow("
+            + "l.medicament.id, x.alerteId, x.message, x.dateCreation, x.minimumQuantite, x.nombreMedicaments) "
+            + "from LigneCommande l "
+            + "left join (select a.id as alerteId, m.id as medicamentId, a.message as message, "
+            + "a.dateCreation as dateCreation, a.minimumQuantite as minimumQuantite, "
+            + "size(a.medicaments) as nombreMedicaments "
+            + "from Alerte a join a.medicaments m) x on x.medicamentId = l.medicament.id "
+            + "where l.commande.fournisseur.id = :fournisseurId "
+            + "order by x.alerteId, l.medicament.id")
+    List<AlerteFournisseurRow> findFournisseurAlerteRows(@Param("fournisseurId") Long fournisseurId);
 }
@@ -1,14 +1,53 @@
 package com.example.gestion_pharmacie.Repositorys;
 
+import com.example.gestion_pharmacie.DTO.CommandeLigneRow;
+import com.example.gestion_pharmacie.DTO.PharmacienRow;
 import com.example.gestion_pharmacie.entites.Commande;
 import com.example.gestion_pharmacie.entites.Fournisseur;
 import com.example.gestion_pharmacie.entites.Pharmacien;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.stream.Stream;
 
-public interface CommandeRepository extends JpaRepository<Commande, Long> {
+public interface CommandeRepository extends JpaRepository<Commande, Long>, CommandeRepositoryCustom {
     List<Commande> findByPharmacien(Pharmacien pharmacien);
     List<Commande> findByFournisseur(Fournisseur fournisseur);
 
-}
\ No newline at end of file
+    // Pharmaciens who ordered from the supplier, each once, most recent customer first
+    @Query("select new com.example.gestion_pharmacie.DTO.PharmacienRow(p.id, p.nom, p.prenom) "
+            + "from Commande c join c.pharmacien p where c.fournisseur.id = :fournisseurId "
+            + "group by p.id, p.nom, p.prenom order by max(c.dateCommande) desc, p.id")
+    List<PharmacienRow> findPharmaciensByFournisseurId(@Param("fournisseurId") Long fournisseurId, Pageable pageable);
+
+    // Commandes with their users, lignes and medicaments in a single statement, one row per ligne
+    String LIGNE_ROWS = "select new com.example.gestion_pharmacie.DTO.CommandeLigneRow("
+            + "c.id, c.dateCommande, c.statut, p.id, p.nom, p.prenom, f.id, f.nom, f.prenom, "
+            + "l.id, l.quantite, m.id, m.nom, m.prix_hospitalier, m.prix_public, m.quantite) "
+            + "from Commande c left join c.pharmacien p left join c.fournisseur f "
+            + "left join c.lignesCommande l left join l.medicament m ";
+
+    @Query(LIGNE_ROWS + "where p.id = :pharmacienId order by c.id, l.id")
+    List<CommandeLigneRow> findLigneRowsByPharmacienId(@Param("pharmacienId") Long pharmacienId);
+
+    @Query(LIGNE_ROWS + "where f.id = :fournisseurId order by c.id, l.id")
+    List<CommandeLigneRow> findLigneRowsByFournisseurId(@Param("fournisseurId") Long fournisseurId);
+
+    @Query(LIGNE_ROWS + "order by c.id, l.id")
+    List<CommandeLigneRow> findAllLigneRows();
+
+    // Same rows for GET /commandes/export; must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = MedicamentRepository.EXPORT_FETCH_SIZE))
+    @Query(LIGNE_ROWS + "order by c.id, l.id")
+    Stream<CommandeLigneRow> streamAllLigneRows();
+
+    // Rows of one history page, in the page order of findPageIds
+    @Query(LIGNE_ROWS + "where c.id in :ids order by c.dateCommande desc, c.id desc, l.id")
+    List<CommandeLigneRow> findLigneRowsByIdIn(@Param("ids") List<Long> ids);
+}
@@ -0,0 +1,10 @@
+package com.example.gestion_pharmacie.Repositorys;
+
+import com.example.gestion_pharmacie.DTO.CommandeSearch;
+
+import java.util.List;
+
+public interface CommandeRepositoryCustom {
+    /** Ids of the commandes matching the search after its cursor, newest first, at most {@code limit}. */
+    List<Long> findPageIds(CommandeSearch search, int limit);
+}
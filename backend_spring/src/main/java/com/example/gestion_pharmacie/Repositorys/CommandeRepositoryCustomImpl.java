@@ -0,0 +1,58 @@
+package com.example.gestion_pharmacie.Repositorys;
+
+import com.example.gestion_pharmacie.DTO.CommandeSearch;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keyset query behind the commande history pages. Only the predicates of the filters actually set are
+ * written, so each combination matches one of the {@code (owner, [statut,] date_commande, id)} indexes of
+ * {@code commande} and the cost of a page does not depend on how deep it is in the history.
+ */
+public class CommandeRepositoryCustomImpl implements CommandeRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Long> findPageIds(CommandeSearch search, int limit) {
+        StringBuilder jpql = new StringBuilder("select c.id from Commande c where 1 = 1");
+        Map<String, Object> parameters = new HashMap<>();
+
+        if (search.getPharmacienId() != null) {
+            jpql.append(" and c.pharmacien.id = :pharmacienId");
+            parameters.put("pharmacienId", search.getPharmacienId());
+        }
+        if (search.getFournisseurId() != null) {
+            jpql.append(" and c.fournisseur.id = :fournisseurId");
+            parameters.put("fournisseurId", search.getFournisseurId());
+        }
+        if (search.getStatut() != null) {
+            jpql.append(" and c.statut = :statut");
+            parameters.put("statut", search.getStatut());
+        }
+        if (search.getFrom() != null) {
+            jpql.append(" and c.dateCommande >= :from");
+            parameters.put("from", search.getFrom());
+        }
+        if (search.getTo() != null) {
+            jpql.append(" and c.dateCommande < :to");
+            parameters.put("to", search.getTo());
+        }
+        if (search.getAfter() != null) {
+            jpql.append(" and (c.dateCommande < :afterDate or (c.dateCommande = :afterDate and c.id < :afterId))");
+            parameters.put("afterDate", search.getAfter().getDateCommande());
+            parameters.put("afterId", search.getAfter().getId());
+        }
+        jpql.append(" order by c.dateCommande desc, c.id desc");
+
+        TypedQuery<Long> query = entityManager.createQuery(jpql.toString(), Long.class);
+        parameters.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.gestion_pharmacie.Repositorys;
+
+import com.example.gestion_pharmacie.entites.MedicamentMirror;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface MedicamentMirrorRepository extends JpaRepository<MedicamentMirror, Long> {
+    Optional<MedicamentMirror> findByDetailUrl(String detailUrl);
+    List<MedicamentMirror> findByDetailUrlIn(Collection<String> detailUrls);
+    List<MedicamentMirror> findByLettreAndNomRechercheContainingOrderByPosition(String lettre, String nomRecherche, Pageable pageable);
+    Optional<MedicamentMirror> findFirstByLettreAndNomRecherche(String lettre, String nomRecherche);
+    List<MedicamentMirror> findByLettreAndListingSeenAtBefore(String lettre, LocalDateTime before);
+
+    /** Marks the entries of an unchanged listing page (positions {@code [from, to)}) as still listed. */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MedicamentMirror m SET m.listingSeenAt = :seenAt WHERE m.lettre = :lettre AND m.position >= :from AND m.position < :to")
+    int markListed(@Param("lettre") String lettre, @Param("from") int from, @Param("to") int to,
+                   @Param("seenAt") LocalDateTime seenAt);
+
+    @Query("SELECT m FROM MedicamentMirror m WHERE m.detailFetchedAt IS NULL OR m.detailFetchedAt < :before ORDER BY m.detailFetchedAt NULLS FIRST, m.id")
+    List<MedicamentMirror> findStaleDetails(@Param("before") LocalDateTime before, Pageable pageable);
+}
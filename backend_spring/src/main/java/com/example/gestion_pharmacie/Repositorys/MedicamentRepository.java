@@ -1,17 +1,24 @@
 package com.example.gestion_pharmacie.Repositorys;
 
+import com.example.gestion_pharmacie.DTO.StockNiveau;
 import com.example.gestion_pharmacie.entites.Medicament;
 import com.example.gestion_pharmacie.entites.Utilisateur;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 
 @Repository
 public interface MedicamentRepository extends JpaRepository<Medicament, Long> {
-    List<Medicament> findByNomContainingIgnoreCase(String nom);
     List<Medicament> findByUtilisateurId(Long userId);
     List<Medicament> findByNomAndUtilisateur(String nom, Utilisateur utilisateur);
     
@@ -19,4 +26,37 @@ public interface MedicamentRepository extends JpaRepository<Medicament, Long> {
     List<Medicament> findMedicamentsEnVente();
 
     List<Medicament> findByUtilisateur(Utilisateur utilisateur);
+
+    // First page of a catalogue, for the size-capped chat context
+    List<Medicament> findByUtilisateurIdOrderByIdAsc(Long utilisateurId, Pageable pageable);
+
+    @Query("SELECT m FROM Medicament m WHERE m.en_vente = true ORDER BY m.id")
+    List<Medicament> findMedicamentsEnVente(Pageable pageable);
+
+    // First page of the medicaments a supplier shipped, each once, without reading its commandes
+    @Query("select m from Medicament m left join fetch m.utilisateur where m.id in ("
+            + "select l.medicament.id from LigneCommande l where l.commande.fournisseur.id = :fournisseurId) "
+            + "order by m.id")
+    List<Medicament> findLivresParFournisseur(@Param("fournisseurId") Long fournisseurId, Pageable pageable);
+
+    // Only the rows a delivery merges into, through idx_medicament_utilisateur_nom; the oldest row wins a duplicated name
+    List<Medicament> findByUtilisateurAndNomInOrderByIdAsc(Utilisateur utilisateur, Collection<String> noms);
+
+    // All the medicaments of an order in one statement; the id order keeps the flushed updates in a stable lock order
+    List<Medicament> findByIdInOrderByIdAsc(Collection<Long> ids);
+
+    // Stock levels read by the alert engine, without hydrating the entities
+    @Query("select new com.example.gestion_pharmacie.DTO.StockNiveau(m.id, m.nom, m.quantite) from Medicament m where m.id in :ids")
+    List<StockNiveau> findStockNiveaux(@Param("ids") Collection<Long> ids);
+
+    // Rows fetched per round trip by the streaming exports
+    String EXPORT_FETCH_SIZE = "500";
+
+    // Whole catalogue for GET /medicaments/export; must be consumed inside a transaction
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select m from Medicament m left join fetch m.utilisateur order by m.id")
+    Stream<Medicament> streamAllForExport();
 }
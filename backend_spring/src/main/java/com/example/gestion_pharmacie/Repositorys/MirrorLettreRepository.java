@@ -0,0 +1,8 @@
+package com.example.gestion_pharmacie.Repositorys;
+
+import com.example.gestion_pharmacie.entites.MirrorLettre;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface MirrorLettreRepository extends JpaRepository<MirrorLettre, String> {
+    boolean existsByLettreAndCompletedAtIsNotNull(String lettre);
+}
@@ -0,0 +1,13 @@
+package com.example.gestion_pharmacie.Repositorys;
+
+import com.example.gestion_pharmacie.entites.PageSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface PageSnapshotRepository extends JpaRepository<PageSnapshot, Long> {
+    Optional<PageSnapshot> findByUrl(String url);
+    List<PageSnapshot> findByUrlIn(Collection<String> urls);
+}
@@ -2,12 +2,20 @@ package com.example.gestion_pharmacie.Repositorys;
 
 import com.example.gestion_pharmacie.entites.Panier;
 import com.example.gestion_pharmacie.entites.Pharmacien;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface PanierRepository extends JpaRepository<Panier, Long> {
     List<Panier> findByPharmacien(Pharmacien pharmacien);
-}
\ No newline at end of file
+
+    // The open cart alone, without hydrating the sales history; see OpenPanierRegistry for its index
+    Optional<Panier> findFirstByPharmacienIdAndVenduFalseOrderByIdAsc(Long pharmacienId);
+
+    // Most recent carts first, for the size-capped chat context
+    List<Panier> findByPharmacienIdOrderByIdDesc(Long pharmacienId, Pageable pageable);
+}
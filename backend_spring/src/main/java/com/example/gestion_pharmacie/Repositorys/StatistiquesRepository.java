@@ -0,0 +1,31 @@
+package com.example.gestion_pharmacie.Repositorys;
+
+import com.example.gestion_pharmacie.DTO.FournisseurStats;
+import com.example.gestion_pharmacie.DTO.PharmacienStats;
+import com.example.gestion_pharmacie.entites.Utilisateur;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Aggregates behind the chat statistics. Each role's figures come from a single statement, so answering
+ * "how many" does not depend on the size of the user's history.
+ */
+public interface StatistiquesRepository extends Repository<Utilisateur, Long> {
+
+    @Query("select new com.example.gestion_pharmacie.DTO.PharmacienStats("
+            + "(select count(m) from Medicament m where m.utilisateur.id = u.id), "
+            + "(select count(c) from Commande c where c.pharmacien.id = u.id), "
+            + "(select count(a) from Alerte a where a.utilisateur.id = u.id)) "
+            + "from Utilisateur u where u.id = :pharmacienId")
+    PharmacienStats findPharmacienStats(@Param("pharmacienId") Long pharmacienId);
+
+    // Quantities are summed over every ligne; commandes without lignes still count
+    @Query("select new com.example.gestion_pharmacie.DTO.FournisseurStats("
+            + "count(distinct c.id), coalesce(sum(l.quantite), 0L), count(distinct c.pharmacien.id)) "
+            + "from Commande c left join c.lignesCommande l where c.fournisseur.id = :fournisseurId")
+    FournisseurStats findFournisseurStats(@Param("fournisseurId") Long fournisseurId);
+
+    @Query("select count(m) from Medicament m where m.en_vente = true")
+    long countMedicamentsEnVente();
+}
@@ -0,0 +1,115 @@
+package com.example.gestion_pharmacie.Security;
+
+import com.example.gestion_pharmacie.Repositorys.UtilisateurRepository;
+import com.example.gestion_pharmacie.entites.Client;
+import com.example.gestion_pharmacie.entites.Fournisseur;
+import com.example.gestion_pharmacie.entites.Pharmacien;
+import com.example.gestion_pharmacie.entites.Utilisateur;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Optional;
+
+/**
+ * The authenticated user of the current request.
+ * <p>
+ * The JWT filter binds the email once the token is verified; the {@code Utilisateur} row is loaded on the
+ * first call that needs it and kept in the request attributes, so a request issues at most one user
+ * query however many services ask for it. The polymorphic query returns the concrete subtype
+ * (Pharmacien, Fournisseur, Client). Outside a web request (scheduled jobs, tests) every call falls
+ * back to a lookup by the email of the security context.
+ */
+@Component
+public class CurrentActor {
+    private static final String ATTRIBUTE = CurrentActor.class.getName() + ".ACTOR";
+
+    private final UtilisateurRepository utilisateurRepository;
+
+    public CurrentActor(UtilisateurRepository utilisateurRepository) {
+        this.utilisateurRepository = utilisateurRepository;
+    }
+
+    /** Binds the authenticated email to the current request; called by the JWT filter. */
+    public void bind(String email) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(ATTRIBUTE, new Actor(email), RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    public String getEmail() {
+        Actor actor = actor();
+        return actor != null ? actor.email : authenticatedEmail();
+    }
+
+    public Optional<Utilisateur> findUtilisateur() {
+        Actor actor = actor();
+        if (actor == null) {
+            String email = authenticatedEmail();
+            return email == null ? Optional.empty() : utilisateurRepository.findByEmail(email);
+        }
+        if (!actor.loaded) {
+            actor.utilisateur = actor.email == null ? null : utilisateurRepository.findByEmail(actor.email).orElse(null);
+            actor.loaded = true;
+        }
+        return Optional.ofNullable(actor.utilisateur);
+    }
+
+    public Utilisateur getUtilisateur() {
+        return findUtilisateur().orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+    }
+
+    public Pharmacien getPharmacien() {
+        return findUtilisateur()
+                .filter(Pharmacien.class::isInstance)
+                .map(Pharmacien.class::cast)
+                .orElseThrow(() -> new RuntimeException("Pharmacien non trouvé"));
+    }
+
+    public Fournisseur getFournisseur() {
+        return findUtilisateur()
+                .filter(Fournisseur.class::isInstance)
+                .map(Fournisseur.class::cast)
+                .orElseThrow(() -> new RuntimeException("Fournisseur non trouvé"));
+    }
+
+    public Client getClient() {
+        return findUtilisateur()
+                .filter(Client.class::isInstance)
+                .map(Client.class::cast)
+                .orElseThrow(() -> new RuntimeException("Client non trouvé"));
+    }
+
+    private Actor actor() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        Actor actor = (Actor) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        String email = authenticatedEmail();
+        if (actor == null || (email != null && !email.equals(actor.email))) {
+            // Authenticated some other way than the JWT filter, or the authentication changed
+            actor = new Actor(email);
+            attributes.setAttribute(ATTRIBUTE, actor, RequestAttributes.SCOPE_REQUEST);
+        }
+        return actor;
+    }
+
+    private static String authenticatedEmail() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? null : authentication.getName();
+    }
+
+    private static final class Actor {
+        private final String email;
+        private Utilisateur utilisateur;
+        private boolean loaded;
+
+        private Actor(String email) {
+            this.email = email;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.gestion_pharmacie.Security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Short-lived cache of the principals resolved by the JWT filter, keyed by email, so that an
+ * authenticated request does not hit the database to load its user.
+ * <p>
+ * Entries are immutable snapshots (username, authorities, account flags, no password) rather than the
+ * {@code Utilisateur} entity, which must not be shared between requests. They are dropped when the user
+ * is updated or deleted (see {@link UtilisateurCacheListener}) and expire after the TTL anyway.
+ */
+@Component
+public class PrincipalCache {
+
+    private final Cache<String, UserDetails> cache;
+
+    public PrincipalCache(@Value("${security.principal-cache.max-entries:10000}") long maxEntries,
+                          @Value("${security.principal-cache.ttl-seconds:60}") long ttlSeconds,
+                          MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "security.principal");
+    }
+
+    /** Cached principal for the email, loaded with {@code loader} on a miss; loader exceptions are not cached. */
+    public UserDetails get(String email, Function<String, UserDetails> loader) {
+        return cache.get(email, key -> snapshot(loader.apply(key)));
+    }
+
+    public void invalidate(String email) {
+        if (email != null) {
+            cache.invalidate(email);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static UserDetails snapshot(UserDetails userDetails) {
+        return User.withUsername(userDetails.getUsername())
+                .password("")
+                .authorities(userDetails.getAuthorities())
+                .accountExpired(!userDetails.isAccountNonExpired())
+                .accountLocked(!userDetails.isAccountNonLocked())
+                .credentialsExpired(!userDetails.isCredentialsNonExpired())
+                .disabled(!userDetails.isEnabled())
+                .build();
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.gestion_pharmacie.Security;
+
+import com.example.gestion_pharmacie.entites.Utilisateur;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Keeps {@link PrincipalCache} in line with the {@code utilisateur} table. Evictions run after commit so
+ * a concurrent request cannot reload the old row between the flush and the commit. The cache is optional
+ * so that JPA slices without the security beans still start.
+ */
+@Component
+public class UtilisateurCacheListener {
+
+    private final ObjectProvider<PrincipalCache> principalCache;
+
+    public UtilisateurCacheListener(ObjectProvider<PrincipalCache> principalCache) {
+        this.principalCache = principalCache;
+    }
+
+    @PostUpdate
+    public void onUpdate(Utilisateur utilisateur) {
+        // The email may have changed, so the old key is unknown here
+        afterCommit(() -> principalCache.ifAvailable(PrincipalCache::invalidateAll));
+    }
+
+    @PostRemove
+    public void onRemove(Utilisateur utilisateur) {
+        String email = utilisateur.getEmail();
+        afterCommit(() -> principalCache.ifAvailable(cache -> cache.invalidate(email)));
+    }
+
+    private static void afterCommit(Runnable eviction) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eviction.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                eviction.run();
+            }
+        });
+    }
+}
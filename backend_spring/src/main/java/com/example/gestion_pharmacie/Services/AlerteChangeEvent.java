@@ -0,0 +1,25 @@
+package com.example.gestion_pharmacie.Services;
+
+import java.util.List;
+
+/**
+ * Published when an alerte was created, changed or deleted, with the medicaments it watched before and
+ * after the change.
+ */
+public class AlerteChangeEvent {
+    private final Long utilisateurId;
+    private final List<Long> medicamentIds;
+
+    public AlerteChangeEvent(Long utilisateurId, List<Long> medicamentIds) {
+        this.utilisateurId = utilisateurId;
+        this.medicamentIds = List.copyOf(medicamentIds);
+    }
+
+    public Long getUtilisateurId() {
+        return utilisateurId;
+    }
+
+    public List<Long> getMedicamentIds() {
+        return medicamentIds;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.gestion_pharmacie.Services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published by {@link AlerteEngine} when the stock of a watched medicament falls to the threshold of an
+ * alerte. Published once per crossing: the alerte fires again only after the stock went back above it.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class AlerteDeclencheeEvent {
+    private final Long alerteId;
+    private final Long utilisateurId;
+    private final String message;
+    private final int minimumQuantite;
+    private final Long medicamentId;
+    private final String medicamentNom;
+    private final int quantite;
+    private final LocalDateTime dateDeclenchement;
+}
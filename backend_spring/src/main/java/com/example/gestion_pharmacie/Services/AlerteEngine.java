@@ -0,0 +1,348 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.DTO.AlerteSeuilRow;
+import com.example.gestion_pharmacie.DTO.StockNiveau;
+import com.example.gestion_pharmacie.Repositorys.AlerteRepository;
+import com.example.gestion_pharmacie.Repositorys.MedicamentRepository;
+import com.example.gestion_pharmacie.entites.Alerte;
+import com.example.gestion_pharmacie.entites.Medicament;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluates the low-stock alertes.
+ * <p>
+ * An in-memory index maps each watched medicament id to the thresholds of the alertes watching it. Stock
+ * moves arrive as {@link StockChangeEvent}s once their transaction has committed; the ids that are watched
+ * are put on a bounded queue and a single worker thread re-reads their stock and checks only the alertes
+ * watching them, so the sale path never waits for the evaluation. An alerte fires, as an
+ * {@link AlerteDeclencheeEvent}, when the stock is at or below its {@code minimumQuantite}, and fires
+ * again only after the stock went back above it.
+ * <p>
+ * When the queue is full the change is dropped and counted: the periodic sweep re-evaluates every
+ * watched medicament and catches up with dropped changes and with stock edited outside of
+ * {@link StockService}. Only index updates take the monitor; evaluations read the index without it and
+ * query the stock outside of it, so a long sweep never holds up an alerte being created. Queue depth, lag between the commit and the evaluation, drops and triggers
+ * are exported as metrics.
+ */
+@Component
+public class AlerteEngine {
+    private static final Logger logger = LoggerFactory.getLogger(AlerteEngine.class);
+
+    // Medicaments read per query by an evaluation
+    static final int EVALUATION_CHUNK = 500;
+    private static final int MAX_BATCH = 256;
+
+    private final AlerteRepository alerteRepository;
+    private final MedicamentRepository medicamentRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Map<Long, Map<Long, Seuil>> seuilsParMedicament = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> medicamentsParAlerte = new HashMap<>();
+    private final Set<Declenchement> declenchees = ConcurrentHashMap.newKeySet();
+    private final BlockingQueue<PendingChange> queue;
+
+    private final Counter dropped;
+    private final Counter triggered;
+    private final Timer lag;
+
+    private volatile Thread worker;
+
+    public AlerteEngine(AlerteRepository alerteRepository,
+                        MedicamentRepository medicamentRepository,
+                        ApplicationEventPublisher eventPublisher,
+                        MeterRegistry meterRegistry,
+                        @Value("${alerte.engine.queue-capacity:10000}") int queueCapacity) {
+        this.alerteRepository = alerteRepository;
+        this.medicamentRepository = medicamentRepository;
+        this.eventPublisher = eventPublisher;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.dropped = Counter.builder("alerte.engine.dropped")
+                .description("Mouvements de stock ignorés car la file d'évaluation était pleine")
+                .register(meterRegistry);
+        this.triggered = Counter.builder("alerte.engine.triggered")
+                .description("Alertes de stock déclenchées")
+                .register(meterRegistry);
+        this.lag = Timer.builder("alerte.engine.lag")
+                .description("Délai entre un mouvement de stock et l'évaluation des alertes")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("alerte.engine.queue.depth", queue, Collection::size).register(meterRegistry);
+        Gauge.builder("alerte.engine.watched", seuilsParMedicament, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Loads the index and starts the worker. Stock already below a threshold at startup is recorded
+     * without firing, so a restart does not replay every alerte.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        reload();
+        Thread thread = new Thread(this::run, "alerte-engine");
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread thread = worker;
+        worker = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    void reload() {
+        Map<Long, List<AlerteSeuilRow>> parAlerte = new LinkedHashMap<>();
+        for (AlerteSeuilRow row : alerteRepository.findAllSeuils()) {
+            parAlerte.computeIfAbsent(row.getAlerteId(), id -> new ArrayList<>()).add(row);
+        }
+        synchronized (this) {
+            seuilsParMedicament.clear();
+            medicamentsParAlerte.clear();
+            declenchees.clear();
+            parAlerte.forEach((alerteId, rows) -> {
+                AlerteSeuilRow first = rows.get(0);
+                Seuil seuil = new Seuil(alerteId, first.getUtilisateurId(), first.getMinimumQuantite(), first.getMessage());
+                index(seuil, rows.stream().map(AlerteSeuilRow::getMedicamentId).toList());
+            });
+        }
+        evaluate(new ArrayList<>(seuilsParMedicament.keySet()), false);
+        logger.info("Alert engine: {} alertes watching {} medicaments", parAlerte.size(), seuilsParMedicament.size());
+    }
+
+    /** Indexes a created or modified alerte once its transaction commits, then evaluates it. */
+    public void watch(Alerte alerte) {
+        Seuil seuil = new Seuil(alerte.getId(),
+                alerte.getUtilisateur() != null ? alerte.getUtilisateur().getId() : null,
+                alerte.getMinimumQuantite(), alerte.getMessage());
+        List<Long> medicamentIds = alerte.getMedicaments() == null ? List.of()
+                : alerte.getMedicaments().stream().map(Medicament::getId).toList();
+        afterCommit(() -> {
+            synchronized (this) {
+                unindex(seuil.alerteId);
+                index(seuil, medicamentIds);
+            }
+            enqueue(medicamentIds);
+        });
+    }
+
+    /** Removes a deleted alerte from the index once its transaction commits. */
+    public void unwatch(Long alerteId) {
+        afterCommit(() -> {
+            synchronized (this) {
+                unindex(alerteId);
+            }
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChange(StockChangeEvent event) {
+        enqueue(event.getMedicamentIds());
+    }
+
+    /** Re-evaluates every watched medicament; catches up with dropped changes and catalogue edits. */
+    @Scheduled(fixedDelayString = "${alerte.engine.sweep-interval-ms:300000}",
+            initialDelayString = "${alerte.engine.sweep-interval-ms:300000}")
+    public void sweep() {
+        evaluate(new ArrayList<>(seuilsParMedicament.keySet()), true);
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    void enqueue(Collection<Long> medicamentIds) {
+        List<Long> watched = medicamentIds.stream().filter(seuilsParMedicament::containsKey).distinct().toList();
+        if (watched.isEmpty()) {
+            return;
+        }
+        if (!queue.offer(new PendingChange(watched, System.nanoTime()))) {
+            dropped.increment();
+            logger.warn("Alert engine queue full, stock change of {} left to the next sweep", watched);
+        }
+    }
+
+    /** Evaluates the changes waiting on the queue, waiting up to the timeout for the first one. */
+    boolean processPending(long timeout, TimeUnit unit) throws InterruptedException {
+        PendingChange first = queue.poll(timeout, unit);
+        if (first == null) {
+            return false;
+        }
+        List<PendingChange> batch = new ArrayList<>();
+        batch.add(first);
+        queue.drainTo(batch, MAX_BATCH - 1);
+
+        Set<Long> medicamentIds = new LinkedHashSet<>();
+        batch.forEach(change -> medicamentIds.addAll(change.medicamentIds));
+        try {
+            evaluate(new ArrayList<>(medicamentIds), true);
+        } catch (RuntimeException e) {
+            logger.error("Alert evaluation failed for medicaments {}: {}", medicamentIds, e.getMessage(), e);
+        }
+        long now = System.nanoTime();
+        batch.forEach(change -> lag.record(now - change.enqueuedAt, TimeUnit.NANOSECONDS));
+        return true;
+    }
+
+    private void run() {
+        while (worker == Thread.currentThread()) {
+            try {
+                processPending(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Runs without the monitor: the sweep and the worker may evaluate at the same time, and the concurrent
+    // declenchees set lets only one of them fire a given crossing
+    private void evaluate(List<Long> medicamentIds, boolean publish) {
+        for (int from = 0; from < medicamentIds.size(); from += EVALUATION_CHUNK) {
+            List<Long> chunk = medicamentIds.subList(from, Math.min(from + EVALUATION_CHUNK, medicamentIds.size()));
+            for (StockNiveau niveau : medicamentRepository.findStockNiveaux(chunk)) {
+                for (Seuil seuil : seuilsParMedicament.getOrDefault(niveau.getMedicamentId(), Map.of()).values()) {
+                    Declenchement declenchement = new Declenchement(seuil.alerteId, niveau.getMedicamentId());
+                    if (niveau.getQuantite() > seuil.minimumQuantite) {
+                        declenchees.remove(declenchement);
+                    } else if (declenchees.add(declenchement)) {
+                        if (!isIndexed(seuil, niveau.getMedicamentId())) {
+                            // Alerte modified or deleted during the query: its new thresholds are evaluated on their own
+                            declenchees.remove(declenchement);
+                        } else if (publish) {
+                            fire(seuil, niveau);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isIndexed(Seuil seuil, Long medicamentId) {
+        return seuilsParMedicament.getOrDefault(medicamentId, Map.of()).get(seuil.alerteId) == seuil;
+    }
+
+    private void fire(Seuil seuil, StockNiveau niveau) {
+        triggered.increment();
+        logger.info("Alerte {} triggered: {} at {} (minimum {})",
+                seuil.alerteId, niveau.getNom(), niveau.getQuantite(), seuil.minimumQuantite);
+        eventPublisher.publishEvent(new AlerteDeclencheeEvent(seuil.alerteId, seuil.utilisateurId, seuil.message,
+                seuil.minimumQuantite, niveau.getMedicamentId(), niveau.getNom(), niveau.getQuantite(),
+                LocalDateTime.now()));
+    }
+
+    // Callers hold the monitor; the per-medicament maps are replaced, never mutated, so readers need no lock
+    private void index(Seuil seuil, Collection<Long> medicamentIds) {
+        Set<Long> ids = new HashSet<>(medicamentIds);
+        for (Long medicamentId : ids) {
+            seuilsParMedicament.compute(medicamentId, (id, seuils) -> {
+                Map<Long, Seuil> copy = seuils == null ? new HashMap<>() : new HashMap<>(seuils);
+                copy.put(seuil.alerteId, seuil);
+                return Map.copyOf(copy);
+            });
+        }
+        medicamentsParAlerte.put(seuil.alerteId, ids);
+    }
+
+    private void unindex(Long alerteId) {
+        Set<Long> ids = medicamentsParAlerte.remove(alerteId);
+        if (ids == null) {
+            return;
+        }
+        for (Long medicamentId : ids) {
+            seuilsParMedicament.computeIfPresent(medicamentId, (id, seuils) -> {
+                Map<Long, Seuil> copy = new HashMap<>(seuils);
+                copy.remove(alerteId);
+                return copy.isEmpty() ? null : Map.copyOf(copy);
+            });
+        }
+        declenchees.removeIf(declenchement -> declenchement.alerteId.equals(alerteId));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static final class Seuil {
+        private final Long alerteId;
+        private final Long utilisateurId;
+        private final int minimumQuantite;
+        private final String message;
+
+        private Seuil(Long alerteId, Long utilisateurId, int minimumQuantite, String message) {
+            this.alerteId = alerteId;
+            this.utilisateurId = utilisateurId;
+            this.minimumQuantite = minimumQuantite;
+            this.message = message;
+        }
+    }
+
+    private static final class Declenchement {
+        private final Long alerteId;
+        private final Long medicamentId;
+
+        private Declenchement(Long alerteId, Long medicamentId) {
+            this.alerteId = alerteId;
+            this.medicamentId = medicamentId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Declenchement other)) {
+                return false;
+            }
+            return alerteId.equals(other.alerteId) && medicamentId.equals(other.medicamentId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(alerteId, medicamentId);
+        }
+    }
+
+    private static final class PendingChange {
+        private final List<Long> medicamentIds;
+        private final long enqueuedAt;
+
+        private PendingChange(List<Long> medicamentIds, long enqueuedAt) {
+            this.medicamentIds = medicamentIds;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -7,12 +7,17 @@ import com.example.gestion_pharmacie.entites.Medicament;
 import com.example.gestion_pharmacie.entites.Utilisateur;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -22,11 +27,16 @@ public class AlerteService {
     private final AlerteRepository alerteRepository;
     private final MedicamentRepository medicamentRepository;
     private final UtilisateurService userService;
+    private final AlerteEngine alerteEngine;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public AlerteService(AlerteRepository alerteRepository, MedicamentRepository medicamentRepository, UtilisateurService userService) {
+    public AlerteService(AlerteRepository alerteRepository, MedicamentRepository medicamentRepository, UtilisateurService userService,
+                         AlerteEngine alerteEngine, ApplicationEventPublisher eventPublisher) {
         this.alerteRepository = alerteRepository;
         this.medicamentRepository = medicamentRepository;
         this.userService = userService;
+        this.alerteEngine = alerteEngine;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -36,19 +46,7 @@ public class AlerteService {
         Utilisateur utilisateur = userService.getCurrentUser();
 
         // Vérifier l'existence des médicaments ET que l'utilisateur en est le propriétaire
-        List<Medicament> medicaments = medicamentIds.stream()
-                .map(id -> {
-                    Medicament medicament = medicamentRepository.findById(id)
-                            .orElseThrow(() -> new RuntimeException("Médicament non trouvé avec ID: " + id));
-
-                    // Vérifier que le médicament appartient à l'utilisateur
-                    if (!medicament.getUtilisateur().getId().equals(utilisateur.getId())) {
-                        throw new RuntimeException("Vous ne pouvez ajouter que vos propres médicaments à l'alerte. Médicament ID: " + id);
-                    }
-
-                    return medicament;
-                })
-                .collect(Collectors.toList());
+        List<Medicament> medicaments = resolveMedicaments(medicamentIds, utilisateur);
 
         Alerte alerte = new Alerte();
         alerte.setMessage(message);
@@ -57,7 +55,10 @@ public class AlerteService {
         alerte.setMedicaments(medicaments);
         alerte.setUtilisateur(utilisateur);
 
-        return alerteRepository.save(alerte);
+        Alerte saved = alerteRepository.save(alerte);
+        alerteEngine.watch(saved);
+        eventPublisher.publishEvent(new AlerteChangeEvent(utilisateur.getId(), medicamentIds(saved)));
+        return saved;
     }
 
     @Transactional
@@ -74,6 +75,8 @@ public class AlerteService {
             throw new RuntimeException("Vous n'êtes pas autorisé à modifier cette alerte");
         }
 
+        Set<Long> surveilles = new LinkedHashSet<>(medicamentIds(alerte));
+
         // Mettre à jour les champs
         if (message != null) {
             alerte.setMessage(message);
@@ -84,23 +87,15 @@ public class AlerteService {
         }
 
         if (medicamentIds != null && !medicamentIds.isEmpty()) {
-            List<Medicament> medicaments = medicamentIds.stream()
-                    .map(id -> {
-                        Medicament medicament = medicamentRepository.findById(id)
-                                .orElseThrow(() -> new RuntimeException("Médicament non trouvé avec ID: " + id));
-
-                        // Vérifier que le médicament appartient à l'utilisateur
-                        if (!medicament.getUtilisateur().getId().equals(utilisateur.getId())) {
-                            throw new RuntimeException("Vous ne pouvez ajouter que vos propres médicaments à l'alerte. Médicament ID: " + id);
-                        }
-
-                        return medicament;
-                    })
-                    .collect(Collectors.toList());
+            List<Medicament> medicaments = resolveMedicaments(medicamentIds, utilisateur);
             alerte.setMedicaments(medicaments);
         }
 
-        return alerteRepository.save(alerte);
+        Alerte saved = alerteRepository.save(alerte);
+        alerteEngine.watch(saved);
+        surveilles.addAll(medicamentIds(saved));
+        eventPublisher.publishEvent(new AlerteChangeEvent(utilisateur.getId(), new ArrayList<>(surveilles)));
+        return saved;
     }
     @Transactional
     public void supprimerAlerte(Long alerteId) {
@@ -117,10 +112,61 @@ public class AlerteService {
         }
 
         alerteRepository.delete(alerte);
+        alerteEngine.unwatch(alerteId);
+        eventPublisher.publishEvent(new AlerteChangeEvent(utilisateur.getId(), medicamentIds(alerte)));
     }
 
     public List<Alerte> getAlertesUtilisateur() {
         Utilisateur utilisateur = userService.getCurrentUser();
         return alerteRepository.findByUtilisateurId(utilisateur.getId());
     }
-}
\ No newline at end of file
+
+    /**
+     * Loads the medicaments of an alerte in one query, in the requested order and without duplicates.
+     * Fails with every unknown id and every id owned by someone else at once.
+     */
+    private List<Medicament> resolveMedicaments(List<Long> medicamentIds, Utilisateur utilisateur) {
+        Set<Long> ids = new LinkedHashSet<>(medicamentIds);
+        Map<Long, Medicament> parId = medicamentRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Medicament::getId, Function.identity()));
+
+        List<Long> introuvables = new ArrayList<>();
+        List<Long> etrangers = new ArrayList<>();
+        List<Medicament> medicaments = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Medicament medicament = parId.get(id);
+            if (medicament == null) {
+                introuvables.add(id);
+            } else if (medicament.getUtilisateur() == null
+                    || !medicament.getUtilisateur().getId().equals(utilisateur.getId())) {
+                etrangers.add(id);
+            } else {
+                medicaments.add(medicament);
+            }
+        }
+
+        List<String> erreurs = new ArrayList<>();
+        if (!introuvables.isEmpty()) {
+            erreurs.add("Médicament non trouvé avec ID: " + joinIds(introuvables));
+        }
+        if (!etrangers.isEmpty()) {
+            erreurs.add("Vous ne pouvez ajouter que vos propres médicaments à l'alerte. Médicament ID: " + joinIds(etrangers));
+        }
+        if (!erreurs.isEmpty()) {
+            logger.warn("Médicaments refusés pour l'alerte: introuvables {}, non possédés {}", introuvables, etrangers);
+            throw new RuntimeException(String.join(". ", erreurs));
+        }
+        return medicaments;
+    }
+
+    private static String joinIds(List<Long> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(", "));
+    }
+
+    private static List<Long> medicamentIds(Alerte alerte) {
+        if (alerte.getMedicaments() == null) {
+            return List.of();
+        }
+        return alerte.getMedicaments().stream().map(Medicament::getId).toList();
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.gestion_pharmacie.Services;
+
+import java.util.List;
+
+/**
+ * Published when a user's medicaments were added, edited, put on sale or removed. Carries the medicaments
+ * that already existed; an import or a creation only names the owner.
+ */
+public class CatalogueChangeEvent {
+    private final Long utilisateurId;
+    private final List<Long> medicamentIds;
+
+    public CatalogueChangeEvent(Long utilisateurId, List<Long> medicamentIds) {
+        this.utilisateurId = utilisateurId;
+        this.medicamentIds = List.copyOf(medicamentIds);
+    }
+
+    public Long getUtilisateurId() {
+        return utilisateurId;
+    }
+
+    public List<Long> getMedicamentIds() {
+        return medicamentIds;
+    }
+}
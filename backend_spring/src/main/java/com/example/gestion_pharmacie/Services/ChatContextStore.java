@@ -0,0 +1,195 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Ready-made chat context of each user, one entry per section (medicaments, commandes, alertes...).
+ * <p>
+ * A section is built once, in a read-only transaction, capped to {@code chat.context.max-items} items and
+ * kept until a domain event says it changed, so a chat turn reads it without touching the database. Events
+ * are applied after commit: commande events drop the sections of both parties that the change touches,
+ * cart and alerte events the owner's matching sections, a triggered alerte its owner's alertes, and stock
+ * and catalogue events every section showing one of the medicaments, found through an index kept
+ * alongside the sections. A section rebuilt while such an event is being applied may miss it;
+ * {@code chat.context.ttl-minutes} bounds how long.
+ */
+@Component
+public class ChatContextStore {
+    private static final Logger logger = LoggerFactory.getLogger(ChatContextStore.class);
+
+    public enum Section { MEDICAMENTS, COMMANDES, PHARMACIENS, ALERTES, PANIERS, STATS }
+
+    /** A built section, with the medicaments whose stock or catalogue changes make it stale. */
+    public record Snapshot<T>(T value, Set<Long> medicamentIds) {
+        public static <T> Snapshot<T> of(T value) {
+            return new Snapshot<>(value, Set.of());
+        }
+    }
+
+    // utilisateurId is null for the context of users without a pharmacist or supplier account
+    private record Key(Long utilisateurId, Section section) {
+    }
+
+    private final Cache<Key, Snapshot<?>> sections;
+    private final Map<Long, Set<Key>> byMedicament = new ConcurrentHashMap<>();
+    private final TransactionTemplate readOnly;
+    private final int maxItems;
+    private final Counter invalidations;
+
+    public ChatContextStore(PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${chat.context.max-entries:20000}") long maxEntries,
+                            @Value("${chat.context.ttl-minutes:30}") long ttlMinutes,
+                            @Value("${chat.context.max-items:100}") int maxItems) {
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.maxItems = maxItems;
+        this.sections = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .evictionListener((Key key, Snapshot<?> snapshot, RemovalCause cause) -> {
+                    if (key != null && snapshot != null) {
+                        unindex(key, snapshot);
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, sections, "chat.context");
+        this.invalidations = Counter.builder("chat.context.invalidations")
+                .description("Chat context sections dropped by domain events")
+                .register(meterRegistry);
+    }
+
+    /** Largest number of items a list section keeps. */
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    /** The section of the user, built by {@code loader} if it is missing or stale. */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Long utilisateurId, Section section, Supplier<Snapshot<T>> loader) {
+        Snapshot<?> snapshot = sections.get(new Key(utilisateurId, section), key -> {
+            Snapshot<T> built = readOnly.execute(status -> loader.get());
+            index(key, built);
+            return built;
+        });
+        return (T) snapshot.value();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChange(StockChangeEvent event) {
+        invalidateMedicaments(event.getMedicamentIds());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommandeChange(CommandeChangeEvent event) {
+        invalidate(event.getPharmacienId(), switch (event.getChange()) {
+            case CREATION -> EnumSet.of(Section.COMMANDES, Section.STATS);
+            case LIGNES, STATUT -> EnumSet.of(Section.COMMANDES);
+            // Medicaments new to the pharmacist are inserted without a stock event
+            case LIVRAISON -> EnumSet.of(Section.COMMANDES, Section.MEDICAMENTS, Section.STATS);
+        });
+        invalidate(event.getFournisseurId(), switch (event.getChange()) {
+            // The supplier's medicaments and alertes follow the shipped medicaments, its stats the lignes
+            case CREATION -> EnumSet.of(Section.COMMANDES, Section.PHARMACIENS, Section.MEDICAMENTS,
+                    Section.ALERTES, Section.STATS);
+            case LIGNES -> EnumSet.of(Section.COMMANDES, Section.MEDICAMENTS, Section.ALERTES, Section.STATS);
+            case STATUT, LIVRAISON -> EnumSet.of(Section.COMMANDES);
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPanierChange(PanierChangeEvent event) {
+        invalidate(event.getPharmacienId(), EnumSet.of(Section.PANIERS));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlerteChange(AlerteChangeEvent event) {
+        invalidate(event.getUtilisateurId(), EnumSet.of(Section.ALERTES, Section.STATS));
+        // Suppliers see the alertes set on the medicaments they shipped
+        invalidateMedicaments(event.getMedicamentIds());
+    }
+
+    // The engine also fires on stock edited outside of StockService, which no StockChangeEvent reports
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlerteDeclenchee(AlerteDeclencheeEvent event) {
+        invalidate(event.getUtilisateurId(), EnumSet.of(Section.ALERTES));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogueChange(CatalogueChangeEvent event) {
+        invalidate(event.getUtilisateurId(), EnumSet.of(Section.MEDICAMENTS, Section.STATS));
+        // Medicaments on sale are listed to every other user
+        drop(List.of(new Key(null, Section.MEDICAMENTS), new Key(null, Section.STATS)));
+        invalidateMedicaments(event.getMedicamentIds());
+    }
+
+    private void invalidate(Long utilisateurId, Set<Section> stale) {
+        if (utilisateurId == null) {
+            return;
+        }
+        List<Key> keys = new ArrayList<>(stale.size());
+        for (Section section : stale) {
+            keys.add(new Key(utilisateurId, section));
+        }
+        drop(keys);
+    }
+
+    private void invalidateMedicaments(Collection<Long> medicamentIds) {
+        List<Key> keys = new ArrayList<>();
+        for (Long medicamentId : medicamentIds) {
+            Set<Key> showing = byMedicament.remove(medicamentId);
+            if (showing != null) {
+                keys.addAll(showing);
+            }
+        }
+        drop(keys);
+    }
+
+    private void drop(List<Key> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        sections.invalidateAll(keys);
+        invalidations.increment(keys.size());
+        logger.debug("Chat context sections dropped: {}", keys);
+    }
+
+    private void index(Key key, Snapshot<?> snapshot) {
+        for (Long medicamentId : snapshot.medicamentIds()) {
+            byMedicament.computeIfAbsent(medicamentId, id -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    // Evictions only: an invalidated section's stale index entries are harmless and go with the next event
+    private void unindex(Key key, Snapshot<?> snapshot) {
+        for (Long medicamentId : snapshot.medicamentIds()) {
+            byMedicament.computeIfPresent(medicamentId, (id, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.entites.Commande;
+
+/**
+ * Published when a commande or one of its lignes was created, changed or delivered. Carries both parties,
+ * whose views of the commande are now out of date, and what changed, which decides how much of those
+ * views is stale.
+ */
+public class CommandeChangeEvent {
+
+    public enum Change {
+        /** A new commande: one more commande, possibly a new pharmacien, new shipped medicaments. */
+        CREATION,
+        /** Lignes added, edited or removed: the shipped medicaments and quantities. */
+        LIGNES,
+        /** Status only. */
+        STATUT,
+        /** Delivered: the pharmacist's stock received the lignes. */
+        LIVRAISON
+    }
+
+    private final Long pharmacienId;
+    private final Long fournisseurId;
+    private final Change change;
+
+    public CommandeChangeEvent(Long pharmacienId, Long fournisseurId, Change change) {
+        this.pharmacienId = pharmacienId;
+        this.fournisseurId = fournisseurId;
+        this.change = change;
+    }
+
+    public CommandeChangeEvent(Commande commande, Change change) {
+        this(commande.getPharmacien() != null ? commande.getPharmacien().getId() : null,
+                commande.getFournisseur() != null ? commande.getFournisseur().getId() : null, change);
+    }
+
+    public Long getPharmacienId() {
+        return pharmacienId;
+    }
+
+    public Long getFournisseurId() {
+        return fournisseurId;
+    }
+
+    public Change getChange() {
+        return change;
+    }
+}
@@ -1,6 +1,10 @@
 package com.example.gestion_pharmacie.Services;
 
+import com.example.gestion_pharmacie.DTO.CommandeCursor;
+import com.example.gestion_pharmacie.DTO.CommandeLigneRow;
+import com.example.gestion_pharmacie.DTO.CommandePage;
 import com.example.gestion_pharmacie.DTO.CommandeResponseDto;
+import com.example.gestion_pharmacie.DTO.CommandeSearch;
 import com.example.gestion_pharmacie.DTO.CreateCommandeRequest;
 import com.example.gestion_pharmacie.DTO.LigneCommandeDto;
 import com.example.gestion_pharmacie.Repositorys.CommandeRepository;
@@ -9,6 +13,7 @@ import com.example.gestion_pharmacie.Repositorys.MedicamentRepository;
 import com.example.gestion_pharmacie.entites.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
@@ -16,8 +21,15 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,18 +38,27 @@ public class CommandeService {
     private final FournisseurRepository fournisseurRepository;
     private final MedicamentRepository medicamentRepository;
     private final UtilisateurService userService;
+    private final StockService stockService;
+    private final ApplicationEventPublisher eventPublisher;
 
     private static final Logger logger = LoggerFactory.getLogger(CommandeService.class);
 
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
 
     public CommandeService(CommandeRepository commandeRepository,
                            FournisseurRepository fournisseurRepository,
                            MedicamentRepository medicamentRepository,
-                           UtilisateurService userService) {
+                           UtilisateurService userService,
+                           StockService stockService,
+                           ApplicationEventPublisher eventPublisher) {
         this.commandeRepository = commandeRepository;
         this.fournisseurRepository = fournisseurRepository;
         this.medicamentRepository = medicamentRepository;
         this.userService = userService;
+        this.stockService = stockService;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -63,11 +84,18 @@ public class CommandeService {
             commande = commandeRepository.save(commande);
             logger.info("Saved initial order with ID: {}", commande.getId());
 
+            // Load every medicament of the order at once, then validate in memory
+            Map<Long, Medicament> medicaments = findMedicaments(request.getLignesCommande().stream()
+                    .map(LigneCommandeDto::getMedicamentId)
+                    .collect(Collectors.toSet()));
+
             // Create order lines
             List<LigneCommande> lignesCommande = new ArrayList<>();
             for (LigneCommandeDto ligneDto : request.getLignesCommande()) {
-                Medicament medicament = medicamentRepository.findById(ligneDto.getMedicamentId())
-                        .orElseThrow(() -> new RuntimeException("Médicament non trouvé avec ID: " + ligneDto.getMedicamentId()));
+                Medicament medicament = medicaments.get(ligneDto.getMedicamentId());
+                if (medicament == null) {
+                    throw new RuntimeException("Médicament non trouvé avec ID: " + ligneDto.getMedicamentId());
+                }
 
                 // Verify if the medication belongs to the specified supplier
                 if (medicament.getUtilisateur() == null ||
@@ -94,6 +122,7 @@ public class CommandeService {
 
             // Save and flush to ensure immediate persistence
             Commande savedCommande = commandeRepository.saveAndFlush(commande);
+            eventPublisher.publishEvent(new CommandeChangeEvent(savedCommande, CommandeChangeEvent.Change.CREATION));
 
             logger.info("Successfully created order with ID: {}", savedCommande.getId());
 
@@ -104,28 +133,52 @@ public class CommandeService {
         }
     }
 
+    // List reads go through the flat projection: one statement whatever the number of commandes and lignes
     public List<CommandeResponseDto> getCommandesForCurrentPharmacien() {
         Pharmacien pharmacien = userService.getCurrentPharmacien();
-        List<Commande> commandes = commandeRepository.findByPharmacien(pharmacien);
-        return commandes.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return toDtos(commandeRepository.findLigneRowsByPharmacienId(pharmacien.getId()));
     }
 
     public List<CommandeResponseDto> getCommandesForCurrentFournisseur() {
         Fournisseur fournisseur = userService.getCurrentFournisseur();
-        List<Commande> commandes = commandeRepository.findByFournisseur(fournisseur);
-        return commandes.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return toDtos(commandeRepository.findLigneRowsByFournisseurId(fournisseur.getId()));
     }
 
 
     public List<CommandeResponseDto> getAllCommandes() {
-        List<Commande> commandes = commandeRepository.findAll();
-        return commandes.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return toDtos(commandeRepository.findAllLigneRows());
+    }
+
+    // History pages, newest first, keyset-paginated on (dateCommande, id)
+    public CommandePage getCommandesPageForCurrentPharmacien(CommandeSearch search) {
+        search.setPharmacienId(userService.getCurrentPharmacien().getId());
+        return getCommandesPage(search);
+    }
+
+    public CommandePage getCommandesPageForCurrentFournisseur(CommandeSearch search) {
+        search.setFournisseurId(userService.getCurrentFournisseur().getId());
+        return getCommandesPage(search);
+    }
+
+    public CommandePage getCommandesPage(CommandeSearch search) {
+        int size = Math.max(1, Math.min(search.getSize(), MAX_PAGE_SIZE));
+        // One extra id tells whether there is a next page
+        List<Long> ids = commandeRepository.findPageIds(search, size + 1);
+        boolean hasNext = ids.size() > size;
+        if (hasNext) {
+            ids = ids.subList(0, size);
+        }
+        if (ids.isEmpty()) {
+            return new CommandePage(new ArrayList<>(), null);
+        }
+
+        List<CommandeResponseDto> commandes = toDtos(commandeRepository.findLigneRowsByIdIn(ids));
+        String nextCursor = null;
+        if (hasNext) {
+            CommandeResponseDto last = commandes.get(commandes.size() - 1);
+            nextCursor = new CommandeCursor(last.getDateCommande(), last.getId()).encode();
+        }
+        return new CommandePage(commandes, nextCursor);
     }
 
     public CommandeResponseDto getCommandeById(Long id) {
@@ -170,6 +223,7 @@ public class CommandeService {
             }
             commande.setStatut(newStatus);
             Commande updatedCommande = commandeRepository.save(commande);
+            eventPublisher.publishEvent(new CommandeChangeEvent(updatedCommande, CommandeChangeEvent.Change.STATUT));
             logger.info("Order status updated to EN_ATTENTE by pharmacist");
             return convertToDto(updatedCommande);
         } else {
@@ -182,22 +236,28 @@ public class CommandeService {
                 throw new RuntimeException("Vous n'êtes pas autorisé à modifier cette commande");
             }
             commande.setStatut(newStatus);
+            Map<Long, Medicament> expedies = new LinkedHashMap<>();
             if (newStatus == StatutCommande.EN_COURS_DE_LIVRAISON) {
                 logger.info("Processing quantity updates for order in delivery");
+                Map<Long, Integer> quantites = new LinkedHashMap<>();
                 for (LigneCommande ligne : commande.getLignesCommande()) {
                     Medicament medicament = ligne.getMedicament();
-                    int newQuantity = medicament.getQuantite() - ligne.getQuantite();
-                    if (newQuantity < 0) {
+                    int demande = quantites.merge(medicament.getId(), ligne.getQuantite(), Integer::sum);
+                    if (medicament.getQuantite() < demande) {
                         throw new RuntimeException("Stock insuffisant pour " + medicament.getNom());
                     }
-                    // Log previous quantity before updating
-                    logger.info("Updated quantity for medicament {}: {} -> {}",
-                            medicament.getId(), medicament.getQuantite(), newQuantity);
-                    medicament.setQuantite(newQuantity);
-                    medicamentRepository.save(medicament);
+                    expedies.put(medicament.getId(), medicament);
+                }
+                // The stock may have moved since it was read: the conditional decrements decide
+                List<Long> insuffisants = stockService.take(quantites);
+                if (!insuffisants.isEmpty()) {
+                    throw new RuntimeException("Stock insuffisant pour " + expedies.get(insuffisants.get(0)).getNom());
                 }
+                logger.info("Shipped quantities for commande {}: {}", commandeId, quantites);
             }
             Commande updatedCommande = commandeRepository.save(commande);
+            stockService.syncQuantites(expedies.values());
+            eventPublisher.publishEvent(new CommandeChangeEvent(updatedCommande, CommandeChangeEvent.Change.STATUT));
             logger.info("Successfully updated order status to: {}", newStatus);
             return convertToDto(updatedCommande);
         }
@@ -230,48 +290,42 @@ public class CommandeService {
             throw new RuntimeException("Impossible de marquer comme livrée: la commande n'est pas en cours de livraison");
         }
 
-        // Get the pharmacist's current medications
-        List<Medicament> pharmacienMedicaments = medicamentRepository.findByUtilisateur(commande.getPharmacien());
+        // Only the pharmacist's medicaments named in the order, indexed by name
+        Pharmacien pharmacien = commande.getPharmacien();
+        Set<String> noms = new HashSet<>();
+        for (LigneCommande ligne : commande.getLignesCommande()) {
+            noms.add(ligne.getMedicament().getNom());
+        }
+        Map<String, Medicament> existants = new HashMap<>();
+        for (Medicament med : medicamentRepository.findByUtilisateurAndNomInOrderByIdAsc(pharmacien, noms)) {
+            existants.putIfAbsent(med.getNom(), med);
+        }
 
-        // Process each medication in the order
+        // Merge each line into an existing medicament or a new one; both are written in one batch at the end
+        Map<Long, Integer> ajouts = new LinkedHashMap<>();
+        Map<String, Medicament> nouveaux = new LinkedHashMap<>();
         for (LigneCommande ligne : commande.getLignesCommande()) {
             Medicament commandeMed = ligne.getMedicament();
             int quantite = ligne.getQuantite();
 
-            // Check if the pharmacist already has this medication
-            Optional<Medicament> existingMed = pharmacienMedicaments.stream()
-                    .filter(m -> m.getNom().equals(commandeMed.getNom()))
-                    .findFirst();
-
-            if (existingMed.isPresent()) {
-                // Update existing medication quantity
-                Medicament med = existingMed.get();
-                med.setQuantite(med.getQuantite() + quantite);
-                medicamentRepository.save(med);
-                logger.info("Updated quantity for existing medication {}: {} -> {}",
-                        med.getNom(), med.getQuantite() - quantite, med.getQuantite());
+            Medicament existingMed = existants.get(commandeMed.getNom());
+            if (existingMed != null) {
+                ajouts.merge(existingMed.getId(), quantite, Integer::sum);
             } else {
-                // Create new medication for pharmacist
-                Medicament newMed = new Medicament();
-                newMed.setNom(commandeMed.getNom());
-                newMed.setIndications(commandeMed.getIndications());
-                newMed.setCode_ATC(commandeMed.getCode_ATC());
-                newMed.setDosage(commandeMed.getDosage());
-                newMed.setPresentation(commandeMed.getPresentation());
-                newMed.setPrix_hospitalier(commandeMed.getPrix_hospitalier());
-                newMed.setPrix_public(commandeMed.getPrix_public());
-                newMed.setComposition(commandeMed.getComposition());
-                newMed.setClasse_therapeutique(commandeMed.getClasse_therapeutique());
-                newMed.setQuantite(quantite);
-                newMed.setUtilisateur(commande.getPharmacien());
-                medicamentRepository.save(newMed);
-                logger.info("Created new medication {} for pharmacist with quantity {}", newMed.getNom(), quantite);
+                Medicament newMed = nouveaux.computeIfAbsent(commandeMed.getNom(), nom -> copyForPharmacien(commandeMed, pharmacien));
+                newMed.setQuantite(newMed.getQuantite() + quantite);
             }
         }
 
+        stockService.give(ajouts);
+        stockService.insertAll(new ArrayList<>(nouveaux.values()), pharmacien.getId());
+        logger.info("Delivery of commande {}: {} existing medications restocked, {} created",
+                commandeId, ajouts.size(), nouveaux.size());
+
         // Update status to LIVREE
         commande.setStatut(StatutCommande.LIVREE);
         Commande updatedCommande = commandeRepository.save(commande);
+        eventPublisher.publishEvent(new CommandeChangeEvent(updatedCommande, CommandeChangeEvent.Change.LIVRAISON));
         
         logger.info("Successfully updated order status to LIVREE");
         return convertToDto(updatedCommande);
@@ -279,6 +333,87 @@ public class CommandeService {
 
 
 
+    /** Groups the ordered projection rows into one DTO per commande. */
+    static List<CommandeResponseDto> toDtos(List<CommandeLigneRow> rows) {
+        List<CommandeResponseDto> dtos = new ArrayList<>();
+        forEachCommande(rows.iterator(), dtos::add);
+        return dtos;
+    }
+
+    /**
+     * Folds projection rows, which the queries return grouped by commande, into one DTO per commande and
+     * hands each one over as soon as its last row has been read; the streaming export relies on this.
+     */
+    static void forEachCommande(Iterator<CommandeLigneRow> rows, Consumer<CommandeResponseDto> sink) {
+        CommandeResponseDto current = null;
+        while (rows.hasNext()) {
+            CommandeLigneRow row = rows.next();
+            if (current == null || !current.getId().equals(row.getCommandeId())) {
+                if (current != null) {
+                    sink.accept(current);
+                }
+                current = new CommandeResponseDto();
+                current.setId(row.getCommandeId());
+                current.setDateCommande(row.getDateCommande());
+                current.setStatut(row.getStatut() != null ? row.getStatut().toString() : null);
+                current.setPharmacien(userInfo(row.getPharmacienId(), row.getPharmacienNom(), row.getPharmacienPrenom()));
+                current.setFournisseur(userInfo(row.getFournisseurId(), row.getFournisseurNom(), row.getFournisseurPrenom()));
+                current.setLignesCommande(new ArrayList<>());
+            }
+            if (row.getLigneId() == null) {
+                continue;
+            }
+
+            CommandeResponseDto.LigneCommandeResponseDto ligneDto = new CommandeResponseDto.LigneCommandeResponseDto();
+            ligneDto.setId(row.getLigneId());
+            ligneDto.setQuantite(row.getQuantite());
+            if (row.getMedicamentId() != null) {
+                CommandeResponseDto.MedicamentBasicDto medicamentDto = new CommandeResponseDto.MedicamentBasicDto();
+                medicamentDto.setId(row.getMedicamentId());
+                medicamentDto.setNom(row.getMedicamentNom());
+                medicamentDto.setPrix_hospitalier(row.getPrixHospitalier() != null ? row.getPrixHospitalier() : 0);
+                medicamentDto.setPrix_public(row.getPrixPublic() != null ? row.getPrixPublic() : 0);
+                medicamentDto.setQuantite(row.getMedicamentQuantite() != null ? row.getMedicamentQuantite() : 0);
+                ligneDto.setMedicament(medicamentDto);
+            }
+            current.getLignesCommande().add(ligneDto);
+        }
+        if (current != null) {
+            sink.accept(current);
+        }
+    }
+
+    private static Medicament copyForPharmacien(Medicament source, Pharmacien pharmacien) {
+        Medicament copy = new Medicament();
+        copy.setNom(source.getNom());
+        copy.setIndications(source.getIndications());
+        copy.setCode_ATC(source.getCode_ATC());
+        copy.setDosage(source.getDosage());
+        copy.setPresentation(source.getPresentation());
+        copy.setPrix_hospitalier(source.getPrix_hospitalier());
+        copy.setPrix_public(source.getPrix_public());
+        copy.setComposition(source.getComposition());
+        copy.setClasse_therapeutique(source.getClasse_therapeutique());
+        copy.setUtilisateur(pharmacien);
+        return copy;
+    }
+
+    private Map<Long, Medicament> findMedicaments(Set<Long> ids) {
+        return medicamentRepository.findByIdInOrderByIdAsc(ids).stream()
+                .collect(Collectors.toMap(Medicament::getId, Function.identity()));
+    }
+
+    private static CommandeResponseDto.UserBasicInfoDto userInfo(Long id, String nom, String prenom) {
+        if (id == null) {
+            return null;
+        }
+        CommandeResponseDto.UserBasicInfoDto dto = new CommandeResponseDto.UserBasicInfoDto();
+        dto.setId(id);
+        dto.setNom(nom);
+        dto.setPrenom(prenom);
+        return dto;
+    }
+
     private CommandeResponseDto convertToDto(Commande commande) {
         CommandeResponseDto dto = new CommandeResponseDto();
         dto.setId(commande.getId());
@@ -1,42 +1,61 @@
 package com.example.gestion_pharmacie.Services;
 
+import com.example.gestion_pharmacie.DTO.AlerteFournisseurRow;
+import com.example.gestion_pharmacie.DTO.CommandeLigneRow;
+import com.example.gestion_pharmacie.DTO.CommandeSearch;
+import com.example.gestion_pharmacie.DTO.FournisseurStats;
+import com.example.gestion_pharmacie.DTO.PharmacienRow;
+import com.example.gestion_pharmacie.DTO.PharmacienStats;
 import com.example.gestion_pharmacie.Repositorys.*;
+import com.example.gestion_pharmacie.Security.CurrentActor;
+import com.example.gestion_pharmacie.Services.ChatContextStore.Section;
+import com.example.gestion_pharmacie.Services.ChatContextStore.Snapshot;
+import com.example.gestion_pharmacie.Services.IntentClassifier.Classification;
+import com.example.gestion_pharmacie.Services.IntentClassifier.Intent;
 import com.example.gestion_pharmacie.entites.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 public class DatabaseQueryService {
     private final MedicamentRepository medicamentRepository;
-    private final PharmacienRepository pharmacienRepository;
-    private final FournisseurRepository fournisseurRepository;
+    private final CurrentActor currentActor;
     private final CommandeRepository commandeRepository;
-    private final LigneCommandeRepository ligneCommandeRepository;
     private final AlerteRepository alerteRepository;
     private final PanierRepository panierRepository;
+    private final StatistiquesRepository statistiquesRepository;
+    private final ChatContextStore chatContextStore;
+    private final IntentClassifier intentClassifier;
 
     public DatabaseQueryService(MedicamentRepository medicamentRepository,
-                                PharmacienRepository pharmacienRepository,
-                                FournisseurRepository fournisseurRepository,
+                                CurrentActor currentActor,
                                 CommandeRepository commandeRepository,
-                                LigneCommandeRepository ligneCommandeRepository,
                                 AlerteRepository alerteRepository,
-                                PanierRepository panierRepository) {
+                                PanierRepository panierRepository,
+                                StatistiquesRepository statistiquesRepository,
+                                ChatContextStore chatContextStore,
+                                IntentClassifier intentClassifier) {
         this.medicamentRepository = medicamentRepository;
-        this.pharmacienRepository = pharmacienRepository;
-        this.fournisseurRepository = fournisseurRepository;
+        this.currentActor = currentActor;
         this.commandeRepository = commandeRepository;
-        this.ligneCommandeRepository = ligneCommandeRepository;
         this.alerteRepository = alerteRepository;
         this.panierRepository = panierRepository;
+        this.statistiquesRepository = statistiquesRepository;
+        this.chatContextStore = chatContextStore;
+        this.intentClassifier = intentClassifier;
     }
 
-    @Transactional(readOnly = true)
+    /**
+     * Chat context of the current user for the question asked. Every section is read from the user's
+     * snapshot in {@link ChatContextStore}, so the database is only queried after something changed.
+     */
     public Map<String, Object> getRelevantData(String userQuery) {
         Map<String, Object> data = new HashMap<>();
 
@@ -45,101 +64,87 @@ public class DatabaseQueryService {
             return data;
         }
 
-        String userEmail = auth.getName();
-
-        Optional<Pharmacien> pharmacienOpt = pharmacienRepository.findByEmail(userEmail);
-        Optional<Fournisseur> fournisseurOpt = pharmacienOpt.isEmpty() ? fournisseurRepository.findByEmail(userEmail) : Optional.empty();
-
-        // Intent detection (loose, supports EN/FR and common misspellings)
-        String q = Optional.ofNullable(userQuery).orElse("").toLowerCase();
-        boolean asksMeds = q.contains("medicament") || q.contains("médicament") || q.contains("medicine") || q.contains("medicin") || q.contains("drug") || q.contains("drugs") || q.contains("pill") || q.contains("pills") || q.contains("meds")
-                || q.contains("supply") || q.contains("supplies") || q.contains("supplied")
-                || q.contains("provide") || q.contains("provides") || q.contains("provided")
-                || q.contains("have") || q.contains("has") || q.contains("having")
-                || q.contains("possess") || q.contains("posess") || q.contains("possession")
-                || q.contains("stock") || q.contains("stocked") || q.contains("stocking")
-                || q.contains("carry") || q.contains("carries") || q.contains("carried")
-                || q.contains("sell") || q.contains("sells") || q.contains("selling")
-                || q.contains("offer") || q.contains("offers") || q.contains("offering");
-        boolean asksCommandes = q.contains("commande") || q.contains("order") || q.contains("orders");
-        boolean asksFournisseurs = q.contains("fournisseur") || q.contains("supplier") || q.contains("suppliers");
-        boolean asksPharmaciens = q.contains("pharmacien") || q.contains("pharmacist") || q.contains("pharmacists");
-        boolean asksAlertes = q.contains("alerte") || q.contains("alert") || q.contains("alerts");
-        boolean asksPaniers = q.contains("panier") || q.contains("cart") || q.contains("basket") || q.contains("vente") || q.contains("sale") || q.contains("sell");
-        boolean asksStats = q.contains("nombre") || q.contains("statistique") || q.contains("combien") || q.contains("total") || q.contains("count") || q.contains("how many") || q.contains("stats");
+        Optional<Utilisateur> currentUser = currentActor.findUtilisateur();
+        Optional<Pharmacien> pharmacienOpt = currentUser.filter(Pharmacien.class::isInstance).map(Pharmacien.class::cast);
+        Optional<Fournisseur> fournisseurOpt = currentUser.filter(Fournisseur.class::isInstance).map(Fournisseur.class::cast);
+
+        // Intent detection (loose, supports EN/FR and common misspellings), see data/chat-intents.properties
+        Classification intents = intentClassifier.classify(userQuery);
+        boolean asksMeds = intents.has(Intent.MEDICAMENTS);
+        boolean asksCommandes = intents.has(Intent.COMMANDES);
+        boolean asksPharmaciens = intents.has(Intent.PHARMACIENS);
+        boolean asksAlertes = intents.has(Intent.ALERTES);
+        boolean asksPaniers = intents.has(Intent.PANIERS);
+        boolean asksStats = intents.has(Intent.STATS);
 
         // Pharmacien context
         if (pharmacienOpt.isPresent()) {
-            Pharmacien pharmacien = pharmacienOpt.get();
+            Long id = pharmacienOpt.get().getId();
             data.put("role", "PHARMACIEN");
 
             if (asksMeds) {
-                data.put("medicaments", formatMedicaments(medicamentRepository.findByUtilisateur(pharmacien)));
+                data.put("medicaments", chatContextStore.get(id, Section.MEDICAMENTS,
+                        () -> medicamentsSnapshot(medicamentRepository.findByUtilisateurIdOrderByIdAsc(id, firstPage()))));
             }
             // Always expose commandes/alertes/paniers for pharmacist so RAG can use them
-            List<Commande> commandes = commandeRepository.findByPharmacien(pharmacien);
-            data.put("commandes", commandes);
+            data.put("commandes", chatContextStore.get(id, Section.COMMANDES,
+                    () -> Snapshot.of(renderCommandes(recentCommandes(id, null)))));
             if (asksAlertes) {
-                data.put("alertes", alerteRepository.findByUtilisateurId(pharmacien.getId()));
+                data.put("alertes", chatContextStore.get(id, Section.ALERTES,
+                        () -> alertesSnapshot(alerteRepository.findByUtilisateurId(id))));
             }
             if (asksPaniers) {
-                data.put("paniers", panierRepository.findByPharmacien(pharmacien));
+                data.put("paniers", chatContextStore.get(id, Section.PANIERS,
+                        () -> Snapshot.of(renderPaniers(panierRepository.findByPharmacienIdOrderByIdDesc(id, firstPage())))));
             }
             if (asksStats) {
-                data.put("stats", getPharmacienStats(pharmacien));
+                data.put("stats", chatContextStore.get(id, Section.STATS, () -> Snapshot.of(getPharmacienStats(id))));
             }
             return data;
         }
 
         // Fournisseur context
         if (fournisseurOpt.isPresent()) {
-            Fournisseur fournisseur = fournisseurOpt.get();
+            Long id = fournisseurOpt.get().getId();
             data.put("role", "FOURNISSEUR");
 
             if (asksMeds) {
-                List<Medicament> meds = collectMedicamentsForFournisseur(fournisseur);
-                // Fallback: include supplier's own medicaments if no commandes yet
-                if (meds.isEmpty()) {
-                    meds = medicamentRepository.findByUtilisateur(fournisseur);
-                }
-                // Optional: filter by a specific name mentioned (e.g., "doliprane")
-                String specific = extractSpecificMedName(q);
-                if (specific != null) {
-                    List<Medicament> filtered = meds.stream()
-                        .filter(m -> m.getNom() != null && m.getNom().toLowerCase().contains(specific))
+                List<Map<String, String>> meds = chatContextStore.get(id, Section.MEDICAMENTS, () -> {
+                    List<Medicament> shipped = medicamentRepository.findLivresParFournisseur(id, firstPage());
+                    // Fallback: include supplier's own medicaments if no commandes yet
+                    if (shipped.isEmpty()) {
+                        shipped = medicamentRepository.findByUtilisateurIdOrderByIdAsc(id, firstPage());
+                    }
+                    return medicamentsSnapshot(shipped);
+                });
+                // Optional: keep the medicaments named in the question (e.g., "doliprane"), if any
+                for (String specific : intents.candidates()) {
+                    List<Map<String, String>> filtered = meds.stream()
+                        .filter(m -> m.get("nom").toLowerCase().contains(specific))
                         .collect(Collectors.toList());
                     if (!filtered.isEmpty()) {
-                        meds = filtered; // only keep matches if any
+                        meds = filtered;
+                        break;
                     }
                 }
-                data.put("medicaments", formatMedicaments(meds));
+                data.put("medicaments", meds);
             }
             if (asksCommandes) {
-                data.put("commandes", commandeRepository.findByFournisseur(fournisseur));
+                data.put("commandes", chatContextStore.get(id, Section.COMMANDES,
+                        () -> Snapshot.of(renderCommandes(recentCommandes(null, id)))));
             }
             if (asksPharmaciens) {
                 // Pharmaciens this supplier has worked with
-                List<Commande> commandes = commandeRepository.findByFournisseur(fournisseur);
-                List<Pharmacien> pharmaciens = commandes.stream()
-                        .map(Commande::getPharmacien)
-                        .filter(Objects::nonNull)
-                        .distinct()
-                        .collect(Collectors.toList());
-                data.put("pharmaciens", pharmaciens);
+                data.put("pharmaciens", chatContextStore.get(id, Section.PHARMACIENS, () -> Snapshot.of(
+                        renderPharmaciens(commandeRepository.findPharmaciensByFournisseurId(id, firstPage())))));
             }
             if (asksAlertes) {
-                // Aggregate alerts related to meds shipped by this supplier (best-effort)
-                List<Medicament> meds = collectMedicamentsForFournisseur(fournisseur);
-                List<Alerte> alertes = meds.stream()
-                        .map(m -> alerteRepository.findByMedicamentsId(m.getId()))
-                        .filter(Objects::nonNull)
-                        .flatMap(List::stream)
-                        .distinct()
-                        .collect(Collectors.toList());
-                data.put("alertes", alertes);
+                // Aggregate alerts related to meds shipped by this supplier, in one statement
+                data.put("alertes", chatContextStore.get(id, Section.ALERTES,
+                        () -> fournisseurAlertesSnapshot(alerteRepository.findFournisseurAlerteRows(id))));
             }
             if (asksStats) {
-                data.put("stats", getFournisseurStats(fournisseur));
+                data.put("stats", chatContextStore.get(id, Section.STATS, () -> Snapshot.of(getFournisseurStats(id))));
             }
             return data;
         }
@@ -148,62 +153,158 @@ public class DatabaseQueryService {
         data.put("role", "UTILISATEUR");
         if (asksMeds) {
             // Publicly available meds (en_vente)
-            data.put("medicaments", formatMedicaments(medicamentRepository.findMedicamentsEnVente()));
+            data.put("medicaments", chatContextStore.get(null, Section.MEDICAMENTS,
+                    () -> medicamentsSnapshot(medicamentRepository.findMedicamentsEnVente(firstPage()))));
         }
         if (asksStats) {
-            Map<String, Object> stats = new HashMap<>();
-            stats.put("totalMedicamentsEnVente", medicamentRepository.findMedicamentsEnVente().size());
-            data.put("stats", stats);
+            data.put("stats", chatContextStore.get(null, Section.STATS, () -> Snapshot.of(
+                    Map.<String, Object>of("totalMedicamentsEnVente", statistiquesRepository.countMedicamentsEnVente()))));
         }
         return data;
     }
 
-    private List<Medicament> collectMedicamentsForFournisseur(Fournisseur fournisseur) {
-        List<Commande> commandes = commandeRepository.findByFournisseur(fournisseur);
-        Set<Medicament> meds = new LinkedHashSet<>();
-        for (Commande c : commandes) {
-            List<LigneCommande> lignes = (c.getLignesCommande() != null && !c.getLignesCommande().isEmpty())
-                    ? c.getLignesCommande()
-                    : ligneCommandeRepository.findByCommande(c);
-            for (LigneCommande l : lignes) {
-                if (l.getMedicament() != null) {
-                    meds.add(l.getMedicament());
-                }
-            }
-        }
-        return new ArrayList<>(meds);
+    private Pageable firstPage() {
+        return PageRequest.of(0, chatContextStore.getMaxItems());
+    }
+
+    // Lignes of the most recent commandes, newest first
+    private List<CommandeLigneRow> recentCommandes(Long pharmacienId, Long fournisseurId) {
+        CommandeSearch search = new CommandeSearch();
+        search.setPharmacienId(pharmacienId);
+        search.setFournisseurId(fournisseurId);
+        List<Long> ids = commandeRepository.findPageIds(search, chatContextStore.getMaxItems());
+        return ids.isEmpty() ? List.of() : commandeRepository.findLigneRowsByIdIn(ids);
     }
 
-    private Map<String, Object> getPharmacienStats(Pharmacien pharmacien) {
+    private Map<String, Object> getPharmacienStats(Long pharmacienId) {
+        PharmacienStats counts = statistiquesRepository.findPharmacienStats(pharmacienId);
         Map<String, Object> stats = new HashMap<>();
-        List<Medicament> meds = medicamentRepository.findByUtilisateur(pharmacien);
-        List<Commande> commandes = commandeRepository.findByPharmacien(pharmacien);
-        stats.put("totalMedicaments", meds.size());
-        stats.put("totalCommandes", commandes.size());
-        stats.put("totalAlertes", alerteRepository.findByUtilisateurId(pharmacien.getId()).size());
-        return stats;
+        stats.put("totalMedicaments", counts.getTotalMedicaments());
+        stats.put("totalCommandes", counts.getTotalCommandes());
+        stats.put("totalAlertes", counts.getTotalAlertes());
+        return Collections.unmodifiableMap(stats);
     }
 
-    private Map<String, Object> getFournisseurStats(Fournisseur fournisseur) {
+    private Map<String, Object> getFournisseurStats(Long fournisseurId) {
+        FournisseurStats counts = statistiquesRepository.findFournisseurStats(fournisseurId);
         Map<String, Object> stats = new HashMap<>();
-        List<Commande> commandes = commandeRepository.findByFournisseur(fournisseur);
-        int lignesTotal = 0;
-        Set<Pharmacien> pharmaciens = new HashSet<>();
-        for (Commande c : commandes) {
-            pharmaciens.add(c.getPharmacien());
-            List<LigneCommande> lignes = (c.getLignesCommande() != null && !c.getLignesCommande().isEmpty())
-                    ? c.getLignesCommande()
-                    : ligneCommandeRepository.findByCommande(c);
-            for (LigneCommande l : lignes) {
-                if (l.getQuantite() != null) {
-                    lignesTotal += l.getQuantite();
+        stats.put("totalCommandes", counts.getTotalCommandes());
+        stats.put("totalLignesCommandes", counts.getTotalLignesCommandes());
+        stats.put("pharmaciensUniques", counts.getPharmaciensUniques());
+        return Collections.unmodifiableMap(stats);
+    }
+
+    private Snapshot<List<Map<String, String>>> medicamentsSnapshot(List<Medicament> medicaments) {
+        List<Medicament> capped = medicaments.stream()
+                .filter(Objects::nonNull)
+                .limit(chatContextStore.getMaxItems())
+                .toList();
+        return new Snapshot<>(formatMedicaments(capped), medicamentIds(capped));
+    }
+
+    private static Set<Long> medicamentIds(List<Medicament> medicaments) {
+        return medicaments.stream().map(Medicament::getId).filter(Objects::nonNull).collect(Collectors.toUnmodifiableSet());
+    }
+
+    private static List<String> renderCommandes(List<CommandeLigneRow> rows) {
+        List<String> lines = new ArrayList<>();
+        StringBuilder sb = null;
+        Long current = null;
+        int idx = 1;
+        for (CommandeLigneRow row : rows) {
+            if (!row.getCommandeId().equals(current)) {
+                if (sb != null) {
+                    lines.add(sb.toString());
+                }
+                current = row.getCommandeId();
+                idx = 1;
+                sb = new StringBuilder("Commande: ").append(current);
+                if (row.getDateCommande() != null) sb.append(" | Date: ").append(row.getDateCommande());
+                if (row.getStatut() != null) sb.append(" | Statut: ").append(row.getStatut());
+                if (row.getPharmacienId() != null) sb.append(" | Pharmacien: ").append(row.getPharmacienId());
+                if (row.getFournisseurId() != null) sb.append(" | Fournisseur: ").append(row.getFournisseurId());
+            }
+            // Detailed lignes commande (nom + quantite)
+            if (row.getLigneId() != null) {
+                sb.append(" | Ligne ").append(idx++).append(": ");
+                if (row.getMedicamentNom() != null) sb.append(row.getMedicamentNom());
+                if (row.getQuantite() != null) sb.append(" x").append(row.getQuantite());
+            }
+        }
+        if (sb != null) {
+            lines.add(sb.toString());
+        }
+        return List.copyOf(lines);
+    }
+
+    // Lists the watched medicaments at or below the threshold; a stock change of any of them rebuilds the section
+    private Snapshot<List<String>> alertesSnapshot(List<Alerte> alertes) {
+        Set<Long> medicamentIds = new HashSet<>();
+        List<String> lines = new ArrayList<>();
+        for (Alerte a : alertes.stream().limit(chatContextStore.getMaxItems()).toList()) {
+            List<Medicament> watched = a.getMedicaments() != null ? a.getMedicaments() : List.of();
+            StringBuilder sb = new StringBuilder(renderAlerte(a.getId(), a.getMessage(), a.getDateCreation(),
+                    a.getMinimumQuantite(), a.getMedicaments() != null ? watched.size() : null));
+            for (Medicament m : watched) {
+                medicamentIds.add(m.getId());
+                if (m.getQuantite() <= a.getMinimumQuantite()) {
+                    sb.append(" | Declenchee: ").append(m.getNom()).append(" (").append(m.getQuantite()).append(")");
                 }
             }
+            lines.add(sb.toString());
+        }
+        return new Snapshot<>(List.copyOf(lines), Set.copyOf(medicamentIds));
+    }
+
+    // Every shipped medicament is indexed, so an alerte later set on one of them rebuilds the section
+    private Snapshot<List<String>> fournisseurAlertesSnapshot(List<AlerteFournisseurRow> rows) {
+        Set<Long> medicamentIds = new HashSet<>();
+        Set<Long> seen = new HashSet<>();
+        List<String> lines = new ArrayList<>();
+        for (AlerteFournisseurRow row : rows) {
+            medicamentIds.add(row.getMedicamentId());
+            if (row.getAlerteId() != null && lines.size() < chatContextStore.getMaxItems() && seen.add(row.getAlerteId())) {
+                lines.add(renderAlerte(row.getAlerteId(), row.getMessage(), row.getDateCreation(),
+                        row.getMinimumQuantite(), row.getNombreMedicaments()));
+            }
         }
-        stats.put("totalCommandes", commandes.size());
-        stats.put("totalLignesCommandes", lignesTotal);
-        stats.put("pharmaciensUniques", pharmaciens.stream().filter(Objects::nonNull).distinct().count());
-        return stats;
+        return new Snapshot<>(List.copyOf(lines), Set.copyOf(medicamentIds));
+    }
+
+    private static String renderAlerte(Long id, String message, LocalDateTime dateCreation,
+                                       Integer minimumQuantite, Integer nombreMedicaments) {
+        StringBuilder sb = new StringBuilder("Alerte: ").append(id);
+        if (message != null) sb.append(" | Message: ").append(message);
+        if (dateCreation != null) sb.append(" | Date: ").append(dateCreation);
+        sb.append(" | Min quantite: ").append(minimumQuantite);
+        if (nombreMedicaments != null) sb.append(" | Medicaments: ").append(nombreMedicaments);
+        return sb.toString();
+    }
+
+    private static List<String> renderPaniers(List<Panier> paniers) {
+        return paniers.stream().map(p -> {
+            StringBuilder sb = new StringBuilder("Panier: ").append(p.getId());
+            if (p.getDateCreation() != null) sb.append(" | Date: ").append(p.getDateCreation());
+            sb.append(" | Vendu: ").append(p.isVendu());
+            // Detailed lignes panier (nom + quantite)
+            if (p.getLignesPanier() != null) {
+                int idx = 1;
+                for (LignePanier lp : p.getLignesPanier()) {
+                    sb.append(" | LignePanier ").append(idx++).append(": ");
+                    if (lp.getMedicament() != null) sb.append(lp.getMedicament().getNom());
+                    if (lp.getQuantite() != null) sb.append(" x").append(lp.getQuantite());
+                }
+            }
+            return sb.toString();
+        }).toList();
+    }
+
+    private static List<String> renderPharmaciens(List<PharmacienRow> pharmaciens) {
+        return pharmaciens.stream()
+                .map(p -> "Pharmacien: " + p.getId() + " | " + Optional.ofNullable(p.getNom()).orElse("")
+                        + " " + Optional.ofNullable(p.getPrenom()).orElse(""))
+                .map(String::trim)
+                .toList();
     }
 
     private List<Map<String, String>> formatMedicaments(List<Medicament> medicaments) {
@@ -246,21 +347,8 @@ public class DatabaseQueryService {
                         formattedMed.put("proprietaireRole", medicament.getUtilisateur().getRole() != null ? medicament.getUtilisateur().getRole().name() : "");
                     }
 
-                    return formattedMed;
+                    return Collections.unmodifiableMap(formattedMed);
                 })
-                .collect(Collectors.toList());
-    }
-
-    private String extractSpecificMedName(String q) {
-        // Very lightweight heuristic: if query contains verbs and another token that is not an intent verb
-        // Look for a token >3 chars that isn't one of the generic verbs; return lowercased.
-        Set<String> generic = Set.of("medicament","médicament","medicine","medicines","medicin","drug","drugs","pill","pills","meds","supply","supplies","supplied","provide","provides","provided","have","has","having","possess","posess","possession","stock","stocked","stocking","carry","carries","carried","sell","sells","selling","offer","offers","offering","list","i","do","my","the","what","which");
-        for (String token : q.replaceAll("[^a-zA-Z0-9 ]"," ").split(" ")) {
-            String t = token.trim().toLowerCase();
-            if (t.length() > 3 && !generic.contains(t)) {
-                return t; // first candidate
-            }
-        }
-        return null;
+                .toList();
     }
 }
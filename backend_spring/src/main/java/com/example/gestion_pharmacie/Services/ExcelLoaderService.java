@@ -1,131 +1,116 @@
 package com.example.gestion_pharmacie.Services;
 
 import com.example.gestion_pharmacie.entites.Medicament;
-import com.example.gestion_pharmacie.entites.Utilisateur;
-import org.apache.poi.ss.usermodel.*;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.HashMap;
+import java.util.stream.Collectors;
 
 @Service
 public class ExcelLoaderService {
+    private static final Logger logger = LoggerFactory.getLogger(ExcelLoaderService.class);
 
-    public List<List<String>> readExcelData() {
-        List<List<String>> data = new ArrayList<>();
+    private static final String CATALOGUE_PATH = "data/medicaments.xlsx";
+    private static final long PROGRESS_LOG_EVERY = 1000;
 
-        try {
-            ClassPathResource resource = new ClassPathResource("data/medicaments.xlsx");
-            InputStream inputStream = resource.getInputStream();
+    private volatile MedicamentCatalogue catalogue = MedicamentCatalogue.empty();
 
-            Workbook workbook = WorkbookFactory.create(inputStream);
-            Sheet sheet = workbook.getSheetAt(0);
+    @PostConstruct
+    public void loadCatalogue() {
+        long start = System.currentTimeMillis();
+        try (InputStream inputStream = new ClassPathResource(CATALOGUE_PATH).getInputStream()) {
+            reloadCatalogue(inputStream);
+            logger.info("Loaded {} medicaments from {} in {} ms",
+                    catalogue.size(), CATALOGUE_PATH, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("Could not load medicament catalogue from {}: {}", CATALOGUE_PATH, e.getMessage(), e);
+        }
+    }
 
-            for (Row row : sheet) {
-                List<String> rowData = new ArrayList<>();
-                for (Cell cell : row) {
-                    cell.setCellType(CellType.STRING);
-                    rowData.add(cell.getStringCellValue());
+    /**
+     * Rebuilds the catalogue from an XLSX stream; the workbook is read row by row, never as a whole.
+     * The current catalogue stays in place until the new one is complete.
+     */
+    public MedicamentCatalogue reloadCatalogue(InputStream inputStream) throws IOException {
+        List<String> header = new ArrayList<>();
+        List<String[]> rows = new ArrayList<>();
+        XlsxRowReader.forEachRow(inputStream, row -> {
+            if (header.isEmpty()) {
+                for (String value : row) {
+                    header.add(value.trim());
                 }
-                data.add(rowData);
+            } else {
+                rows.add(row);
             }
+        }, PROGRESS_LOG_EVERY, count -> logger.debug("Catalogue import: {} rows read", count));
 
-            workbook.close();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        MedicamentCatalogue loaded = new MedicamentCatalogue(header, rows);
+        catalogue = loaded;
+        return loaded;
+    }
+
+    public MedicamentCatalogue getCatalogue() {
+        return catalogue;
+    }
 
+    public List<List<String>> readExcelData() {
+        MedicamentCatalogue current = catalogue;
+        List<List<String>> data = new ArrayList<>(current.size() + 1);
+        data.add(current.getHeader());
+        for (MedicamentCatalogue.Entry entry : current.entries()) {
+            data.add(entry.values());
+        }
         return data;
     }
 
     public Medicament findMedicamentByCode(String code) {
-        try {
-            ClassPathResource resource = new ClassPathResource("data/medicaments.xlsx");
-            InputStream inputStream = resource.getInputStream();
-
-            Workbook workbook = WorkbookFactory.create(inputStream);
-            Sheet sheet = workbook.getSheetAt(0);
-
-            Row headerRow = sheet.getRow(0);
-            Map<String, Integer> columnIndexMap = new HashMap<>();
-
-            // Find column indices
-            for (int i = 0; i < headerRow.getLastCellNum(); i++) {
-                Cell cell = headerRow.getCell(i);
-                if (cell != null) {
-                    columnIndexMap.put(cell.getStringCellValue().trim(), i);
-                }
-            }
+        return catalogue.findByCode(code)
+                .map(this::toMedicament)
+                .orElse(null);
+    }
 
-            // Validate required columns exist
-            if (!columnIndexMap.containsKey("CODE")) {
-                throw new IllegalStateException("CODE column not found in Excel file");
-            }
+    public List<Medicament> findMedicamentsByNomPrefix(String prefix, int limit) {
+        return catalogue.findByNomPrefix(prefix, limit).stream()
+                .map(this::toMedicament)
+                .collect(Collectors.toList());
+    }
 
-            // Search for the code
-            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row != null) {
-                    Cell codeCell = row.getCell(columnIndexMap.get("CODE"));
-                    if (codeCell != null) {
-                        codeCell.setCellType(CellType.STRING);
-                        String excelCode = codeCell.getStringCellValue();
-
-                        if (code.equals(excelCode)) {
-                            Medicament medicament = new Medicament();
-
-                            // Set medication name
-                            if (columnIndexMap.containsKey("NOM")) {
-                                Cell nomCell = row.getCell(columnIndexMap.get("NOM"));
-                                if (nomCell != null) {
-                                    nomCell.setCellType(CellType.STRING);
-                                    medicament.setNom(nomCell.getStringCellValue());
-                                }
-                            }
-
-                            // Build description from multiple fields
-                            StringBuilder description = new StringBuilder();
-                            appendFieldIfExists(row, columnIndexMap, "DCI1", description, "DCI: ");
-                            appendFieldIfExists(row, columnIndexMap, "DOSAGE1", description, "Dosage: ");
-                            appendFieldIfExists(row, columnIndexMap, "UNITE_DOSAGE1", description, "");
-                            appendFieldIfExists(row, columnIndexMap, "FORME", description, "Forme: ");
-                            appendFieldIfExists(row, columnIndexMap, "PRESENTATION", description, "Présentation: ");
-
-                            medicament.setIndications(description.toString().trim());
-
-                            workbook.close();
-                            return medicament;
-                        }
-                    }
-                }
-            }
+    private Medicament toMedicament(MedicamentCatalogue.Entry entry) {
+        Medicament medicament = new Medicament();
 
-            workbook.close();
-        } catch (Exception e) {
-            e.printStackTrace();
+        // Set medication name
+        String nom = entry.getNom();
+        if (!nom.isEmpty()) {
+            medicament.setNom(nom);
         }
 
-        return null;
+        // Build description from multiple fields
+        StringBuilder description = new StringBuilder();
+        appendFieldIfExists(entry, "DCI1", description, "DCI: ");
+        appendFieldIfExists(entry, "DOSAGE1", description, "Dosage: ");
+        appendFieldIfExists(entry, "UNITE_DOSAGE1", description, "");
+        appendFieldIfExists(entry, "FORME", description, "Forme: ");
+        appendFieldIfExists(entry, "PRESENTATION", description, "Présentation: ");
+
+        medicament.setIndications(description.toString().trim());
+        return medicament;
     }
 
-    private void appendFieldIfExists(Row row, Map<String, Integer> columnMap, String columnName,
-                                    StringBuilder builder, String prefix) {
-        if (columnMap.containsKey(columnName)) {
-            Cell cell = row.getCell(columnMap.get(columnName));
-            if (cell != null) {
-                cell.setCellType(CellType.STRING);
-                String value = cell.getStringCellValue();
-                if (!value.isEmpty()) {
-                    if (builder.length() > 0) {
-                        builder.append(", ");
-                    }
-                    builder.append(prefix).append(value);
-                }
+    private void appendFieldIfExists(MedicamentCatalogue.Entry entry, String columnName,
+                                     StringBuilder builder, String prefix) {
+        String value = entry.get(columnName);
+        if (!value.isEmpty()) {
+            if (builder.length() > 0) {
+                builder.append(", ");
             }
+            builder.append(prefix).append(value);
         }
     }
-}
\ No newline at end of file
+}
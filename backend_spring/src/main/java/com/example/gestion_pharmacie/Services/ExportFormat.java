@@ -0,0 +1,21 @@
+package com.example.gestion_pharmacie.Services;
+
+import org.springframework.http.MediaType;
+
+/** Body layouts of the streaming exports. */
+public enum ExportFormat {
+    /** A single JSON array, written element by element. */
+    JSON(MediaType.APPLICATION_JSON),
+    /** Newline-delimited JSON, one document per line. */
+    NDJSON(MediaType.APPLICATION_NDJSON);
+
+    private final MediaType mediaType;
+
+    ExportFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+}
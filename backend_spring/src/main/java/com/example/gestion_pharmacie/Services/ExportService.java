@@ -0,0 +1,111 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.DTO.CommandeLigneRow;
+import com.example.gestion_pharmacie.DTO.CommandeResponseDto;
+import com.example.gestion_pharmacie.DTO.MedicamentExportDto;
+import com.example.gestion_pharmacie.Repositorys.CommandeRepository;
+import com.example.gestion_pharmacie.Repositorys.MedicamentRepository;
+import com.example.gestion_pharmacie.entites.Medicament;
+import com.example.gestion_pharmacie.entites.Utilisateur;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Streams whole tables to a response body without materialising them. Rows come from a JDBC cursor
+ * read {@value MedicamentRepository#EXPORT_FETCH_SIZE} at a time inside a read-only transaction
+ * (PostgreSQL only honours the fetch size inside a transaction) and are written as soon as they are
+ * read; medicaments are detached once written, so the heap used does not grow with the table.
+ * Medicaments are written as {@link MedicamentExportDto}, which keeps only the owner's id and name.
+ */
+@Service
+public class ExportService {
+    private static final Logger logger = LoggerFactory.getLogger(ExportService.class);
+
+    private final MedicamentRepository medicamentRepository;
+    private final CommandeRepository commandeRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectWriter writer;
+
+    public ExportService(MedicamentRepository medicamentRepository,
+                         CommandeRepository commandeRepository,
+                         EntityManager entityManager,
+                         PlatformTransactionManager transactionManager,
+                         ObjectMapper objectMapper) {
+        this.medicamentRepository = medicamentRepository;
+        this.commandeRepository = commandeRepository;
+        this.entityManager = entityManager;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // Same JSON as the list endpoints, without a flush per element
+        this.writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    public void exportMedicaments(OutputStream out, ExportFormat format) {
+        JsonStreamWriter json = new JsonStreamWriter(writer, out, format);
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<Medicament> medicaments = medicamentRepository.streamAllForExport()) {
+                Iterator<Medicament> iterator = medicaments.iterator();
+                while (iterator.hasNext()) {
+                    Medicament medicament = iterator.next();
+                    json.write(toExportDto(medicament));
+                    entityManager.detach(medicament);
+                }
+            }
+        });
+        json.finish();
+        logger.info("Exported {} medicaments as {}", json.getCount(), format);
+    }
+
+    public void exportCommandes(OutputStream out, ExportFormat format) {
+        JsonStreamWriter json = new JsonStreamWriter(writer, out, format);
+        readOnlyTransaction.executeWithoutResult(status -> {
+            // Projection rows are DTOs, nothing accumulates in the persistence context
+            try (Stream<CommandeLigneRow> rows = commandeRepository.streamAllLigneRows()) {
+                CommandeService.forEachCommande(rows.iterator(), json::write);
+            }
+        });
+        json.finish();
+        logger.info("Exported {} commandes as {}", json.getCount(), format);
+    }
+
+    private static MedicamentExportDto toExportDto(Medicament medicament) {
+        MedicamentExportDto dto = new MedicamentExportDto();
+        dto.setId(medicament.getId());
+        dto.setNom(medicament.getNom());
+        dto.setCode_ATC(medicament.getCode_ATC());
+        dto.setDosage(medicament.getDosage());
+        dto.setPresentation(medicament.getPresentation());
+        dto.setPrix_hospitalier(medicament.getPrix_hospitalier());
+        dto.setPrix_public(medicament.getPrix_public());
+        dto.setPrix_conseille(medicament.getPrix_conseille());
+        dto.setComposition(medicament.getComposition());
+        dto.setClasse_therapeutique(medicament.getClasse_therapeutique());
+        dto.setQuantite(medicament.getQuantite());
+        dto.setDate_expiration(medicament.getDate_expiration());
+        dto.setIndications(medicament.getIndications());
+        dto.setNatureDuProduit(medicament.getNatureDuProduit());
+        dto.setTableau(medicament.getTableau());
+        dto.setEn_vente(medicament.isEn_vente());
+        Utilisateur utilisateur = medicament.getUtilisateur();
+        if (utilisateur != null) {
+            CommandeResponseDto.UserBasicInfoDto owner = new CommandeResponseDto.UserBasicInfoDto();
+            owner.setId(utilisateur.getId());
+            owner.setNom(utilisateur.getNom());
+            owner.setPrenom(utilisateur.getPrenom());
+            dto.setUtilisateur(owner);
+        }
+        return dto;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.gestion_pharmacie.Services;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+/**
+ * Result of a {@link PageFetcher} call: the HTTP status, and for 2xx responses the body and its validators.
+ */
+public final class FetchedPage {
+    private final String url;
+    private final int status;
+    private final String body;
+    private final String etag;
+    private final String lastModified;
+
+    private FetchedPage(String url, int status, String body, String etag, String lastModified) {
+        this.url = url;
+        this.status = status;
+        this.body = body;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    public static FetchedPage ok(String url, String body, String etag, String lastModified) {
+        return new FetchedPage(url, 200, body, etag, lastModified);
+    }
+
+    public static FetchedPage notModified(String url) {
+        return new FetchedPage(url, 304, null, null, null);
+    }
+
+    public static FetchedPage withStatus(String url, int status) {
+        return new FetchedPage(url, status, null, null, null);
+    }
+
+    public boolean isOk() {
+        return status >= 200 && status < 300 && body != null;
+    }
+
+    public boolean isNotModified() {
+        return status == 304;
+    }
+
+    public boolean isNotFound() {
+        return status == 404 || status == 410;
+    }
+
+    /** Parses the body with the page URL as base URI, so relative links resolve through {@code absUrl}. */
+    public Document parse() {
+        return Jsoup.parse(body, url);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+}
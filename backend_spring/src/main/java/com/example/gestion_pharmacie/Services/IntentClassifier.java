@@ -0,0 +1,213 @@
+package com.example.gestion_pharmacie.Services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Intent detection of the chat assistant.
+ * <p>
+ * The keywords of {@code data/chat-intents.properties} are compiled once into an Aho–Corasick automaton,
+ * stored as a dense transition table over the characters they use. A question is classified in a single
+ * pass: each character moves the automaton and ends or extends the current word, so every intent and
+ * every candidate medicament name comes out of the same scan, without lower-casing or splitting the
+ * question first. A keyword matches anywhere in the question, as {@code String.contains} would.
+ */
+@Component
+public class IntentClassifier {
+    private static final Logger logger = LoggerFactory.getLogger(IntentClassifier.class);
+
+    public static final String DEFAULT_DICTIONARY = "data/chat-intents.properties";
+
+    private static final String IGNORE_KEY = "ignore";
+    private static final int MIN_NAME_LENGTH = 4;
+    // Characters below this have their class in a flat array; the rest go through a map
+    private static final int DIRECT_CLASSES = 0x180;
+
+    public enum Intent { MEDICAMENTS, COMMANDES, FOURNISSEURS, PHARMACIENS, ALERTES, PANIERS, STATS }
+
+    /** Intents found in a question, and the words that may name a medicament, in question order. */
+    public record Classification(Set<Intent> intents, List<String> candidates) {
+        public boolean has(Intent intent) {
+            return intents.contains(intent);
+        }
+
+        public String firstCandidate() {
+            return candidates.isEmpty() ? null : candidates.get(0);
+        }
+    }
+
+    private static final Intent[] INTENTS = Intent.values();
+
+    private final int[] directClass = new int[DIRECT_CLASSES];
+    private final Map<Character, Integer> otherClass = new HashMap<>();
+    private final int width;
+    private final int[] transitions;
+    private final int[] outputs;
+    private final Set<String> ignored;
+
+    public IntentClassifier(@Value("${chat.intents.dictionary:" + DEFAULT_DICTIONARY + "}") String dictionaryPath) {
+        Properties dictionary = new Properties();
+        try (Reader reader = new InputStreamReader(new ClassPathResource(dictionaryPath).getInputStream(), StandardCharsets.UTF_8)) {
+            dictionary.load(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the intent dictionary " + dictionaryPath, e);
+        }
+
+        Map<String, Integer> keywords = new HashMap<>();
+        Set<String> ignoredWords = new HashSet<>(words(dictionary.getProperty(IGNORE_KEY, "")));
+        for (Intent intent : INTENTS) {
+            for (String keyword : words(dictionary.getProperty(intent.name().toLowerCase(Locale.ROOT), ""))) {
+                keywords.merge(keyword, 1 << intent.ordinal(), (a, b) -> a | b);
+                ignoredWords.addAll(Arrays.asList(keyword.split("[^\\p{L}\\p{N}]+")));
+            }
+        }
+        this.ignored = Set.copyOf(ignoredWords);
+
+        // Character classes: 0 stands for every character no keyword uses
+        int classes = 1;
+        for (String keyword : keywords.keySet()) {
+            for (char c : keyword.toCharArray()) {
+                if (classOf(c) == 0) {
+                    if (c < DIRECT_CLASSES) {
+                        directClass[c] = classes++;
+                    } else {
+                        otherClass.put(c, classes++);
+                    }
+                }
+            }
+        }
+        this.width = classes;
+
+        // Trie of the keywords, then failure links breadth first, folded into a complete transition table
+        List<int[]> children = new ArrayList<>();
+        List<Integer> output = new ArrayList<>();
+        children.add(newNode(width));
+        output.add(0);
+        for (Map.Entry<String, Integer> entry : keywords.entrySet()) {
+            int node = 0;
+            for (char c : entry.getKey().toCharArray()) {
+                int cls = classOf(c);
+                if (children.get(node)[cls] < 0) {
+                    children.get(node)[cls] = children.size();
+                    children.add(newNode(width));
+                    output.add(0);
+                }
+                node = children.get(node)[cls];
+            }
+            output.set(node, output.get(node) | entry.getValue());
+        }
+
+        int nodes = children.size();
+        this.transitions = new int[nodes * width];
+        this.outputs = new int[nodes];
+        int[] failure = new int[nodes];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int cls = 0; cls < width; cls++) {
+            int child = children.get(0)[cls];
+            if (child > 0) {
+                failure[child] = 0;
+                queue.add(child);
+            }
+            transitions[cls] = Math.max(child, 0);
+        }
+        outputs[0] = output.get(0);
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            outputs[node] = output.get(node) | outputs[failure[node]];
+            for (int cls = 0; cls < width; cls++) {
+                int child = children.get(node)[cls];
+                int fallback = transitions[failure[node] * width + cls];
+                if (child > 0) {
+                    failure[child] = fallback;
+                    queue.add(child);
+                    transitions[node * width + cls] = child;
+                } else {
+                    transitions[node * width + cls] = fallback;
+                }
+            }
+        }
+        logger.info("Intent classifier compiled: {} keywords, {} states, {} character classes",
+                keywords.size(), nodes, width);
+    }
+
+    public Classification classify(String question) {
+        if (question == null || question.isEmpty()) {
+            return new Classification(Collections.emptySet(), List.of());
+        }
+        int state = 0;
+        int matched = 0;
+        List<String> candidates = new ArrayList<>(2);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0, n = question.length(); i < n; i++) {
+            char c = Character.toLowerCase(question.charAt(i));
+            state = transitions[state * width + classOf(c)];
+            matched |= outputs[state];
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else {
+                endWord(word, candidates);
+            }
+        }
+        endWord(word, candidates);
+
+        Set<Intent> intents = EnumSet.noneOf(Intent.class);
+        for (Intent intent : INTENTS) {
+            if ((matched & (1 << intent.ordinal())) != 0) {
+                intents.add(intent);
+            }
+        }
+        return new Classification(Collections.unmodifiableSet(intents), Collections.unmodifiableList(candidates));
+    }
+
+    private void endWord(StringBuilder word, List<String> candidates) {
+        if (word.length() >= MIN_NAME_LENGTH) {
+            String candidate = word.toString();
+            if (!ignored.contains(candidate)) {
+                candidates.add(candidate);
+            }
+        }
+        word.setLength(0);
+    }
+
+    private int classOf(char c) {
+        return c < DIRECT_CLASSES ? directClass[c] : otherClass.getOrDefault(c, 0);
+    }
+
+    private static int[] newNode(int width) {
+        int[] node = new int[width];
+        Arrays.fill(node, -1);
+        return node;
+    }
+
+    private static List<String> words(String list) {
+        List<String> words = new ArrayList<>();
+        for (String word : list.split(",")) {
+            String trimmed = word.trim().toLowerCase(Locale.ROOT);
+            if (!trimmed.isEmpty()) {
+                words.add(trimmed);
+            }
+        }
+        return words;
+    }
+}
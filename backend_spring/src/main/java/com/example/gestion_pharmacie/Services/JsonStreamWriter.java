@@ -0,0 +1,63 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes values one at a time to an output stream, as the elements of a JSON array or as NDJSON lines.
+ * Nothing is flushed per value: output leaves through the generator and servlet buffers as they fill.
+ * {@link #finish()} closes the array, so a failed export never ends with a well-formed document.
+ */
+final class JsonStreamWriter {
+    private final ObjectWriter writer;
+    private final JsonGenerator generator;
+    private final ExportFormat format;
+    private long count;
+
+    JsonStreamWriter(ObjectWriter writer, OutputStream out, ExportFormat format) {
+        this.writer = writer;
+        this.format = format;
+        try {
+            this.generator = writer.createGenerator(out);
+            // The response stream belongs to the container
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            if (format == ExportFormat.JSON) {
+                generator.writeStartArray();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void write(Object value) {
+        try {
+            writer.writeValue(generator, value);
+            if (format == ExportFormat.NDJSON) {
+                generator.writeRaw('\n');
+            }
+            count++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void finish() {
+        try {
+            if (format == ExportFormat.JSON) {
+                generator.writeEndArray();
+            }
+            generator.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    long getCount() {
+        return count;
+    }
+}
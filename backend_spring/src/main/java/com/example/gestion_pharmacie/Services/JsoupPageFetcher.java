@@ -0,0 +1,40 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.Config.ScraperProperties;
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+
+import java.io.IOException;
+
+public class JsoupPageFetcher implements PageFetcher {
+
+    private final ScraperProperties scraperProperties;
+
+    public JsoupPageFetcher(ScraperProperties scraperProperties) {
+        this.scraperProperties = scraperProperties;
+    }
+
+    @Override
+    public FetchedPage fetch(String url, String etag, String lastModified) throws IOException {
+        Connection connection = Jsoup.connect(url)
+                .userAgent(scraperProperties.getUserAgent())
+                .timeout(scraperProperties.getTimeoutMs())
+                .ignoreHttpErrors(true);
+        if (etag != null) {
+            connection.header("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            connection.header("If-Modified-Since", lastModified);
+        }
+
+        Connection.Response response = connection.execute();
+        int status = response.statusCode();
+        if (status == 304) {
+            return FetchedPage.notModified(url);
+        }
+        if (status < 200 || status >= 300) {
+            return FetchedPage.withStatus(url, status);
+        }
+        return FetchedPage.ok(url, response.body(), response.header("ETag"), response.header("Last-Modified"));
+    }
+}
@@ -7,6 +7,7 @@ import com.example.gestion_pharmacie.Repositorys.MedicamentRepository;
 import com.example.gestion_pharmacie.entites.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -19,7 +20,7 @@ public class LigneCommandeService {
     private final CommandeRepository commandeRepository;
     private final MedicamentRepository medicamentRepository;
     private final UtilisateurService utilisateurService;
-
+    private final ApplicationEventPublisher eventPublisher;
 
     private static final Logger logger = LoggerFactory.getLogger(LigneCommandeService.class);
 
@@ -27,11 +28,13 @@ public class LigneCommandeService {
             LigneCommandeRepository ligneCommandeRepository,
             CommandeRepository commandeRepository,
             MedicamentRepository medicamentRepository,
-            UtilisateurService utilisateurService) {
+            UtilisateurService utilisateurService,
+            ApplicationEventPublisher eventPublisher) {
         this.ligneCommandeRepository = ligneCommandeRepository;
         this.commandeRepository = commandeRepository;
         this.medicamentRepository = medicamentRepository;
         this.utilisateurService = utilisateurService;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -79,6 +82,7 @@ public class LigneCommandeService {
         // Mettre à jour la liste des lignes de commande dans la commande
         commande.getLignesCommande().add(savedLigneCommande);
         commandeRepository.save(commande);
+        eventPublisher.publishEvent(new CommandeChangeEvent(commande, CommandeChangeEvent.Change.LIGNES));
         
         logger.info("Successfully created ligne commande with ID: {}", savedLigneCommande.getId());
         
@@ -140,6 +144,7 @@ public class LigneCommandeService {
         }
 
         LigneCommande updatedLigneCommande = ligneCommandeRepository.save(ligneCommande);
+        eventPublisher.publishEvent(new CommandeChangeEvent(commande, CommandeChangeEvent.Change.LIGNES));
         logger.info("Successfully updated ligne commande with ID: {}", updatedLigneCommande.getId());
         
         return updatedLigneCommande;
@@ -168,6 +173,7 @@ public class LigneCommandeService {
         // Supprimer la ligne de commande
         commande.getLignesCommande().remove(ligneCommande);
         ligneCommandeRepository.delete(ligneCommande);
+        eventPublisher.publishEvent(new CommandeChangeEvent(commande, CommandeChangeEvent.Change.LIGNES));
         
         logger.info("Successfully deleted ligne commande with ID: {}", ligneCommandeId);
     }
@@ -7,10 +7,12 @@ import com.example.gestion_pharmacie.Repositorys.LignePanierRepository;
 import com.example.gestion_pharmacie.Repositorys.MedicamentRepository;
 import com.example.gestion_pharmacie.Repositorys.PanierRepository;
 import com.example.gestion_pharmacie.entites.*;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -19,15 +21,24 @@ public class LignePanierService {
     private final PanierRepository panierRepository;
     private final MedicamentRepository medicamentRepository;
     private final UtilisateurService utilisateurService;
+    private final StockService stockService;
+    private final OpenPanierRegistry openPanierRegistry;
+    private final ApplicationEventPublisher eventPublisher;
 
     public LignePanierService(LignePanierRepository lignePanierRepository,
                               PanierRepository panierRepository,
                               MedicamentRepository medicamentRepository,
-                              UtilisateurService utilisateurService) {
+                              UtilisateurService utilisateurService,
+                              StockService stockService,
+                              OpenPanierRegistry openPanierRegistry,
+                              ApplicationEventPublisher eventPublisher) {
         this.lignePanierRepository = lignePanierRepository;
         this.panierRepository = panierRepository;
         this.medicamentRepository = medicamentRepository;
         this.utilisateurService = utilisateurService;
+        this.stockService = stockService;
+        this.openPanierRegistry = openPanierRegistry;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -42,13 +53,16 @@ public class LignePanierService {
         if (medicament.getQuantite() < request.getQuantite()) {
             throw new RuntimeException("Quantité insuffisante");
         }
+        if (!stockService.take(Map.of(medicament.getId(), request.getQuantite())).isEmpty()) {
+            throw new RuntimeException("Quantité insuffisante");
+        }
         LignePanier lignePanier = new LignePanier();
         lignePanier.setMedicament(medicament);
         lignePanier.setQuantite(request.getQuantite());
         lignePanier.setPanier(panier);
-        medicament.setQuantite(medicament.getQuantite() - request.getQuantite());
-        medicamentRepository.save(medicament);
         LignePanier saved = lignePanierRepository.save(lignePanier);
+        stockService.syncQuantites(List.of(medicament));
+        eventPublisher.publishEvent(new PanierChangeEvent(pharmacien.getId()));
         return convertToDto(saved);
     }
 
@@ -68,10 +82,16 @@ public class LignePanierService {
         if (medicament.getQuantite() < diff) {
             throw new RuntimeException("Quantité insuffisante pour mise à jour");
         }
-        medicament.setQuantite(medicament.getQuantite() - diff);
-        medicamentRepository.save(medicament);
+        if (diff > 0 && !stockService.take(Map.of(medicament.getId(), diff)).isEmpty()) {
+            throw new RuntimeException("Quantité insuffisante pour mise à jour");
+        }
+        if (diff < 0) {
+            stockService.give(Map.of(medicament.getId(), -diff));
+        }
         lignePanier.setQuantite(request.getQuantite());
         LignePanier saved = lignePanierRepository.save(lignePanier);
+        stockService.syncQuantites(List.of(medicament));
+        eventPublisher.publishEvent(new PanierChangeEvent(lignePanier.getPanier().getPharmacien().getId()));
         return convertToDto(saved);
     }
 
@@ -79,21 +99,21 @@ public class LignePanierService {
     public void deleteLignePanier(Long id) {
         LignePanier lignePanier = lignePanierRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("LignePanier non trouvée"));
-        Medicament medicament = lignePanier.getMedicament();
-        medicament.setQuantite(medicament.getQuantite() + lignePanier.getQuantite());
-        medicamentRepository.save(medicament);
+        stockService.give(Map.of(lignePanier.getMedicament().getId(), lignePanier.getQuantite()));
         lignePanierRepository.delete(lignePanier);
+        eventPublisher.publishEvent(new PanierChangeEvent(lignePanier.getPanier().getPharmacien().getId()));
     }
 
     private Panier getOrCreateCurrentPanier(Pharmacien pharmacien) {
-        List<Panier> paniers = panierRepository.findByPharmacien(pharmacien);
-        return paniers.stream().filter(p -> !p.isVendu()).findFirst()
+        return openPanierRegistry.findOpen(pharmacien)
                 .orElseGet(() -> {
                     Panier p = new Panier();
                     p.setPharmacien(pharmacien);
                     p.setDateCreation(java.time.LocalDateTime.now());
                     p.setVendu(false);
-                    return panierRepository.save(p);
+                    Panier saved = panierRepository.save(p);
+                    openPanierRegistry.register(saved);
+                    return saved;
                 });
     }
 
@@ -0,0 +1,189 @@
+package com.example.gestion_pharmacie.Services;
+
+import java.util.*;
+
+/**
+ * Immutable, in-memory view of the medicaments.xlsx reference file.
+ * Rows are indexed by CODE (trimmed strings, open addressing) and by NOM (sorted, for prefix lookups).
+ */
+public final class MedicamentCatalogue {
+
+    public static final String CODE = "CODE";
+    public static final String NOM = "NOM";
+
+    private static final MedicamentCatalogue EMPTY = new MedicamentCatalogue(List.of(CODE, NOM), List.of());
+
+    private final List<String> header;
+    private final Map<String, Integer> columnIndex;
+    private final String[][] rows;
+
+    // CODE -> row index + 1 (0 marks an empty slot); codes are compared as text, so "0123" is not "123"
+    private final String[] codeKeys;
+    private final int[] codeSlots;
+    private final int mask;
+
+    // Upper-cased NOM values, sorted, with the row they come from
+    private final String[] sortedNoms;
+    private final int[] sortedNomRows;
+
+    public MedicamentCatalogue(List<String> header, List<String[]> rows) {
+        this.header = List.copyOf(header);
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < this.header.size(); i++) {
+            index.putIfAbsent(this.header.get(i).trim(), i);
+        }
+        if (!index.containsKey(CODE)) {
+            throw new IllegalStateException("CODE column not found in Excel file");
+        }
+        this.columnIndex = Collections.unmodifiableMap(index);
+        this.rows = new String[rows.size()][];
+        for (int i = 0; i < rows.size(); i++) {
+            String[] copy = rows.get(i).clone();
+            for (int c = 0; c < copy.length; c++) {
+                if (copy[c] == null) {
+                    copy[c] = "";
+                }
+            }
+            this.rows[i] = copy;
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(4, this.rows.length * 2 - 1)) << 1;
+        this.codeKeys = new String[capacity];
+        this.codeSlots = new int[capacity];
+        this.mask = capacity - 1;
+        int codeColumn = columnIndex.get(CODE);
+        for (int i = 0; i < this.rows.length; i++) {
+            String key = cell(this.rows[i], codeColumn).trim();
+            if (!key.isEmpty()) {
+                insertCode(key, i);
+            }
+        }
+
+        Integer nomColumn = columnIndex.get(NOM);
+        Integer[] order = new Integer[this.rows.length];
+        String[] noms = new String[this.rows.length];
+        for (int i = 0; i < this.rows.length; i++) {
+            order[i] = i;
+            noms[i] = nomColumn != null ? normalize(cell(this.rows[i], nomColumn)) : "";
+        }
+        Arrays.sort(order, Comparator.comparing((Integer i) -> noms[i]));
+        this.sortedNoms = new String[order.length];
+        this.sortedNomRows = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedNoms[i] = noms[order[i]];
+            sortedNomRows[i] = order[i];
+        }
+    }
+
+    public static MedicamentCatalogue empty() {
+        return EMPTY;
+    }
+
+    public int size() {
+        return rows.length;
+    }
+
+    public List<String> getHeader() {
+        return header;
+    }
+
+    public Optional<Entry> findByCode(String code) {
+        String key = code != null ? code.trim() : "";
+        if (key.isEmpty()) {
+            return Optional.empty();
+        }
+        for (int slot = mix(key) & mask; codeSlots[slot] != 0; slot = (slot + 1) & mask) {
+            if (codeKeys[slot].equals(key)) {
+                return Optional.of(new Entry(codeSlots[slot] - 1));
+            }
+        }
+        return Optional.empty();
+    }
+
+    public List<Entry> findByNomPrefix(String prefix, int limit) {
+        String p = normalize(prefix);
+        if (p.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        int low = 0;
+        int high = sortedNoms.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedNoms[mid].compareTo(p) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        List<Entry> matches = new ArrayList<>();
+        for (int i = low; i < sortedNoms.length && matches.size() < limit && sortedNoms[i].startsWith(p); i++) {
+            matches.add(new Entry(sortedNomRows[i]));
+        }
+        return matches;
+    }
+
+    public List<Entry> entries() {
+        List<Entry> entries = new ArrayList<>(rows.length);
+        for (int i = 0; i < rows.length; i++) {
+            entries.add(new Entry(i));
+        }
+        return entries;
+    }
+
+    private void insertCode(String key, int row) {
+        int slot = mix(key) & mask;
+        while (codeSlots[slot] != 0) {
+            if (codeKeys[slot].equals(key)) {
+                return; // keep the first row for a duplicated code
+            }
+            slot = (slot + 1) & mask;
+        }
+        codeKeys[slot] = key;
+        codeSlots[slot] = row + 1;
+    }
+
+    // Spreads the string hash over the low bits the mask keeps
+    private static int mix(String code) {
+        long key = code.hashCode();
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private static String cell(String[] row, int column) {
+        return column < row.length && row[column] != null ? row[column] : "";
+    }
+
+    /**
+     * Read-only handle on one catalogue row.
+     */
+    public final class Entry {
+        private final int row;
+
+        private Entry(int row) {
+            this.row = row;
+        }
+
+        public String get(String column) {
+            Integer index = columnIndex.get(column);
+            return index != null ? cell(rows[row], index) : "";
+        }
+
+        public String getCode() {
+            return get(CODE).trim();
+        }
+
+        public String getNom() {
+            return get(NOM);
+        }
+
+        public List<String> values() {
+            return List.of(rows[row]);
+        }
+    }
+}
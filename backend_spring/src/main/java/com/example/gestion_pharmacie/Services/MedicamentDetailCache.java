@@ -0,0 +1,311 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.entites.Medicament;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Cache of scraped detail pages, keyed by detail URL.
+ * <p>
+ * Two tiers: a size-bounded Caffeine cache in heap (W-TinyLFU eviction) in front of an H2 MVStore file
+ * that survives restarts. Entries carry their own expiry: {@code ttl} for parsed pages, the shorter
+ * {@code negativeTtl} for pages that answered 404. Heap statistics are exported through
+ * {@link CaffeineCacheMetrics}; the disk tier has its own hit/miss/eviction counters.
+ * <p>
+ * The disk tier is kept under {@code max-disk-entries} by {@link #purgeDisk()}, run on a schedule and, when a
+ * write takes the file over its bound, on a background thread: writers never pay for the purge.
+ * <p>
+ * The disk file lives under {@code app.data-dir}. If it cannot be opened (locked by another instance,
+ * read-only directory, corrupt file) the cache runs on the heap tier alone.
+ */
+@Component
+public class MedicamentDetailCache {
+    private static final Logger logger = LoggerFactory.getLogger(MedicamentDetailCache.class);
+
+    private static final String CACHE_NAME = "medicament.detail";
+    private static final char SEPARATOR = '\n';
+
+    private final Cache<String, CachedDetail> heap;
+    private final MVStore store;
+    private final MVMap<String, String> disk;
+    private final int maxDiskEntries;
+    private final Duration ttl;
+    private final Duration negativeTtl;
+    private final Clock clock;
+    private final Executor purgeExecutor;
+    private final AtomicBoolean purgeQueued = new AtomicBoolean();
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final Counter diskHits;
+    private final Counter diskMisses;
+    private final Counter diskEvictions;
+
+    @Autowired
+    public MedicamentDetailCache(@Value("${scraper.cache.max-heap-entries:2000}") int maxHeapEntries,
+                                 @Value("${scraper.cache.max-disk-entries:50000}") int maxDiskEntries,
+                                 @Value("${scraper.cache.ttl-hours:24}") long ttlHours,
+                                 @Value("${scraper.cache.negative-ttl-minutes:30}") long negativeTtlMinutes,
+                                 @Value("${app.data-dir:${user.home}/.gestion_pharmacie}") String dataDir,
+                                 @Value("${scraper.cache.disk-file:}") String diskFile,
+                                 MeterRegistry meterRegistry) {
+        this(maxHeapEntries, maxDiskEntries, Duration.ofHours(ttlHours), Duration.ofMinutes(negativeTtlMinutes),
+                resolve(dataDir, diskFile), meterRegistry, Clock.systemUTC(),
+                Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "detail-cache-purge");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+
+    MedicamentDetailCache(int maxHeapEntries, int maxDiskEntries, Duration ttl, Duration negativeTtl,
+                          String diskFile, MeterRegistry meterRegistry, Clock clock, Executor purgeExecutor) {
+        this.maxDiskEntries = maxDiskEntries;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.clock = clock;
+        this.purgeExecutor = purgeExecutor;
+        this.heap = Caffeine.newBuilder()
+                .maximumSize(maxHeapEntries)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, heap, CACHE_NAME, "tier", "heap");
+
+        MVStore opened = diskFile == null || diskFile.isBlank() ? null : openStore(diskFile);
+        this.store = opened;
+        this.disk = opened == null ? null : opened.openMap("details");
+        if (disk != null) {
+            logger.info("Medicament detail cache: {} entries on disk in {}", disk.size(), diskFile);
+        }
+
+        this.diskHits = Counter.builder("medicament.detail.cache.disk").tag("result", "hit").register(meterRegistry);
+        this.diskMisses = Counter.builder("medicament.detail.cache.disk").tag("result", "miss").register(meterRegistry);
+        this.diskEvictions = Counter.builder("medicament.detail.cache.disk.evictions").register(meterRegistry);
+        Gauge.builder("medicament.detail.cache.disk.size", this, cache -> cache.disk == null ? 0 : cache.disk.size())
+                .register(meterRegistry);
+    }
+
+    /** The disk file under the data directory; blank keeps the cache in heap only. */
+    static String resolve(String dataDir, String diskFile) {
+        if (diskFile == null || diskFile.isBlank()) {
+            return "";
+        }
+        return Path.of(dataDir).resolve(diskFile).toAbsolutePath().toString();
+    }
+
+    private static MVStore openStore(String diskFile) {
+        File parent = new File(diskFile).getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            logger.warn("Could not create directory {} for the detail cache", parent);
+        }
+        try {
+            return new MVStore.Builder().fileName(diskFile).compress().open();
+        } catch (RuntimeException e) {
+            logger.warn("Could not open the detail cache file {}, caching in heap only: {}", diskFile, e.getMessage());
+            return null;
+        }
+    }
+
+    /** Cached entry for the URL, from heap or disk; expired entries are dropped and count as misses. */
+    public Optional<CachedDetail> get(String detailUrl) {
+        long now = clock.millis();
+        CachedDetail cached = heap.getIfPresent(detailUrl);
+        if (cached != null) {
+            if (!cached.isExpired(now)) {
+                return Optional.of(cached.copy());
+            }
+            heap.invalidate(detailUrl);
+        }
+        if (disk == null) {
+            return Optional.empty();
+        }
+
+        String stored = disk.get(detailUrl);
+        CachedDetail fromDisk = stored == null ? null : decode(stored);
+        if (fromDisk == null || fromDisk.isExpired(now)) {
+            if (stored != null) {
+                disk.remove(detailUrl);
+                diskEvictions.increment();
+            }
+            diskMisses.increment();
+            return Optional.empty();
+        }
+        diskHits.increment();
+        heap.put(detailUrl, fromDisk);
+        return Optional.of(fromDisk.copy());
+    }
+
+    public void put(String detailUrl, Medicament medicament) {
+        store(detailUrl, new CachedDetail(copyOf(medicament), clock.millis() + ttl.toMillis()));
+    }
+
+    /** Remembers that the page does not exist, for the negative TTL. */
+    public void putNotFound(String detailUrl) {
+        store(detailUrl, new CachedDetail(null, clock.millis() + negativeTtl.toMillis()));
+    }
+
+    private void store(String detailUrl, CachedDetail detail) {
+        heap.put(detailUrl, detail);
+        if (disk != null) {
+            String encoded = encode(detail);
+            if (encoded != null) {
+                disk.put(detailUrl, encoded);
+                if (disk.size() > maxDiskEntries && purgeQueued.compareAndSet(false, true)) {
+                    purgeExecutor.execute(() -> {
+                        purgeQueued.set(false);
+                        purgeDisk();
+                    });
+                }
+            }
+        }
+    }
+
+    /** Drops expired disk entries, then the oldest-expiring ones if the file is still over its bound. */
+    @Scheduled(fixedDelayString = "${scraper.cache.purge-interval-ms:3600000}")
+    public synchronized void purgeDisk() {
+        if (disk == null || store.isClosed()) {
+            return;
+        }
+        long now = clock.millis();
+        int removed = 0;
+        for (Iterator<Map.Entry<String, String>> it = disk.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, String> entry = it.next();
+            if (expiresAt(entry.getValue()) <= now) {
+                disk.remove(entry.getKey());
+                removed++;
+            }
+        }
+        int excess = disk.size() - maxDiskEntries;
+        if (excess > 0) {
+            // Evict a tenth more than needed so the purge does not run on every insert
+            int toRemove = excess + maxDiskEntries / 10;
+            List<String> oldest = disk.entrySet().stream()
+                    .sorted(Map.Entry.comparingByValue((a, b) -> Long.compare(expiresAt(a), expiresAt(b))))
+                    .limit(toRemove)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+            oldest.forEach(disk::remove);
+            removed += oldest.size();
+        }
+        if (removed > 0) {
+            diskEvictions.increment(removed);
+        }
+    }
+
+    public void invalidateAll() {
+        heap.invalidateAll();
+        if (disk != null) {
+            disk.clear();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (purgeExecutor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+        if (store != null && !store.isClosed()) {
+            store.close();
+        }
+    }
+
+    private String encode(CachedDetail detail) {
+        try {
+            String json = detail.medicament == null ? "" : objectMapper.writeValueAsString(detail.medicament);
+            return detail.expiresAt + String.valueOf(SEPARATOR) + json;
+        } catch (JsonProcessingException e) {
+            logger.warn("Could not serialize cached medicament: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private CachedDetail decode(String stored) {
+        int separator = stored.indexOf(SEPARATOR);
+        if (separator < 0) {
+            return null;
+        }
+        try {
+            long expiresAt = Long.parseLong(stored.substring(0, separator));
+            String json = stored.substring(separator + 1);
+            Medicament medicament = json.isEmpty() ? null : objectMapper.readValue(json, Medicament.class);
+            return new CachedDetail(medicament, expiresAt);
+        } catch (NumberFormatException | JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private static long expiresAt(String stored) {
+        int separator = stored.indexOf(SEPARATOR);
+        try {
+            return separator < 0 ? 0 : Long.parseLong(stored.substring(0, separator));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static Medicament copyOf(Medicament medicament) {
+        Medicament copy = new Medicament();
+        BeanUtils.copyProperties(medicament, copy);
+        return copy;
+    }
+
+    /** A cached page: the parsed medicament, or none when the page answered 404. */
+    public static final class CachedDetail {
+        private final Medicament medicament;
+        private final long expiresAt;
+
+        private CachedDetail(Medicament medicament, long expiresAt) {
+            this.medicament = medicament;
+            this.expiresAt = expiresAt;
+        }
+
+        public boolean isNotFound() {
+            return medicament == null;
+        }
+
+        /** A copy the caller may modify. */
+        public Medicament getMedicament() {
+            return medicament;
+        }
+
+        private boolean isExpired(long now) {
+            return expiresAt <= now;
+        }
+
+        private CachedDetail copy() {
+            return medicament == null ? this : new CachedDetail(copyOf(medicament), expiresAt);
+        }
+    }
+}
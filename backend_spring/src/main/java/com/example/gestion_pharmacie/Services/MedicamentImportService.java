@@ -0,0 +1,307 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.DTO.ImportResultDto;
+import com.example.gestion_pharmacie.Security.CurrentActor;
+import com.example.gestion_pharmacie.entites.Medicament;
+import com.example.gestion_pharmacie.entites.Utilisateur;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Bulk catalogue import (XLSX or CSV) for suppliers and pharmacists.
+ * The file is read row by row and valid rows are written with JDBC batch inserts, one transaction per chunk,
+ * so a bad chunk only rejects its own rows. Invalid rows are reported with their line number.
+ */
+@Service
+public class MedicamentImportService {
+    private static final Logger logger = LoggerFactory.getLogger(MedicamentImportService.class);
+
+    static final int CHUNK_SIZE = 500;
+    private static final int MAX_REPORTED_REJECTS = 1000;
+
+    static final String INSERT_SQL = "INSERT INTO medicament (nom, code_atc, dosage, presentation, "
+            + "prix_hospitalier, prix_public, prix_conseille, composition, classe_therapeutique, quantite, "
+            + "date_expiration, indications, nature_du_produit, tableau, en_vente, utilisateur_id) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final Map<String, BiConsumer<Medicament, String>> COLUMNS = new HashMap<>();
+
+    static {
+        BiConsumer<Medicament, String> nom = (m, v) -> m.setNom(limit(v, 255, "nom"));
+        BiConsumer<Medicament, String> composition = (m, v) -> m.setComposition(limit(v, 255, "composition"));
+        BiConsumer<Medicament, String> prixPublic = (m, v) -> m.setPrix_public(parsePrice(v, "prix_public"));
+        COLUMNS.put("nom", nom);
+        COLUMNS.put("name", nom);
+        COLUMNS.put("codeatc", (m, v) -> m.setCode_ATC(limit(v, 255, "code_ATC")));
+        COLUMNS.put("dosage", (m, v) -> m.setDosage(limit(v, 255, "dosage")));
+        COLUMNS.put("dosage1", (m, v) -> m.setDosage(limit(v, 255, "dosage")));
+        COLUMNS.put("unitedosage1", (m, v) -> m.setDosage(limit(m.getDosage() == null ? v : m.getDosage() + " " + v, 255, "dosage")));
+        COLUMNS.put("presentation", (m, v) -> m.setPresentation(limit(v, 255, "presentation")));
+        COLUMNS.put("composition", composition);
+        COLUMNS.put("dci", composition);
+        COLUMNS.put("dci1", composition);
+        COLUMNS.put("classetherapeutique", (m, v) -> m.setClasse_therapeutique(limit(v, 255, "classe_therapeutique")));
+        COLUMNS.put("ppv", prixPublic);
+        COLUMNS.put("prixpublic", prixPublic);
+        COLUMNS.put("prixhospitalier", (m, v) -> m.setPrix_hospitalier(parsePrice(v, "prix_hospitalier")));
+        COLUMNS.put("ppc", (m, v) -> m.setPrix_conseille(parsePrice(v, "prix_conseille")));
+        COLUMNS.put("prixconseille", (m, v) -> m.setPrix_conseille(parsePrice(v, "prix_conseille")));
+        COLUMNS.put("quantite", (m, v) -> m.setQuantite(parseQuantite(v)));
+        COLUMNS.put("stock", (m, v) -> m.setQuantite(parseQuantite(v)));
+        COLUMNS.put("dateexpiration", (m, v) -> m.setDate_expiration(parseDate(v)));
+        COLUMNS.put("indications", (m, v) -> m.setIndications(limit(v, 1000, "indications")));
+        COLUMNS.put("natureduproduit", (m, v) -> m.setNatureDuProduit(limit(v, 255, "natureDuProduit")));
+        COLUMNS.put("tableau", (m, v) -> m.setTableau(limit(v, 255, "tableau")));
+        COLUMNS.put("envente", (m, v) -> m.setEn_vente(parseBoolean(v)));
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CurrentActor currentActor;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public MedicamentImportService(JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager,
+                                   CurrentActor currentActor,
+                                   ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.currentActor = currentActor;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public ImportResultDto importMedicaments(MultipartFile file) throws IOException {
+        Utilisateur utilisateur = currentActor.getUtilisateur();
+
+        String filename = Optional.ofNullable(file.getOriginalFilename()).orElse("").toLowerCase(Locale.ROOT);
+        logger.info("Importing medicaments from {} ({} bytes) for user {}", filename, file.getSize(), utilisateur.getId());
+
+        try (InputStream inputStream = file.getInputStream()) {
+            if (filename.endsWith(".xlsx")) {
+                try (XlsxRowReader rows = XlsxRowReader.open(inputStream)) {
+                    return importRows(rows, rows::getRowNumber, utilisateur.getId());
+                }
+            }
+            if (filename.endsWith(".csv")) {
+                try (CsvRowReader rows = CsvRowReader.open(inputStream)) {
+                    return importRows(rows, utilisateur.getId());
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        throw new IllegalArgumentException("Format de fichier non supporté (attendu: .xlsx ou .csv)");
+    }
+
+    ImportResultDto importRows(Iterator<String[]> rows, Long utilisateurId) {
+        return importRows(rows, null, utilisateurId);
+    }
+
+    /**
+     * Imports the rows after the header. Rejects are reported with the number {@code rowNumber} gives the
+     * row just read, or, without it, with the row's position in the file.
+     */
+    ImportResultDto importRows(Iterator<String[]> rows, LongSupplier rowNumber, Long utilisateurId) {
+        long start = System.nanoTime();
+        if (!rows.hasNext()) {
+            throw new IllegalArgumentException("Le fichier est vide");
+        }
+        List<BiConsumer<Medicament, String>> mapping = mapHeader(rows.next());
+
+        ImportResultDto result = new ImportResultDto();
+        List<Medicament> chunk = new ArrayList<>(CHUNK_SIZE);
+        List<Long> chunkLines = new ArrayList<>(CHUNK_SIZE);
+        long line = 1;
+        while (rows.hasNext()) {
+            String[] row = rows.next();
+            line = rowNumber != null ? rowNumber.getAsLong() : line + 1;
+            if (isBlank(row)) {
+                continue;
+            }
+            result.setTotalRows(result.getTotalRows() + 1);
+            try {
+                chunk.add(toMedicament(row, mapping));
+                chunkLines.add(line);
+            } catch (IllegalArgumentException e) {
+                reject(result, line, e.getMessage());
+            }
+            if (chunk.size() >= CHUNK_SIZE) {
+                flush(chunk, chunkLines, utilisateurId, result);
+            }
+        }
+        flush(chunk, chunkLines, utilisateurId, result);
+        if (result.getImported() > 0) {
+            eventPublisher.publishEvent(new CatalogueChangeEvent(utilisateurId, List.of()));
+        }
+
+        long elapsedNanos = Math.max(System.nanoTime() - start, 1);
+        result.setDurationMs(elapsedNanos / 1_000_000);
+        result.setRowsPerSecond(result.getTotalRows() * 1_000_000_000.0 / elapsedNanos);
+        logger.info("Import finished: {} rows, {} imported, {} rejected in {} ms ({} rows/s)",
+                result.getTotalRows(), result.getImported(), result.getRejected(),
+                result.getDurationMs(), Math.round(result.getRowsPerSecond()));
+        return result;
+    }
+
+    private void flush(List<Medicament> chunk, List<Long> lines, Long utilisateurId, ImportResultDto result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, chunk, chunk.size(), (ps, m) -> bindInsert(ps, m, utilisateurId)));
+            result.setImported(result.getImported() + chunk.size());
+        } catch (DataAccessException e) {
+            logger.error("Import chunk of {} rows failed: {}", chunk.size(), e.getMessage(), e);
+            String raison = "Erreur base de données: " + e.getMostSpecificCause().getMessage();
+            for (Long line : lines) {
+                reject(result, line, raison);
+            }
+        }
+        chunk.clear();
+        lines.clear();
+    }
+
+    // Parameters of INSERT_SQL, shared with the delivery reception in StockService
+    static void bindInsert(PreparedStatement ps, Medicament m, Long utilisateurId) throws SQLException {
+        ps.setString(1, m.getNom());
+        ps.setString(2, m.getCode_ATC());
+        ps.setString(3, m.getDosage());
+        ps.setString(4, m.getPresentation());
+        ps.setFloat(5, m.getPrix_hospitalier());
+        ps.setFloat(6, m.getPrix_public());
+        ps.setFloat(7, m.getPrix_conseille());
+        ps.setString(8, m.getComposition());
+        ps.setString(9, m.getClasse_therapeutique());
+        ps.setInt(10, m.getQuantite());
+        if (m.getDate_expiration() != null) {
+            ps.setTimestamp(11, new Timestamp(m.getDate_expiration().getTime()));
+        } else {
+            ps.setNull(11, Types.TIMESTAMP);
+        }
+        ps.setString(12, m.getIndications());
+        ps.setString(13, m.getNatureDuProduit());
+        ps.setString(14, m.getTableau());
+        ps.setBoolean(15, m.isEn_vente());
+        ps.setLong(16, utilisateurId);
+    }
+
+    private List<BiConsumer<Medicament, String>> mapHeader(String[] header) {
+        List<BiConsumer<Medicament, String>> mapping = new ArrayList<>(header.length);
+        boolean hasNom = false;
+        for (String column : header) {
+            String key = normalizeHeader(column);
+            BiConsumer<Medicament, String> setter = COLUMNS.get(key);
+            mapping.add(setter);
+            hasNom |= "nom".equals(key) || "name".equals(key);
+        }
+        if (!hasNom) {
+            throw new IllegalArgumentException("Colonne NOM manquante dans l'en-tête");
+        }
+        return mapping;
+    }
+
+    private Medicament toMedicament(String[] row, List<BiConsumer<Medicament, String>> mapping) {
+        Medicament medicament = new Medicament();
+        for (int i = 0; i < mapping.size() && i < row.length; i++) {
+            BiConsumer<Medicament, String> setter = mapping.get(i);
+            String value = row[i] == null ? "" : row[i].trim();
+            if (setter != null && !value.isEmpty()) {
+                setter.accept(medicament, value);
+            }
+        }
+        if (medicament.getNom() == null || medicament.getNom().isBlank()) {
+            throw new IllegalArgumentException("Nom manquant");
+        }
+        return medicament;
+    }
+
+    private void reject(ImportResultDto result, long line, String raison) {
+        result.setRejected(result.getRejected() + 1);
+        if (result.getRejects().size() < MAX_REPORTED_REJECTS) {
+            result.getRejects().add(new ImportResultDto.RowRejectDto(line, raison));
+        }
+    }
+
+    private static boolean isBlank(String[] row) {
+        for (String value : row) {
+            if (value != null && !value.isBlank()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String normalizeHeader(String column) {
+        if (column == null) {
+            return "";
+        }
+        String ascii = Normalizer.normalize(column, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return ascii.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "");
+    }
+
+    private static String limit(String value, int max, String field) {
+        if (value.length() > max) {
+            throw new IllegalArgumentException("Valeur trop longue pour " + field + " (max " + max + " caractères)");
+        }
+        return value;
+    }
+
+    private static float parsePrice(String value, String field) {
+        try {
+            float price = Float.parseFloat(value.replace(" ", "").replace(",", "."));
+            if (price < 0) {
+                throw new IllegalArgumentException("Prix négatif pour " + field + ": " + value);
+            }
+            return price;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valeur numérique invalide pour " + field + ": " + value);
+        }
+    }
+
+    private static int parseQuantite(String value) {
+        try {
+            int quantite = (int) Double.parseDouble(value.replace(",", "."));
+            if (quantite < 0) {
+                throw new IllegalArgumentException("Quantité négative: " + value);
+            }
+            return quantite;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Quantité invalide: " + value);
+        }
+    }
+
+    private static Date parseDate(String value) {
+        try {
+            return java.sql.Date.valueOf(LocalDate.parse(value.length() > 10 ? value.substring(0, 10) : value));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Date d'expiration invalide (attendu AAAA-MM-JJ): " + value);
+        }
+    }
+
+    private static boolean parseBoolean(String value) {
+        String v = value.toLowerCase(Locale.ROOT);
+        return v.equals("true") || v.equals("1") || v.equals("oui") || v.equals("yes");
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.Config.ScraperProperties;
+import com.example.gestion_pharmacie.Repositorys.MedicamentMirrorRepository;
+import com.example.gestion_pharmacie.Repositorys.MirrorLettreRepository;
+import com.example.gestion_pharmacie.Repositorys.PageSnapshotRepository;
+import com.example.gestion_pharmacie.entites.Medicament;
+import com.example.gestion_pharmacie.entites.MedicamentMirror;
+import com.example.gestion_pharmacie.entites.MirrorLettre;
+import com.example.gestion_pharmacie.entites.PageSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps a local mirror of the medicament.ma listing and detail pages so searches never wait on the site.
+ * <p>
+ * Each sync walks the listing pages letter by letter with conditional GETs (ETag / Last-Modified, plus a
+ * body hash for servers that ignore them) and only re-parses pages that changed. Detail pages are then
+ * refreshed incrementally: entries never fetched first, then the oldest ones, bounded per run.
+ * <p>
+ * A letter is served from the mirror only after one sync has walked all of its pages without error; that same
+ * complete sync prunes the entries no longer listed on the site.
+ */
+@Service
+public class MedicamentMirrorService {
+    private static final Logger logger = LoggerFactory.getLogger(MedicamentMirrorService.class);
+
+    private final PageFetcher pageFetcher;
+    private final MedicamentMirrorRepository medicamentMirrorRepository;
+    private final PageSnapshotRepository pageSnapshotRepository;
+    private final MirrorLettreRepository mirrorLettreRepository;
+    private final ScraperProperties scraperProperties;
+    private final AtomicBoolean syncRunning = new AtomicBoolean();
+
+    public MedicamentMirrorService(PageFetcher pageFetcher, MedicamentMirrorRepository medicamentMirrorRepository,
+                                   PageSnapshotRepository pageSnapshotRepository,
+                                   MirrorLettreRepository mirrorLettreRepository, ScraperProperties scraperProperties) {
+        this.pageFetcher = pageFetcher;
+        this.medicamentMirrorRepository = medicamentMirrorRepository;
+        this.pageSnapshotRepository = pageSnapshotRepository;
+        this.mirrorLettreRepository = mirrorLettreRepository;
+        this.scraperProperties = scraperProperties;
+    }
+
+    @Scheduled(initialDelayString = "${scraper.mirror.initial-delay-ms:60000}",
+            fixedDelayString = "${scraper.mirror.sync-interval-ms:43200000}")
+    public void scheduledSync() {
+        if (scraperProperties.isMirrorEnabled()) {
+            syncAll();
+        }
+    }
+
+    public void syncAll() {
+        if (!syncRunning.compareAndSet(false, true)) {
+            logger.info("Medicament mirror sync already running, skipped");
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            int listed = 0;
+            for (char letter = 'A'; letter <= 'Z'; letter++) {
+                listed += syncLetter(letter);
+            }
+            int details = refreshDetails(scraperProperties.getMaxDetailsPerRun());
+            logger.info("Medicament mirror sync: {} listing entries updated, {} detail pages refreshed in {} ms",
+                    listed, details, System.currentTimeMillis() - start);
+        } finally {
+            syncRunning.set(false);
+        }
+    }
+
+    /**
+     * Mirrors the listing pages of one letter; returns the number of entries created or updated. The letter is
+     * marked complete, and entries it no longer lists are pruned, only when every page was read.
+     */
+    public int syncLetter(char letter) {
+        String lettre = String.valueOf(letter);
+        LocalDateTime syncStart = LocalDateTime.now();
+        int updated = 0;
+        boolean complete = true;
+        for (int page = 1; page <= scraperProperties.getMaxPages(); page++) {
+            String url = scraperProperties.listingUrl(letter, page);
+            SyncedPage synced;
+            try {
+                synced = fetchIfChanged(url);
+            } catch (IOException e) {
+                logger.warn("Mirror sync: error on page {} for letter {}: {}", page, letter, e.getMessage());
+                complete = false;
+                break;
+            }
+            if (synced.gone) {
+                break;
+            }
+            if (!synced.changed) {
+                if (synced.snapshot.getItemCount() == 0) {
+                    break;
+                }
+                medicamentMirrorRepository.markListed(lettre, page * 1000, (page + 1) * 1000, syncStart);
+                continue;
+            }
+
+            List<MedicamentPageParser.ListingEntry> entries = MedicamentPageParser.parseListing(synced.page.parse());
+            synced.snapshot.setItemCount(entries.size());
+            pageSnapshotRepository.save(synced.snapshot);
+            if (entries.isEmpty()) {
+                break;
+            }
+            updated += upsertListing(letter, page, entries, syncStart);
+        }
+
+        if (complete) {
+            prune(lettre, syncStart);
+            MirrorLettre state = mirrorLettreRepository.findById(lettre).orElseGet(MirrorLettre::new);
+            state.setLettre(lettre);
+            state.setCompletedAt(LocalDateTime.now());
+            mirrorLettreRepository.save(state);
+        }
+        return updated;
+    }
+
+    /** Drops the entries of the letter (and their detail page snapshots) not listed since {@code syncStart}. */
+    private void prune(String lettre, LocalDateTime syncStart) {
+        List<MedicamentMirror> unlisted = medicamentMirrorRepository.findByLettreAndListingSeenAtBefore(lettre, syncStart);
+        if (unlisted.isEmpty()) {
+            return;
+        }
+        List<String> detailUrls = unlisted.stream().map(MedicamentMirror::getDetailUrl).collect(Collectors.toList());
+        pageSnapshotRepository.deleteAll(pageSnapshotRepository.findByUrlIn(detailUrls));
+        medicamentMirrorRepository.deleteAll(unlisted);
+        logger.info("Mirror sync: {} entries no longer listed for letter {} removed", unlisted.size(), lettre);
+    }
+
+    private int upsertListing(char letter, int page, List<MedicamentPageParser.ListingEntry> entries,
+                              LocalDateTime seenAt) {
+        Map<String, MedicamentMirror> existing = medicamentMirrorRepository
+                .findByDetailUrlIn(entries.stream().map(MedicamentPageParser.ListingEntry::getDetailUrl).collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(MedicamentMirror::getDetailUrl, Function.identity(), (a, b) -> a));
+
+        Map<String, MedicamentMirror> toSave = new LinkedHashMap<>();
+        int index = 0;
+        for (MedicamentPageParser.ListingEntry entry : entries) {
+            if (entry.getDetailUrl().isEmpty() || toSave.containsKey(entry.getDetailUrl())) {
+                continue;
+            }
+            MedicamentMirror mirror = existing.getOrDefault(entry.getDetailUrl(), new MedicamentMirror());
+            mirror.setDetailUrl(entry.getDetailUrl());
+            mirror.setNom(entry.getNom());
+            mirror.setNomRecherche(entry.getNom().toLowerCase());
+            mirror.setLettre(String.valueOf(letter));
+            mirror.setPosition(page * 1000 + index++);
+            mirror.setListingSeenAt(seenAt);
+            toSave.put(entry.getDetailUrl(), mirror);
+        }
+        medicamentMirrorRepository.saveAll(toSave.values());
+        return toSave.size();
+    }
+
+    /** Re-fetches up to {@code max} detail pages that were never fetched or are older than the refresh period. */
+    public int refreshDetails(int max) {
+        LocalDateTime before = LocalDateTime.now().minusHours(scraperProperties.getDetailRefreshHours());
+        List<MedicamentMirror> stale = medicamentMirrorRepository.findStaleDetails(before, PageRequest.of(0, max));
+        int refreshed = 0;
+        for (MedicamentMirror mirror : stale) {
+            try {
+                SyncedPage synced = fetchIfChanged(mirror.getDetailUrl());
+                if (synced.gone) {
+                    medicamentMirrorRepository.delete(mirror);
+                    continue;
+                }
+                if (synced.changed) {
+                    applyDetail(mirror, MedicamentPageParser.parseDetail(synced.page.parse()));
+                    synced.snapshot.setItemCount(1);
+                    pageSnapshotRepository.save(synced.snapshot);
+                }
+                mirror.setDetailFetchedAt(LocalDateTime.now());
+                medicamentMirrorRepository.save(mirror);
+                refreshed++;
+            } catch (IOException e) {
+                logger.warn("Mirror sync: error on detail page {}: {}", mirror.getDetailUrl(), e.getMessage());
+            }
+        }
+        return refreshed;
+    }
+
+    /** Whether a sync has read every listing page of the letter, so the mirror can answer for it. */
+    public boolean isMirrored(char letter) {
+        return mirrorLettreRepository.existsByLettreAndCompletedAtIsNotNull(String.valueOf(Character.toUpperCase(letter)));
+    }
+
+    /** Entries of the letter whose name contains {@code query}, in listing order. */
+    public List<MedicamentMirror> search(String query, int limit) {
+        String lettre = String.valueOf(Character.toUpperCase(query.charAt(0)));
+        return medicamentMirrorRepository.findByLettreAndNomRechercheContainingOrderByPosition(
+                lettre, query.toLowerCase(), PageRequest.of(0, limit));
+    }
+
+    public Optional<MedicamentMirror> findExact(String query) {
+        String lettre = String.valueOf(Character.toUpperCase(query.charAt(0)));
+        return medicamentMirrorRepository.findFirstByLettreAndNomRecherche(lettre, query.toLowerCase());
+    }
+
+    /** Detail of a mirrored page, if the detail page has already been synced. */
+    public Optional<Medicament> findDetail(String detailUrl) {
+        return medicamentMirrorRepository.findByDetailUrl(detailUrl)
+                .filter(mirror -> mirror.getDetailFetchedAt() != null)
+                .map(MedicamentMirrorService::toMedicament);
+    }
+
+    public static Medicament toMedicament(MedicamentMirror mirror) {
+        Medicament medicament = new Medicament();
+        medicament.setNom(mirror.getNom());
+        medicament.setPresentation(mirror.getPresentation());
+        medicament.setComposition(mirror.getComposition());
+        medicament.setClasse_therapeutique(mirror.getClasseTherapeutique());
+        medicament.setCode_ATC(mirror.getCodeAtc());
+        medicament.setDosage(mirror.getDosage());
+        medicament.setPrix_public(mirror.getPrixPublic());
+        medicament.setPrix_conseille(mirror.getPrixConseille());
+        medicament.setPrix_hospitalier(mirror.getPrixHospitalier());
+        medicament.setIndications(mirror.getIndications());
+        medicament.setNatureDuProduit(mirror.getNatureDuProduit());
+        medicament.setTableau(mirror.getTableau());
+        return medicament;
+    }
+
+    private static void applyDetail(MedicamentMirror mirror, Medicament detail) {
+        if (detail.getNom() != null && !detail.getNom().isEmpty()) {
+            mirror.setNom(detail.getNom());
+        }
+        mirror.setPresentation(detail.getPresentation());
+        mirror.setComposition(truncate(detail.getComposition(), 1000));
+        mirror.setClasseTherapeutique(truncate(detail.getClasse_therapeutique(), 255));
+        mirror.setCodeAtc(detail.getCode_ATC());
+        mirror.setDosage(detail.getDosage());
+        mirror.setPrixPublic(detail.getPrix_public());
+        mirror.setPrixConseille(detail.getPrix_conseille());
+        mirror.setPrixHospitalier(detail.getPrix_hospitalier());
+        mirror.setIndications(truncate(detail.getIndications(), 1000));
+        mirror.setNatureDuProduit(detail.getNatureDuProduit());
+        mirror.setTableau(detail.getTableau());
+    }
+
+    private static String truncate(String value, int max) {
+        return value != null && value.length() > max ? value.substring(0, max) : value;
+    }
+
+    private SyncedPage fetchIfChanged(String url) throws IOException {
+        PageSnapshot snapshot = pageSnapshotRepository.findByUrl(url).orElseGet(() -> {
+            PageSnapshot created = new PageSnapshot();
+            created.setUrl(url);
+            return created;
+        });
+        FetchedPage page = pageFetcher.fetch(url, snapshot.getEtag(), snapshot.getLastModified());
+        snapshot.setFetchedAt(LocalDateTime.now());
+
+        if (page.isNotFound()) {
+            if (snapshot.getId() != null) {
+                pageSnapshotRepository.delete(snapshot);
+            }
+            return new SyncedPage(page, snapshot, false, true);
+        }
+        if (page.isNotModified()) {
+            pageSnapshotRepository.save(snapshot);
+            return new SyncedPage(page, snapshot, false, false);
+        }
+        if (!page.isOk()) {
+            throw new IOException("HTTP " + page.getStatus() + " pour " + url);
+        }
+
+        String hash = sha256(page.getBody());
+        boolean changed = snapshot.getId() == null || !hash.equals(snapshot.getContentHash());
+        snapshot.setEtag(page.getEtag());
+        snapshot.setLastModified(page.getLastModified());
+        snapshot.setContentHash(hash);
+        if (!changed) {
+            pageSnapshotRepository.save(snapshot);
+        }
+        return new SyncedPage(page, snapshot, changed, false);
+    }
+
+    private static String sha256(String body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class SyncedPage {
+        private final FetchedPage page;
+        private final PageSnapshot snapshot;
+        private final boolean changed;
+        private final boolean gone;
+
+        private SyncedPage(FetchedPage page, PageSnapshot snapshot, boolean changed, boolean gone) {
+            this.page = page;
+            this.snapshot = snapshot;
+            this.changed = changed;
+            this.gone = gone;
+        }
+    }
+}
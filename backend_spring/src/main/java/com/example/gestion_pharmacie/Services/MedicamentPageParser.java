@@ -0,0 +1,195 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.entites.Medicament;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses medicament.ma listing and detail pages. Shared by the live scraper and the mirror sync.
+ * <p>
+ * Everything reusable is built once: CSS evaluators, regex patterns and the label → field table used
+ * for the detail specification rows. Rows are read through sibling navigation instead of per-row
+ * {@code select("td")} calls.
+ */
+public final class MedicamentPageParser {
+    private static final Logger logger = LoggerFactory.getLogger(MedicamentPageParser.class);
+
+    private static final Evaluator LISTING_LINKS = QueryParser.parse("table tr td a");
+    private static final Evaluator TITLE = QueryParser.parse("h1.entry-title");
+    private static final Evaluator ANY_TITLE = QueryParser.parse("h1");
+    /** The specification table of a detail page. */
+    private static final Evaluator SPEC_ROWS = QueryParser.parse("table.table-details tr");
+    private static final Evaluator TABLES = QueryParser.parse("table");
+    private static final Evaluator ROWS = QueryParser.parse("tr");
+
+    private static final Pattern PRICE = Pattern.compile("(\\d+(?:[.,]\\d+)?)");
+    private static final Pattern DIGIT = Pattern.compile("\\d");
+
+    private static final Map<String, BiConsumer<Medicament, String>> FIELDS = new HashMap<>();
+
+    static {
+        FIELDS.put("présentation", Medicament::setPresentation);
+        FIELDS.put("composition", Medicament::setComposition);
+        FIELDS.put("classe thérapeutique", Medicament::setClasse_therapeutique);
+        FIELDS.put("code atc", Medicament::setCode_ATC);
+        FIELDS.put("dosage", Medicament::setDosage);
+        FIELDS.put("ppv", price("PPV", Medicament::setPrix_public));
+        FIELDS.put("ppc", price("PPC", Medicament::setPrix_conseille));
+        FIELDS.put("prix hospitalier", price("Prix hospitalier", Medicament::setPrix_hospitalier));
+        FIELDS.put("indication(s)", Medicament::setIndications);
+        FIELDS.put("indications", Medicament::setIndications);
+        FIELDS.put("nature du produit", Medicament::setNatureDuProduit);
+        FIELDS.put("tableau", Medicament::setTableau);
+    }
+
+    private interface FloatSetter {
+        void set(Medicament medicament, float value);
+    }
+
+    private MedicamentPageParser() {
+    }
+
+    /** A link from a listing page: the cleaned medicament name and its detail page URL. */
+    public static final class ListingEntry {
+        private final String nom;
+        private final String detailUrl;
+
+        public ListingEntry(String nom, String detailUrl) {
+            this.nom = nom;
+            this.detailUrl = detailUrl;
+        }
+
+        public String getNom() {
+            return nom;
+        }
+
+        public String getDetailUrl() {
+            return detailUrl;
+        }
+    }
+
+    public static List<ListingEntry> parseListing(Document doc) {
+        Elements medicamentLinks = doc.select(LISTING_LINKS);
+        List<ListingEntry> entries = new ArrayList<>(medicamentLinks.size());
+        for (Element link : medicamentLinks) {
+            String detailUrl = link.absUrl("href");
+            if (detailUrl.isEmpty()) {
+                detailUrl = link.attr("href");
+            }
+            entries.add(new ListingEntry(cleanListingName(link.text()), detailUrl));
+        }
+        return entries;
+    }
+
+    /** Removes the price suffix of a listing link ("NAME - PPV: 10 dhs" or "NAME - 10 dhs"). */
+    static String cleanListingName(String text) {
+        String name = text.trim();
+        int cut = name.indexOf(" - PPV:");
+        if (cut < 0) {
+            cut = name.indexOf(" - ");
+        }
+        return cut >= 0 ? name.substring(0, cut) : name;
+    }
+
+    public static Medicament parseDetail(Document doc) {
+        Medicament medicament = new Medicament();
+
+        Element titleElement = doc.selectFirst(TITLE);
+        String title = titleElement != null ? titleElement.text().trim() : "";
+        if (title.isEmpty()) {
+            title = doc.select(ANY_TITLE).text().trim();
+        }
+        medicament.setNom(title);
+
+        Elements specRows = doc.select(SPEC_ROWS);
+        if (!specRows.isEmpty()) {
+            for (Element row : specRows) {
+                applyRow(row, medicament);
+            }
+        } else {
+            // Unknown layout: take the first table that has specification labels
+            for (Element table : doc.select(TABLES)) {
+                boolean matched = false;
+                for (Element row : table.select(ROWS)) {
+                    matched |= applyRow(row, medicament);
+                }
+                if (matched) {
+                    break;
+                }
+            }
+        }
+
+        // If we still don't have the dosage, try to extract it from the name
+        if (medicament.getDosage() == null && title.indexOf(' ') >= 0) {
+            String[] parts = title.split(" ");
+            for (int i = 1; i < parts.length; i++) {
+                if (DIGIT.matcher(parts[i]).find()) {
+                    medicament.setDosage(i + 1 < parts.length ? parts[i] + " " + parts[i + 1] : parts[i]);
+                    break;
+                }
+            }
+        }
+        return medicament;
+    }
+
+    /** Applies a "label | value" row; returns whether the label is a known field. */
+    private static boolean applyRow(Element row, Medicament medicament) {
+        Element labelCell = nextCell(row.firstElementChild());
+        if (labelCell == null) {
+            return false;
+        }
+        Element valueCell = nextCell(labelCell.nextElementSibling());
+        if (valueCell == null) {
+            return false;
+        }
+
+        BiConsumer<Medicament, String> field = FIELDS.get(labelCell.text().trim().toLowerCase(Locale.ROOT));
+        if (field == null) {
+            return false;
+        }
+        String value = valueCell.text().trim();
+        if (!value.isEmpty()) {
+            field.accept(medicament, value);
+        }
+        return true;
+    }
+
+    private static Element nextCell(Element element) {
+        while (element != null && !"td".equals(element.normalName())) {
+            element = element.nextElementSibling();
+        }
+        return element;
+    }
+
+    private static BiConsumer<Medicament, String> price(String label, FloatSetter setter) {
+        return (medicament, value) -> {
+            try {
+                setter.set(medicament, parsePrice(value));
+            } catch (NumberFormatException e) {
+                logger.warn("Error parsing {}: {}", label, value);
+            }
+        };
+    }
+
+    static float parsePrice(String priceText) {
+        Matcher matcher = PRICE.matcher(priceText);
+        if (matcher.find()) {
+            return Float.parseFloat(matcher.group(1).replace(',', '.'));
+        }
+        throw new NumberFormatException("Could not parse price from: " + priceText);
+    }
+}
@@ -1,234 +1,271 @@
 package com.example.gestion_pharmacie.Services;
 
+import com.example.gestion_pharmacie.Config.ScraperProperties;
 import com.example.gestion_pharmacie.Repositorys.MedicamentRepository;
 import com.example.gestion_pharmacie.entites.Medicament;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import com.example.gestion_pharmacie.entites.MedicamentMirror;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @Service
 public class MedicamentScraperService {
+    private static final Logger logger = LoggerFactory.getLogger(MedicamentScraperService.class);
+
+    private static final int MAX_RESULTS = 20;
+    private static final int FETCH_THREADS = 64;
 
     private final MedicamentRepository medicamentRepository;
-    
+    private final PageFetcher pageFetcher;
+    private final MedicamentMirrorService medicamentMirrorService;
+    private final ScraperProperties scraperProperties;
+    private final MedicamentDetailCache detailCache;
+    private final ExecutorService fetchExecutor;
+    private final ExecutorService searchExecutor;
+
     @Autowired
-    public MedicamentScraperService(MedicamentRepository medicamentRepository) {
+    public MedicamentScraperService(MedicamentRepository medicamentRepository, PageFetcher pageFetcher,
+                                    MedicamentMirrorService medicamentMirrorService, ScraperProperties scraperProperties,
+                                    MedicamentDetailCache detailCache) {
         this.medicamentRepository = medicamentRepository;
+        this.pageFetcher = pageFetcher;
+        this.medicamentMirrorService = medicamentMirrorService;
+        this.scraperProperties = scraperProperties;
+        this.detailCache = detailCache;
+        // Threads only wait on I/O; the per-host limit lives in the PageFetcher, the pool just bounds threads
+        AtomicInteger threadCount = new AtomicInteger();
+        this.fetchExecutor = new ThreadPoolExecutor(0, FETCH_THREADS, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "scraper-fetch-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        // Streamed searches wait on their pages here, so they never hold a fetch thread themselves
+        AtomicInteger searchCount = new AtomicInteger();
+        this.searchExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "scraper-search-" + searchCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
-    
-
 
-    private float parsePrice(String priceText) {
-        Pattern pattern = Pattern.compile("(\\d+(?:[.,]\\d+)?)");
-        Matcher matcher = pattern.matcher(priceText);
-        if (matcher.find()) {
-            String priceStr = matcher.group(1).replace(",", ".");
-            return Float.parseFloat(priceStr);
-        }
-        throw new NumberFormatException("Could not parse price from: " + priceText);
+    /**
+     * Medicaments whose name contains {@code query}, the exact match (with its details) first.
+     * Answered from the local mirror once the letter has been synced, otherwise by crawling the site.
+     */
+    public List<Medicament> progressiveSearch(String query) throws IOException {
+        return progressiveSearch(query, medicament -> { });
     }
-    
 
-    public List<Medicament> progressiveSearch(String query) throws IOException {
+    /**
+     * Same search, handing each result to {@code listener} as soon as it is found (in discovery order,
+     * the exact match may come after partial matches).
+     */
+    public List<Medicament> progressiveSearch(String query, Consumer<Medicament> listener) throws IOException {
         if (query == null || query.isEmpty()) {
             return new ArrayList<>();
         }
-        
-        // Get first letter and capitalize it for the URL
+
         char firstLetter = Character.toUpperCase(query.charAt(0));
+        if (medicamentMirrorService.isMirrored(firstLetter)) {
+            List<Medicament> results = searchMirror(query);
+            results.forEach(listener);
+            return results;
+        }
+        return searchLive(query, firstLetter, listener);
+    }
+
+    /**
+     * Runs {@link #progressiveSearch(String, Consumer)} off the caller's thread. Cancelling the returned future
+     * interrupts the search, which stops crawling and cancels the pages still in flight.
+     */
+    public CompletableFuture<List<Medicament>> progressiveSearchAsync(String query, Consumer<Medicament> listener) {
+        CompletableFuture<List<Medicament>> result = new CompletableFuture<>();
+        Future<?> search = searchExecutor.submit(() -> {
+            try {
+                result.complete(progressiveSearch(query, listener));
+            } catch (IOException e) {
+                result.completeExceptionally(new UncheckedIOException(e));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        result.whenComplete((results, error) -> {
+            if (result.isCancelled()) {
+                search.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        searchExecutor.shutdownNow();
+        fetchExecutor.shutdownNow();
+    }
+
+    private List<Medicament> searchMirror(String query) {
         String searchPrefix = query.toLowerCase();
         List<Medicament> results = new ArrayList<>();
         Set<String> foundNames = new HashSet<>();
-        
-        // Search through pages for the first letter
-        for (int page = 1; page <= 30; page++) {
-            String url = "https://medicament.ma/listing-des-medicaments/page/" + page + "/?lettre=" + firstLetter;
-            
-            try {
-                Document doc = Jsoup.connect(url)
-                        .timeout(3000)  // 3 second timeout
-                        .get();
-                
-                Elements medicamentLinks = doc.select("table tr td a");
-                if (medicamentLinks.isEmpty()) {
+
+        Optional<MedicamentMirror> exact = medicamentMirrorService.findExact(query);
+        if (exact.isPresent()) {
+            MedicamentMirror mirror = exact.get();
+            foundNames.add(mirror.getNomRecherche());
+            if (mirror.getDetailFetchedAt() != null) {
+                results.add(MedicamentMirrorService.toMedicament(mirror));
+            } else {
+                // Detail page not synced yet: fetch this one page rather than return the bare name
+                try {
+                    results.add(getDetailedMedicamentInfo(mirror.getDetailUrl()));
+                } catch (IOException e) {
+                    results.add(basicMedicament(mirror.getNom(), mirror.getDetailUrl()));
+                }
+            }
+        }
+
+        for (MedicamentMirror mirror : medicamentMirrorService.search(searchPrefix, MAX_RESULTS)) {
+            if (results.size() >= MAX_RESULTS) {
+                break;
+            }
+            if (foundNames.add(mirror.getNomRecherche())) {
+                results.add(basicMedicament(mirror.getNom(), mirror.getDetailUrl()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Crawls the listing pages of the letter in parallel (a window of pages ahead of the one being read),
+     * while still reading them in page order so results keep the site's ordering. Pages still in flight are
+     * cancelled as soon as the quota or an exact match is reached.
+     */
+    private List<Medicament> searchLive(String query, char firstLetter, Consumer<Medicament> listener) {
+        String searchPrefix = query.toLowerCase();
+        List<Medicament> results = new ArrayList<>();
+        Set<String> foundNames = new HashSet<>();
+        Map<Integer, Future<FetchedPage>> inFlight = new HashMap<>();
+        int window = Math.max(1, scraperProperties.getMaxConcurrentPerHost());
+        int nextPage = 1;
+
+        try {
+            for (int page = 1; page <= scraperProperties.getMaxPages(); page++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break; // Streamed search cancelled
+                }
+                while (nextPage <= scraperProperties.getMaxPages() && nextPage < page + window) {
+                    String url = scraperProperties.listingUrl(firstLetter, nextPage);
+                    inFlight.put(nextPage, fetchExecutor.submit(() -> pageFetcher.fetch(url)));
+                    nextPage++;
+                }
+
+                FetchedPage fetched;
+                try {
+                    fetched = inFlight.remove(page).get();
+                } catch (ExecutionException e) {
+                    logger.warn("Error on page {} for letter {}: {}", page, firstLetter, e.getCause().getMessage());
+                    continue;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if (!fetched.isOk()) {
+                    break;
+                }
+                List<MedicamentPageParser.ListingEntry> entries = MedicamentPageParser.parseListing(fetched.parse());
+                if (entries.isEmpty()) {
                     break; // No more results for this letter
                 }
-                
+
                 boolean exactMatchFound = false;
-                
-                for (Element link : medicamentLinks) {
-                    String medicamentName = link.text().trim();
-                    
-                    // Clean the name by removing price information (anything after "PPV" or "-")
-                    if (medicamentName.contains(" - PPV:")) {
-                        medicamentName = medicamentName.substring(0, medicamentName.indexOf(" - PPV:"));
-                    } else if (medicamentName.contains(" - ")) {
-                        medicamentName = medicamentName.substring(0, medicamentName.indexOf(" - "));
-                    }
-                    
-                    String medicamentNameLower = medicamentName.toLowerCase();
-                    
+
+                for (MedicamentPageParser.ListingEntry entry : entries) {
+                    String medicamentNameLower = entry.getNom().toLowerCase();
+
                     // Check if this medication's name contains our search term
-                    if (medicamentNameLower.contains(searchPrefix)) {
-                        // Skip if we've already found this medication
-                        if (foundNames.contains(medicamentNameLower)) {
-                            continue;
-                        }
-                        
-                        foundNames.add(medicamentNameLower);
-                        
-                        // Basic medicament with just the name
-                        String detailUrl = link.attr("href");
-                        Medicament basicMedicament = new Medicament();
-                        basicMedicament.setNom(medicamentName);
-                        // Store the URL in a temporary field
-                        basicMedicament.setTableau(detailUrl); // Use tableau field temporarily to store URL
-                        
-                        // If it's an exact match, try to get full details
-                        if (medicamentNameLower.equals(searchPrefix)) {
-                            try {
-                                Medicament medicament = getDetailedMedicamentInfo(detailUrl);
-                                results.add(0, medicament); // Add to beginning of list
-                                exactMatchFound = true;
-                            } catch (Exception e) {
-                                results.add(0, basicMedicament);
-                                exactMatchFound = true;
-                            }
-                        } else {
-                            // For partial matches, just add the basic info
-                            results.add(basicMedicament);
-                        }
-                        
-                        // Limit to 10 results for performance
-                        if (results.size() >= 20) {
-                            break;
+                    if (!medicamentNameLower.contains(searchPrefix) || !foundNames.add(medicamentNameLower)) {
+                        continue;
+                    }
+
+                    Medicament medicament = basicMedicament(entry.getNom(), entry.getDetailUrl());
+
+                    // If it's an exact match, try to get full details
+                    if (medicamentNameLower.equals(searchPrefix)) {
+                        try {
+                            medicament = getDetailedMedicamentInfo(entry.getDetailUrl());
+                        } catch (Exception e) {
+                            logger.debug("Details unavailable for {}: {}", entry.getDetailUrl(), e.getMessage());
                         }
+                        results.add(0, medicament);
+                        exactMatchFound = true;
+                    } else {
+                        // For partial matches, just add the basic info
+                        results.add(medicament);
+                    }
+                    listener.accept(medicament);
+
+                    if (results.size() >= MAX_RESULTS) {
+                        break;
                     }
                 }
-                
+
                 // If exact match found or we have enough results, stop searching
-                if (exactMatchFound || results.size() >= 20) {
+                if (exactMatchFound || results.size() >= MAX_RESULTS) {
                     break;
                 }
-            } catch (IOException e) {
-                System.err.println("Error on page " + page + " for letter " + firstLetter + ": " + e.getMessage());
             }
+        } finally {
+            inFlight.values().forEach(future -> future.cancel(true));
         }
-        
+
         return results;
     }
 
-
     public Medicament getDetailedMedicamentInfo(String detailUrl) throws IOException {
-        // Connect with a proper user agent to avoid being blocked
-        Document doc = Jsoup.connect(detailUrl)
-                .userAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36")
-                .timeout(5000)
-                .get();
-        
-        Medicament medicament = new Medicament();
-        System.out.println("Processing URL: " + detailUrl);
-
-        // Extract title (medication name)
-        String title = doc.select("h1.entry-title").text().trim();
-        if (title.isEmpty()) {
-            title = doc.select("h1").text().trim();
+        Optional<Medicament> mirrored = medicamentMirrorService.findDetail(detailUrl);
+        if (mirrored.isPresent()) {
+            return mirrored.get();
         }
-        medicament.setNom(title);
-        
-        // Extract all details from tables - look for both label-value pairs
-        Elements tables = doc.select("table");
-        for (Element table : tables) {
-            Elements rows = table.select("tr");
-            for (Element row : rows) {
-                Elements cells = row.select("td");
-                if (cells.size() < 2) continue;
-                
-                String label = cells.get(0).text().trim();
-                String value = cells.get(1).text().trim();
-                
-                if (value.isEmpty()) continue;
-                
-                // Match labels to entity properties
-                switch (label.toLowerCase()) {
-                    case "présentation":
-                        medicament.setPresentation(value);
-                        break;
-                    case "composition":
-                        medicament.setComposition(value);
-                        break;
-                    case "classe thérapeutique":
-                        medicament.setClasse_therapeutique(value);
-                        break;
-                    case "code atc":
-                        medicament.setCode_ATC(value);
-                        break;
-                    case "dosage":
-                        medicament.setDosage(value);
-                        break;
-                    case "ppv" :
-                        try {
-                            float price = parsePrice(value);
-                            medicament.setPrix_public(price);
-                        } catch (NumberFormatException e) {
-                            System.err.println("Error parsing PPV: " + value);
-                        }
-                        break;
-                    case "ppc" :
-                        try {
-                            float price = parsePrice(value);
-                            medicament.setPrix_conseille(price);
-                        } catch (NumberFormatException e) {
-                            System.err.println("Error parsing PPV: " + value);
-                        }
-                        break;
-                    case "prix hospitalier":
-                        try {
-                            float price = parsePrice(value);
-                            medicament.setPrix_hospitalier(price);
-                        } catch (NumberFormatException e) {
-                            System.err.println("Error parsing Prix hospitalier: " + value);
-                        }
-                        break;
-                    case "indication(s)":
-                    case "indications":
-                        medicament.setIndications(value);
-                        break;
-                    case "nature du produit":
-                        medicament.setNatureDuProduit(value);
-                        break;
-                    case "tableau":
-                        medicament.setTableau(value);
-                        break;
 
-                }
+        Optional<MedicamentDetailCache.CachedDetail> cached = detailCache.get(detailUrl);
+        if (cached.isPresent()) {
+            if (cached.get().isNotFound()) {
+                throw new IOException("Page médicament introuvable: " + detailUrl);
             }
+            return cached.get().getMedicament();
         }
-        
-        // If we still don't have the dosage, try to extract it from the name
-        if (medicament.getDosage() == null && title.contains(" ")) {
-            String[] parts = title.split(" ");
-            for (int i = 1; i < parts.length; i++) {
-                if (parts[i].matches(".*\\d+.*")) {
-                    medicament.setDosage(parts[i] + (i+1 < parts.length ? " " + parts[i+1] : ""));
-                    break;
-                }
-            }
+
+        FetchedPage page = pageFetcher.fetch(detailUrl);
+        if (page.isNotFound()) {
+            detailCache.putNotFound(detailUrl);
+            throw new IOException("Page médicament introuvable: " + detailUrl);
         }
-        
-        // Debug print the extracted data
-        System.out.println("Extracted medicament: " + medicament.getNom());
-        System.out.println("Dosage: " + medicament.getDosage());
-        System.out.println("Prix public: " + medicament.getPrix_public());
-        
+        if (!page.isOk()) {
+            throw new IOException("Page médicament indisponible (HTTP " + page.getStatus() + "): " + detailUrl);
+        }
+        Medicament medicament = MedicamentPageParser.parseDetail(page.parse());
+        detailCache.put(detailUrl, medicament);
+        logger.debug("Extracted medicament {} from {} (dosage: {}, prix public: {})",
+                medicament.getNom(), detailUrl, medicament.getDosage(), medicament.getPrix_public());
+        return medicament;
+    }
+
+    private static Medicament basicMedicament(String nom, String detailUrl) {
+        Medicament medicament = new Medicament();
+        medicament.setNom(nom);
+        // Store the URL in a temporary field
+        medicament.setTableau(detailUrl); // Use tableau field temporarily to store URL
         return medicament;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,177 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.Repositorys.MedicamentRepository;
+import com.example.gestion_pharmacie.entites.Medicament;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Ranked, paginated medicament search.
+ * <p>
+ * On PostgreSQL the {@code medicament} table gets a generated {@code search_vector} column
+ * (nom, composition/DCI, classe thérapeutique) with a GIN index, plus a {@code pg_trgm} GIN index
+ * on {@code lower(nom)}: substring matches and misspelled names are both served from the indexes
+ * and ranked by {@code ts_rank + similarity}. On any other database (H2 in tests) the same API
+ * falls back to a ranked {@code LIKE} query.
+ */
+@Service
+public class MedicamentSearchService {
+    private static final Logger logger = LoggerFactory.getLogger(MedicamentSearchService.class);
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final String[] POSTGRES_DDL = {
+            "CREATE EXTENSION IF NOT EXISTS pg_trgm",
+            "ALTER TABLE medicament ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS ("
+                    + "setweight(to_tsvector('simple', coalesce(nom, '')), 'A') || "
+                    + "setweight(to_tsvector('simple', coalesce(composition, '')), 'B') || "
+                    + "setweight(to_tsvector('simple', coalesce(classe_therapeutique, '')), 'C')) STORED",
+            "CREATE INDEX IF NOT EXISTS idx_medicament_search_vector ON medicament USING gin (search_vector)",
+            "CREATE INDEX IF NOT EXISTS idx_medicament_nom_trgm ON medicament USING gin (lower(nom) gin_trgm_ops)"
+    };
+
+    private static final String POSTGRES_SEARCH_SQL =
+            "SELECT m.id FROM medicament m "
+                    + "WHERE m.search_vector @@ to_tsquery('simple', ?) "
+                    + "OR lower(m.nom) LIKE ? ESCAPE '\\' "
+                    + "OR lower(m.nom) % ? "
+                    + "ORDER BY ts_rank(m.search_vector, to_tsquery('simple', ?)) + similarity(lower(m.nom), ?) DESC, m.nom, m.id "
+                    + "LIMIT ? OFFSET ?";
+
+    private static final String FALLBACK_SEARCH_SQL =
+            "SELECT m.id FROM medicament m "
+                    + "WHERE lower(m.nom) LIKE ? ESCAPE '\\' "
+                    + "OR lower(m.composition) LIKE ? ESCAPE '\\' "
+                    + "OR lower(m.classe_therapeutique) LIKE ? ESCAPE '\\' "
+                    + "ORDER BY CASE WHEN lower(m.nom) = ? THEN 0 "
+                    + "WHEN lower(m.nom) LIKE ? ESCAPE '\\' THEN 1 "
+                    + "WHEN lower(m.nom) LIKE ? ESCAPE '\\' THEN 2 "
+                    + "ELSE 3 END, m.nom, m.id "
+                    + "LIMIT ? OFFSET ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MedicamentRepository medicamentRepository;
+    private final Timer searchTimer;
+
+    private volatile boolean fullTextEnabled;
+
+    public MedicamentSearchService(JdbcTemplate jdbcTemplate, MedicamentRepository medicamentRepository,
+                                   MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.medicamentRepository = medicamentRepository;
+        this.searchTimer = Timer.builder("medicament.search")
+                .description("Latence de la recherche de médicaments")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Creates the trigram and full-text indexes when running on PostgreSQL. Runs once the schema has
+     * been updated by Hibernate; if anything fails (missing extension rights, other database) the
+     * service keeps using the LIKE fallback.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void installSearchIndexes() {
+        try {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            if (!"PostgreSQL".equalsIgnoreCase(product)) {
+                logger.info("Medicament search: {} detected, using LIKE fallback", product);
+                return;
+            }
+            for (String ddl : POSTGRES_DDL) {
+                jdbcTemplate.execute(ddl);
+            }
+            fullTextEnabled = true;
+            logger.info("Medicament search: pg_trgm and full-text indexes ready");
+        } catch (DataAccessException e) {
+            logger.warn("Medicament search: could not install search indexes, using LIKE fallback: {}", e.getMessage());
+        }
+    }
+
+    public boolean isFullTextEnabled() {
+        return fullTextEnabled;
+    }
+
+    public List<Medicament> search(String query, int page, int size) {
+        String term = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+        if (term.isEmpty()) {
+            return List.of();
+        }
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        int offset = Math.max(0, page) * limit;
+
+        return searchTimer.record(() -> {
+            List<Long> ids = fullTextEnabled
+                    ? searchIdsFullText(term, limit, offset)
+                    : searchIdsFallback(term, limit, offset);
+            return loadInOrder(ids);
+        });
+    }
+
+    private List<Long> searchIdsFullText(String term, int limit, int offset) {
+        String tsQuery = toPrefixTsQuery(term);
+        String contains = "%" + escapeLike(term) + "%";
+        if (tsQuery.isEmpty()) {
+            // Only punctuation: to_tsquery would reject it, trigram/LIKE still apply
+            tsQuery = "''";
+        }
+        return jdbcTemplate.queryForList(POSTGRES_SEARCH_SQL, Long.class,
+                tsQuery, contains, term, tsQuery, term, limit, offset);
+    }
+
+    private List<Long> searchIdsFallback(String term, int limit, int offset) {
+        String escaped = escapeLike(term);
+        String contains = "%" + escaped + "%";
+        String prefix = escaped + "%";
+        return jdbcTemplate.queryForList(FALLBACK_SEARCH_SQL, Long.class,
+                contains, contains, contains, term, prefix, contains, limit, offset);
+    }
+
+    private List<Medicament> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Medicament> byId = medicamentRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Medicament::getId, Function.identity()));
+        List<Medicament> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Medicament medicament = byId.get(id);
+            if (medicament != null) {
+                result.add(medicament);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Turns free text into an AND of prefix terms ("dolip 500" -> "dolip:* & 500:*"), keeping only
+     * letters and digits so user input can never produce an invalid tsquery.
+     */
+    static String toPrefixTsQuery(String term) {
+        StringJoiner joiner = new StringJoiner(" & ");
+        for (String token : term.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                joiner.add(token + ":*");
+            }
+        }
+        return joiner.toString();
+    }
+
+    static String escapeLike(String term) {
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
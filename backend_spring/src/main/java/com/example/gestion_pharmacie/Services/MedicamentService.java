@@ -3,12 +3,13 @@ package com.example.gestion_pharmacie.Services;
 import com.example.gestion_pharmacie.Repositorys.FournisseurRepository;
 import com.example.gestion_pharmacie.Repositorys.MedicamentRepository;
 import com.example.gestion_pharmacie.Repositorys.UtilisateurRepository;
+import com.example.gestion_pharmacie.Security.CurrentActor;
 import com.example.gestion_pharmacie.entites.Medicament;
 import com.example.gestion_pharmacie.entites.Role;
 import com.example.gestion_pharmacie.entites.Utilisateur;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -18,35 +19,35 @@ public class MedicamentService {
     private final MedicamentRepository medicamentRepository;
     private final UtilisateurRepository utilisateurRepository;
     private final ExcelLoaderService excelLoaderService;
+    private final MedicamentSearchService medicamentSearchService;
+    private final CurrentActor currentActor;
+    private final ApplicationEventPublisher eventPublisher;
 
 
-    public MedicamentService(MedicamentRepository medicamentRepository, FournisseurRepository fournisseurRepository, UtilisateurRepository utilisateurRepository, ExcelLoaderService excelLoaderService) {
+    public MedicamentService(MedicamentRepository medicamentRepository, FournisseurRepository fournisseurRepository, UtilisateurRepository utilisateurRepository, ExcelLoaderService excelLoaderService, MedicamentSearchService medicamentSearchService, CurrentActor currentActor, ApplicationEventPublisher eventPublisher) {
         this.medicamentRepository = medicamentRepository;
         this.utilisateurRepository = utilisateurRepository;
         this.excelLoaderService = excelLoaderService;
+        this.medicamentSearchService = medicamentSearchService;
+        this.currentActor = currentActor;
+        this.eventPublisher = eventPublisher;
     }
 
 
     public Medicament saveMedicament(Medicament medicament) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-
-        Utilisateur utilisateur = utilisateurRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+        Utilisateur utilisateur = currentActor.getUtilisateur();
 
         // Set the current user as the owner of the medication
         medicament.setUtilisateur(utilisateur);
 
-        return medicamentRepository.save(medicament);
+        Medicament saved = medicamentRepository.save(medicament);
+        eventPublisher.publishEvent(new CatalogueChangeEvent(utilisateur.getId(), List.of()));
+        return saved;
     }
 
     public Medicament addMedicamentFromExcel(String code) {
         // Get current authenticated user
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-
-        Utilisateur utilisateur = utilisateurRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+        Utilisateur utilisateur = currentActor.getUtilisateur();
 
         // Find medicament data in Excel file
         Medicament medicament = excelLoaderService.findMedicamentByCode(code);
@@ -63,15 +64,14 @@ public class MedicamentService {
         medicament.setUtilisateur(utilisateur);
 
         // Save to database
-        return medicamentRepository.save(medicament);
+        Medicament saved = medicamentRepository.save(medicament);
+        eventPublisher.publishEvent(new CatalogueChangeEvent(utilisateur.getId(), List.of()));
+        return saved;
     }
 
+    @Transactional
      public Medicament updateMedicament(Long id, Medicament medicament) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-
-        Utilisateur utilisateur = utilisateurRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+        Utilisateur utilisateur = currentActor.getUtilisateur();
 
         return medicamentRepository.findById(id)
                 .map(existingMedicament -> {
@@ -97,18 +97,16 @@ public class MedicamentService {
                     if (medicament.getDate_expiration() != null) existingMedicament.setDate_expiration(medicament.getDate_expiration());
                     if (medicament.getQuantite() != 0) existingMedicament.setQuantite(medicament.getQuantite());
 
-                    return medicamentRepository.save(existingMedicament);
+                    Medicament saved = medicamentRepository.save(existingMedicament);
+                    eventPublisher.publishEvent(new CatalogueChangeEvent(utilisateur.getId(), List.of(id)));
+                    return saved;
                 })
                 .orElseThrow(() -> new RuntimeException("Medicament not found"));
     }
 
 
     public void deleteMedicament(Long id) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-
-        Utilisateur utilisateur = utilisateurRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+        Utilisateur utilisateur = currentActor.getUtilisateur();
 
         Medicament medicament = medicamentRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Medicament not found"));
@@ -125,14 +123,11 @@ public class MedicamentService {
         }
 
         medicamentRepository.deleteById(id);
+        eventPublisher.publishEvent(new CatalogueChangeEvent(utilisateur.getId(), List.of(id)));
     }
 
     public List<Medicament> getUserMedicaments() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-
-        Utilisateur utilisateur = utilisateurRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+        Utilisateur utilisateur = currentActor.getUtilisateur();
 
         // Use the unified method instead of separate methods for each user type
         return medicamentRepository.findByUtilisateurId(utilisateur.getId());
@@ -142,17 +137,14 @@ public class MedicamentService {
         return medicamentRepository.findAll();
     }
 
-    public List<Medicament> searchMedicaments(String nom) {
-        return medicamentRepository.findByNomContainingIgnoreCase(nom);
+    public List<Medicament> searchMedicaments(String nom, int page, int size) {
+        return medicamentSearchService.search(nom, page, size);
     }
 
     // java
+    @Transactional
     public Medicament toggleEnVente(Long id, boolean enVente) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-
-        Utilisateur utilisateur = utilisateurRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+        Utilisateur utilisateur = currentActor.getUtilisateur();
 
         // Verify user has FOURNISSEUR role by checking the enum value
         boolean isFournisseur = utilisateur.getRole() == Role.FOURNISSEUR;
@@ -170,7 +162,9 @@ public class MedicamentService {
                     }
 
                     existingMedicament.setEn_vente(enVente);
-                    return medicamentRepository.save(existingMedicament);
+                    Medicament saved = medicamentRepository.save(existingMedicament);
+                    eventPublisher.publishEvent(new CatalogueChangeEvent(utilisateur.getId(), List.of(id)));
+                    return saved;
                 })
                 .orElseThrow(() -> new RuntimeException("Medicament not found"));
     }
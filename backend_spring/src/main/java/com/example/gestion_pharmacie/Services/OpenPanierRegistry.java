@@ -0,0 +1,99 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.Repositorys.PanierRepository;
+import com.example.gestion_pharmacie.entites.Panier;
+import com.example.gestion_pharmacie.entites.Pharmacien;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Open (not yet sold) cart of each pharmacist.
+ * <p>
+ * The id of the open cart is remembered per pharmacist, so a cart interaction loads it by primary key
+ * instead of scanning the pharmacist's sales history. A remembered id is only a hint: the cart is checked
+ * to be still open and still theirs, and anything else falls back to the open-cart query, which on
+ * PostgreSQL is served by the partial index {@code idx_panier_pharmacien_ouvert}.
+ */
+@Component
+public class OpenPanierRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(OpenPanierRegistry.class);
+
+    private static final String POSTGRES_DDL =
+            "CREATE INDEX IF NOT EXISTS idx_panier_pharmacien_ouvert ON panier (pharmacien_id) WHERE vendu = false";
+
+    private final PanierRepository panierRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache<Long, Long> openPanierIds;
+
+    public OpenPanierRegistry(PanierRepository panierRepository,
+                              JdbcTemplate jdbcTemplate,
+                              @Value("${panier.open-registry.max-entries:10000}") long maxEntries,
+                              @Value("${panier.open-registry.ttl-minutes:60}") long ttlMinutes) {
+        this.panierRepository = panierRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.openPanierIds = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterAccess(Duration.ofMinutes(ttlMinutes))
+                .build();
+    }
+
+    /**
+     * Creates the partial open-cart index when running on PostgreSQL. Other databases use the plain
+     * foreign key index on {@code pharmacien_id}.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void installOpenPanierIndex() {
+        try {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            if (!"PostgreSQL".equalsIgnoreCase(product)) {
+                return;
+            }
+            jdbcTemplate.execute(POSTGRES_DDL);
+            logger.info("Open cart index ready");
+        } catch (DataAccessException e) {
+            logger.warn("Could not install the open cart index: {}", e.getMessage());
+        }
+    }
+
+    /** The pharmacist's open cart, if there is one. */
+    public Optional<Panier> findOpen(Pharmacien pharmacien) {
+        Long pharmacienId = pharmacien.getId();
+        Long panierId = openPanierIds.getIfPresent(pharmacienId);
+        if (panierId != null) {
+            Optional<Panier> remembered = panierRepository.findById(panierId)
+                    .filter(p -> !p.isVendu() && p.getPharmacien().getId().equals(pharmacienId));
+            if (remembered.isPresent()) {
+                return remembered;
+            }
+            openPanierIds.invalidate(pharmacienId);
+        }
+        Optional<Panier> open = panierRepository.findFirstByPharmacienIdAndVenduFalseOrderByIdAsc(pharmacienId);
+        open.ifPresent(this::register);
+        return open;
+    }
+
+    /** Remembers a cart that was just opened. */
+    public void register(Panier panier) {
+        if (panier.getId() != null && !panier.isVendu()) {
+            openPanierIds.put(panier.getPharmacien().getId(), panier.getId());
+        }
+    }
+
+    /** Forgets the pharmacist's open cart, once it has been closed. */
+    public void forget(Pharmacien pharmacien) {
+        openPanierIds.invalidate(pharmacien.getId());
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.gestion_pharmacie.Services;
+
+import java.io.IOException;
+
+/**
+ * Downloads a page for the medicament.ma scraper. The application bean is a {@link JsoupPageFetcher} behind a
+ * {@link ThrottledPageFetcher}; tests plug in fetchers that serve fixture HTML.
+ */
+public interface PageFetcher {
+
+    /**
+     * @param etag         validator from a previous fetch, sent as If-None-Match (may be null)
+     * @param lastModified validator from a previous fetch, sent as If-Modified-Since (may be null)
+     */
+    FetchedPage fetch(String url, String etag, String lastModified) throws IOException;
+
+    default FetchedPage fetch(String url) throws IOException {
+        return fetch(url, null, null);
+    }
+}
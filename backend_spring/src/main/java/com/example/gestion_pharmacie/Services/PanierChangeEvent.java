@@ -0,0 +1,14 @@
+package com.example.gestion_pharmacie.Services;
+
+/** Published when a pharmacist's cart was opened, changed or sold. */
+public class PanierChangeEvent {
+    private final Long pharmacienId;
+
+    public PanierChangeEvent(Long pharmacienId) {
+        this.pharmacienId = pharmacienId;
+    }
+
+    public Long getPharmacienId() {
+        return pharmacienId;
+    }
+}
@@ -7,12 +7,16 @@ import com.example.gestion_pharmacie.Repositorys.PanierRepository;
 import com.example.gestion_pharmacie.entites.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -22,13 +26,22 @@ public class PanierService {
     private final PanierRepository panierRepository;
     private final MedicamentRepository medicamentRepository;
     private final UtilisateurService utilisateurService;
+    private final StockService stockService;
+    private final OpenPanierRegistry openPanierRegistry;
+    private final ApplicationEventPublisher eventPublisher;
 
     public PanierService(PanierRepository panierRepository,
                          MedicamentRepository medicamentRepository,
-                         UtilisateurService utilisateurService) {
+                         UtilisateurService utilisateurService,
+                         StockService stockService,
+                         OpenPanierRegistry openPanierRegistry,
+                         ApplicationEventPublisher eventPublisher) {
         this.panierRepository = panierRepository;
         this.medicamentRepository = medicamentRepository;
         this.utilisateurService = utilisateurService;
+        this.stockService = stockService;
+        this.openPanierRegistry = openPanierRegistry;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -44,10 +57,20 @@ public class PanierService {
         panier.setPharmacien(pharmacien);
         panier.setLignesPanier(new ArrayList<>());
 
-        // Process all items and validate them
+        // Load every medicament of the cart at once
+        Map<Long, Medicament> medicaments = medicamentRepository.findByIdInOrderByIdAsc(request.getItems().stream()
+                        .map(CreatePanierRequest.PanierItemDto::getMedicamentId)
+                        .collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Medicament::getId, Function.identity()));
+
+        // Process all items and validate them against the stock read above
+        Map<Long, Integer> quantites = new LinkedHashMap<>();
         for (CreatePanierRequest.PanierItemDto item : request.getItems()) {
-            Medicament medicament = medicamentRepository.findById(item.getMedicamentId())
-                    .orElseThrow(() -> new RuntimeException("Médicament non trouvé avec ID: " + item.getMedicamentId()));
+            Medicament medicament = medicaments.get(item.getMedicamentId());
+            if (medicament == null) {
+                throw new RuntimeException("Médicament non trouvé avec ID: " + item.getMedicamentId());
+            }
 
             // Verify medication belongs to pharmacist
             if (!medicament.getUtilisateur().getId().equals(pharmacien.getId())) {
@@ -56,13 +79,15 @@ public class PanierService {
                 throw new RuntimeException("Le médicament " + medicament.getNom() + " ne vous appartient pas");
             }
 
-            // Check sufficient quantity
-            if (medicament.getQuantite() < item.getQuantite()) {
+            // Check sufficient quantity; a medicament listed twice is checked against what is left
+            int disponible = medicament.getQuantite() - quantites.getOrDefault(medicament.getId(), 0);
+            if (disponible < item.getQuantite()) {
                 logger.error("Insufficient quantity for medication {}: requested {}, available {}",
-                        medicament.getId(), item.getQuantite(), medicament.getQuantite());
+                        medicament.getId(), item.getQuantite(), disponible);
                 throw new RuntimeException("Quantité insuffisante pour " + medicament.getNom() +
-                        " (disponible: " + medicament.getQuantite() + ", demandé: " + item.getQuantite() + ")");
+                        " (disponible: " + disponible + ", demandé: " + item.getQuantite() + ")");
             }
+            quantites.merge(medicament.getId(), item.getQuantite(), Integer::sum);
 
             // Add to cart
             LignePanier lignePanier = new LignePanier();
@@ -70,16 +95,18 @@ public class PanierService {
             lignePanier.setQuantite(item.getQuantite());
             lignePanier.setPanier(panier);
             panier.getLignesPanier().add(lignePanier);
+        }
 
-            // Update quantity
-            medicament.setQuantite(medicament.getQuantite() - item.getQuantite());
-            medicamentRepository.save(medicament);
-            logger.info("Updated quantity for medicament {}: {} -> {}",
-                    medicament.getId(), medicament.getQuantite() + item.getQuantite(), medicament.getQuantite());
+        // The stock may have moved since it was read: the conditional decrements decide
+        List<Long> insuffisants = stockService.take(quantites);
+        if (!insuffisants.isEmpty()) {
+            throw new RuntimeException("Quantité insuffisante pour " + medicaments.get(insuffisants.get(0)).getNom());
         }
 
         // Save the cart with all items
         Panier savedPanier = panierRepository.save(panier);
+        stockService.syncQuantites(medicaments.values());
+        eventPublisher.publishEvent(new PanierChangeEvent(pharmacien.getId()));
         logger.info("Successfully created and submitted cart with ID: {}", savedPanier.getId());
 
         return convertToDto(savedPanier);
@@ -102,11 +129,12 @@ public class PanierService {
     @Transactional
     public PanierResponseDto closeCurrentPanier() {
         Pharmacien pharmacien = utilisateurService.getCurrentPharmacien();
-        List<Panier> paniers = panierRepository.findByPharmacien(pharmacien);
-        Panier openPanier = paniers.stream().filter(p -> !p.isVendu()).findFirst()
+        Panier openPanier = openPanierRegistry.findOpen(pharmacien)
                 .orElseThrow(() -> new RuntimeException("Aucun panier ouvert à clôturer."));
         openPanier.setVendu(true);
         Panier saved = panierRepository.save(openPanier);
+        openPanierRegistry.forget(pharmacien);
+        eventPublisher.publishEvent(new PanierChangeEvent(pharmacien.getId()));
         return convertToDto(saved);
     }
 
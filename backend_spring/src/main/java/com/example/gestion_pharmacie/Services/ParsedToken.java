@@ -0,0 +1,49 @@
+package com.example.gestion_pharmacie.Services;
+
+import io.jsonwebtoken.Claims;
+
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * A JWT whose signature has been verified by {@link JwtService#parse(String)}. Holds the claims read
+ * once at parse time so that callers check subject and expiry without parsing the token again.
+ */
+public final class ParsedToken {
+    private final String subject;
+    private final Instant issuedAt;
+    private final Instant expiration;
+    private final Claims claims;
+
+    ParsedToken(Claims claims) {
+        this.claims = claims;
+        this.subject = claims.getSubject();
+        this.issuedAt = toInstant(claims.getIssuedAt());
+        this.expiration = toInstant(claims.getExpiration());
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public Instant getIssuedAt() {
+        return issuedAt;
+    }
+
+    public Instant getExpiration() {
+        return expiration;
+    }
+
+    public boolean isExpired(Instant now) {
+        return expiration != null && expiration.isBefore(now);
+    }
+
+    /** Any other claim of the token, e.g. {@code getClaim("role", String.class)}. */
+    public <T> T getClaim(String name, Class<T> type) {
+        return claims.get(name, type);
+    }
+
+    private static Instant toInstant(Date date) {
+        return date == null ? null : date.toInstant();
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.gestion_pharmacie.Services;
+
+import java.util.List;
+
+/**
+ * Published by {@link StockService} when the stock of medicaments has moved. Transactional listeners
+ * only see it once the sale, shipment or delivery has committed.
+ */
+public class StockChangeEvent {
+    private final List<Long> medicamentIds;
+
+    public StockChangeEvent(List<Long> medicamentIds) {
+        this.medicamentIds = List.copyOf(medicamentIds);
+    }
+
+    public List<Long> getMedicamentIds() {
+        return medicamentIds;
+    }
+}
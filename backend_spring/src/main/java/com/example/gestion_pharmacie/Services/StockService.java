@@ -0,0 +1,135 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.entites.Medicament;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The only writer of {@code medicament.quantite} outside of catalogue edits and imports.
+ * <p>
+ * Stock moves are relative, conditional UPDATEs ({@code quantite = quantite - ? ... and quantite >= ?}),
+ * so two concurrent sales of the same medicament can neither overwrite each other nor take the stock below
+ * zero: the database serialises them on the row lock and re-checks the condition. The statements of one call
+ * go out as a single JDBC batch in id order, which keeps the lock order the same for every transaction.
+ * They run on the connection of the surrounding JPA transaction; a caller that finds a short medicament
+ * throws, and the transaction rolls back what was already taken.
+ * <p>
+ * Managed {@link Medicament} entities are not touched by these statements. Callers must not change their
+ * quantite themselves; {@link #syncQuantites} brings them up to date for the response.
+ * <p>
+ * Every move publishes a {@link StockChangeEvent}, which transactional listeners receive after the commit.
+ */
+@Service
+public class StockService {
+    private static final Logger logger = LoggerFactory.getLogger(StockService.class);
+
+    private static final String TAKE =
+            "update medicament set quantite = quantite - ? where id = ? and quantite >= ?";
+    private static final String GIVE =
+            "update medicament set quantite = quantite + ? where id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public StockService(JdbcTemplate jdbcTemplate, EntityManager entityManager,
+                        ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Takes the quantities, by medicament id, from the stock.
+     *
+     * @return the ids whose stock was too low (or that do not exist); their rows are left unchanged
+     */
+    public List<Long> take(Map<Long, Integer> quantites) {
+        if (quantites.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> ids = new ArrayList<>(new TreeMap<>(quantites).keySet());
+        List<Object[]> args = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            int quantite = quantites.get(id);
+            args.add(new Object[]{quantite, id, quantite});
+        }
+
+        int[] counts = jdbcTemplate.batchUpdate(TAKE, args);
+        List<Long> insuffisants = new ArrayList<>();
+        List<Long> pris = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            (counts[i] == 0 ? insuffisants : pris).add(ids.get(i));
+        }
+        if (!insuffisants.isEmpty()) {
+            logger.warn("Insufficient stock for medicaments {}", insuffisants);
+        }
+        if (!pris.isEmpty()) {
+            eventPublisher.publishEvent(new StockChangeEvent(pris));
+        }
+        return insuffisants;
+    }
+
+    /** Puts the quantities, by medicament id, back into the stock. */
+    public void give(Map<Long, Integer> quantites) {
+        if (quantites.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(quantites.size());
+        new TreeMap<>(quantites).forEach((id, quantite) -> args.add(new Object[]{quantite, id}));
+        jdbcTemplate.batchUpdate(GIVE, args);
+        eventPublisher.publishEvent(new StockChangeEvent(new ArrayList<>(quantites.keySet())));
+    }
+
+    /**
+     * Creates, in one JDBC batch, the medicaments a delivery brings into the stock of {@code utilisateurId}
+     * for the first time. Their ids are not read back.
+     */
+    public void insertAll(List<Medicament> medicaments, Long utilisateurId) {
+        if (medicaments.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(MedicamentImportService.INSERT_SQL, medicaments, medicaments.size(),
+                (ps, m) -> MedicamentImportService.bindInsert(ps, m, utilisateurId));
+    }
+
+    /**
+     * Reloads the stock of the given medicaments in one query. They are detached first, so the value read
+     * here is never flushed back over a later change made by another transaction.
+     */
+    public void syncQuantites(Collection<Medicament> medicaments) {
+        if (medicaments.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> quantites = new HashMap<>();
+        List<Long> ids = medicaments.stream().map(Medicament::getId).distinct().toList();
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        jdbcTemplate.query("select id, quantite from medicament where id in (" + placeholders + ")",
+                rs -> {
+                    quantites.put(rs.getLong("id"), rs.getInt("quantite"));
+                },
+                ids.toArray());
+
+        for (Medicament medicament : medicaments) {
+            if (entityManager.contains(medicament)) {
+                entityManager.detach(medicament);
+            }
+            Integer quantite = quantites.get(medicament.getId());
+            if (quantite != null) {
+                medicament.setQuantite(quantite);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.gestion_pharmacie.Services;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Wraps a {@link PageFetcher} with a per-host concurrency limit and a per-host token bucket, so parallel
+ * crawls stay polite towards medicament.ma.
+ */
+public class ThrottledPageFetcher implements PageFetcher {
+
+    private final PageFetcher delegate;
+    private final int maxConcurrentPerHost;
+    private final double ratePerSecond;
+    private final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    public ThrottledPageFetcher(PageFetcher delegate, int maxConcurrentPerHost, double ratePerSecond) {
+        this.delegate = delegate;
+        this.maxConcurrentPerHost = maxConcurrentPerHost;
+        this.ratePerSecond = ratePerSecond;
+    }
+
+    @Override
+    public FetchedPage fetch(String url, String etag, String lastModified) throws IOException {
+        String host = host(url);
+        Semaphore semaphore = permits.computeIfAbsent(host, h -> new Semaphore(maxConcurrentPerHost, true));
+        TokenBucket bucket = buckets.computeIfAbsent(host, h -> new TokenBucket(ratePerSecond, Math.max(1, ratePerSecond)));
+
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Attente d'une connexion vers " + host + " interrompue");
+        }
+        try {
+            bucket.acquire();
+            return delegate.fetch(url, etag, lastModified);
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    private static String host(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host : url;
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+}
@@ -4,12 +4,11 @@ package com.example.gestion_pharmacie.Services;
 import com.example.gestion_pharmacie.Repositorys.FournisseurRepository;
 import com.example.gestion_pharmacie.Repositorys.PharmacienRepository;
 import com.example.gestion_pharmacie.Repositorys.UtilisateurRepository;
+import com.example.gestion_pharmacie.Security.CurrentActor;
 import com.example.gestion_pharmacie.entites.Fournisseur;
 import com.example.gestion_pharmacie.entites.Pharmacien;
 import com.example.gestion_pharmacie.entites.Utilisateur;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -22,15 +21,17 @@ public class UtilisateurService {
     private final FournisseurRepository fournisseurRepository;
     private final UtilisateurRepository utilisateurRepository;
     private final PasswordEncoder passwordEncoder;
+    private final CurrentActor currentActor;
 
     @Autowired
     public UtilisateurService(PharmacienRepository pharmacienRepository,
                               FournisseurRepository fournisseurRepository, UtilisateurRepository utilisateurRepository,
-                              PasswordEncoder passwordEncoder) {
+                              PasswordEncoder passwordEncoder, CurrentActor currentActor) {
         this.pharmacienRepository = pharmacienRepository;
         this.fournisseurRepository = fournisseurRepository;
         this.utilisateurRepository = utilisateurRepository;
         this.passwordEncoder = passwordEncoder;
+        this.currentActor = currentActor;
     }
 
 //    public List<Pharmacien> getAllPharmaciens() {
@@ -89,10 +90,7 @@ public class UtilisateurService {
 
     // Helper method to get the authenticated user's ville
     private String getCurrentUserVille() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-
-        return utilisateurRepository.findByEmail(email)
+        return currentActor.findUtilisateur()
                 .map(Utilisateur::getVille)
                 .orElse("");
     }
@@ -105,29 +103,18 @@ public class UtilisateurService {
         return ville1.compareTo(ville2);
     }
 
+    // The current user is resolved once per request, see CurrentActor
     public Utilisateur getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-
-        return utilisateurRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+        return currentActor.getUtilisateur();
     }
 
 
     public Pharmacien getCurrentPharmacien() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-
-        return pharmacienRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Pharmacien non trouvé"));
+        return currentActor.getPharmacien();
     }
 
     public Fournisseur getCurrentFournisseur() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-
-        return fournisseurRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Fournisseur non trouvé"));
+        return currentActor.getFournisseur();
     }
 
     public List<Utilisateur> getAllUsers() {
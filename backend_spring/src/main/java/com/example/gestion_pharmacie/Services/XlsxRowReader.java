@@ -0,0 +1,283 @@
+package com.example.gestion_pharmacie.Services;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.util.NumberToTextConverter;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.SAXException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streaming reader for the first sheet of an XLSX file.
+ * Rows are pulled one at a time from the sheet XML through POI's {@link XSSFReader}, so memory stays
+ * bounded by the shared strings table and a single row, whatever the number of rows.
+ * Missing cells are returned as empty strings, so a value's index always matches its column. Rows with
+ * no cells are not stored in the sheet and so never returned; {@link #getRowNumber()} gives the sheet row
+ * number of each row read.
+ */
+public final class XlsxRowReader implements Iterator<String[]>, Closeable {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    private final OPCPackage pkg;
+    private final InputStream sheet;
+    private final XMLStreamReader xml;
+    private final ReadOnlySharedStringsTable sharedStrings;
+    private final Path tempFile;
+
+    private final List<String> cells = new ArrayList<>();
+    private String[] next;
+    private long nextRowNumber;
+    private long rowNumber;
+    private boolean finished;
+    private long rowsRead;
+    private long progressEvery;
+    private LongConsumer progressListener;
+
+    private XlsxRowReader(Path file, Path tempFile) throws IOException {
+        this.tempFile = tempFile;
+        OPCPackage opened = null;
+        try {
+            opened = OPCPackage.open(file.toFile(), PackageAccess.READ);
+            XSSFReader reader = new XSSFReader(opened);
+            this.sharedStrings = new ReadOnlySharedStringsTable(opened);
+            this.sheet = reader.getSheetsData().next();
+            this.xml = XML_INPUT_FACTORY.createXMLStreamReader(sheet);
+            this.pkg = opened;
+        } catch (OpenXML4JException | SAXException | XMLStreamException | RuntimeException e) {
+            if (opened != null) {
+                opened.revert();
+            }
+            deleteTempFile();
+            throw new IOException("Fichier XLSX illisible: " + e.getMessage(), e);
+        }
+    }
+
+    public static XlsxRowReader open(Path file) throws IOException {
+        return new XlsxRowReader(file, null);
+    }
+
+    /**
+     * Opens an XLSX from a stream (classpath resource, upload...). The content is spooled to a temporary
+     * file first, since the zip container has to be read with random access; the file is removed on close.
+     */
+    public static XlsxRowReader open(InputStream inputStream) throws IOException {
+        Path tempFile = Files.createTempFile("xlsx-", ".xlsx");
+        try {
+            Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            return new XlsxRowReader(tempFile, tempFile);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads every row of the first sheet and hands it to {@code rowConsumer}.
+     *
+     * @return the number of rows read
+     */
+    public static long forEachRow(InputStream inputStream, Consumer<String[]> rowConsumer,
+                                  long progressEvery, LongConsumer progressListener) throws IOException {
+        try (XlsxRowReader reader = open(inputStream).onProgress(progressEvery, progressListener)) {
+            reader.forEachRemaining(rowConsumer);
+            return reader.getRowsRead();
+        }
+    }
+
+    /**
+     * Calls {@code listener} with the number of rows read every {@code every} rows, and once more at the end.
+     */
+    public XlsxRowReader onProgress(long every, LongConsumer listener) {
+        this.progressEvery = every;
+        this.progressListener = listener;
+        return this;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    /** 1-based sheet row number of the row last returned by {@link #next()}, as Excel shows it. */
+    public long getRowNumber() {
+        return rowNumber;
+    }
+
+    /**
+     * Lazily reads the remaining rows. Closing the stream closes this reader.
+     */
+    public Stream<String[]> stream() {
+        Spliterator<String[]> spliterator = Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            try {
+                next = readNextRow();
+            } catch (XMLStreamException e) {
+                throw new UncheckedIOException(new IOException("Erreur de lecture XLSX: " + e.getMessage(), e));
+            }
+            if (next == null) {
+                finished = true;
+                notifyProgress();
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public String[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String[] row = next;
+        next = null;
+        rowNumber = nextRowNumber;
+        rowsRead++;
+        if (progressEvery > 0 && rowsRead % progressEvery == 0) {
+            notifyProgress();
+        }
+        return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            xml.close();
+        } catch (XMLStreamException e) {
+            // the underlying stream is closed below anyway
+        }
+        sheet.close();
+        pkg.revert();
+        deleteTempFile();
+    }
+
+    private String[] readNextRow() throws XMLStreamException {
+        while (xml.hasNext()) {
+            if (xml.next() == XMLStreamConstants.START_ELEMENT && "row".equals(xml.getLocalName())) {
+                String ref = xml.getAttributeValue(null, "r");
+                nextRowNumber = ref != null ? Long.parseLong(ref) : nextRowNumber + 1;
+                return readRow();
+            }
+        }
+        return null;
+    }
+
+    private String[] readRow() throws XMLStreamException {
+        cells.clear();
+        int column = -1;
+        String type = null;
+        StringBuilder value = new StringBuilder();
+
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                switch (xml.getLocalName()) {
+                    case "c":
+                        String ref = xml.getAttributeValue(null, "r");
+                        column = ref != null ? columnIndex(ref) : cells.size();
+                        type = xml.getAttributeValue(null, "t");
+                        value.setLength(0);
+                        break;
+                    case "v":
+                    case "t":
+                        value.append(xml.getElementText());
+                        break;
+                    default:
+                        break;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                String name = xml.getLocalName();
+                if ("c".equals(name)) {
+                    while (cells.size() < column) {
+                        cells.add("");
+                    }
+                    cells.add(cellValue(type, value.toString()));
+                } else if ("row".equals(name)) {
+                    return cells.toArray(new String[0]);
+                }
+            }
+        }
+        return cells.toArray(new String[0]);
+    }
+
+    private String cellValue(String type, String raw) {
+        if (raw.isEmpty()) {
+            return "";
+        }
+        if ("s".equals(type)) {
+            return sharedStrings.getItemAt(Integer.parseInt(raw.trim())).getString();
+        }
+        if ("b".equals(type)) {
+            return "1".equals(raw) ? "TRUE" : "FALSE";
+        }
+        if (type == null || "n".equals(type)) {
+            try {
+                // Same rendering as Cell#setCellType(STRING): 42.0 -> "42", 6.118000100225E12 -> "6118000100225"
+                return NumberToTextConverter.toText(Double.parseDouble(raw));
+            } catch (NumberFormatException e) {
+                return raw;
+            }
+        }
+        return raw;
+    }
+
+    private static int columnIndex(String ref) {
+        int index = 0;
+        for (int i = 0; i < ref.length(); i++) {
+            char c = ref.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            index = index * 26 + (c - 'A' + 1);
+        }
+        return index - 1;
+    }
+
+    private void notifyProgress() {
+        if (progressListener != null) {
+            progressListener.accept(rowsRead);
+        }
+    }
+
+    private void deleteTempFile() {
+        if (tempFile != null) {
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException e) {
+                tempFile.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
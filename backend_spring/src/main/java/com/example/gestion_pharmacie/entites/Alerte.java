@@ -21,7 +21,9 @@ public class Alerte {
     @JoinTable(
             name = "alerte_medicament",
             joinColumns = @JoinColumn(name = "alerte_id"),
-            inverseJoinColumns = @JoinColumn(name = "medicament_id")
+            inverseJoinColumns = @JoinColumn(name = "medicament_id"),
+            // Covers the medicament -> alertes lookup (findByMedicamentsId) without touching the table
+            indexes = @Index(name = "idx_alerte_medicament_medicament", columnList = "medicament_id, alerte_id")
     )
     private List<Medicament> medicaments;
 
@@ -11,6 +11,13 @@ import java.util.List;
 
 @Entity
 @Data
+@Table(indexes = {
+        @Index(name = "idx_commande_pharmacien_date", columnList = "pharmacien_id, dateCommande, id"),
+        @Index(name = "idx_commande_pharmacien_statut_date", columnList = "pharmacien_id, statut, dateCommande, id"),
+        @Index(name = "idx_commande_fournisseur_date", columnList = "fournisseur_id, dateCommande, id"),
+        @Index(name = "idx_commande_fournisseur_statut_date", columnList = "fournisseur_id, statut, dateCommande, id"),
+        @Index(name = "idx_commande_date", columnList = "dateCommande, id")
+})
 public class Commande {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
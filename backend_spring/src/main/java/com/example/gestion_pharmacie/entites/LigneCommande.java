@@ -7,6 +7,7 @@ import lombok.*;
 
 @Entity
 @Data
+@Table(indexes = @Index(name = "idx_ligne_commande_commande", columnList = "commande_id"))
 public class LigneCommande {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
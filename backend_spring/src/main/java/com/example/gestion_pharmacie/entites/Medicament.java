@@ -4,11 +4,16 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.util.Date;
 
+// Updates only write the changed columns, so a catalogue edit never writes back a quantite that
+// StockService has moved since the entity was loaded
 @Entity
+@DynamicUpdate
 @Data
+@Table(indexes = @Index(name = "idx_medicament_utilisateur_nom", columnList = "utilisateur_id, nom"))
 public class Medicament {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
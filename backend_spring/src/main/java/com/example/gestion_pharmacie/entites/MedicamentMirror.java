@@ -0,0 +1,46 @@
+package com.example.gestion_pharmacie.entites;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Local copy of a medicament.ma entry: filled from the listing pages, then completed with the detail page.
+ */
+@Entity
+@Data
+@Table(name = "medicament_mirror", indexes = {
+        @Index(name = "idx_medicament_mirror_lettre", columnList = "lettre, position")
+})
+public class MedicamentMirror {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true, length = 500)
+    private String detailUrl;
+
+    private String nom;
+    private String nomRecherche;
+
+    @Column(length = 1)
+    private String lettre;
+    private int position;
+    private LocalDateTime listingSeenAt;
+
+    private String presentation;
+    @Column(length = 1000)
+    private String composition;
+    private String classeTherapeutique;
+    private String codeAtc;
+    private String dosage;
+    private float prixPublic;
+    private float prixConseille;
+    private float prixHospitalier;
+    @Column(length = 1000)
+    private String indications;
+    private String natureDuProduit;
+    private String tableau;
+    private LocalDateTime detailFetchedAt;
+}
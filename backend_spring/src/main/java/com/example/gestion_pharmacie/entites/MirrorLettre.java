@@ -0,0 +1,21 @@
+package com.example.gestion_pharmacie.entites;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sync state of one letter of the medicament.ma listing. The mirror answers searches for the letter only once a
+ * sync has walked all of its listing pages without error.
+ */
+@Entity
+@Data
+@Table(name = "mirror_lettre")
+public class MirrorLettre {
+    @Id
+    @Column(length = 1)
+    private String lettre;
+
+    private LocalDateTime completedAt;
+}
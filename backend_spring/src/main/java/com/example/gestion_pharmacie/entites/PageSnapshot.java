@@ -0,0 +1,28 @@
+package com.example.gestion_pharmacie.entites;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Last known state of a mirrored medicament.ma page: HTTP validators for conditional GETs and a hash of the
+ * body, so unchanged pages are neither re-downloaded nor re-parsed.
+ */
+@Entity
+@Data
+@Table(name = "page_snapshot")
+public class PageSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true, length = 500)
+    private String url;
+
+    private String etag;
+    private String lastModified;
+    private String contentHash;
+    private int itemCount;
+    private LocalDateTime fetchedAt;
+}
@@ -1,5 +1,6 @@
 package com.example.gestion_pharmacie.entites;
 
+import com.example.gestion_pharmacie.Security.UtilisateurCacheListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.springframework.security.core.GrantedAuthority;
@@ -13,6 +14,7 @@ import java.util.List;
 @Entity
 @Data
 @Inheritance(strategy = InheritanceType.JOINED)
+@EntityListeners(UtilisateurCacheListener.class)
 @NoArgsConstructor
 @AllArgsConstructor
 @Setter
@@ -1,32 +1,76 @@
 package com.example.gestion_pharmacie.rag;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.http.*;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestClientResponseException;
 
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+/**
+ * Client of the Python RAG service.
+ * <p>
+ * Calls go through one shared JDK {@link HttpClient}, which keeps connections open and reuses them
+ * across chats (HTTP/2 multiplexes them when {@code rag.http.version=HTTP_2} and the service negotiates
+ * it). A call returns at once and its future completes when the generation ends, so no thread waits on
+ * the service. At most {@code rag.http.max-in-flight} calls run together; the next ones fail fast.
+ * Failures complete the future with the exceptions {@code RestTemplate} used to throw.
+ */
 @Component
 public class RagClient {
     private static final Logger log = LoggerFactory.getLogger(RagClient.class);
 
-    private final RestTemplate restTemplate;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
     private final RagProperties props;
+    private final MeterRegistry meterRegistry;
+    private final Semaphore permits;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejected;
 
-    public RagClient(RagProperties props) {
+    public RagClient(RagProperties props, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
         this.props = props;
-        SimpleClientHttpRequestFactory f = new SimpleClientHttpRequestFactory();
-        f.setConnectTimeout(5000);
-        f.setReadTimeout(25000);
-        this.restTemplate = new RestTemplate(f);
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.valueOf(props.getHttpVersion()))
+                .connectTimeout(Duration.ofMillis(props.getConnectTimeoutMs()))
+                .build();
+        this.permits = new Semaphore(props.getMaxInFlight());
+        Gauge.builder("rag.client.in-flight", inFlight, AtomicInteger::get)
+                .description("RAG calls waiting for the service")
+                .register(meterRegistry);
+        Gauge.builder("rag.client.in-flight.available", permits, Semaphore::availablePermits)
+                .description("RAG calls that can still start before rag.http.max-in-flight is reached")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("rag.client.rejected")
+                .description("RAG calls refused because rag.http.max-in-flight calls were running")
+                .register(meterRegistry);
     }
 
-    public RagResponse chatWithRag(String prompt, List<String> context, Integer maxNewTokens, Double temperature, Double topP) {
+    public CompletableFuture<RagResponse> chatWithRag(String prompt, List<String> context, Integer maxNewTokens, Double temperature, Double topP) {
         String url = props.getBaseUrl() + "/chat";
 
         // Limit and sanitize context
@@ -46,26 +90,78 @@ public class RagClient {
             body.put("external_context", safeContext);
         }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpRequest.Builder request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofMillis(props.getRequestTimeoutMs()))
+                    .header("Content-Type", "application/json")
+                    .header("Accept", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+        } catch (JsonProcessingException | IllegalArgumentException ex) {
+            return CompletableFuture.failedFuture(new RestClientException("Could not build the RAG request", ex));
+        }
         if (props.getServiceToken() != null && !props.getServiceToken().isBlank()) {
-            headers.set("X-Service-Auth", props.getServiceToken());
+            request.header("X-Service-Auth", props.getServiceToken());
         }
 
+        if (!permits.tryAcquire()) {
+            rejected.increment();
+            log.warn("[RAG] Refused: {} calls already in flight", props.getMaxInFlight());
+            return CompletableFuture.failedFuture(new ResourceAccessException(
+                    "RAG service saturated: " + props.getMaxInFlight() + " calls in flight"));
+        }
+        inFlight.incrementAndGet();
+        Timer.Sample sample = Timer.start(meterRegistry);
+
         // Safe log (truncate long fields)
         log.info("[RAG] Sending prompt='{}' ctxItems={} url={}", truncateForLog(prompt, 160), safeContext.size(), url);
 
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
+        return httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray())
+                .handle((response, error) -> {
+                    inFlight.decrementAndGet();
+                    permits.release();
+                    String outcome = "SUCCESS";
+                    try {
+                        return toRagResponse(response, error);
+                    } catch (RuntimeException ex) {
+                        outcome = outcomeOf(ex);
+                        log.error("[RAG] Error calling RAG service: {}", ex.getMessage(), ex);
+                        throw ex;
+                    } finally {
+                        sample.stop(Timer.builder("rag.client.requests")
+                                .description("RAG calls, from sending the prompt to the end of the generation")
+                                .tag("outcome", outcome)
+                                .register(meterRegistry));
+                    }
+                });
+    }
 
+    private RagResponse toRagResponse(HttpResponse<byte[]> response, Throwable error) {
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof IOException io) {
+                throw new ResourceAccessException("I/O error on POST request for \"" + props.getBaseUrl() + "/chat\": " + io.getMessage(), io);
+            }
+            throw new RestClientException("RAG call failed", cause);
+        }
+        if (response.statusCode() < 200 || response.statusCode() >= 300) {
+            throw new RestClientResponseException("RAG service answered " + response.statusCode(),
+                    HttpStatusCode.valueOf(response.statusCode()), "", null, response.body(), StandardCharsets.UTF_8);
+        }
         try {
-            ResponseEntity<RagResponse> response = restTemplate.exchange(url, HttpMethod.POST, entity, RagResponse.class);
-            return response.getBody();
-        } catch (RestClientException ex) {
-            log.error("[RAG] Error calling RAG service: {}", ex.getMessage(), ex);
-            throw ex;
+            return objectMapper.readValue(response.body(), RagResponse.class);
+        } catch (IOException ex) {
+            throw new RestClientException("Unreadable RAG response", ex);
         }
     }
 
+    private static String outcomeOf(RuntimeException ex) {
+        if (ex instanceof RestClientResponseException) return "HTTP_ERROR";
+        if (ex.getCause() instanceof HttpTimeoutException) return "TIMEOUT";
+        if (ex instanceof ResourceAccessException) return "IO_ERROR";
+        return "ERROR";
+    }
+
     private String truncateItem(String s) {
         if (s == null) return null;
         if (s.length() <= props.getContextMaxCharsPerItem()) return s.trim();
@@ -12,6 +12,8 @@ import org.springframework.web.client.RestClientException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/rag")
@@ -26,16 +28,20 @@ public class RagController {
         this.curatedContextService = curatedContextService;
     }
 
+    /**
+     * The context is built on the request thread, then the worker is released: the response is written when
+     * the RAG service answers, so a long generation does not hold one of the container's threads.
+     */
     @PostMapping("/chat")
-    public ResponseEntity<?> chat(@RequestBody ChatRequestDto payload) {
+    public CompletableFuture<ResponseEntity<?>> chat(@RequestBody ChatRequestDto payload) {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth == null || !auth.isAuthenticated()) {
-            return ResponseEntity.status(401).body("Unauthorized");
+            return CompletableFuture.completedFuture(ResponseEntity.status(401).body("Unauthorized"));
         }
 
         String prompt = payload.getMessage();
         if (prompt == null || prompt.trim().isEmpty()) {
-            return ResponseEntity.badRequest().body("Message cannot be empty");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Message cannot be empty"));
         }
 
         // Build curated context from database-relevant data
@@ -73,83 +79,18 @@ public class RagController {
                 context.addAll(summarized);
             }
         }
-        if (raw.containsKey("commandes")) {
-            Object commandesObj = raw.get("commandes");
-            if (commandesObj instanceof List<?>) {
-                for (Object o : (List<?>) commandesObj) {
-                    if (o instanceof com.example.gestion_pharmacie.entites.Commande c) {
-                        StringBuilder sb = new StringBuilder();
-                        sb.append("Commande: ").append(c.getId());
-                        if (c.getDateCommande() != null) sb.append(" | Date: ").append(c.getDateCommande());
-                        if (c.getStatut() != null) sb.append(" | Statut: ").append(c.getStatut());
-                        if (c.getPharmacien() != null) sb.append(" | Pharmacien: ").append(c.getPharmacien().getId());
-                        if (c.getFournisseur() != null) sb.append(" | Fournisseur: ").append(c.getFournisseur().getId());
-                        // Add detailed lignes commande (nom + quantite)
-                        if (c.getLignesCommande() != null && !c.getLignesCommande().isEmpty()) {
-                            int idx = 1;
-                            for (com.example.gestion_pharmacie.entites.LigneCommande lc : c.getLignesCommande()) {
-                                sb.append(" | Ligne ").append(idx++).append(": ");
-                                if (lc.getMedicament() != null) {
-                                    sb.append(lc.getMedicament().getNom());
-                                }
-                                if (lc.getQuantite() != null) {
-                                    sb.append(" x").append(lc.getQuantite());
-                                }
-                            }
-                        }
-                        context.add(sb.toString());
-                    }
-                }
-            }
-        }
-        if (raw.containsKey("alertes")) {
-            Object alertesObj = raw.get("alertes");
-            if (alertesObj instanceof List<?>) {
-                for (Object o : (List<?>) alertesObj) {
-                    if (o instanceof com.example.gestion_pharmacie.entites.Alerte a) {
-                        StringBuilder sb = new StringBuilder();
-                        sb.append("Alerte: ").append(a.getId());
-                        if (a.getMessage() != null) sb.append(" | Message: ").append(a.getMessage());
-                        if (a.getDateCreation() != null) sb.append(" | Date: ").append(a.getDateCreation());
-                        sb.append(" | Min quantite: ").append(a.getMinimumQuantite());
-                        if (a.getMedicaments() != null) sb.append(" | Medicaments: ").append(a.getMedicaments().size());
-                        context.add(sb.toString());
-                    }
-                }
-            }
-        }
-        if (raw.containsKey("paniers")) {
-            Object paniersObj = raw.get("paniers");
-            if (paniersObj instanceof List<?>) {
-                for (Object o : (List<?>) paniersObj) {
-                    if (o instanceof com.example.gestion_pharmacie.entites.Panier p) {
-                        StringBuilder sb = new StringBuilder();
-                        sb.append("Panier: ").append(p.getId());
-                        if (p.getDateCreation() != null) sb.append(" | Date: ").append(p.getDateCreation());
-                        sb.append(" | Vendu: ").append(p.isVendu());
-                        // Add detailed lignes panier (nom + quantite)
-                        if (p.getLignesPanier() != null && !p.getLignesPanier().isEmpty()) {
-                            int idx = 1;
-                            for (com.example.gestion_pharmacie.entites.LignePanier lp : p.getLignesPanier()) {
-                                sb.append(" | LignePanier ").append(idx++).append(": ");
-                                if (lp.getMedicament() != null) {
-                                    sb.append(lp.getMedicament().getNom());
-                                }
-                                if (lp.getQuantite() != null) {
-                                    sb.append(" x").append(lp.getQuantite());
-                                }
-                            }
-                        }
-                        context.add(sb.toString());
-                    }
-                }
-            }
-        }
+        // Commandes, alertes and paniers come pre-rendered, one line each
+        addLines(context, raw.get("commandes"));
+        addLines(context, raw.get("alertes"));
+        addLines(context, raw.get("paniers"));
         if (raw.containsKey("fournisseurs")) {
             context.add("Fournisseurs count: " + ((List<?>) raw.get("fournisseurs")).size());
         }
-        if (raw.containsKey("pharmaciens")) {
-            context.add("Pharmaciens count: " + ((List<?>) raw.get("pharmaciens")).size());
+        if (raw.get("pharmaciens") instanceof List<?> pharmaciens) {
+            // The section is capped at chat.context.max-items: only the stats carry the supplier's real count
+            Object total = raw.get("stats") instanceof Map<?, ?> stats ? stats.get("pharmaciensUniques") : null;
+            context.add(total != null ? "Pharmaciens count: " + total
+                    : "Pharmaciens listed (most recent customers only): " + pharmaciens.size());
         }
         if (raw.containsKey("stats")) {
             context.add("Stats: " + raw.get("stats").toString());
@@ -161,12 +102,25 @@ public class RagController {
         Double temperature = payload.getTemperature();
         Double topP = payload.getTop_p();
 
-        try {
-            RagResponse result = ragClient.chatWithRag(prompt, context, maxNew, temperature, topP);
-            return ResponseEntity.ok(result);
-        } catch (RestClientException ex) {
-            log.error("RAG service call failed", ex);
-            return ResponseEntity.status(502).body("RAG service unavailable");
+        return ragClient.chatWithRag(prompt, context, maxNew, temperature, topP)
+                .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(ex -> {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    if (cause instanceof RestClientException) {
+                        log.error("RAG service call failed", cause);
+                        return ResponseEntity.status(502).body("RAG service unavailable");
+                    }
+                    throw ex instanceof CompletionException completion ? completion : new CompletionException(ex);
+                });
+    }
+
+    private static void addLines(List<String> context, Object lines) {
+        if (lines instanceof List<?> list) {
+            for (Object line : list) {
+                if (line instanceof String s) {
+                    context.add(s);
+                }
+            }
         }
     }
 }
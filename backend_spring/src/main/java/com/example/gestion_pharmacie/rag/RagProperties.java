@@ -18,6 +18,18 @@ public class RagProperties {
     @Value("${rag.context.max-chars-per-item:1200}")
     private int contextMaxCharsPerItem;
 
+    @Value("${rag.http.version:HTTP_1_1}")
+    private String httpVersion; // HTTP_2 is negotiated over TLS, with HTTP/1.1 fallback
+
+    @Value("${rag.http.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Value("${rag.http.request-timeout-ms:25000}")
+    private long requestTimeoutMs;
+
+    @Value("${rag.http.max-in-flight:256}")
+    private int maxInFlight;
+
     public String getBaseUrl() {
         return baseUrl;
     }
@@ -33,4 +45,20 @@ public class RagProperties {
     public int getContextMaxCharsPerItem() {
         return contextMaxCharsPerItem;
     }
+
+    public String getHttpVersion() {
+        return httpVersion;
+    }
+
+    public long getConnectTimeoutMs() {
+        return connectTimeoutMs;
+    }
+
+    public long getRequestTimeoutMs() {
+        return requestTimeoutMs;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
 }
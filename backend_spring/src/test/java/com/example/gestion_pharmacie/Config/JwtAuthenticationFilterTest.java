@@ -0,0 +1,133 @@
+package com.example.gestion_pharmacie.Config;
+
+import com.example.gestion_pharmacie.Repositorys.UtilisateurRepository;
+import com.example.gestion_pharmacie.Security.CurrentActor;
+import com.example.gestion_pharmacie.Security.PrincipalCache;
+import com.example.gestion_pharmacie.Services.JwtService;
+import com.example.gestion_pharmacie.entites.Pharmacien;
+import com.example.gestion_pharmacie.entites.Role;
+import com.example.gestion_pharmacie.entites.Utilisateur;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class JwtAuthenticationFilterTest {
+
+    private static final String SECRET_KEY = "3cfa76ef14937c1c0ea519f8fc057a80fcd04a7420f8e8bcd0a7567c272e007b";
+
+    private JwtService jwtService;
+    private UserDetailsService userDetailsService;
+    private PrincipalCache principalCache;
+    private HandlerExceptionResolver handlerExceptionResolver;
+    private JwtAuthenticationFilter filter;
+    private Utilisateur utilisateur;
+
+    @BeforeEach
+    void setUp() {
+        jwtService = spy(new JwtService(SECRET_KEY, 86400000L));
+
+        utilisateur = new Pharmacien();
+        utilisateur.setEmail("pharma@example.com");
+        utilisateur.setMotDePasse("hash");
+        utilisateur.setRole(Role.PHARMACIEN);
+
+        userDetailsService = mock(UserDetailsService.class);
+        when(userDetailsService.loadUserByUsername("pharma@example.com")).thenReturn(utilisateur);
+        principalCache = new PrincipalCache(100, 60, new SimpleMeterRegistry());
+        handlerExceptionResolver = mock(HandlerExceptionResolver.class);
+        filter = new JwtAuthenticationFilter(jwtService, userDetailsService, principalCache,
+                new CurrentActor(mock(UtilisateurRepository.class)), handlerExceptionResolver);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void doFilter_AuthenticatesWithASingleTokenParse() throws Exception {
+        String token = jwtService.generateToken(utilisateur);
+
+        Authentication authentication = authenticate(token);
+
+        assertNotNull(authentication);
+        assertEquals("pharma@example.com", authentication.getName());
+        assertTrue(authentication.getAuthorities().stream()
+                .anyMatch(authority -> authority.getAuthority().equals("ROLE_PHARMACIEN")));
+        verify(jwtService, times(1)).parse(token);
+    }
+
+    @Test
+    void doFilter_LoadsUserOnceAcrossRequests() throws Exception {
+        String token = jwtService.generateToken(utilisateur);
+
+        authenticate(token);
+        authenticate(token);
+
+        verify(userDetailsService, times(1)).loadUserByUsername("pharma@example.com");
+    }
+
+    @Test
+    void doFilter_ReloadsUserAfterInvalidation() throws Exception {
+        String token = jwtService.generateToken(utilisateur);
+
+        authenticate(token);
+        principalCache.invalidate("pharma@example.com");
+        authenticate(token);
+
+        verify(userDetailsService, times(2)).loadUserByUsername("pharma@example.com");
+    }
+
+    @Test
+    void doFilter_CachedPrincipalHoldsNoPassword() throws Exception {
+        Authentication authentication = authenticate(jwtService.generateToken(utilisateur));
+
+        assertEquals("", ((UserDetails) authentication.getPrincipal()).getPassword());
+    }
+
+    @Test
+    void doFilter_UnknownUserIsNotCached() throws Exception {
+        Utilisateur ghost = new Pharmacien();
+        ghost.setEmail("ghost@example.com");
+        when(userDetailsService.loadUserByUsername("ghost@example.com"))
+                .thenThrow(new UsernameNotFoundException("User not found"));
+        String token = jwtService.generateToken(ghost);
+
+        assertNull(authenticate(token));
+        assertNull(authenticate(token));
+
+        verify(userDetailsService, times(2)).loadUserByUsername("ghost@example.com");
+        verify(handlerExceptionResolver, times(2)).resolveException(any(), any(), any(), any(UsernameNotFoundException.class));
+    }
+
+    @Test
+    void doFilter_InvalidTokenIsResolvedAsError() throws Exception {
+        assertNull(authenticate("not-a-jwt"));
+
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        verify(handlerExceptionResolver).resolveException(any(), any(), any(), any());
+    }
+
+    private Authentication authenticate(String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.gestion_pharmacie.Config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryCountFilterTest {
+
+    @Test
+    void doFilter_RecordsStatementsPerRequest() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        QueryCountFilter filter = new QueryCountFilter(meterRegistry);
+        QueryCountInspector inspector = new QueryCountInspector();
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/commandes/create");
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            inspector.inspect("select * from utilisateur where email=?");
+            inspector.inspect("insert into commande values (?)");
+            req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/commandes/create");
+        });
+
+        DistributionSummary summary = meterRegistry.get("http.server.requests.db.queries")
+                .tag("method", "POST").tag("uri", "/commandes/create").summary();
+        assertEquals(1, summary.count());
+        assertEquals(2, summary.totalAmount());
+    }
+
+    @Test
+    void inspect_OutsideRequestIsNotCounted() {
+        QueryCountInspector inspector = new QueryCountInspector();
+
+        assertEquals("select 1", inspector.inspect("select 1"));
+        assertEquals(0, QueryCountInspector.stop());
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.gestion_pharmacie.Config;
+
+import com.example.gestion_pharmacie.Controllers.CommandeController;
+import com.example.gestion_pharmacie.Controllers.MedicamentController;
+import com.example.gestion_pharmacie.Repositorys.MedicamentRepository;
+import com.example.gestion_pharmacie.Repositorys.UtilisateurRepository;
+import com.example.gestion_pharmacie.Security.CurrentActor;
+import com.example.gestion_pharmacie.Security.PrincipalCache;
+import com.example.gestion_pharmacie.Services.*;
+import com.example.gestion_pharmacie.entites.Client;
+import com.example.gestion_pharmacie.entites.Medicament;
+import com.example.gestion_pharmacie.entites.Pharmacien;
+import com.example.gestion_pharmacie.entites.Role;
+import com.example.gestion_pharmacie.entites.Utilisateur;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.web.SpringJUnitWebConfig;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs requests through the real security filter chain. The JWT filter does not run again on the async
+ * dispatch of SSE and streamed responses, so that dispatch must be let through by the authorization rules.
+ */
+@SpringJUnitWebConfig(classes = {SecurityConfiguration.class, JwtAuthenticationFilter.class, JwtService.class,
+        SecurityConfigurationTest.TestConfig.class})
+@TestPropertySource(properties = {
+        "security.jwt.secret-key=3cfa76ef14937c1c0ea519f8fc057a80fcd04a7420f8e8bcd0a7567c272e007b",
+        "security.jwt.expiration-time=86400000"
+})
+class SecurityConfigurationTest {
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private MedicamentScraperService medicamentScraperService;
+
+    @Autowired
+    private ExportService exportService;
+
+    private MockMvc mockMvc;
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+        token = jwtService.generateToken(TestConfig.PHARMACIEN);
+        reset(medicamentScraperService, exportService);
+    }
+
+    @Test
+    void progressiveSearchStream_AsyncDispatchIsAuthorized() throws Exception {
+        Medicament medicament = new Medicament();
+        medicament.setNom("Doliprane 500mg");
+        when(medicamentScraperService.progressiveSearchAsync(eq("Doliprane"), any())).thenAnswer(invocation -> {
+            invocation.<Consumer<Medicament>>getArgument(1).accept(medicament);
+            return CompletableFuture.completedFuture(List.of(medicament));
+        });
+
+        MvcResult result = mockMvc.perform(get("/medicaments/progressive-search/stream")
+                        .param("query", "Doliprane")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+        assertTrue(result.getResponse().getContentAsString().contains("event:done"));
+    }
+
+    @Test
+    void export_AsyncDispatchIsAuthorized() throws Exception {
+        MvcResult result = mockMvc.perform(get("/medicaments/export")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+        verify(exportService, times(1)).exportMedicaments(any(), eq(ExportFormat.JSON));
+    }
+
+    @Test
+    void exports_RejectClients() throws Exception {
+        String clientToken = jwtService.generateToken(TestConfig.CLIENT);
+
+        mockMvc.perform(get("/medicaments/export").header("Authorization", "Bearer " + clientToken))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/commandes/export").header("Authorization", "Bearer " + clientToken))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(exportService);
+    }
+
+    @Test
+    void progressiveSearchStream_RejectsAnonymousRequest() throws Exception {
+        mockMvc.perform(get("/medicaments/progressive-search/stream").param("query", "Doliprane"))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(medicamentScraperService);
+    }
+
+    @Configuration
+    @EnableWebMvc
+    static class TestConfig {
+        static final Utilisateur PHARMACIEN = utilisateur(new Pharmacien(), "pharma@example.com", Role.PHARMACIEN);
+        static final Utilisateur CLIENT = utilisateur(new Client(), "client@example.com", Role.CLIENT);
+
+        private static Utilisateur utilisateur(Utilisateur utilisateur, String email, Role role) {
+            utilisateur.setEmail(email);
+            utilisateur.setMotDePasse("hash");
+            utilisateur.setRole(role);
+            return utilisateur;
+        }
+
+        @Bean
+        UserDetailsService userDetailsService() {
+            Map<String, Utilisateur> utilisateurs = Map.of(PHARMACIEN.getEmail(), PHARMACIEN, CLIENT.getEmail(), CLIENT);
+            return utilisateurs::get;
+        }
+
+        @Bean
+        PrincipalCache principalCache() {
+            return new PrincipalCache(100, 60, new SimpleMeterRegistry());
+        }
+
+        @Bean
+        CurrentActor currentActor() {
+            return new CurrentActor(mock(UtilisateurRepository.class));
+        }
+
+        @Bean
+        AuthenticationProvider authenticationProvider() {
+            return mock(AuthenticationProvider.class);
+        }
+
+        @Bean
+        MedicamentScraperService medicamentScraperService() {
+            return mock(MedicamentScraperService.class);
+        }
+
+        @Bean
+        ExportService exportService() {
+            return mock(ExportService.class);
+        }
+
+        @Bean
+        MedicamentController medicamentController(MedicamentScraperService medicamentScraperService,
+                                                  ExportService exportService) {
+            return new MedicamentController(mock(MedicamentService.class), mock(ExcelLoaderService.class),
+                    medicamentScraperService, mock(MedicamentRepository.class), mock(MedicamentImportService.class),
+                    exportService);
+        }
+
+        @Bean
+        CommandeController commandeController(ExportService exportService) {
+            return new CommandeController(mock(CommandeService.class), exportService);
+        }
+    }
+}
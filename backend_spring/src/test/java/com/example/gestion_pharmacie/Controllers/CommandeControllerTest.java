@@ -1,29 +1,43 @@
 package com.example.gestion_pharmacie.Controllers;
 
+import com.example.gestion_pharmacie.DTO.CommandeCursor;
+import com.example.gestion_pharmacie.DTO.CommandePage;
 import com.example.gestion_pharmacie.DTO.CommandeResponseDto;
+import com.example.gestion_pharmacie.DTO.CommandeSearch;
 import com.example.gestion_pharmacie.DTO.CreateCommandeRequest;
 import com.example.gestion_pharmacie.Services.CommandeService;
+import com.example.gestion_pharmacie.Services.ExportFormat;
+import com.example.gestion_pharmacie.Services.ExportService;
 import com.example.gestion_pharmacie.entites.StatutCommande;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 class CommandeControllerTest {
@@ -31,6 +45,9 @@ class CommandeControllerTest {
     @Mock
     private CommandeService commandeService;
 
+    @Mock
+    private ExportService exportService;
+
     @InjectMocks
     private CommandeController commandeController;
 
@@ -101,6 +118,84 @@ class CommandeControllerTest {
         verify(commandeService, times(1)).getAllCommandes();
     }
 
+    @Test
+    void testGetCommandesForCurrentFournisseur_Page() throws Exception {
+        // Arrange
+        CommandeResponseDto dto = new CommandeResponseDto();
+        dto.setId(7L);
+        String cursor = new CommandeCursor(LocalDateTime.of(2024, 3, 1, 10, 0), 7L).encode();
+        when(commandeService.getCommandesPageForCurrentFournisseur(any(CommandeSearch.class)))
+                .thenReturn(new CommandePage(List.of(dto), cursor));
+
+        // Act & Assert
+        mockMvc.perform(get("/commandes/current_fournisseur")
+                        .param("size", "1")
+                        .param("statut", "LIVREE")
+                        .param("from", "2024-01-01T00:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(7))
+                .andExpect(header().string(CommandeController.NEXT_CURSOR_HEADER, cursor));
+
+        ArgumentCaptor<CommandeSearch> search = ArgumentCaptor.forClass(CommandeSearch.class);
+        verify(commandeService).getCommandesPageForCurrentFournisseur(search.capture());
+        assertEquals(1, search.getValue().getSize());
+        assertEquals(StatutCommande.LIVREE, search.getValue().getStatut());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 0, 0), search.getValue().getFrom());
+        assertNull(search.getValue().getAfter());
+        verify(commandeService, never()).getCommandesForCurrentFournisseur();
+    }
+
+    @Test
+    void testGetAllCommands_CursorIsDecodedAndLastPageHasNoHeader() throws Exception {
+        // Arrange
+        CommandeCursor cursor = new CommandeCursor(LocalDateTime.of(2024, 3, 1, 10, 0), 42L);
+        when(commandeService.getCommandesPage(any(CommandeSearch.class)))
+                .thenReturn(new CommandePage(List.of(), null));
+
+        // Act & Assert
+        mockMvc.perform(get("/commandes/all").param("cursor", cursor.encode()))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(CommandeController.NEXT_CURSOR_HEADER));
+
+        ArgumentCaptor<CommandeSearch> search = ArgumentCaptor.forClass(CommandeSearch.class);
+        verify(commandeService).getCommandesPage(search.capture());
+        assertEquals(cursor, search.getValue().getAfter());
+        assertEquals(CommandeService.DEFAULT_PAGE_SIZE, search.getValue().getSize());
+    }
+
+    @Test
+    void testGetCommandesForCurrentPharmacien_InvalidCursor() throws Exception {
+        mockMvc.perform(get("/commandes/current_pharmacien").param("cursor", "pas-un-curseur"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(commandeService);
+    }
+
+    @Test
+    void testExportCommandes() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write("[{\"id\":1}]".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(exportService).exportCommandes(any(), eq(ExportFormat.JSON));
+
+        MvcResult result = mockMvc.perform(get("/commandes/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1));
+        verify(commandeService, never()).getAllCommandes();
+    }
+
+    @Test
+    void testExportCommandes_UnknownFormat() throws Exception {
+        mockMvc.perform(get("/commandes/export").param("format", "XML"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(exportService);
+    }
+
     @Test
     void testGetCommandeById() throws Exception {
         // Arrange
@@ -1,26 +1,41 @@
 package com.example.gestion_pharmacie.Controllers;
 
+import com.example.gestion_pharmacie.DTO.ImportResultDto;
 import com.example.gestion_pharmacie.Repositorys.MedicamentRepository;
 import com.example.gestion_pharmacie.Services.ExcelLoaderService;
+import com.example.gestion_pharmacie.Services.ExportFormat;
+import com.example.gestion_pharmacie.Services.ExportService;
+import com.example.gestion_pharmacie.Services.MedicamentImportService;
 import com.example.gestion_pharmacie.Services.MedicamentScraperService;
 import com.example.gestion_pharmacie.Services.MedicamentService;
 import com.example.gestion_pharmacie.entites.Medicament;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -28,7 +43,9 @@ import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 class MedicamentControllerTest {
@@ -45,6 +62,12 @@ class MedicamentControllerTest {
     @Mock
     private MedicamentRepository medicamentRepository;
 
+    @Mock
+    private MedicamentImportService medicamentImportService;
+
+    @Mock
+    private ExportService exportService;
+
     @InjectMocks
     private MedicamentController medicamentController;
 
@@ -163,14 +186,27 @@ class MedicamentControllerTest {
             createSampleMedicament(),
             createSampleMedicament()
         );
-        when(medicamentService.searchMedicaments("Doliprane")).thenReturn(medicaments);
+        when(medicamentService.searchMedicaments("Doliprane", 0, 20)).thenReturn(medicaments);
 
         // Act & Assert
         mockMvc.perform(get("/medicaments/search")
                 .param("nom", "Doliprane"))
                 .andExpect(status().isOk());
 
-        verify(medicamentService, times(1)).searchMedicaments("Doliprane");
+        verify(medicamentService, times(1)).searchMedicaments("Doliprane", 0, 20);
+    }
+
+    @Test
+    void testSearchMedicaments_Paginated() throws Exception {
+        when(medicamentService.searchMedicaments("Doliprane", 2, 10)).thenReturn(List.of(createSampleMedicament()));
+
+        mockMvc.perform(get("/medicaments/search")
+                .param("nom", "Doliprane")
+                .param("page", "2")
+                .param("size", "10"))
+                .andExpect(status().isOk());
+
+        verify(medicamentService, times(1)).searchMedicaments("Doliprane", 2, 10);
     }
 
     @Test
@@ -251,6 +287,73 @@ class MedicamentControllerTest {
         verify(medicamentScraperService, times(1)).progressiveSearch("Doliprane");
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void testProgressiveSearchStream() throws Exception {
+        Medicament medicament = createSampleMedicament();
+        when(medicamentScraperService.progressiveSearchAsync(eq("Doliprane"), any())).thenAnswer(invocation -> {
+            invocation.<Consumer<Medicament>>getArgument(1).accept(medicament);
+            return CompletableFuture.completedFuture(List.of(medicament));
+        });
+
+        MvcResult result = mockMvc.perform(get("/medicaments/progressive-search/stream")
+                .param("query", "Doliprane"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = result.getResponse().getContentAsString();
+        assertTrue(body.contains("event:medicament"));
+        assertTrue(body.contains("event:done"));
+        verify(medicamentScraperService, times(1)).progressiveSearchAsync(eq("Doliprane"), any());
+    }
+
+    @Test
+    void testProgressiveSearchStream_TimeoutCancelsSearch() throws Exception {
+        CompletableFuture<List<Medicament>> search = new CompletableFuture<>();
+        when(medicamentScraperService.progressiveSearchAsync(eq("Doliprane"), any())).thenReturn(search);
+
+        MvcResult result = mockMvc.perform(get("/medicaments/progressive-search/stream")
+                .param("query", "Doliprane"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+
+        assertTrue(search.isCancelled());
+    }
+
+    @Test
+    void testExportMedicaments_Ndjson() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write("{\"id\":1}\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(exportService).exportMedicaments(any(), eq(ExportFormat.NDJSON));
+
+        MvcResult result = mockMvc.perform(get("/medicaments/export").param("format", "NDJSON"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"id\":1}\n"));
+        verify(medicamentService, never()).getAllMedicaments();
+    }
+
+    @Test
+    void testExportMedicaments_DefaultsToJsonArray() throws Exception {
+        MvcResult result = mockMvc.perform(get("/medicaments/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+        verify(exportService, times(1)).exportMedicaments(any(), eq(ExportFormat.JSON));
+    }
+
     @Test
     void testGetDetailedMedicamentInfo() throws Exception {
         // Arrange
@@ -270,6 +373,38 @@ class MedicamentControllerTest {
         verify(medicamentScraperService, times(1)).getDetailedMedicamentInfo(anyString());
     }
 
+    @Test
+    void testImportMedicaments() throws Exception {
+        // Arrange
+        MockMultipartFile file = new MockMultipartFile("file", "catalogue.csv", "text/csv",
+                "nom;quantite\nDoliprane;10\n".getBytes());
+        ImportResultDto result = new ImportResultDto();
+        result.setTotalRows(1);
+        result.setImported(1);
+        when(medicamentImportService.importMedicaments(any())).thenReturn(result);
+
+        // Act & Assert
+        mockMvc.perform(multipart("/medicaments/import").file(file))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.rejected").value(0));
+
+        verify(medicamentImportService, times(1)).importMedicaments(any());
+    }
+
+    @Test
+    void testImportMedicamentsUnsupportedFormat() throws Exception {
+        // Arrange
+        MockMultipartFile file = new MockMultipartFile("file", "catalogue.pdf", "application/pdf", new byte[]{1});
+        when(medicamentImportService.importMedicaments(any()))
+                .thenThrow(new IllegalArgumentException("Format de fichier non supporté"));
+
+        // Act & Assert
+        mockMvc.perform(multipart("/medicaments/import").file(file))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.erreur").value("Format de fichier non supporté"));
+    }
+
     private Medicament createSampleMedicament() {
         Medicament medicament = new Medicament();
         medicament.setId(1L);
@@ -0,0 +1,133 @@
+package com.example.gestion_pharmacie.Security;
+
+import com.example.gestion_pharmacie.Repositorys.UtilisateurRepository;
+import com.example.gestion_pharmacie.entites.Fournisseur;
+import com.example.gestion_pharmacie.entites.Pharmacien;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CurrentActorTest {
+
+    private UtilisateurRepository utilisateurRepository;
+    private CurrentActor currentActor;
+    private Pharmacien pharmacien;
+
+    @BeforeEach
+    void setUp() {
+        utilisateurRepository = mock(UtilisateurRepository.class);
+        currentActor = new CurrentActor(utilisateurRepository);
+
+        pharmacien = new Pharmacien();
+        pharmacien.setId(1L);
+        pharmacien.setEmail("pharma@example.com");
+        pharmacien.setVille("Rabat");
+        when(utilisateurRepository.findByEmail("pharma@example.com")).thenReturn(Optional.of(pharmacien));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("pharma@example.com", null, List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void getPharmacien_LoadsUserOncePerRequest() {
+        startRequest();
+        currentActor.bind("pharma@example.com");
+
+        assertSame(pharmacien, currentActor.getPharmacien());
+        assertSame(pharmacien, currentActor.getUtilisateur());
+        assertEquals("Rabat", currentActor.findUtilisateur().map(u -> u.getVille()).orElse(""));
+
+        verify(utilisateurRepository, times(1)).findByEmail("pharma@example.com");
+    }
+
+    @Test
+    void getPharmacien_NewRequestLoadsAgain() {
+        startRequest();
+        currentActor.getPharmacien();
+        startRequest();
+        currentActor.getPharmacien();
+
+        verify(utilisateurRepository, times(2)).findByEmail("pharma@example.com");
+    }
+
+    @Test
+    void getFournisseur_WrongSubtypeFails() {
+        startRequest();
+        currentActor.bind("pharma@example.com");
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> currentActor.getFournisseur());
+        assertEquals("Fournisseur non trouvé", exception.getMessage());
+        assertThrows(RuntimeException.class, () -> currentActor.getClient());
+        verify(utilisateurRepository, times(1)).findByEmail("pharma@example.com");
+    }
+
+    @Test
+    void getFournisseur_ResolvesSubtype() {
+        Fournisseur fournisseur = new Fournisseur();
+        fournisseur.setEmail("fournisseur@example.com");
+        when(utilisateurRepository.findByEmail("fournisseur@example.com")).thenReturn(Optional.of(fournisseur));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("fournisseur@example.com", null, List.of()));
+        startRequest();
+        currentActor.bind("fournisseur@example.com");
+
+        assertSame(fournisseur, currentActor.getFournisseur());
+        assertEquals("fournisseur@example.com", currentActor.getEmail());
+    }
+
+    @Test
+    void getUtilisateur_FollowsAuthenticationChanges() {
+        Fournisseur fournisseur = new Fournisseur();
+        fournisseur.setEmail("fournisseur@example.com");
+        when(utilisateurRepository.findByEmail("fournisseur@example.com")).thenReturn(Optional.of(fournisseur));
+        startRequest();
+        currentActor.bind("pharma@example.com");
+        currentActor.getUtilisateur();
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("fournisseur@example.com", null, List.of()));
+
+        assertSame(fournisseur, currentActor.getUtilisateur());
+    }
+
+    @Test
+    void getUtilisateur_UnknownUserIsRememberedForTheRequest() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("ghost@example.com", null, List.of()));
+        startRequest();
+        currentActor.bind("ghost@example.com");
+        when(utilisateurRepository.findByEmail("ghost@example.com")).thenReturn(Optional.empty());
+
+        assertTrue(currentActor.findUtilisateur().isEmpty());
+        assertThrows(RuntimeException.class, () -> currentActor.getUtilisateur());
+        verify(utilisateurRepository, times(1)).findByEmail("ghost@example.com");
+    }
+
+    @Test
+    void getUtilisateur_OutsideRequestLooksUpEveryTime() {
+        currentActor.getUtilisateur();
+        currentActor.getUtilisateur();
+
+        verify(utilisateurRepository, times(2)).findByEmail("pharma@example.com");
+    }
+
+    private static void startRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.DTO.AlerteSeuilRow;
+import com.example.gestion_pharmacie.DTO.StockNiveau;
+import com.example.gestion_pharmacie.Repositorys.AlerteRepository;
+import com.example.gestion_pharmacie.Repositorys.MedicamentRepository;
+import com.example.gestion_pharmacie.entites.Alerte;
+import com.example.gestion_pharmacie.entites.Medicament;
+import com.example.gestion_pharmacie.entites.Utilisateur;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AlerteEngineTest {
+
+    @Mock
+    private AlerteRepository alerteRepository;
+
+    @Mock
+    private MedicamentRepository medicamentRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private SimpleMeterRegistry meterRegistry;
+    private AlerteEngine engine;
+    private final Map<Long, Integer> stock = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        engine = new AlerteEngine(alerteRepository, medicamentRepository, eventPublisher, meterRegistry, 2);
+
+        stock.put(1L, 50);
+        stock.put(2L, 3);
+        lenient().when(medicamentRepository.findStockNiveaux(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream()
+                    .filter(stock::containsKey)
+                    .map(id -> new StockNiveau(id, "Medicament " + id, stock.get(id)))
+                    .toList();
+        });
+        // Alerte 10 watches medicaments 1 and 2 at 10 units, alerte 20 watches medicament 1 at 5 units
+        when(alerteRepository.findAllSeuils()).thenReturn(List.of(
+                new AlerteSeuilRow(10L, 100L, 10, "Stock bas", 1L),
+                new AlerteSeuilRow(10L, 100L, 10, "Stock bas", 2L),
+                new AlerteSeuilRow(20L, 100L, 5, "Rupture", 1L)));
+        engine.reload();
+    }
+
+    @Test
+    void reload_StockAlreadyLowDoesNotFire() {
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+        assertEquals(2.0, meterRegistry.get("alerte.engine.watched").gauge().value());
+    }
+
+    @Test
+    void stockChange_FiresOncePerCrossingAndRearmsAboveTheThreshold() throws Exception {
+        stock.put(1L, 8);
+        engine.onStockChange(new StockChangeEvent(List.of(1L)));
+        assertTrue(engine.processPending(0, TimeUnit.SECONDS));
+
+        AlerteDeclencheeEvent event = capturedEvents(1).get(0);
+        assertEquals(10L, event.getAlerteId());
+        assertEquals(100L, event.getUtilisateurId());
+        assertEquals(1L, event.getMedicamentId());
+        assertEquals(8, event.getQuantite());
+        assertEquals("Stock bas", event.getMessage());
+
+        // Still below: no new event
+        stock.put(1L, 7);
+        engine.onStockChange(new StockChangeEvent(List.of(1L)));
+        engine.processPending(0, TimeUnit.SECONDS);
+        verify(eventPublisher, times(1)).publishEvent(any(Object.class));
+
+        // Back above then below both thresholds: both alertes fire
+        stock.put(1L, 40);
+        engine.onStockChange(new StockChangeEvent(List.of(1L)));
+        engine.processPending(0, TimeUnit.SECONDS);
+        stock.put(1L, 4);
+        engine.onStockChange(new StockChangeEvent(List.of(1L)));
+        engine.processPending(0, TimeUnit.SECONDS);
+
+        List<AlerteDeclencheeEvent> events = capturedEvents(3);
+        assertEquals(List.of(10L, 20L), events.subList(1, 3).stream().map(AlerteDeclencheeEvent::getAlerteId).sorted().toList());
+        assertEquals(3.0, meterRegistry.get("alerte.engine.triggered").counter().count());
+        assertEquals(4, meterRegistry.get("alerte.engine.lag").timer().count());
+    }
+
+    @Test
+    void stockChange_UnwatchedMedicamentsAreNotQueued() throws Exception {
+        engine.onStockChange(new StockChangeEvent(List.of(3L, 4L)));
+
+        assertEquals(0, engine.getQueueDepth());
+        assertFalse(engine.processPending(0, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void fullQueue_DropsAndTheSweepCatchesUp() {
+        stock.put(1L, 1);
+        engine.onStockChange(new StockChangeEvent(List.of(2L)));
+        engine.onStockChange(new StockChangeEvent(List.of(2L)));
+        engine.onStockChange(new StockChangeEvent(List.of(1L)));
+
+        assertEquals(2, engine.getQueueDepth());
+        assertEquals(2.0, meterRegistry.get("alerte.engine.queue.depth").gauge().value());
+        assertEquals(1.0, meterRegistry.get("alerte.engine.dropped").counter().count());
+
+        engine.sweep();
+
+        assertEquals(List.of(10L, 20L), capturedEvents(2).stream().map(AlerteDeclencheeEvent::getAlerteId).sorted().toList());
+    }
+
+    @Test
+    void watchAndUnwatch_OutsideATransactionApplyAtOnce() throws Exception {
+        Utilisateur utilisateur = new Utilisateur();
+        utilisateur.setId(200L);
+        Medicament medicament = new Medicament();
+        medicament.setId(5L);
+        Alerte alerte = new Alerte();
+        alerte.setId(30L);
+        alerte.setMinimumQuantite(20);
+        alerte.setUtilisateur(utilisateur);
+        alerte.setMedicaments(List.of(medicament));
+        stock.put(5L, 12);
+
+        engine.watch(alerte);
+        engine.processPending(0, TimeUnit.SECONDS);
+
+        assertEquals(30L, capturedEvents(1).get(0).getAlerteId());
+
+        engine.unwatch(30L);
+        stock.put(5L, 50);
+        engine.onStockChange(new StockChangeEvent(List.of(5L)));
+        assertEquals(0, engine.getQueueDepth());
+    }
+
+    @Test
+    void watch_DoesNotWaitForASweepInProgress() throws Exception {
+        CountDownLatch sweepQuerying = new CountDownLatch(1);
+        CountDownLatch releaseSweep = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            sweepQuerying.countDown();
+            assertTrue(releaseSweep.await(10, TimeUnit.SECONDS));
+            return List.of();
+        }).when(medicamentRepository).findStockNiveaux(anyCollection());
+        Medicament medicament = new Medicament();
+        medicament.setId(5L);
+        Alerte alerte = new Alerte();
+        alerte.setId(30L);
+        alerte.setMinimumQuantite(20);
+        alerte.setMedicaments(List.of(medicament));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> sweep = executor.submit(engine::sweep);
+            assertTrue(sweepQuerying.await(10, TimeUnit.SECONDS));
+
+            // The sweep is still waiting on its query: indexing the alerte goes through regardless
+            executor.submit(() -> engine.watch(alerte)).get(5, TimeUnit.SECONDS);
+            assertEquals(3.0, meterRegistry.get("alerte.engine.watched").gauge().value());
+
+            releaseSweep.countDown();
+            sweep.get(10, TimeUnit.SECONDS);
+        } finally {
+            releaseSweep.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private List<AlerteDeclencheeEvent> capturedEvents(int expected) {
+        ArgumentCaptor<AlerteDeclencheeEvent> captor = ArgumentCaptor.forClass(AlerteDeclencheeEvent.class);
+        verify(eventPublisher, times(expected)).publishEvent(captor.capture());
+        return captor.getAllValues();
+    }
+}
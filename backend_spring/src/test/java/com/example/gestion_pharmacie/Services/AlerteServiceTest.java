@@ -10,14 +10,17 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
@@ -32,6 +35,12 @@ class AlerteServiceTest {
     @Mock
     private UtilisateurService utilisateurService;
 
+    @Mock
+    private AlerteEngine alerteEngine;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private AlerteService alerteService;
 
@@ -76,8 +85,7 @@ class AlerteServiceTest {
     void creerAlerte_Success() {
         // Arrange
         List<Long> medicamentIds = Arrays.asList(1L, 2L);
-        when(medicamentRepository.findById(1L)).thenReturn(Optional.of(medicament1));
-        when(medicamentRepository.findById(2L)).thenReturn(Optional.of(medicament2));
+        when(medicamentRepository.findAllById(anyIterable())).thenReturn(List.of(medicament1, medicament2));
         when(alerteRepository.save(any(Alerte.class))).thenReturn(alerte);
 
         // Act
@@ -89,14 +97,17 @@ class AlerteServiceTest {
         assertEquals(5, result.getMinimumQuantite());
         assertEquals(2, result.getMedicaments().size());
         verify(alerteRepository, times(1)).save(any(Alerte.class));
+        verify(alerteEngine, times(1)).watch(any(Alerte.class));
+        // All the medicaments in one query
+        verify(medicamentRepository, times(1)).findAllById(Set.of(1L, 2L));
+        verify(medicamentRepository, never()).findById(anyLong());
     }
 
     @Test
     void creerAlerte_MedicamentNotFound() {
         // Arrange
         List<Long> medicamentIds = Arrays.asList(1L, 99L);
-        when(medicamentRepository.findById(1L)).thenReturn(Optional.of(medicament1));
-        when(medicamentRepository.findById(99L)).thenReturn(Optional.empty());
+        when(medicamentRepository.findAllById(anyIterable())).thenReturn(List.of(medicament1));
 
         // Act & Assert
         Exception exception = assertThrows(RuntimeException.class, () -> {
@@ -118,8 +129,7 @@ class AlerteServiceTest {
         
         List<Long> medicamentIds = Arrays.asList(1L, 3L);
         
-        when(medicamentRepository.findById(1L)).thenReturn(Optional.of(medicament1));
-        when(medicamentRepository.findById(3L)).thenReturn(Optional.of(notOwnedMedicament));
+        when(medicamentRepository.findAllById(anyIterable())).thenReturn(List.of(medicament1, notOwnedMedicament));
 
         // Act & Assert
         Exception exception = assertThrows(RuntimeException.class, () -> {
@@ -129,13 +139,35 @@ class AlerteServiceTest {
         assertTrue(exception.getMessage().contains("ne pouvez ajouter que vos propres médicaments"));
     }
 
+    @Test
+    void creerAlerte_ReportsEveryBadIdAtOnce() {
+        // Arrange
+        Utilisateur otherUser = new Utilisateur();
+        otherUser.setId(2L);
+
+        Medicament notOwnedMedicament = new Medicament();
+        notOwnedMedicament.setId(3L);
+        notOwnedMedicament.setUtilisateur(otherUser);
+
+        List<Long> medicamentIds = Arrays.asList(98L, 1L, 3L, 99L);
+        when(medicamentRepository.findAllById(anyIterable())).thenReturn(List.of(medicament1, notOwnedMedicament));
+
+        // Act & Assert
+        Exception exception = assertThrows(RuntimeException.class, () -> {
+            alerteService.creerAlerte("Test Alert", 5, medicamentIds);
+        });
+
+        assertTrue(exception.getMessage().contains("Médicament non trouvé avec ID: 98, 99"));
+        assertTrue(exception.getMessage().contains("ne pouvez ajouter que vos propres médicaments à l'alerte. Médicament ID: 3"));
+        verify(alerteRepository, never()).save(any(Alerte.class));
+    }
+
     @Test
     void modifierAlerte_Success() {
         // Arrange
         List<Long> medicamentIds = Arrays.asList(1L, 2L);
         when(alerteRepository.findById(1L)).thenReturn(Optional.of(alerte));
-        when(medicamentRepository.findById(1L)).thenReturn(Optional.of(medicament1));
-        when(medicamentRepository.findById(2L)).thenReturn(Optional.of(medicament2));
+        when(medicamentRepository.findAllById(anyIterable())).thenReturn(List.of(medicament2, medicament1));
         when(alerteRepository.save(any(Alerte.class))).thenReturn(alerte);
 
         // Act
@@ -145,7 +177,10 @@ class AlerteServiceTest {
         assertNotNull(result);
         assertEquals("Updated Alert", result.getMessage());
         assertEquals(10, result.getMinimumQuantite());
+        // Requested order is kept whatever the order of the rows
+        assertEquals(List.of(medicament1, medicament2), result.getMedicaments());
         verify(alerteRepository, times(1)).save(any(Alerte.class));
+        verify(alerteEngine, times(1)).watch(any(Alerte.class));
     }
 
     @Test
@@ -191,6 +226,7 @@ class AlerteServiceTest {
 
         // Assert
         verify(alerteRepository, times(1)).delete(alerte);
+        verify(alerteEngine, times(1)).unwatch(1L);
     }
 
     @Test
@@ -0,0 +1,217 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.Security.CurrentActor;
+import com.example.gestion_pharmacie.entites.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Chat context snapshots against a real schema: a repeated chat turn does not touch the database, each
+ * domain event only rebuilds the sections it affects, and list sections are capped.
+ */
+@TestPropertySource(properties = "chat.context.max-items=5")
+@Import({DatabaseQueryService.class, ChatContextStore.class, IntentClassifier.class, SimpleMeterRegistry.class})
+public class ChatContextSnapshotTest extends JpaSliceTest {
+
+    // Asks for medicaments, alertes and paniers, on top of the commandes a pharmacist always gets
+    private static final String QUESTION = "quel stock de medicament, quelles alertes et quel panier";
+
+    @Autowired
+    private DatabaseQueryService databaseQueryService;
+
+    @Autowired
+    private ChatContextStore chatContextStore;
+
+    @MockitoBean
+    private CurrentActor currentActor;
+
+    private Pharmacien pharmacien;
+    private Fournisseur fournisseur;
+    private final List<Medicament> medicaments = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        pharmacien = persistPharmacien("pharmacien@example.com");
+        fournisseur = persistFournisseur("fournisseur@example.com");
+
+        for (int i = 0; i < 8; i++) {
+            medicaments.add(entityManager.persist(medicament("Medicament " + i, 100, pharmacien)));
+        }
+        Alerte alerte = new Alerte();
+        alerte.setMessage("Stock bas");
+        alerte.setMinimumQuantite(5);
+        alerte.setUtilisateur(pharmacien);
+        alerte.setMedicaments(List.of(medicaments.get(0)));
+        entityManager.persist(alerte);
+
+        Panier panier = new Panier();
+        panier.setPharmacien(pharmacien);
+        panier.setDateCreation(LocalDateTime.now());
+        entityManager.persist(panier);
+
+        for (int i = 0; i < 7; i++) {
+            Commande commande = commande(pharmacien, fournisseur);
+            commande.setDateCommande(LocalDateTime.now().minusDays(7 - i));
+            entityManager.persist(commande);
+        }
+        flushAndClear();
+
+        authenticate("pharmacien@example.com");
+        when(currentActor.findUtilisateur()).thenReturn(Optional.of(pharmacien));
+    }
+
+    @Test
+    void secondTurn_ReadsTheSnapshotWithoutStatements() {
+        Map<String, Object> first = turn();
+        assertTrue(statistics.getPrepareStatementCount() > 0);
+
+        Map<String, Object> second = turn();
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(first, second);
+    }
+
+    @Test
+    void listSectionsAreCapped() {
+        Map<String, Object> data = turn();
+
+        assertEquals(5, medicaments(data).size());
+        List<?> commandes = (List<?>) data.get("commandes");
+        assertEquals(5, commandes.size());
+        // Most recent commandes first
+        assertTrue(commandes.get(0).toString().startsWith("Commande: " + lastCommandeId()));
+    }
+
+    @Test
+    void stockChange_RebuildsOnlyTheSectionsShowingTheMedicament() {
+        turn();
+        Medicament vendu = entityManager.find(Medicament.class, medicaments.get(1).getId());
+        vendu.setQuantite(42);
+        entityManager.flush();
+        entityManager.clear();
+
+        chatContextStore.onStockChange(new StockChangeEvent(List.of(vendu.getId())));
+        Map<String, Object> data = turn();
+
+        assertEquals("42", medicaments(data).get(1).get("quantite"));
+        assertEquals(1, statistics.getQueryExecutionCount());
+    }
+
+    @Test
+    void stockChange_OfAnUnshownMedicamentKeepsTheSnapshot() {
+        turn();
+
+        chatContextStore.onStockChange(new StockChangeEvent(List.of(medicaments.get(7).getId())));
+        turn();
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void alerteDeclenchee_RebuildsTheOwnersAlertes() {
+        turn();
+        // Stock edited outside of StockService: only the alert engine's sweep reports it
+        Medicament surveille = entityManager.find(Medicament.class, medicaments.get(0).getId());
+        surveille.setQuantite(3);
+        entityManager.flush();
+        entityManager.clear();
+
+        chatContextStore.onAlerteDeclenchee(new AlerteDeclencheeEvent(alerteId(), pharmacien.getId(), "Stock bas",
+                5, surveille.getId(), surveille.getNom(), 3, LocalDateTime.now()));
+        Map<String, Object> data = turn();
+
+        List<?> alertes = (List<?>) data.get("alertes");
+        assertTrue(alertes.get(0).toString().endsWith("| Declenchee: Medicament 0 (3)"));
+        assertEquals(1, statistics.getQueryExecutionCount());
+    }
+
+    @Test
+    void stockChange_OfAWatchedMedicamentRebuildsTheAlertes() {
+        turn();
+        Medicament surveille = entityManager.find(Medicament.class, medicaments.get(0).getId());
+        surveille.setQuantite(2);
+        entityManager.flush();
+        entityManager.clear();
+
+        chatContextStore.onStockChange(new StockChangeEvent(List.of(surveille.getId())));
+        Map<String, Object> data = turn();
+
+        assertTrue(data.get("alertes").toString().contains("| Declenchee: Medicament 0 (2)"));
+        assertEquals("2", medicaments(data).get(0).get("quantite"));
+    }
+
+    @Test
+    void panierChange_RebuildsOnlyThePaniers() {
+        turn();
+
+        chatContextStore.onPanierChange(new PanierChangeEvent(pharmacien.getId()));
+        Map<String, Object> data = turn();
+
+        assertEquals(1, statistics.getQueryExecutionCount());
+        assertEquals(1, ((List<?>) data.get("paniers")).size());
+    }
+
+    @Test
+    void commandeChange_RebuildsBothParties() {
+        turn();
+        Commande commande = commande(entityManager.find(Pharmacien.class, pharmacien.getId()),
+                entityManager.find(Fournisseur.class, fournisseur.getId()));
+        commande.setStatut(StatutCommande.EN_COURS_DE_CREATION);
+        entityManager.persistAndFlush(commande);
+        entityManager.clear();
+
+        chatContextStore.onCommandeChange(new CommandeChangeEvent(pharmacien.getId(), fournisseur.getId(),
+                CommandeChangeEvent.Change.CREATION));
+        Map<String, Object> data = turn();
+
+        List<?> commandes = (List<?>) data.get("commandes");
+        assertTrue(commandes.get(0).toString().startsWith("Commande: " + commande.getId()));
+    }
+
+    @Test
+    void otherUsersKeepTheirSnapshot() {
+        turn();
+
+        chatContextStore.onAlerteChange(new AlerteChangeEvent(fournisseur.getId(), List.of()));
+        chatContextStore.onPanierChange(new PanierChangeEvent(fournisseur.getId()));
+        turn();
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    private Map<String, Object> turn() {
+        statistics.clear();
+        return databaseQueryService.getRelevantData(QUESTION);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, String>> medicaments(Map<String, Object> data) {
+        return (List<Map<String, String>>) data.get("medicaments");
+    }
+
+    private Long alerteId() {
+        return entityManager.getEntityManager()
+                .createQuery("select a.id from Alerte a", Long.class)
+                .getSingleResult();
+    }
+
+    private Long lastCommandeId() {
+        return entityManager.getEntityManager()
+                .createQuery("select max(c.id) from Commande c", Long.class)
+                .getSingleResult();
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.DTO.CommandeCursor;
+import com.example.gestion_pharmacie.DTO.CommandePage;
+import com.example.gestion_pharmacie.DTO.CommandeResponseDto;
+import com.example.gestion_pharmacie.DTO.CommandeSearch;
+import com.example.gestion_pharmacie.entites.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Keyset pages of the commande history against a real schema: order, filters, cursors and a statement
+ * count that does not depend on the position of the page.
+ */
+@Import({CommandeService.class, StockService.class})
+public class CommandePaginationTest extends JpaSliceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 8, 0);
+
+    @Autowired
+    private CommandeService commandeService;
+
+    @MockitoBean
+    private UtilisateurService utilisateurService;
+
+    private Pharmacien pharmacien;
+    private Fournisseur fournisseur;
+    private Fournisseur autreFournisseur;
+    private Medicament medicament;
+    private final List<Long> fournisseurIdsNewestFirst = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        pharmacien = persistPharmacien("pharmacien@example.com");
+        fournisseur = persistFournisseur("fournisseur@example.com");
+        autreFournisseur = persistFournisseur("autre@example.com");
+        medicament = entityManager.persist(medicament("Doliprane", 100, fournisseur));
+
+        // 25 commandes one day apart, the 12th and 13th on the same instant:
+        // insertion order then matches the (dateCommande desc, id desc) order of the pages
+        for (int i = 0; i < 25; i++) {
+            LocalDateTime date = START.plusDays(i == 13 ? 12 : i);
+            StatutCommande statut = i % 3 == 0 ? StatutCommande.LIVREE : StatutCommande.EN_ATTENTE;
+            fournisseurIdsNewestFirst.add(0, persistCommande(fournisseur, date, statut).getId());
+        }
+        persistCommande(autreFournisseur, START.plusDays(30), StatutCommande.EN_ATTENTE);
+        flushAndClear();
+
+        when(utilisateurService.getCurrentPharmacien()).thenReturn(pharmacien);
+        when(utilisateurService.getCurrentFournisseur()).thenReturn(fournisseur);
+    }
+
+    @Test
+    void pagesWalkTheWholeHistoryNewestFirstWithoutGapsOrDuplicates() {
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CommandeSearch search = search(10, cursor);
+            CommandePage page = commandeService.getCommandesPageForCurrentFournisseur(search);
+            page.getCommandes().forEach(c -> seen.add(c.getId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(fournisseurIdsNewestFirst, seen);
+    }
+
+    @Test
+    void pageCostsTwoStatementsWhateverItsDepth() {
+        statistics.clear();
+        CommandePage first = commandeService.getCommandesPage(search(5, null));
+        assertEquals(2, statistics.getPrepareStatementCount());
+
+        CommandePage page = first;
+        for (int i = 0; i < 3; i++) {
+            page = commandeService.getCommandesPage(search(5, page.getNextCursor()));
+        }
+        entityManager.clear();
+        statistics.clear();
+        commandeService.getCommandesPage(search(5, page.getNextCursor()));
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void filtersByStatutAndDateRange() {
+        CommandeSearch search = search(100, null);
+        search.setStatut(StatutCommande.LIVREE);
+        search.setFrom(START.plusDays(3));
+        search.setTo(START.plusDays(12));
+
+        List<CommandeResponseDto> result = commandeService.getCommandesPageForCurrentFournisseur(search).getCommandes();
+
+        // days 3, 6 and 9; day 12 is excluded by the upper bound
+        assertEquals(List.of(START.plusDays(9), START.plusDays(6), START.plusDays(3)),
+                result.stream().map(CommandeResponseDto::getDateCommande).toList());
+        assertTrue(result.stream().allMatch(c -> "LIVREE".equals(c.getStatut())));
+        assertEquals(1, result.get(0).getLignesCommande().size());
+    }
+
+    @Test
+    void adminPagesSpanAllFournisseursAndLastPageHasNoCursor() {
+        CommandePage page = commandeService.getCommandesPage(search(100, null));
+
+        assertEquals(26, page.getCommandes().size());
+        assertEquals(autreFournisseur.getId(), page.getCommandes().get(0).getFournisseur().getId());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void cursorPastTheEndReturnsAnEmptyPage() {
+        CommandeCursor beforeEverything = new CommandeCursor(START.minusDays(1), 1L);
+
+        CommandePage page = commandeService.getCommandesPage(search(10, beforeEverything.encode()));
+
+        assertTrue(page.getCommandes().isEmpty());
+        assertNull(page.getNextCursor());
+    }
+
+    private CommandeSearch search(int size, String cursor) {
+        CommandeSearch search = new CommandeSearch();
+        search.setSize(size);
+        search.setAfter(cursor != null ? CommandeCursor.decode(cursor) : null);
+        return search;
+    }
+
+    private Commande persistCommande(Fournisseur f, LocalDateTime date, StatutCommande statut) {
+        Commande commande = commande(pharmacien, f);
+        commande.setDateCommande(date);
+        commande.setStatut(statut);
+        addLigne(commande, medicament, 1);
+        return entityManager.persist(commande);
+    }
+}
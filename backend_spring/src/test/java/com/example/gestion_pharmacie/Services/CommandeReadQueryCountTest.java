@@ -0,0 +1,94 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.DTO.CommandeResponseDto;
+import com.example.gestion_pharmacie.entites.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks against a real schema that the commande list reads issue a fixed number of statements,
+ * whatever the number of commandes and lignes.
+ */
+@Import({CommandeService.class, StockService.class})
+public class CommandeReadQueryCountTest extends JpaSliceTest {
+
+    @Autowired
+    private CommandeService commandeService;
+
+    @MockitoBean
+    private UtilisateurService utilisateurService;
+
+    private Pharmacien pharmacien;
+    private Fournisseur fournisseur;
+
+    @BeforeEach
+    void setUp() {
+        pharmacien = persistPharmacien("pharmacien@example.com");
+        fournisseur = persistFournisseur("fournisseur@example.com");
+
+        when(utilisateurService.getCurrentPharmacien()).thenReturn(pharmacien);
+        when(utilisateurService.getCurrentFournisseur()).thenReturn(fournisseur);
+    }
+
+    @Test
+    void getCommandesForCurrentPharmacien_OneStatementWhateverTheSize() {
+        persistCommandes(2, 2);
+        assertEquals(1, countStatements(() -> commandeService.getCommandesForCurrentPharmacien()));
+
+        persistCommandes(10, 5);
+        assertEquals(1, countStatements(() -> commandeService.getCommandesForCurrentPharmacien()));
+    }
+
+    @Test
+    void getCommandesForCurrentFournisseur_OneStatementWhateverTheSize() {
+        persistCommandes(1, 1);
+        assertEquals(1, countStatements(() -> commandeService.getCommandesForCurrentFournisseur()));
+
+        persistCommandes(8, 4);
+        assertEquals(1, countStatements(() -> commandeService.getCommandesForCurrentFournisseur()));
+    }
+
+    @Test
+    void getAllCommandes_GroupsLignesPerCommande() {
+        persistCommandes(3, 2);
+        Commande vide = entityManager.persist(commande(pharmacien, fournisseur));
+        flushAndClear();
+
+        statistics.clear();
+        List<CommandeResponseDto> result = commandeService.getAllCommandes();
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(4, result.size());
+        for (int i = 0; i < 3; i++) {
+            CommandeResponseDto dto = result.get(i);
+            assertEquals("Nom Pharmacien", dto.getPharmacien().getNom());
+            assertEquals("Nom Fournisseur", dto.getFournisseur().getNom());
+            assertEquals(List.of(1, 2), dto.getLignesCommande().stream()
+                    .map(CommandeResponseDto.LigneCommandeResponseDto::getQuantite).toList());
+            assertEquals("Medicament 1", dto.getLignesCommande().get(0).getMedicament().getNom());
+        }
+        assertEquals(vide.getId(), result.get(3).getId());
+        assertTrue(result.get(3).getLignesCommande().isEmpty());
+    }
+
+    private void persistCommandes(int commandes, int lignesParCommande) {
+        for (int c = 0; c < commandes; c++) {
+            Commande commande = commande(pharmacien, fournisseur);
+            for (int l = 1; l <= lignesParCommande; l++) {
+                Medicament medicament = medicament("Medicament " + l, 100, fournisseur);
+                medicament.setPrix_hospitalier(10.0f * l);
+                medicament.setPrix_public(15.0f * l);
+                addLigne(commande, entityManager.persist(medicament), l);
+            }
+            entityManager.persist(commande);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.gestion_pharmacie.Services;
 
+import com.example.gestion_pharmacie.DTO.CommandeLigneRow;
 import com.example.gestion_pharmacie.DTO.CommandeResponseDto;
 import com.example.gestion_pharmacie.DTO.CreateCommandeRequest;
 import com.example.gestion_pharmacie.DTO.LigneCommandeDto;
@@ -10,9 +11,12 @@ import com.example.gestion_pharmacie.entites.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.test.context.ActiveProfiles;
@@ -20,10 +24,13 @@ import org.springframework.test.context.ActiveProfiles;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
@@ -43,12 +50,21 @@ public class CommandeServiceTest {
     @Mock
     private UtilisateurService utilisateurService;
 
+    @Mock
+    private StockService stockService;
+
     @Mock
     private SecurityContext securityContext;
 
     @Mock
     private Authentication authentication;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Captor
+    private ArgumentCaptor<List<Medicament>> nouveaux;
+
     @InjectMocks
     private CommandeService commandeService;
 
@@ -124,7 +140,7 @@ public class CommandeServiceTest {
         when(fournisseurRepository.findById(anyLong())).thenReturn(Optional.of(fournisseur));
         when(commandeRepository.save(any(Commande.class))).thenReturn(commande);
         when(commandeRepository.saveAndFlush(any(Commande.class))).thenReturn(commande);
-        when(medicamentRepository.findById(anyLong())).thenReturn(Optional.of(medicament));
+        when(medicamentRepository.findByIdInOrderByIdAsc(Set.of(1L))).thenReturn(List.of(medicament));
 
         // Act
         CommandeResponseDto result = commandeService.createCommande(createCommandeRequest);
@@ -139,6 +155,7 @@ public class CommandeServiceTest {
 
         verify(commandeRepository, times(1)).save(any(Commande.class));
         verify(commandeRepository, times(1)).saveAndFlush(any(Commande.class));
+        verify(medicamentRepository, never()).findById(anyLong());
     }
 
     @Test
@@ -162,7 +179,7 @@ public class CommandeServiceTest {
         when(utilisateurService.getCurrentPharmacien()).thenReturn(pharmacien);
         when(fournisseurRepository.findById(anyLong())).thenReturn(Optional.of(fournisseur));
         when(commandeRepository.save(any(Commande.class))).thenReturn(commande);
-        when(medicamentRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(medicamentRepository.findByIdInOrderByIdAsc(anyCollection())).thenReturn(List.of());
 
         // Act & Assert
         Exception exception = assertThrows(RuntimeException.class, () -> {
@@ -175,11 +192,8 @@ public class CommandeServiceTest {
     @Test
     void getCommandesForCurrentPharmacien_Success() {
         // Arrange
-        List<Commande> commandes = new ArrayList<>();
-        commandes.add(commande);
-        
         when(utilisateurService.getCurrentPharmacien()).thenReturn(pharmacien);
-        when(commandeRepository.findByPharmacien(pharmacien)).thenReturn(commandes);
+        when(commandeRepository.findLigneRowsByPharmacienId(pharmacien.getId())).thenReturn(List.of(row(ligneCommande)));
 
         // Act
         List<CommandeResponseDto> result = commandeService.getCommandesForCurrentPharmacien();
@@ -188,18 +202,18 @@ public class CommandeServiceTest {
         assertNotNull(result);
         assertEquals(1, result.size());
         assertEquals(commande.getId(), result.get(0).getId());
+        assertEquals(1, result.get(0).getLignesCommande().size());
+        assertEquals(medicament.getNom(), result.get(0).getLignesCommande().get(0).getMedicament().getNom());
         
-        verify(commandeRepository, times(1)).findByPharmacien(pharmacien);
+        verify(commandeRepository, times(1)).findLigneRowsByPharmacienId(pharmacien.getId());
+        verify(commandeRepository, never()).findByPharmacien(any());
     }
 
     @Test
     void getCommandesForCurrentFournisseur_Success() {
         // Arrange
-        List<Commande> commandes = new ArrayList<>();
-        commandes.add(commande);
-        
         when(utilisateurService.getCurrentFournisseur()).thenReturn(fournisseur);
-        when(commandeRepository.findByFournisseur(fournisseur)).thenReturn(commandes);
+        when(commandeRepository.findLigneRowsByFournisseurId(fournisseur.getId())).thenReturn(List.of(row(ligneCommande)));
 
         // Act
         List<CommandeResponseDto> result = commandeService.getCommandesForCurrentFournisseur();
@@ -208,8 +222,9 @@ public class CommandeServiceTest {
         assertNotNull(result);
         assertEquals(1, result.size());
         assertEquals(commande.getId(), result.get(0).getId());
+        assertEquals(fournisseur.getNom(), result.get(0).getFournisseur().getNom());
         
-        verify(commandeRepository, times(1)).findByFournisseur(fournisseur);
+        verify(commandeRepository, times(1)).findLigneRowsByFournisseurId(fournisseur.getId());
     }
 
     @Test
@@ -273,7 +288,24 @@ public class CommandeServiceTest {
         assertEquals(StatutCommande.EN_COURS_DE_LIVRAISON.toString(), result.getStatut());
         
         verify(commandeRepository, times(1)).save(commande);
-        verify(medicamentRepository, times(1)).save(medicament);
+        verify(stockService, times(1)).take(Map.of(1L, 10));
+        verify(medicamentRepository, never()).save(any(Medicament.class));
+    }
+
+    @Test
+    void updateCommandeStatus_ToEnCoursDeLivraison_StockTakenConcurrently() {
+        // Arrange
+        when(commandeRepository.findById(anyLong())).thenReturn(Optional.of(commande));
+        when(utilisateurService.getCurrentFournisseur()).thenReturn(fournisseur);
+        when(stockService.take(Map.of(1L, 10))).thenReturn(List.of(1L));
+
+        // Act & Assert
+        Exception exception = assertThrows(RuntimeException.class, () -> {
+            commandeService.updateCommandeStatus(1L, StatutCommande.EN_COURS_DE_LIVRAISON);
+        });
+
+        assertTrue(exception.getMessage().contains("Stock insuffisant pour Médicament Test"));
+        verify(commandeRepository, never()).save(any(Commande.class));
     }
 
     @Test
@@ -281,13 +313,11 @@ public class CommandeServiceTest {
         // Arrange
         commande.setStatut(StatutCommande.EN_COURS_DE_LIVRAISON);
         
-        List<Medicament> pharmacienMedicaments = new ArrayList<>();
-        
         when(commandeRepository.findById(anyLong())).thenReturn(Optional.of(commande));
         when(utilisateurService.getCurrentUser()).thenReturn(pharmacien);
-        when(medicamentRepository.findByUtilisateur(pharmacien)).thenReturn(pharmacienMedicaments);
+        when(medicamentRepository.findByUtilisateurAndNomInOrderByIdAsc(pharmacien, Set.of("Médicament Test")))
+                .thenReturn(List.of());
         when(commandeRepository.save(any(Commande.class))).thenReturn(commande);
-        when(medicamentRepository.save(any(Medicament.class))).thenReturn(new Medicament());
 
         // Act
         CommandeResponseDto result = commandeService.updateCommandeToLivree(1L);
@@ -297,8 +327,48 @@ public class CommandeServiceTest {
         assertEquals(StatutCommande.LIVREE.toString(), result.getStatut());
         
         verify(commandeRepository, times(1)).save(commande);
-        // Should save a new medicament for the pharmacist
-        verify(medicamentRepository, times(1)).save(any(Medicament.class));
+        // Should create a new medicament for the pharmacist, in the batch insert
+        verify(stockService, times(1)).insertAll(nouveaux.capture(), eq(1L));
+        assertEquals(1, nouveaux.getValue().size());
+        assertEquals("Médicament Test", nouveaux.getValue().get(0).getNom());
+        assertEquals(10, nouveaux.getValue().get(0).getQuantite());
+        assertSame(pharmacien, nouveaux.getValue().get(0).getUtilisateur());
+        verify(stockService, times(1)).give(Map.of());
+        verify(medicamentRepository, never()).findByUtilisateur(any());
+    }
+
+    @Test
+    void updateCommandeToLivree_MergesLinesByName() {
+        // Arrange: two lines for a medicament the pharmacist has, two for one they do not
+        commande.setStatut(StatutCommande.EN_COURS_DE_LIVRAISON);
+        Medicament nouveau = new Medicament();
+        nouveau.setId(3L);
+        nouveau.setNom("Nouveau");
+        commande.getLignesCommande().add(ligne(2L, medicament, 5));
+        commande.getLignesCommande().add(ligne(3L, nouveau, 4));
+        commande.getLignesCommande().add(ligne(4L, nouveau, 6));
+
+        Medicament enStock = new Medicament();
+        enStock.setId(7L);
+        enStock.setNom("Médicament Test");
+        enStock.setUtilisateur(pharmacien);
+
+        when(commandeRepository.findById(anyLong())).thenReturn(Optional.of(commande));
+        when(utilisateurService.getCurrentUser()).thenReturn(pharmacien);
+        when(medicamentRepository.findByUtilisateurAndNomInOrderByIdAsc(pharmacien, Set.of("Médicament Test", "Nouveau")))
+                .thenReturn(List.of(enStock));
+        when(commandeRepository.save(any(Commande.class))).thenReturn(commande);
+
+        // Act
+        commandeService.updateCommandeToLivree(1L);
+
+        // Assert
+        verify(stockService, times(1)).give(Map.of(7L, 15));
+        verify(stockService, times(1)).insertAll(nouveaux.capture(), eq(1L));
+        assertEquals(1, nouveaux.getValue().size());
+        assertEquals("Nouveau", nouveaux.getValue().get(0).getNom());
+        assertEquals(10, nouveaux.getValue().get(0).getQuantite());
+        verify(medicamentRepository, never()).save(any(Medicament.class));
     }
 
     @Test
@@ -317,4 +387,54 @@ public class CommandeServiceTest {
         assertTrue(exception.getMessage().contains("n'est pas en cours de livraison"));
         verify(commandeRepository, never()).save(any(Commande.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    void toDtos_GroupsRowsPerCommandeInOrder() {
+        Commande vide = new Commande();
+        vide.setId(2L);
+        vide.setDateCommande(LocalDateTime.now());
+        vide.setStatut(StatutCommande.EN_ATTENTE);
+        vide.setPharmacien(pharmacien);
+        vide.setFournisseur(fournisseur);
+
+        LigneCommande secondeLigne = new LigneCommande();
+        secondeLigne.setId(2L);
+        secondeLigne.setQuantite(3);
+        secondeLigne.setMedicament(medicament);
+        secondeLigne.setCommande(commande);
+
+        CommandeLigneRow emptyRow = new CommandeLigneRow(2L, vide.getDateCommande(), StatutCommande.EN_ATTENTE,
+                1L, "Nom Pharmacien", "Prenom Pharmacien", 2L, "Nom Fournisseur", "Prenom Fournisseur",
+                null, null, null, null, null, null, null);
+
+        List<CommandeResponseDto> result = CommandeService.toDtos(List.of(row(ligneCommande), row(secondeLigne), emptyRow));
+
+        assertEquals(2, result.size());
+        assertEquals(1L, result.get(0).getId());
+        assertEquals(List.of(10, 3), result.get(0).getLignesCommande().stream()
+                .map(CommandeResponseDto.LigneCommandeResponseDto::getQuantite).toList());
+        assertEquals(150.0f, result.get(0).getLignesCommande().get(0).getMedicament().getPrix_public());
+        assertEquals(2L, result.get(1).getId());
+        assertEquals("EN_ATTENTE", result.get(1).getStatut());
+        assertTrue(result.get(1).getLignesCommande().isEmpty());
+    }
+
+    private static CommandeLigneRow row(LigneCommande ligne) {
+        Commande c = ligne.getCommande();
+        Medicament m = ligne.getMedicament();
+        return new CommandeLigneRow(c.getId(), c.getDateCommande(), c.getStatut(),
+                c.getPharmacien().getId(), c.getPharmacien().getNom(), c.getPharmacien().getPrenom(),
+                c.getFournisseur().getId(), c.getFournisseur().getNom(), c.getFournisseur().getPrenom(),
+                ligne.getId(), ligne.getQuantite(),
+                m.getId(), m.getNom(), m.getPrix_hospitalier(), m.getPrix_public(), m.getQuantite());
+    }
+
+    private LigneCommande ligne(Long id, Medicament m, int quantite) {
+        LigneCommande ligne = new LigneCommande();
+        ligne.setId(id);
+        ligne.setQuantite(quantite);
+        ligne.setMedicament(m);
+        ligne.setCommande(commande);
+        return ligne;
+    }
+}
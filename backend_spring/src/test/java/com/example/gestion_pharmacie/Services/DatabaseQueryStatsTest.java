@@ -0,0 +1,137 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.Security.CurrentActor;
+import com.example.gestion_pharmacie.entites.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Chat statistics against a real schema: the figures are computed by the database in one statement per
+ * role, without loading the medicaments, alertes or lignes they count.
+ */
+@Import({DatabaseQueryService.class, ChatContextStore.class, IntentClassifier.class, SimpleMeterRegistry.class})
+public class DatabaseQueryStatsTest extends JpaSliceTest {
+
+    @Autowired
+    private DatabaseQueryService databaseQueryService;
+
+    @MockitoBean
+    private CurrentActor currentActor;
+
+    private Pharmacien pharmacien;
+    private Pharmacien autrePharmacien;
+    private Fournisseur fournisseur;
+
+    @BeforeEach
+    void setUp() {
+        pharmacien = persistPharmacien("pharmacien@example.com");
+        autrePharmacien = persistPharmacien("autre@example.com");
+        fournisseur = persistFournisseur("fournisseur@example.com");
+
+        for (int i = 0; i < 6; i++) {
+            Medicament medicament = medicament("Medicament " + i, 100, pharmacien);
+            medicament.setEn_vente(i % 2 == 0);
+            entityManager.persist(medicament);
+        }
+        Medicament stock = entityManager.persist(medicament("Stock fournisseur", 100, fournisseur));
+        for (int i = 0; i < 4; i++) {
+            Alerte alerte = new Alerte();
+            alerte.setMessage("Alerte " + i);
+            alerte.setMinimumQuantite(5);
+            alerte.setUtilisateur(pharmacien);
+            entityManager.persist(alerte);
+        }
+
+        // 3 commandes from two pharmacists, one without lignes: 2 + 3 + 4 + 5 = 14 units
+        persistCommande(pharmacien, stock, 2, 3);
+        persistCommande(autrePharmacien, stock, 4, 5);
+        persistCommande(pharmacien, stock);
+        flushAndClear();
+
+        authenticate("user@example.com");
+        statistics.clear();
+    }
+
+    @Test
+    void pharmacienStats_CountedWithoutLoadingTheRows() {
+        when(currentActor.findUtilisateur()).thenReturn(Optional.of(pharmacien));
+
+        Map<String, Object> stats = stats(databaseQueryService.getRelevantData("stats"));
+
+        assertEquals(6L, stats.get("totalMedicaments"));
+        assertEquals(2L, stats.get("totalCommandes"));
+        assertEquals(4L, stats.get("totalAlertes"));
+        // The commande page the pharmacist context always carries (ids, then lignes), then the statistics
+        assertEquals(3, statistics.getQueryExecutionCount());
+        assertEquals(0, loads(Medicament.class));
+        assertEquals(0, loads(Alerte.class));
+    }
+
+    @Test
+    void fournisseurStats_OneStatement() {
+        when(currentActor.findUtilisateur()).thenReturn(Optional.of(fournisseur));
+
+        Map<String, Object> stats = stats(databaseQueryService.getRelevantData("stats"));
+
+        assertEquals(3L, stats.get("totalCommandes"));
+        assertEquals(14L, stats.get("totalLignesCommandes"));
+        assertEquals(2L, stats.get("pharmaciensUniques"));
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, loads(Commande.class));
+        assertEquals(0, loads(LigneCommande.class));
+    }
+
+    @Test
+    void fournisseurStats_NoCommandes() {
+        Fournisseur nouveau = new Fournisseur();
+        nouveau.setNom("Nouveau");
+        nouveau.setEmail("nouveau@example.com");
+        nouveau.setRole(Role.FOURNISSEUR);
+        entityManager.persistAndFlush(nouveau);
+        when(currentActor.findUtilisateur()).thenReturn(Optional.of(nouveau));
+
+        Map<String, Object> stats = stats(databaseQueryService.getRelevantData("stats"));
+
+        assertEquals(0L, stats.get("totalCommandes"));
+        assertEquals(0L, stats.get("totalLignesCommandes"));
+        assertEquals(0L, stats.get("pharmaciensUniques"));
+    }
+
+    @Test
+    void genericStats_CountsMedicamentsEnVente() {
+        when(currentActor.findUtilisateur()).thenReturn(Optional.empty());
+
+        Map<String, Object> stats = stats(databaseQueryService.getRelevantData("stats"));
+
+        assertEquals(3L, stats.get("totalMedicamentsEnVente"));
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, loads(Medicament.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> stats(Map<String, Object> data) {
+        return (Map<String, Object>) data.get("stats");
+    }
+
+    private long loads(Class<?> entity) {
+        return statistics.getEntityStatistics(entity.getName()).getLoadCount();
+    }
+
+    private void persistCommande(Pharmacien client, Medicament medicament, int... quantites) {
+        Commande commande = commande(client, fournisseur);
+        for (int quantite : quantites) {
+            addLigne(commande, medicament, quantite);
+        }
+        entityManager.persist(commande);
+    }
+}
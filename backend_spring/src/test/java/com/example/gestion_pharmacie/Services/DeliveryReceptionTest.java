@@ -0,0 +1,92 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.entites.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Reception of a large delivery against a real schema: lines are merged by name into the pharmacist's
+ * medicaments and the Hibernate statement count does not depend on the number of lines.
+ */
+@Import({CommandeService.class, StockService.class})
+public class DeliveryReceptionTest extends JpaSliceTest {
+
+    private static final int LIGNES = 500;
+    private static final int CATALOGUE = 2000;
+
+    @Autowired
+    private CommandeService commandeService;
+
+    @MockitoBean
+    private UtilisateurService utilisateurService;
+
+    private Pharmacien pharmacien;
+    private Fournisseur fournisseur;
+
+    @BeforeEach
+    void setUp() {
+        pharmacien = persistPharmacien("pharmacien@example.com");
+        fournisseur = persistFournisseur("fournisseur@example.com");
+
+        // The pharmacist already stocks the even products among many others
+        for (int i = 0; i < CATALOGUE; i++) {
+            if (i < LIGNES && i % 2 != 0) {
+                continue;
+            }
+            entityManager.persist(medicament("Produit " + i, 10, pharmacien));
+        }
+        when(utilisateurService.getCurrentUser()).thenReturn(pharmacien);
+    }
+
+    @Test
+    void updateCommandeToLivree_MergesEveryLineInConstantStatements() {
+        Long small = deliver(10);
+        long smallStatements = statistics.getPrepareStatementCount();
+
+        Long large = deliver(LIGNES);
+        long largeStatements = statistics.getPrepareStatementCount();
+
+        assertEquals(smallStatements, largeStatements);
+        assertEquals(StatutCommande.LIVREE, entityManager.find(Commande.class, small).getStatut());
+        assertEquals(StatutCommande.LIVREE, entityManager.find(Commande.class, large).getStatut());
+
+        Map<String, List<Medicament>> parNom = entityManager.getEntityManager()
+                .createQuery("select m from Medicament m where m.utilisateur = :p", Medicament.class)
+                .setParameter("p", pharmacien)
+                .getResultList().stream()
+                .collect(Collectors.groupingBy(Medicament::getNom));
+        for (int i = 0; i < LIGNES; i++) {
+            List<Medicament> rows = parNom.get("Produit " + i);
+            assertEquals(1, rows.size(), "Produit " + i);
+            int livre = (i < 10 ? 2 : 1) * 3;
+            assertEquals((i % 2 == 0 ? 10 : 0) + livre, rows.get(0).getQuantite(), "Produit " + i);
+        }
+        assertEquals(10, parNom.get("Produit " + (CATALOGUE - 1)).get(0).getQuantite());
+    }
+
+    // Delivers a commande of the first n products, 3 units each, and counts its Hibernate statements
+    private Long deliver(int n) {
+        Commande commande = commande(pharmacien, fournisseur);
+        commande.setStatut(StatutCommande.EN_COURS_DE_LIVRAISON);
+        for (int i = 0; i < n; i++) {
+            addLigne(commande, entityManager.persist(medicament("Produit " + i, 100, fournisseur)), 3);
+        }
+        entityManager.persist(commande);
+        flushAndClear();
+
+        statistics.clear();
+        commandeService.updateCommandeToLivree(commande.getId());
+        flushAndClear();
+        return commande.getId();
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.entites.Medicament;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExcelLoaderServiceTest {
+
+    private static ExcelLoaderService excelLoaderService;
+
+    @BeforeAll
+    static void loadCatalogue() {
+        excelLoaderService = new ExcelLoaderService();
+        excelLoaderService.loadCatalogue();
+    }
+
+    @Test
+    void loadCatalogue_ReadsReferenceFile() {
+        MedicamentCatalogue catalogue = excelLoaderService.getCatalogue();
+
+        assertTrue(catalogue.size() > 5000);
+        assertEquals("CODE", catalogue.getHeader().get(0));
+        assertEquals(catalogue.size() + 1, excelLoaderService.readExcelData().size());
+    }
+
+    @Test
+    void findMedicamentByCode_Found() {
+        Medicament medicament = excelLoaderService.findMedicamentByCode("6118000100225");
+
+        assertNotNull(medicament);
+        assertEquals("PRETERAX", medicament.getNom());
+        assertTrue(medicament.getIndications().startsWith("DCI: INDAPAMIDE / PERINDOPRIL"));
+    }
+
+    @Test
+    void findMedicamentByCode_ReturnsFreshInstances() {
+        Medicament first = excelLoaderService.findMedicamentByCode("6118000100225");
+        Medicament second = excelLoaderService.findMedicamentByCode("6118000100225");
+
+        assertNotSame(first, second);
+    }
+
+    @Test
+    void findMedicamentByCode_NotFound() {
+        assertNull(excelLoaderService.findMedicamentByCode("0000000000000"));
+        assertNull(excelLoaderService.findMedicamentByCode("not-a-code"));
+        assertNull(excelLoaderService.findMedicamentByCode(null));
+    }
+
+    @Test
+    void findMedicamentsByNomPrefix_CaseInsensitive() {
+        List<Medicament> results = excelLoaderService.findMedicamentsByNomPrefix("clafo", 10);
+
+        assertFalse(results.isEmpty());
+        assertTrue(results.size() <= 10);
+        results.forEach(m -> assertTrue(m.getNom().toUpperCase().startsWith("CLAFO")));
+    }
+
+    @Test
+    void catalogue_HandlesCollisionsAndDuplicates() {
+        List<String[]> rows = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            rows.add(new String[]{String.valueOf(i * 1024L), "MED " + i});
+        }
+        rows.add(new String[]{"0", "DUPLICATE"});
+        MedicamentCatalogue catalogue = new MedicamentCatalogue(List.of("CODE", "NOM"), rows);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("MED " + i, catalogue.findByCode(String.valueOf(i * 1024L)).orElseThrow().getNom());
+        }
+        assertTrue(catalogue.findByCode("1").isEmpty());
+        assertEquals(111, catalogue.findByNomPrefix("med 1", 200).size());
+        assertEquals(5, catalogue.findByNomPrefix("med 1", 5).size());
+    }
+
+    @Test
+    void catalogue_MatchesCodesAsText() {
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[]{"0123", "ZERO"});
+        rows.add(new String[]{"123", "SANS ZERO"});
+        rows.add(new String[]{" AB-12 ", "ALPHA"});
+        rows.add(new String[]{"6118000100225611800", "LONG"});
+        MedicamentCatalogue catalogue = new MedicamentCatalogue(List.of("CODE", "NOM"), rows);
+
+        assertEquals("ZERO", catalogue.findByCode("0123").orElseThrow().getNom());
+        assertEquals("SANS ZERO", catalogue.findByCode("123").orElseThrow().getNom());
+        assertEquals("ALPHA", catalogue.findByCode("AB-12").orElseThrow().getNom());
+        assertEquals("LONG", catalogue.findByCode("6118000100225611800").orElseThrow().getNom());
+        assertTrue(catalogue.findByCode("ab-12").isEmpty());
+        assertTrue(catalogue.findByCode(" ").isEmpty());
+    }
+
+    @Test
+    void catalogue_RequiresCodeColumn() {
+        assertThrows(IllegalStateException.class,
+                () -> new MedicamentCatalogue(List.of("NOM"), List.of()));
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.entites.*;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.context.annotation.Import;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Import(ExportService.class)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+public class ExportServiceTest extends JpaSliceTest {
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final List<Medicament> medicaments = new ArrayList<>();
+    private Fournisseur fournisseur;
+
+    @BeforeEach
+    void setUp() {
+        fournisseur = persistFournisseur("fournisseur@example.com");
+        fournisseur.setMotDePasse("$2a$10$hash");
+        Pharmacien pharmacien = persistPharmacien("pharmacien@example.com");
+
+        for (int i = 1; i <= 3; i++) {
+            Medicament medicament = medicament("Medicament " + i, i, fournisseur);
+            medicament.setPrix_public(10.0f * i);
+            medicaments.add(entityManager.persist(medicament));
+        }
+
+        for (int c = 1; c <= 2; c++) {
+            Commande commande = commande(pharmacien, fournisseur);
+            commande.setDateCommande(LocalDateTime.of(2024, 1, c, 9, 0));
+            for (int l = 0; l < c; l++) {
+                addLigne(commande, medicaments.get(l), l + 1);
+            }
+            entityManager.persist(commande);
+        }
+        flushAndClear();
+    }
+
+    @Test
+    void exportMedicaments_JsonArrayInIdOrder() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.exportMedicaments(out, ExportFormat.JSON);
+
+        JsonNode array = objectMapper.readTree(out.toByteArray());
+        assertTrue(array.isArray());
+        assertEquals(3, array.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(medicaments.get(i).getId(), array.get(i).get("id").asLong());
+            assertEquals("Medicament " + (i + 1), array.get(i).get("nom").asText());
+            JsonNode utilisateur = array.get(i).get("utilisateur");
+            assertEquals("Nom Fournisseur", utilisateur.get("nom").asText());
+            assertEquals(fournisseur.getId(), utilisateur.get("id").asLong());
+            assertFalse(utilisateur.has("motDePasse"));
+            assertFalse(utilisateur.has("password"));
+            assertFalse(utilisateur.has("email"));
+        }
+    }
+
+    @Test
+    void exportMedicaments_DetachesEachWrittenMedicament() {
+        exportService.exportMedicaments(new ByteArrayOutputStream(), ExportFormat.JSON);
+
+        for (Medicament medicament : medicaments) {
+            Medicament loaded = entityManager.getEntityManager().getReference(Medicament.class, medicament.getId());
+            assertFalse(Hibernate.isInitialized(loaded));
+        }
+    }
+
+    @Test
+    void exportCommandes_NdjsonOneCommandePerLine() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.exportCommandes(out, ExportFormat.NDJSON);
+
+        String body = out.toString(StandardCharsets.UTF_8);
+        assertTrue(body.endsWith("\n"));
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(1, objectMapper.readTree(lines[0]).get("lignesCommande").size());
+        JsonNode second = objectMapper.readTree(lines[1]);
+        assertEquals(2, second.get("lignesCommande").size());
+        assertEquals("Medicament 2", second.get("lignesCommande").get(1).get("medicament").get("nom").asText());
+        assertEquals("Nom Fournisseur", second.get("fournisseur").get("nom").asText());
+    }
+
+    @Test
+    void exportCommandes_EmptyTableIsAnEmptyArray() throws Exception {
+        entityManager.getEntityManager().createQuery("delete from LigneCommande").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from Commande").executeUpdate();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.exportCommandes(out, ExportFormat.JSON);
+
+        assertEquals("[]", out.toString(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.gestion_pharmacie.Services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Serves the pages of {@code src/test/resources/scraper}, with ETag support, so scraper tests run offline.
+ * The pages are hand-written: they only reproduce the markup {@link MedicamentPageParser} reads, not real
+ * medicament.ma pages. Unknown URLs answer 404.
+ */
+class FixturePageFetcher implements PageFetcher {
+
+    static final String BASE_URL = "https://medicament.ma";
+
+    private final Map<String, String> pages = new HashMap<>();
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> notModified = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> failing = new HashSet<>();
+
+    FixturePageFetcher page(String url, String fixture) {
+        pages.put(url, load(fixture));
+        failing.remove(url);
+        return this;
+    }
+
+    FixturePageFetcher listing(char letter, int page, String fixture) {
+        return page(BASE_URL + "/listing-des-medicaments/page/" + page + "/?lettre=" + letter, fixture);
+    }
+
+    /** Makes {@code url} answer 503 until it is registered again. */
+    FixturePageFetcher failing(String url) {
+        failing.add(url);
+        return this;
+    }
+
+    @Override
+    public FetchedPage fetch(String url, String etag, String lastModified) {
+        requests.add(url);
+        if (failing.contains(url)) {
+            return FetchedPage.withStatus(url, 503);
+        }
+        String body = pages.get(url);
+        if (body == null) {
+            return FetchedPage.withStatus(url, 404);
+        }
+        String currentEtag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+        if (currentEtag.equals(etag)) {
+            notModified.add(url);
+            return FetchedPage.notModified(url);
+        }
+        return FetchedPage.ok(url, body, currentEtag, null);
+    }
+
+    List<String> getRequests() {
+        return requests;
+    }
+
+    List<String> getNotModified() {
+        return notModified;
+    }
+
+    static String load(String fixture) {
+        try (InputStream in = FixturePageFetcher.class.getResourceAsStream("/scraper/" + fixture)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Fixture introuvable: " + fixture);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.Security.CurrentActor;
+import com.example.gestion_pharmacie.entites.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Alertes of a supplier's chat context: one statement whatever the number of commandes, lignes and
+ * medicaments, instead of one lookup per commande and per medicament.
+ */
+@Import({DatabaseQueryService.class, ChatContextStore.class, IntentClassifier.class, SimpleMeterRegistry.class})
+public class FournisseurAlertesQueryCountTest extends JpaSliceTest {
+
+    @Autowired
+    private DatabaseQueryService databaseQueryService;
+
+    @Autowired
+    private ChatContextStore chatContextStore;
+
+    @MockitoBean
+    private CurrentActor currentActor;
+
+    private Pharmacien pharmacien;
+    private Fournisseur fournisseur;
+    private final List<Medicament> livres = new ArrayList<>();
+    private Medicament autre;
+    private Alerte deuxLivres;
+    private Alerte livreEtAutre;
+
+    @BeforeEach
+    void setUp() {
+        pharmacien = persistPharmacien("pharmacien@example.com");
+        fournisseur = persistFournisseur("fournisseur@example.com");
+        Fournisseur concurrent = persistFournisseur("concurrent@example.com");
+
+        for (int i = 0; i < 20; i++) {
+            livres.add(entityManager.persist(medicament("Medicament " + i)));
+        }
+        autre = entityManager.persist(medicament("Autre"));
+
+        // 10 commandes of 4 lignes each, every shipped medicament appearing in two of them
+        for (int c = 0; c < 10; c++) {
+            persistCommande(fournisseur, livres.get((2 * c) % 20), livres.get((2 * c + 1) % 20),
+                    livres.get((2 * c + 2) % 20), livres.get((2 * c + 3) % 20));
+        }
+        persistCommande(concurrent, autre);
+
+        deuxLivres = alerte("Deux livres", livres.get(0), livres.get(1));
+        livreEtAutre = alerte("Livre et autre", livres.get(5), autre);
+        alerte("Autre seulement", autre);
+        flushAndClear();
+
+        authenticate("fournisseur@example.com");
+        when(currentActor.findUtilisateur()).thenReturn(Optional.of(fournisseur));
+        statistics.clear();
+    }
+
+    @Test
+    void alertes_OneStatementForEveryShippedMedicament() {
+        List<?> alertes = alertes();
+
+        assertEquals(2, alertes.size());
+        assertTrue(alertes.get(0).toString().startsWith("Alerte: " + deuxLivres.getId() + " | Message: Deux livres"));
+        assertTrue(alertes.get(0).toString().endsWith("| Medicaments: 2"));
+        assertTrue(alertes.get(1).toString().startsWith("Alerte: " + livreEtAutre.getId()));
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+    }
+
+    @Test
+    void alertes_NewAlerteOnAShippedMedicamentRebuildsTheSection() {
+        alertes();
+        Alerte nouvelle = alerte("Nouvelle", entityManager.find(Medicament.class, livres.get(12).getId()));
+        entityManager.flush();
+        entityManager.clear();
+
+        chatContextStore.onAlerteChange(new AlerteChangeEvent(pharmacien.getId(), List.of(livres.get(12).getId())));
+        statistics.clear();
+        List<?> alertes = alertes();
+
+        assertEquals(3, alertes.size());
+        assertTrue(alertes.get(2).toString().startsWith("Alerte: " + nouvelle.getId()));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void alertes_NoCommandes() {
+        Fournisseur nouveau = persistFournisseur("nouveau@example.com");
+        entityManager.flush();
+        when(currentActor.findUtilisateur()).thenReturn(Optional.of(nouveau));
+
+        assertTrue(alertes().isEmpty());
+    }
+
+    private List<?> alertes() {
+        return (List<?>) databaseQueryService.getRelevantData("alertes").get("alertes");
+    }
+
+    private Medicament medicament(String nom) {
+        return medicament(nom, 100, pharmacien);
+    }
+
+    private Alerte alerte(String message, Medicament... medicaments) {
+        Alerte alerte = new Alerte();
+        alerte.setMessage(message);
+        alerte.setMinimumQuantite(5);
+        alerte.setUtilisateur(pharmacien);
+        alerte.setMedicaments(new ArrayList<>(List.of(medicaments)));
+        return entityManager.persist(alerte);
+    }
+
+    private void persistCommande(Fournisseur destinataire, Medicament... medicaments) {
+        Commande commande = commande(pharmacien, destinataire);
+        for (Medicament medicament : medicaments) {
+            addLigne(commande, medicament, 1);
+        }
+        entityManager.persist(commande);
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.Security.CurrentActor;
+import com.example.gestion_pharmacie.Services.CommandeChangeEvent.Change;
+import com.example.gestion_pharmacie.entites.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Medicaments and pharmaciens of a supplier's chat context: one capped statement each, whatever the
+ * length of the supplier's history, and kept across status changes of its commandes.
+ */
+@TestPropertySource(properties = "chat.context.max-items=5")
+@Import({DatabaseQueryService.class, ChatContextStore.class, IntentClassifier.class, SimpleMeterRegistry.class})
+public class FournisseurContextQueryCountTest extends JpaSliceTest {
+
+    private static final String QUESTION = "quels medicaments et quels pharmaciens";
+
+    @Autowired
+    private DatabaseQueryService databaseQueryService;
+
+    @Autowired
+    private ChatContextStore chatContextStore;
+
+    @MockitoBean
+    private CurrentActor currentActor;
+
+    private Fournisseur fournisseur;
+    private final List<Pharmacien> pharmaciens = new ArrayList<>();
+    private final List<Medicament> livres = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        fournisseur = persistFournisseur("fournisseur@example.com");
+        for (int i = 0; i < 8; i++) {
+            pharmaciens.add(persistPharmacien("pharmacien" + i + "@example.com"));
+        }
+        for (int i = 0; i < 12; i++) {
+            livres.add(entityManager.persist(medicament("Medicament " + i, 100, fournisseur)));
+        }
+
+        // 40 commandes of 3 lignes, spread over every pharmacien and shipped medicament
+        for (int c = 0; c < 40; c++) {
+            Commande commande = commande(pharmaciens.get(c % 8), fournisseur);
+            commande.setDateCommande(LocalDateTime.now().minusDays(40 - c));
+            for (int l = 0; l < 3; l++) {
+                addLigne(commande, livres.get((c + l) % 12), 1);
+            }
+            entityManager.persist(commande);
+        }
+        flushAndClear();
+
+        authenticate("fournisseur@example.com");
+        when(currentActor.findUtilisateur()).thenReturn(Optional.of(fournisseur));
+    }
+
+    @Test
+    void medicamentsAndPharmaciens_OneCappedStatementEach() {
+        Map<String, Object> data = turn();
+
+        List<Map<String, String>> medicaments = medicaments(data);
+        assertEquals(5, medicaments.size());
+        assertEquals("Medicament 0", medicaments.get(0).get("nom"));
+        List<?> clients = (List<?>) data.get("pharmaciens");
+        assertEquals(5, clients.size());
+        // Most recent customer first: the last commande went to pharmacien 7
+        assertTrue(clients.get(0).toString().startsWith("Pharmacien: " + pharmaciens.get(7).getId()));
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityStatistics(Commande.class.getName()).getLoadCount());
+        assertEquals(0, statistics.getEntityStatistics(LigneCommande.class.getName()).getLoadCount());
+    }
+
+    @Test
+    void statusChange_KeepsMedicamentsAndPharmaciens() {
+        turn();
+
+        chatContextStore.onCommandeChange(new CommandeChangeEvent(pharmaciens.get(0).getId(), fournisseur.getId(),
+                Change.STATUT));
+        turn();
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void creation_RebuildsMedicamentsAndPharmaciens() {
+        turn();
+        Pharmacien nouveau = persistPharmacien("nouveau@example.com");
+        Commande commande = commande(nouveau, entityManager.find(Fournisseur.class, fournisseur.getId()));
+        addLigne(commande, entityManager.find(Medicament.class, livres.get(0).getId()), 1);
+        entityManager.persist(commande);
+        flushAndClear();
+
+        chatContextStore.onCommandeChange(new CommandeChangeEvent(commande, Change.CREATION));
+        Map<String, Object> data = turn();
+
+        assertTrue(((List<?>) data.get("pharmaciens")).get(0).toString().startsWith("Pharmacien: " + nouveau.getId()));
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void medicaments_FallBackToTheCatalogueWithoutCommandes() {
+        Fournisseur nouveau = persistFournisseur("nouveau@example.com");
+        entityManager.persist(medicament("Catalogue", 10, nouveau));
+        flushAndClear();
+        when(currentActor.findUtilisateur()).thenReturn(Optional.of(nouveau));
+
+        Map<String, Object> data = turn();
+
+        assertEquals("Catalogue", medicaments(data).get(0).get("nom"));
+        assertTrue(((List<?>) data.get("pharmaciens")).isEmpty());
+    }
+
+    private Map<String, Object> turn() {
+        statistics.clear();
+        return databaseQueryService.getRelevantData(QUESTION);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, String>> medicaments(Map<String, Object> data) {
+        return (List<Map<String, String>>) data.get("medicaments");
+    }
+}
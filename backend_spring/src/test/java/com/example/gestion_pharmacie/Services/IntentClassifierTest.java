@@ -0,0 +1,91 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.Services.IntentClassifier.Classification;
+import com.example.gestion_pharmacie.Services.IntentClassifier.Intent;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntentClassifierTest {
+
+    private static IntentClassifier classifier;
+
+    @BeforeAll
+    static void setUp() {
+        classifier = new IntentClassifier(IntentClassifier.DEFAULT_DICTIONARY);
+    }
+
+    @Test
+    void classify_MatchesTheLabelledCorpus() throws IOException {
+        List<String> mismatches = new ArrayList<>();
+        int rows = 0;
+        try (InputStream in = getClass().getResourceAsStream("/chat/intents-corpus.tsv")) {
+            assertNotNull(in, "Corpus introuvable");
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] columns = line.split("\t", -1);
+                Set<Intent> expectedIntents = EnumSet.noneOf(Intent.class);
+                if (!columns[1].equals("-")) {
+                    for (String intent : columns[1].split(",")) {
+                        expectedIntents.add(Intent.valueOf(intent));
+                    }
+                }
+                String expectedCandidate = columns[2].equals("-") ? null : columns[2];
+
+                Classification classification = classifier.classify(columns[0]);
+                if (!classification.intents().equals(expectedIntents)
+                        || !Objects.equals(classification.firstCandidate(), expectedCandidate)) {
+                    mismatches.add("\"" + columns[0] + "\": " + classification.intents() + " / "
+                            + classification.firstCandidate());
+                }
+                rows++;
+            }
+        }
+        assertTrue(rows > 0);
+        assertTrue(mismatches.isEmpty(), "Mismatches:\n" + String.join("\n", mismatches));
+    }
+
+    @Test
+    void classify_KeywordsMatchInsideWords() {
+        // Same as the former String.contains checks: "reorder" asks for commandes, "alerts" for alertes
+        Classification classification = classifier.classify("Reorder when alerts fire");
+
+        assertEquals(EnumSet.of(Intent.COMMANDES, Intent.ALERTES), classification.intents());
+    }
+
+    @Test
+    void classify_CandidatesKeepQuestionOrderAndSkipKeywords() {
+        Classification classification = classifier.classify("Do you stock Doliprane or Efferalgan?");
+
+        assertEquals(List.of("doliprane", "efferalgan"), classification.candidates());
+    }
+
+    @Test
+    void classify_NullQuestionHasNoIntent() {
+        Classification classification = classifier.classify(null);
+
+        assertTrue(classification.intents().isEmpty());
+        assertNull(classification.firstCandidate());
+    }
+
+    @Test
+    void missingDictionary_FailsAtStartup() {
+        assertThrows(RuntimeException.class, () -> new IntentClassifier("data/absent.properties"));
+    }
+}
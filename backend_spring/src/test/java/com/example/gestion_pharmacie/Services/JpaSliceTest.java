@@ -0,0 +1,108 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.entites.*;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Base of the JPA slice tests: the schema on H2 with Hibernate statistics on, so tests can count the
+ * statements a service issues, and builders for the users, medicaments and commandes they start from.
+ * Subclasses add the services under test with {@code @Import}.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+abstract class JpaSliceTest {
+
+    @Autowired
+    protected TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    protected Statistics statistics;
+
+    @BeforeEach
+    void openStatistics() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    /** Authenticates {@code email} the way the JWT filter does, for services that read the security context. */
+    protected static void authenticate(String email) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(email, null, List.of()));
+    }
+
+    protected Pharmacien persistPharmacien(String email) {
+        Pharmacien pharmacien = new Pharmacien();
+        pharmacien.setNom("Nom Pharmacien");
+        pharmacien.setEmail(email);
+        pharmacien.setRole(Role.PHARMACIEN);
+        return entityManager.persist(pharmacien);
+    }
+
+    protected Fournisseur persistFournisseur(String email) {
+        Fournisseur fournisseur = new Fournisseur();
+        fournisseur.setNom("Nom Fournisseur");
+        fournisseur.setEmail(email);
+        fournisseur.setRole(Role.FOURNISSEUR);
+        return entityManager.persist(fournisseur);
+    }
+
+    protected static Medicament medicament(String nom, int quantite, Utilisateur proprietaire) {
+        Medicament medicament = new Medicament();
+        medicament.setNom(nom);
+        medicament.setQuantite(quantite);
+        medicament.setUtilisateur(proprietaire);
+        return medicament;
+    }
+
+    /** A pending commande placed now, without lignes. */
+    protected static Commande commande(Pharmacien pharmacien, Fournisseur fournisseur) {
+        Commande commande = new Commande();
+        commande.setDateCommande(LocalDateTime.now());
+        commande.setStatut(StatutCommande.EN_ATTENTE);
+        commande.setPharmacien(pharmacien);
+        commande.setFournisseur(fournisseur);
+        return commande;
+    }
+
+    protected static void addLigne(Commande commande, Medicament medicament, int quantite) {
+        LigneCommande ligne = new LigneCommande();
+        ligne.setQuantite(quantite);
+        ligne.setMedicament(medicament);
+        ligne.setCommande(commande);
+        commande.getLignesCommande().add(ligne);
+    }
+
+    /** Writes pending changes and empties the persistence context, so the next read goes to the database. */
+    protected void flushAndClear() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    /** Statements prepared by {@code read}, run against an empty persistence context. */
+    protected long countStatements(Runnable read) {
+        flushAndClear();
+        statistics.clear();
+        read.run();
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -9,10 +9,7 @@ import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
-import org.mockito.MockitoAnnotations;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.test.util.ReflectionTestUtils;
 
 import java.security.Key;
 import java.time.Instant;
@@ -25,7 +22,6 @@ import static org.junit.jupiter.api.Assertions.*;
 
 class JwtServiceTest {
 
-    @InjectMocks
     private JwtService jwtService;
 
     private Utilisateur utilisateur;
@@ -34,11 +30,7 @@ class JwtServiceTest {
 
     @BeforeEach
     void setUp() {
-        MockitoAnnotations.openMocks(this);
-        
-        // Set up secret key and expiration time using reflection
-        ReflectionTestUtils.setField(jwtService, "secretKey", SECRET_KEY);
-        ReflectionTestUtils.setField(jwtService, "jwtExpiration", EXPIRATION_TIME);
+        jwtService = new JwtService(SECRET_KEY, EXPIRATION_TIME);
         
         // Create test user
         utilisateur = new Pharmacien();
@@ -136,6 +128,46 @@ class JwtServiceTest {
         assertFalse(valid);
     }
 
+    @Test
+    void isTokenValid_ParsedToken() {
+        // Arrange
+        String token = jwtService.generateToken(utilisateur);
+        ParsedToken parsed = jwtService.parse(token);
+
+        Utilisateur differentUser = new Pharmacien();
+        differentUser.setEmail("different@example.com");
+
+        // Act & Assert
+        assertEquals("test@example.com", parsed.getSubject());
+        assertNotNull(parsed.getIssuedAt());
+        assertTrue(parsed.getExpiration().isAfter(parsed.getIssuedAt()));
+        assertTrue(jwtService.isTokenValid(parsed, utilisateur));
+        assertFalse(jwtService.isTokenValid(parsed, differentUser));
+    }
+
+    @Test
+    void parse_RejectsExpiredToken() {
+        String token = createExpiredToken(utilisateur);
+
+        assertThrows(io.jsonwebtoken.ExpiredJwtException.class, () -> jwtService.parse(token));
+    }
+
+    @Test
+    void parse_RejectsTokenSignedWithAnotherKey() {
+        JwtService otherService = new JwtService(
+                "bm90LXRoZS1zYW1lLXNlY3JldC1ub3QtdGhlLXNhbWUtc2VjcmV0LW5vdC10aGUtc2FtZQ==", EXPIRATION_TIME);
+        String token = otherService.generateToken(utilisateur);
+
+        assertThrows(io.jsonwebtoken.security.SignatureException.class, () -> jwtService.parse(token));
+    }
+
+    @Test
+    void parse_ExposesExtraClaims() {
+        String token = jwtService.generateToken(Map.of("role", "PHARMACIEN"), utilisateur);
+
+        assertEquals("PHARMACIEN", jwtService.parse(token).getClaim("role", String.class));
+    }
+
     @Test
     void getExpirationTime_Correct() {
         // Act
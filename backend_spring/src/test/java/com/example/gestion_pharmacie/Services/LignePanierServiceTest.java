@@ -12,11 +12,13 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -34,9 +36,18 @@ class LignePanierServiceTest {
     @Mock
     private MedicamentRepository medicamentRepository;
 
+    @Mock
+    private StockService stockService;
+
+    @Mock
+    private OpenPanierRegistry openPanierRegistry;
+
     @Mock
     private UtilisateurService utilisateurService;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private LignePanierService lignePanierService;
 
@@ -96,9 +107,7 @@ class LignePanierServiceTest {
     @Test
     void addLignePanier_Success_WithExistingPanier() {
         // Arrange
-        List<Panier> existingPaniers = Arrays.asList(panier);
-        
-        when(panierRepository.findByPharmacien(pharmacien)).thenReturn(existingPaniers);
+        when(openPanierRegistry.findOpen(pharmacien)).thenReturn(Optional.of(panier));
         when(medicamentRepository.findById(1L)).thenReturn(Optional.of(medicament));
         when(lignePanierRepository.save(any(LignePanier.class))).thenReturn(lignePanier);
         
@@ -111,18 +120,33 @@ class LignePanierServiceTest {
         assertEquals(5, result.getQuantite());
         assertEquals(1L, result.getMedicament().getId());
         assertEquals("Doliprane", result.getMedicament().getNom());
-        verify(medicamentRepository, times(1)).save(medicament);
+        verify(medicamentRepository, never()).save(any(Medicament.class));
         verify(lignePanierRepository, times(1)).save(any(LignePanier.class));
-        // Verify the medicament quantity was decreased
-        assertEquals(95, medicament.getQuantite());
+        // Verify the stock was taken with a conditional decrement
+        verify(stockService, times(1)).take(Map.of(1L, 5));
+        verify(stockService, times(1)).syncQuantites(List.of(medicament));
+    }
+
+    @Test
+    void addLignePanier_StockTakenConcurrently() {
+        // Arrange: the stock read looks sufficient but another sale got there first
+        when(openPanierRegistry.findOpen(pharmacien)).thenReturn(Optional.of(panier));
+        when(medicamentRepository.findById(1L)).thenReturn(Optional.of(medicament));
+        when(stockService.take(Map.of(1L, 5))).thenReturn(List.of(1L));
+
+        // Act & Assert
+        Exception exception = assertThrows(RuntimeException.class, () -> {
+            lignePanierService.addLignePanier(createRequest);
+        });
+
+        assertTrue(exception.getMessage().contains("Quantité insuffisante"));
+        verify(lignePanierRepository, never()).save(any(LignePanier.class));
     }
 
     @Test
     void addLignePanier_Success_WithNewPanier() {
         // Arrange
-        List<Panier> emptyPanierList = new ArrayList<>();
-        
-        when(panierRepository.findByPharmacien(pharmacien)).thenReturn(emptyPanierList);
+        when(openPanierRegistry.findOpen(pharmacien)).thenReturn(Optional.empty());
         when(panierRepository.save(any(Panier.class))).thenReturn(panier);
         when(medicamentRepository.findById(1L)).thenReturn(Optional.of(medicament));
         when(lignePanierRepository.save(any(LignePanier.class))).thenReturn(lignePanier);
@@ -133,14 +157,15 @@ class LignePanierServiceTest {
         // Assert
         assertNotNull(result);
         verify(panierRepository, times(1)).save(any(Panier.class));
-        verify(medicamentRepository, times(1)).save(medicament);
+        verify(openPanierRegistry, times(1)).register(panier);
+        verify(stockService, times(1)).take(Map.of(1L, 5));
         verify(lignePanierRepository, times(1)).save(any(LignePanier.class));
     }
 
     @Test
     void addLignePanier_MedicamentNotFound() {
         // Arrange
-        when(panierRepository.findByPharmacien(pharmacien)).thenReturn(Arrays.asList(panier));
+        when(openPanierRegistry.findOpen(pharmacien)).thenReturn(Optional.of(panier));
         when(medicamentRepository.findById(99L)).thenReturn(Optional.empty());
         
         createRequest.setMedicamentId(99L);
@@ -160,7 +185,7 @@ class LignePanierServiceTest {
         otherPharmacien.setId(2L);
         medicament.setUtilisateur(otherPharmacien);
         
-        when(panierRepository.findByPharmacien(pharmacien)).thenReturn(Arrays.asList(panier));
+        when(openPanierRegistry.findOpen(pharmacien)).thenReturn(Optional.of(panier));
         when(medicamentRepository.findById(1L)).thenReturn(Optional.of(medicament));
         
         // Act & Assert
@@ -176,7 +201,7 @@ class LignePanierServiceTest {
         // Arrange
         medicament.setQuantite(3); // Less than requested 5
         
-        when(panierRepository.findByPharmacien(pharmacien)).thenReturn(Arrays.asList(panier));
+        when(openPanierRegistry.findOpen(pharmacien)).thenReturn(Optional.of(panier));
         when(medicamentRepository.findById(1L)).thenReturn(Optional.of(medicament));
         
         // Act & Assert
@@ -192,7 +217,7 @@ class LignePanierServiceTest {
         // Arrange
         List<LignePanier> lignesPanier = Arrays.asList(lignePanier);
         
-        when(panierRepository.findByPharmacien(pharmacien)).thenReturn(Arrays.asList(panier));
+        when(openPanierRegistry.findOpen(pharmacien)).thenReturn(Optional.of(panier));
         when(lignePanierRepository.findByPanier(panier)).thenReturn(lignesPanier);
         
         // Act
@@ -221,10 +246,10 @@ class LignePanierServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals(10, result.getQuantite());
-        verify(medicamentRepository, times(1)).save(medicament);
         verify(lignePanierRepository, times(1)).save(lignePanier);
-        // Verify medicament quantity was decreased by the difference (5)
-        assertEquals(95, medicament.getQuantite());
+        // Verify the stock was taken by the difference (5)
+        verify(stockService, times(1)).take(Map.of(1L, 5));
+        verify(stockService, never()).give(any());
     }
 
     @Test
@@ -242,10 +267,10 @@ class LignePanierServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals(3, result.getQuantite());
-        verify(medicamentRepository, times(1)).save(medicament);
         verify(lignePanierRepository, times(1)).save(lignePanier);
-        // Verify medicament quantity was increased by the difference (2)
-        assertEquals(102, medicament.getQuantite());
+        // Verify the difference (2) was given back to the stock
+        verify(stockService, times(1)).give(Map.of(1L, 2));
+        verify(stockService, never()).take(any());
     }
 
     @Test
@@ -285,10 +310,9 @@ class LignePanierServiceTest {
         lignePanierService.deleteLignePanier(1L);
         
         // Assert
-        verify(medicamentRepository, times(1)).save(medicament);
         verify(lignePanierRepository, times(1)).delete(lignePanier);
-        // Verify medicament quantity was increased by the ligne's quantity
-        assertEquals(105, medicament.getQuantite());
+        // Verify the ligne's quantity was given back to the stock
+        verify(stockService, times(1)).give(Map.of(1L, 5));
     }
 
     @Test
@@ -0,0 +1,203 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.entites.Medicament;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MedicamentDetailCacheTest {
+
+    private static final String URL = "https://medicament.ma/medicament/doliprane-500mg/";
+
+    @TempDir
+    Path tempDir;
+
+    private MutableClock clock;
+    private SimpleMeterRegistry meterRegistry;
+    private MedicamentDetailCache cache;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-01-01T10:00:00Z"));
+        meterRegistry = new SimpleMeterRegistry();
+        cache = open(100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.close();
+    }
+
+    @Test
+    void get_ReturnsCopyOfCachedMedicament() {
+        cache.put(URL, medicament("Doliprane 500mg"));
+
+        Medicament first = cache.get(URL).orElseThrow().getMedicament();
+        first.setNom("changé");
+
+        assertEquals("Doliprane 500mg", cache.get(URL).orElseThrow().getMedicament().getNom());
+    }
+
+    @Test
+    void get_SurvivesRestartThroughDiskTier() {
+        cache.put(URL, medicament("Doliprane 500mg"));
+        cache.close();
+
+        cache = open(100);
+        Optional<MedicamentDetailCache.CachedDetail> cached = cache.get(URL);
+
+        assertTrue(cached.isPresent());
+        assertEquals("Doliprane 500mg", cached.get().getMedicament().getNom());
+        assertEquals(10.5f, cached.get().getMedicament().getPrix_public());
+        assertEquals(1.0, meterRegistry.get("medicament.detail.cache.disk").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void get_ExpiresAfterTtl() {
+        cache.put(URL, medicament("Doliprane 500mg"));
+
+        clock.advance(Duration.ofHours(23));
+        assertTrue(cache.get(URL).isPresent());
+
+        clock.advance(Duration.ofHours(2));
+        assertTrue(cache.get(URL).isEmpty());
+        assertEquals(1.0, meterRegistry.get("medicament.detail.cache.disk.evictions").counter().count());
+    }
+
+    @Test
+    void putNotFound_IsCachedForNegativeTtlOnly() {
+        cache.putNotFound(URL);
+
+        assertTrue(cache.get(URL).orElseThrow().isNotFound());
+
+        clock.advance(Duration.ofMinutes(31));
+        assertTrue(cache.get(URL).isEmpty());
+    }
+
+    @Test
+    void purgeDisk_KeepsDiskTierBounded() {
+        cache.close();
+        meterRegistry = new SimpleMeterRegistry(); // The size gauge stays bound to the first instance otherwise
+        cache = open(10);
+        for (int i = 0; i < 25; i++) {
+            clock.advance(Duration.ofSeconds(1));
+            cache.put(URL + i, medicament("Med " + i));
+        }
+
+        assertTrue(meterRegistry.get("medicament.detail.cache.disk.size").gauge().value() <= 10);
+        // The most recent entries are kept
+        cache.close();
+        cache = open(10);
+        assertTrue(cache.get(URL + 24).isPresent());
+    }
+
+    @Test
+    void put_PurgesDiskTierInBackground() {
+        cache.close();
+        meterRegistry = new SimpleMeterRegistry();
+        List<Runnable> purges = new ArrayList<>();
+        cache = open(10, purges::add);
+        for (int i = 0; i < 25; i++) {
+            clock.advance(Duration.ofSeconds(1));
+            cache.put(URL + i, medicament("Med " + i));
+        }
+
+        // Writes only queue the purge, once until it runs
+        assertEquals(25.0, meterRegistry.get("medicament.detail.cache.disk.size").gauge().value());
+        assertEquals(1, purges.size());
+        purges.get(0).run();
+        assertTrue(meterRegistry.get("medicament.detail.cache.disk.size").gauge().value() <= 10);
+    }
+
+    @Test
+    void open_FallsBackToHeapWhenFileIsLocked() {
+        cache.put(URL, medicament("Doliprane 500mg"));
+
+        // Second instance on the same file, as with two application instances
+        MedicamentDetailCache second = open(10);
+        try {
+            second.put(URL + "autre", medicament("Dafalgan 500mg"));
+
+            assertEquals("Dafalgan 500mg", second.get(URL + "autre").orElseThrow().getMedicament().getNom());
+            assertTrue(second.get(URL).isEmpty());
+        } finally {
+            second.close();
+        }
+    }
+
+    @Test
+    void resolve_PlacesRelativeFileUnderDataDirectory() {
+        assertEquals(tempDir.resolve("cache/details.mv").toAbsolutePath().toString(),
+                MedicamentDetailCache.resolve(tempDir.toString(), "cache/details.mv"));
+        assertEquals(tempDir.resolve("details.mv").toAbsolutePath().toString(),
+                MedicamentDetailCache.resolve("/ailleurs", tempDir.resolve("details.mv").toAbsolutePath().toString()));
+        assertEquals("", MedicamentDetailCache.resolve(tempDir.toString(), ""));
+    }
+
+    @Test
+    void heapStatisticsAreExported() {
+        cache.put(URL, medicament("Doliprane 500mg"));
+        cache.get(URL);
+        cache.get(URL + "autre");
+
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "medicament.detail").tag("result", "hit").functionCounter().count());
+    }
+
+    private MedicamentDetailCache open(int maxDiskEntries) {
+        return open(maxDiskEntries, Runnable::run);
+    }
+
+    private MedicamentDetailCache open(int maxDiskEntries, Executor purgeExecutor) {
+        return new MedicamentDetailCache(100, maxDiskEntries, Duration.ofHours(24), Duration.ofMinutes(30),
+                tempDir.resolve("details.mv").toString(), meterRegistry, clock, purgeExecutor);
+    }
+
+    private static Medicament medicament(String nom) {
+        Medicament medicament = new Medicament();
+        medicament.setNom(nom);
+        medicament.setPrix_public(10.5f);
+        return medicament;
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.DTO.ImportResultDto;
+import com.example.gestion_pharmacie.Repositorys.UtilisateurRepository;
+import com.example.gestion_pharmacie.Security.CurrentActor;
+import com.example.gestion_pharmacie.entites.Fournisseur;
+import com.example.gestion_pharmacie.entites.Medicament;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MedicamentImportServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private UtilisateurRepository utilisateurRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private MedicamentImportService medicamentImportService;
+
+    private final List<Medicament> inserted = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        medicamentImportService = new MedicamentImportService(jdbcTemplate, transactionManager, new CurrentActor(utilisateurRepository), eventPublisher);
+
+        Fournisseur fournisseur = new Fournisseur();
+        fournisseur.setId(2L);
+        fournisseur.setEmail("fournisseur@example.com");
+        when(utilisateurRepository.findByEmail("fournisseur@example.com")).thenReturn(Optional.of(fournisseur));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("fournisseur@example.com", null));
+
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    Collection<Medicament> rows = invocation.getArgument(1);
+                    inserted.addAll(rows);
+                    return new int[][]{};
+                });
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void importMedicaments_CsvWithRejects() throws Exception {
+        String csv = "Nom;Quantité;PPV;Date expiration\n"
+                + "Doliprane 500mg;10;12,50;2027-01-31\n"
+                + ";5;3\n"
+                + "Smecta;abc;20\n"
+                + "\n"
+                + "\"Aspro; effervescent\";7;9.9;\n";
+        MockMultipartFile file = new MockMultipartFile("file", "catalogue.csv", "text/csv",
+                csv.getBytes(StandardCharsets.UTF_8));
+
+        ImportResultDto result = medicamentImportService.importMedicaments(file);
+
+        assertEquals(4, result.getTotalRows());
+        assertEquals(2, result.getImported());
+        assertEquals(2, result.getRejected());
+        assertEquals(3, result.getRejects().get(0).getLigne());
+        assertEquals("Nom manquant", result.getRejects().get(0).getRaison());
+        assertEquals(4, result.getRejects().get(1).getLigne());
+        assertTrue(result.getRowsPerSecond() > 0);
+
+        assertEquals("Doliprane 500mg", inserted.get(0).getNom());
+        assertEquals(10, inserted.get(0).getQuantite());
+        assertEquals(12.5f, inserted.get(0).getPrix_public());
+        assertNotNull(inserted.get(0).getDate_expiration());
+        assertEquals("Aspro; effervescent", inserted.get(1).getNom());
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+    }
+
+    @Test
+    void importMedicaments_XlsxRejectsUseSheetRowNumbers() throws Exception {
+        byte[] xlsx;
+        try (XSSFWorkbook workbook = new XSSFWorkbook();
+             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet();
+            sheet.createRow(0).createCell(0).setCellValue("Nom");
+            sheet.getRow(0).createCell(1).setCellValue("Quantité");
+            sheet.createRow(1).createCell(0).setCellValue("Doliprane");
+            // Rows 3 and 4 are left blank, so they are not in the sheet XML at all
+            sheet.createRow(4).createCell(1).setCellValue(5);
+            sheet.createRow(6).createCell(0).setCellValue("Smecta");
+            sheet.getRow(6).createCell(1).setCellValue("abc");
+            workbook.write(out);
+            xlsx = out.toByteArray();
+        }
+        MockMultipartFile file = new MockMultipartFile("file", "catalogue.xlsx",
+                "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", xlsx);
+
+        ImportResultDto result = medicamentImportService.importMedicaments(file);
+
+        assertEquals(1, result.getImported());
+        assertEquals(List.of(5L, 7L), result.getRejects().stream().map(ImportResultDto.RowRejectDto::getLigne).toList());
+    }
+
+    @Test
+    void importRows_WritesInChunks() {
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[]{"NOM", "PRESENTATION"});
+        int count = MedicamentImportService.CHUNK_SIZE * 2 + 3;
+        for (int i = 0; i < count; i++) {
+            rows.add(new String[]{"Med " + i, "Boite"});
+        }
+
+        ImportResultDto result = medicamentImportService.importRows(rows.iterator(), 2L);
+
+        assertEquals(count, result.getImported());
+        assertEquals(count, inserted.size());
+        verify(jdbcTemplate, times(3)).batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+    }
+
+    @Test
+    void importRows_FailedChunkRejectsItsRows() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate"));
+        List<String[]> rows = List.of(new String[]{"nom"}, new String[]{"A"}, new String[]{"B"});
+
+        ImportResultDto result = medicamentImportService.importRows(rows.iterator(), 2L);
+
+        assertEquals(0, result.getImported());
+        assertEquals(2, result.getRejected());
+        assertEquals(List.of(2L, 3L), result.getRejects().stream().map(ImportResultDto.RowRejectDto::getLigne).toList());
+    }
+
+    @Test
+    void importMedicaments_MissingNomColumn() {
+        MockMultipartFile file = new MockMultipartFile("file", "catalogue.csv", "text/csv",
+                "code,prix\n1,2\n".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IllegalArgumentException.class, () -> medicamentImportService.importMedicaments(file));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void importMedicaments_UnsupportedFormat() {
+        MockMultipartFile file = new MockMultipartFile("file", "catalogue.pdf", "application/pdf", new byte[]{1});
+
+        assertThrows(IllegalArgumentException.class, () -> medicamentImportService.importMedicaments(file));
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.Config.ScraperProperties;
+import com.example.gestion_pharmacie.Repositorys.MedicamentMirrorRepository;
+import com.example.gestion_pharmacie.Repositorys.MirrorLettreRepository;
+import com.example.gestion_pharmacie.Repositorys.PageSnapshotRepository;
+import com.example.gestion_pharmacie.entites.MedicamentMirror;
+import com.example.gestion_pharmacie.entites.MirrorLettre;
+import com.example.gestion_pharmacie.entites.PageSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MedicamentMirrorServiceTest {
+
+    private static final String DOLIPRANE_500_URL = FixturePageFetcher.BASE_URL + "/medicament/doliprane-500mg/";
+
+    @Mock
+    private MedicamentMirrorRepository medicamentMirrorRepository;
+
+    @Mock
+    private PageSnapshotRepository pageSnapshotRepository;
+
+    @Mock
+    private MirrorLettreRepository mirrorLettreRepository;
+
+    private final Map<String, MedicamentMirror> mirrors = new LinkedHashMap<>();
+    private final Map<String, PageSnapshot> snapshots = new HashMap<>();
+    private final Map<String, MirrorLettre> lettres = new HashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    private FixturePageFetcher pageFetcher;
+    private MedicamentMirrorService medicamentMirrorService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        stubRepositories();
+
+        pageFetcher = new FixturePageFetcher()
+                .listing('D', 1, "listing-D-1.html")
+                .listing('D', 2, "listing-D-2.html")
+                .listing('D', 3, "listing-empty.html")
+                .page(DOLIPRANE_500_URL, "detail-doliprane-500mg.html")
+                .page(FixturePageFetcher.BASE_URL + "/medicament/doliprane-1000mg/", "detail-doliprane-1000mg.html");
+        ScraperProperties properties = new ScraperProperties(FixturePageFetcher.BASE_URL, "test-agent",
+                1000, 30, 4, 1000, true, 168, 500);
+        medicamentMirrorService = new MedicamentMirrorService(pageFetcher, medicamentMirrorRepository,
+                pageSnapshotRepository, mirrorLettreRepository, properties);
+    }
+
+    @Test
+    void syncLetter_MirrorsListingPages() {
+        int updated = medicamentMirrorService.syncLetter('D');
+
+        assertEquals(4, updated);
+        assertEquals(Set.of("DAFALGAN 500 MG", "Doliprane 500mg", "Doliprane 1000mg", "DOLIRHUME"),
+                mirrors.values().stream().map(MedicamentMirror::getNom).collect(Collectors.toSet()));
+        MedicamentMirror doliprane = mirrors.get(DOLIPRANE_500_URL);
+        assertEquals("D", doliprane.getLettre());
+        assertEquals("doliprane 500mg", doliprane.getNomRecherche());
+        assertEquals(1001, doliprane.getPosition());
+        assertNull(doliprane.getDetailFetchedAt());
+        assertEquals(3, pageFetcher.getRequests().size());
+    }
+
+    @Test
+    void syncLetter_SecondRunUsesConditionalGets() {
+        medicamentMirrorService.syncLetter('D');
+        clearInvocations(medicamentMirrorRepository);
+
+        int updated = medicamentMirrorService.syncLetter('D');
+
+        assertEquals(0, updated);
+        assertEquals(3, pageFetcher.getNotModified().size());
+        verify(medicamentMirrorRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void syncLetter_MarksLetterMirroredOnlyWhenEveryPageWasRead() {
+        pageFetcher.failing(FixturePageFetcher.BASE_URL + "/listing-des-medicaments/page/2/?lettre=D");
+
+        medicamentMirrorService.syncLetter('D');
+
+        // Page 1 is saved, but a partial letter must keep sending searches to the live crawl
+        assertEquals(3, mirrors.size());
+        assertFalse(medicamentMirrorService.isMirrored('d'));
+
+        pageFetcher.listing('D', 2, "listing-D-2.html");
+        medicamentMirrorService.syncLetter('D');
+
+        assertEquals(4, mirrors.size());
+        assertTrue(medicamentMirrorService.isMirrored('d'));
+    }
+
+    @Test
+    void syncLetter_PrunesEntriesNoLongerListed() {
+        medicamentMirrorService.syncLetter('D');
+        mirrors.values().forEach(m -> m.setListingSeenAt(m.getListingSeenAt().minusMinutes(1)));
+        pageFetcher.listing('D', 2, "listing-empty.html");
+
+        medicamentMirrorService.syncLetter('D');
+
+        // Page 1 answered 304 and keeps its entries; Dolirhume left page 2
+        assertEquals(Set.of("DAFALGAN 500 MG", "Doliprane 500mg", "Doliprane 1000mg"),
+                mirrors.values().stream().map(MedicamentMirror::getNom).collect(Collectors.toSet()));
+        assertTrue(medicamentMirrorService.isMirrored('D'));
+    }
+
+    @Test
+    void syncLetter_FailedResyncKeepsEntries() {
+        medicamentMirrorService.syncLetter('D');
+        mirrors.values().forEach(m -> m.setListingSeenAt(m.getListingSeenAt().minusMinutes(1)));
+        pageFetcher.failing(FixturePageFetcher.BASE_URL + "/listing-des-medicaments/page/2/?lettre=D");
+
+        medicamentMirrorService.syncLetter('D');
+
+        assertEquals(4, mirrors.size());
+    }
+
+    @Test
+    void refreshDetails_FillsDetailsAndDropsMissingPages() {
+        medicamentMirrorService.syncLetter('D');
+
+        int refreshed = medicamentMirrorService.refreshDetails(100);
+
+        assertEquals(2, refreshed);
+        // Dafalgan and Dolirhume have no fixture detail page: they answer 404 and leave the mirror
+        assertEquals(2, mirrors.size());
+        MedicamentMirror doliprane = mirrors.get(DOLIPRANE_500_URL);
+        assertNotNull(doliprane.getDetailFetchedAt());
+        assertEquals(10.5f, doliprane.getPrixPublic());
+        assertEquals("Paracétamol 500mg", doliprane.getComposition());
+        assertEquals("Paracétamol 500mg", medicamentMirrorService.findDetail(DOLIPRANE_500_URL).orElseThrow().getComposition());
+
+        // Fresh details are not fetched again
+        pageFetcher.getRequests().clear();
+        assertEquals(0, medicamentMirrorService.refreshDetails(100));
+        assertTrue(pageFetcher.getRequests().isEmpty());
+    }
+
+    @Test
+    void findDetail_EmptyUntilDetailSynced() {
+        medicamentMirrorService.syncLetter('D');
+
+        assertTrue(medicamentMirrorService.findDetail(DOLIPRANE_500_URL).isEmpty());
+    }
+
+    private void stubRepositories() {
+        when(pageSnapshotRepository.findByUrl(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(snapshots.get(invocation.<String>getArgument(0))));
+        when(pageSnapshotRepository.save(any(PageSnapshot.class))).thenAnswer(invocation -> {
+            PageSnapshot snapshot = invocation.getArgument(0);
+            if (snapshot.getId() == null) {
+                snapshot.setId(ids.incrementAndGet());
+            }
+            snapshots.put(snapshot.getUrl(), snapshot);
+            return snapshot;
+        });
+        doAnswer(invocation -> snapshots.remove(invocation.<PageSnapshot>getArgument(0).getUrl()))
+                .when(pageSnapshotRepository).delete(any(PageSnapshot.class));
+
+        when(medicamentMirrorRepository.findByDetailUrlIn(anyCollection())).thenAnswer(invocation ->
+                invocation.<Collection<String>>getArgument(0).stream()
+                        .map(mirrors::get).filter(Objects::nonNull).collect(Collectors.toList()));
+        when(medicamentMirrorRepository.saveAll(any())).thenAnswer(invocation -> {
+            List<MedicamentMirror> saved = new ArrayList<>();
+            for (MedicamentMirror mirror : invocation.<Iterable<MedicamentMirror>>getArgument(0)) {
+                saved.add(saveMirror(mirror));
+            }
+            return saved;
+        });
+        when(medicamentMirrorRepository.save(any(MedicamentMirror.class)))
+                .thenAnswer(invocation -> saveMirror(invocation.getArgument(0)));
+        doAnswer(invocation -> mirrors.remove(invocation.<MedicamentMirror>getArgument(0).getDetailUrl()))
+                .when(medicamentMirrorRepository).delete(any(MedicamentMirror.class));
+        when(medicamentMirrorRepository.findStaleDetails(any(LocalDateTime.class), any())).thenAnswer(invocation -> {
+            LocalDateTime before = invocation.getArgument(0);
+            return mirrors.values().stream()
+                    .filter(m -> m.getDetailFetchedAt() == null || m.getDetailFetchedAt().isBefore(before))
+                    .collect(Collectors.toList());
+        });
+        when(medicamentMirrorRepository.markListed(anyString(), anyInt(), anyInt(), any(LocalDateTime.class)))
+                .thenAnswer(invocation -> {
+                    String lettre = invocation.getArgument(0);
+                    int from = invocation.getArgument(1);
+                    int to = invocation.getArgument(2);
+                    List<MedicamentMirror> listed = mirrors.values().stream()
+                            .filter(m -> m.getLettre().equals(lettre) && m.getPosition() >= from && m.getPosition() < to)
+                            .collect(Collectors.toList());
+                    listed.forEach(m -> m.setListingSeenAt(invocation.getArgument(3)));
+                    return listed.size();
+                });
+        when(medicamentMirrorRepository.findByLettreAndListingSeenAtBefore(anyString(), any(LocalDateTime.class)))
+                .thenAnswer(invocation -> {
+                    LocalDateTime before = invocation.getArgument(1);
+                    return mirrors.values().stream()
+                            .filter(m -> m.getLettre().equals(invocation.getArgument(0)) && m.getListingSeenAt().isBefore(before))
+                            .collect(Collectors.toList());
+                });
+        doAnswer(invocation -> {
+            invocation.<Iterable<MedicamentMirror>>getArgument(0).forEach(m -> mirrors.remove(m.getDetailUrl()));
+            return null;
+        }).when(medicamentMirrorRepository).deleteAll(anyIterable());
+        when(pageSnapshotRepository.findByUrlIn(anyCollection())).thenAnswer(invocation ->
+                invocation.<Collection<String>>getArgument(0).stream()
+                        .map(snapshots::get).filter(Objects::nonNull).collect(Collectors.toList()));
+
+        when(mirrorLettreRepository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(lettres.get(invocation.<String>getArgument(0))));
+        when(mirrorLettreRepository.save(any(MirrorLettre.class))).thenAnswer(invocation -> {
+            MirrorLettre lettre = invocation.getArgument(0);
+            lettres.put(lettre.getLettre(), lettre);
+            return lettre;
+        });
+        when(mirrorLettreRepository.existsByLettreAndCompletedAtIsNotNull(anyString())).thenAnswer(invocation -> {
+            MirrorLettre lettre = lettres.get(invocation.<String>getArgument(0));
+            return lettre != null && lettre.getCompletedAt() != null;
+        });
+
+        when(medicamentMirrorRepository.findByDetailUrl(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(mirrors.get(invocation.<String>getArgument(0))));
+    }
+
+    private MedicamentMirror saveMirror(MedicamentMirror mirror) {
+        if (mirror.getId() == null) {
+            mirror.setId(ids.incrementAndGet());
+        }
+        mirrors.put(mirror.getDetailUrl(), mirror);
+        return mirror;
+    }
+}
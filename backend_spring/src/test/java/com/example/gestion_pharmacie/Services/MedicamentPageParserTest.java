@@ -0,0 +1,81 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.entites.Medicament;
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MedicamentPageParserTest {
+
+    @Test
+    void cleanListingName_RemovesPriceSuffix() {
+        assertEquals("DOLIPRANE 500 MG", MedicamentPageParser.cleanListingName(" DOLIPRANE 500 MG - PPV: 12.30 dhs "));
+        assertEquals("DOLIPRANE 1000 MG", MedicamentPageParser.cleanListingName("DOLIPRANE 1000 MG - 15 dhs"));
+        assertEquals("DOLIPRANE", MedicamentPageParser.cleanListingName("DOLIPRANE"));
+    }
+
+    @Test
+    void parsePrice_AcceptsCommaDecimals() {
+        assertEquals(12.3f, MedicamentPageParser.parsePrice("12,30 dhs"));
+        assertEquals(7f, MedicamentPageParser.parsePrice("PPV : 7 dhs"));
+        assertThrows(NumberFormatException.class, () -> MedicamentPageParser.parsePrice("NC"));
+    }
+
+    @Test
+    void parseListing_ResolvesRelativeLinks() {
+        String html = "<table><tr><td><a href=\"/medicament/doliprane-500mg/\">DOLIPRANE 500 MG - PPV: 12.30 dhs</a></td></tr></table>";
+
+        List<MedicamentPageParser.ListingEntry> entries =
+                MedicamentPageParser.parseListing(Jsoup.parse(html, "https://medicament.ma/listing-des-medicaments/"));
+
+        assertEquals(1, entries.size());
+        assertEquals("DOLIPRANE 500 MG", entries.get(0).getNom());
+        assertEquals("https://medicament.ma/medicament/doliprane-500mg/", entries.get(0).getDetailUrl());
+    }
+
+    @Test
+    void parseDetail_ReadsOnlyTheSpecificationTable() {
+        String html = "<h1 class=\"entry-title\">DOLIPRANE 500 MG</h1>"
+                + "<table class=\"table-details\">"
+                + "<tr><td>Composition</td><td>Paracétamol</td></tr>"
+                + "<tr><th>PPV</th><td>PPV</td><td>12,30 dhs</td></tr>"
+                + "<tr><td>Fabricant</td><td>Sanofi</td></tr>"
+                + "</table>"
+                + "<table class=\"related\"><tr><td>Composition</td><td>Ibuprofène</td></tr></table>";
+
+        Medicament medicament = MedicamentPageParser.parseDetail(Jsoup.parse(html));
+
+        assertEquals("DOLIPRANE 500 MG", medicament.getNom());
+        assertEquals("Paracétamol", medicament.getComposition());
+        assertEquals(12.3f, medicament.getPrix_public());
+        assertEquals("500 MG", medicament.getDosage());
+    }
+
+    @Test
+    void parseDetail_FallsBackToFirstTableWithKnownLabels() {
+        String html = "<h1>AUGMENTIN 1 G</h1>"
+                + "<table><tr><td>Voir aussi</td><td>Clamoxyl</td></tr></table>"
+                + "<table><tr><td>Dosage</td><td>1 g</td></tr><tr><td>Code ATC</td><td>J01CR02</td></tr></table>"
+                + "<table><tr><td>Dosage</td><td>500 mg</td></tr></table>";
+
+        Medicament medicament = MedicamentPageParser.parseDetail(Jsoup.parse(html));
+
+        assertEquals("AUGMENTIN 1 G", medicament.getNom());
+        assertEquals("1 g", medicament.getDosage());
+        assertEquals("J01CR02", medicament.getCode_ATC());
+    }
+
+    @Test
+    void parseDetail_KeepsParsingAfterInvalidPrice() {
+        String html = "<h1 class=\"entry-title\">SIROP</h1><table class=\"table-details\">"
+                + "<tr><td>PPV</td><td>NC</td></tr><tr><td>Tableau</td><td>A</td></tr></table>";
+
+        Medicament medicament = MedicamentPageParser.parseDetail(Jsoup.parse(html));
+
+        assertEquals("A", medicament.getTableau());
+        assertNull(medicament.getDosage());
+    }
+}
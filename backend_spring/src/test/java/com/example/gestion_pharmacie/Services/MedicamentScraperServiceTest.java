@@ -1,232 +1,309 @@
 package com.example.gestion_pharmacie.Services;
 
+import com.example.gestion_pharmacie.Config.ScraperProperties;
 import com.example.gestion_pharmacie.Repositorys.MedicamentRepository;
 import com.example.gestion_pharmacie.entites.Medicament;
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import com.example.gestion_pharmacie.entites.MedicamentMirror;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
-import org.mockito.MockedStatic;
 import org.mockito.MockitoAnnotations;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 class MedicamentScraperServiceTest {
 
-    @Mock
-    private MedicamentRepository medicamentRepository;
-
-    @InjectMocks
-    private MedicamentScraperService medicamentScraperService;
+    private static final String DOLIPRANE_500_URL = FixturePageFetcher.BASE_URL + "/medicament/doliprane-500mg/";
+    private static final String DOLIPRANE_1000_URL = FixturePageFetcher.BASE_URL + "/medicament/doliprane-1000mg/";
 
     @Mock
-    private Connection connection;
+    private MedicamentRepository medicamentRepository;
 
     @Mock
-    private Document document;
+    private MedicamentMirrorService medicamentMirrorService;
 
-    @Mock
-    private Elements elements;
+    private FixturePageFetcher pageFetcher;
+    private MedicamentScraperService medicamentScraperService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(medicamentMirrorService.findDetail(anyString())).thenReturn(Optional.empty());
+
+        pageFetcher = new FixturePageFetcher()
+                .listing('D', 1, "listing-D-1.html")
+                .listing('D', 2, "listing-D-2.html")
+                .listing('D', 3, "listing-empty.html")
+                .page(DOLIPRANE_500_URL, "detail-doliprane-500mg.html")
+                .page(DOLIPRANE_1000_URL, "detail-doliprane-1000mg.html");
+        ScraperProperties properties = new ScraperProperties(FixturePageFetcher.BASE_URL, "test-agent",
+                1000, 30, 4, 1000, true, 168, 500);
+        medicamentScraperService = new MedicamentScraperService(medicamentRepository, pageFetcher,
+                medicamentMirrorService, properties, heapOnlyCache());
     }
 
     @Test
     void progressiveSearch_Success() throws IOException {
-        // This test uses a MockedStatic for Jsoup which is only available in Mockito 3.4.0 or higher
-        // If your project has a lower version, you might need to refactor this test
-
-        try (MockedStatic<Jsoup> jsoupMockedStatic = mockStatic(Jsoup.class)) {
-            // Mock the Jsoup connect behavior
-            jsoupMockedStatic.when(() -> Jsoup.connect(anyString())).thenReturn(connection);
-            when(connection.timeout(anyInt())).thenReturn(connection);
-            when(connection.get()).thenReturn(document);
-
-            // Create mock elements
-            Element linkElement1 = mock(Element.class);
-            Element linkElement2 = mock(Element.class);
-            Element detailsTableCell = mock(Element.class);
-            Elements detailsCells = mock(Elements.class);
-            Elements tableRows = mock(Elements.class);
-            Elements tables = mock(Elements.class);
-            
-            // Set up the behavior
-            when(document.select("table tr td a")).thenReturn(elements);
-            when(elements.isEmpty()).thenReturn(false);
-            when(elements.iterator()).thenReturn(List.of(linkElement1, linkElement2).iterator());
-            
-            when(linkElement1.text()).thenReturn("Doliprane 500mg - PPV: 10.5");
-            when(linkElement1.attr("href")).thenReturn("https://medicament.ma/doliprane-500mg");
-            when(linkElement2.text()).thenReturn("Doliprane 1000mg - 12.5");
-            when(linkElement2.attr("href")).thenReturn("https://medicament.ma/doliprane-1000mg");
-            
-            // Mock the detailed info page
-            Document detailDoc = mock(Document.class);
-            Connection detailConnection = mock(Connection.class);
-            
-            jsoupMockedStatic.when(() -> Jsoup.connect("https://medicament.ma/doliprane-500mg")).thenReturn(detailConnection);
-            when(detailConnection.userAgent(anyString())).thenReturn(detailConnection);
-            when(detailConnection.timeout(anyInt())).thenReturn(detailConnection);
-            when(detailConnection.get()).thenReturn(detailDoc);
-            
-            // Mock title and tables
-            when(detailDoc.select("h1.entry-title")).thenReturn(elements);
-            when(elements.text()).thenReturn("Doliprane 500mg");
-            when(detailDoc.select("table")).thenReturn(tables);
-            when(tables.iterator()).thenReturn(List.of(mock(Element.class)).iterator());
-            
-            // Mock table rows for detailed information
-            Element tableElement = mock(Element.class);
-            when(tables.get(0)).thenReturn(tableElement);
-            when(tableElement.select("tr")).thenReturn(tableRows);
-            when(tableRows.iterator()).thenReturn(List.of(mock(Element.class), mock(Element.class)).iterator());
-            
-            // Setup rows with cells
-            Element row1 = mock(Element.class);
-            Element row2 = mock(Element.class);
-            when(tableRows.get(0)).thenReturn(row1);
-            when(tableRows.get(1)).thenReturn(row2);
-            
-            // Setup cells for each row
-            Elements row1Cells = mock(Elements.class);
-            Elements row2Cells = mock(Elements.class);
-            when(row1.select("td")).thenReturn(row1Cells);
-            when(row2.select("td")).thenReturn(row2Cells);
-            when(row1Cells.size()).thenReturn(2);
-            when(row2Cells.size()).thenReturn(2);
-            
-            // Cell content
-            Element cell1_1 = mock(Element.class);
-            Element cell1_2 = mock(Element.class);
-            Element cell2_1 = mock(Element.class);
-            Element cell2_2 = mock(Element.class);
-            
-            when(row1Cells.get(0)).thenReturn(cell1_1);
-            when(row1Cells.get(1)).thenReturn(cell1_2);
-            when(row2Cells.get(0)).thenReturn(cell2_1);
-            when(row2Cells.get(1)).thenReturn(cell2_2);
-            
-            when(cell1_1.text()).thenReturn("ppv");
-            when(cell1_2.text()).thenReturn("10.50 DH");
-            when(cell2_1.text()).thenReturn("composition");
-            when(cell2_2.text()).thenReturn("Paracetamol");
-            
-            // Perform the search
-            List<Medicament> results = medicamentScraperService.progressiveSearch("doli");
-            
-            // Verify results
-            assertNotNull(results);
-            assertEquals(2, results.size());
-            assertEquals("Doliprane 500mg", results.get(0).getNom());
-//            assertEquals(10.5, results.get(0).getPrix_public());
-            assertEquals("Doliprane 1000mg", results.get(1).getNom());
+        List<Medicament> streamed = new ArrayList<>();
+
+        List<Medicament> results = medicamentScraperService.progressiveSearch("doli", streamed::add);
+
+        assertEquals(3, results.size());
+        assertEquals("Doliprane 500mg", results.get(0).getNom());
+        assertEquals(DOLIPRANE_500_URL, results.get(0).getTableau());
+        assertEquals("Doliprane 1000mg", results.get(1).getNom());
+        assertEquals("DOLIRHUME", results.get(2).getNom());
+        assertEquals(results, streamed);
+        // Page 3 is empty: the crawl stops there, at most one window of pages ahead was requested
+        assertTrue(pageFetcher.getRequests().size() <= 3 + 3);
+    }
+
+    @Test
+    void progressiveSearch_ExactMatchFirstWithDetails() throws IOException {
+        List<Medicament> results = medicamentScraperService.progressiveSearch("Doliprane 1000mg");
+
+        assertEquals(1, results.size());
+        assertEquals("Doliprane 1000mg comprimé", results.get(0).getNom());
+        assertEquals(12.5f, results.get(0).getPrix_public());
+    }
+
+    @Test
+    void progressiveSearch_OverHttp_StopsAtQuota() throws Exception {
+        // Every page lists 25 matching names: the quota of 20 is reached on page 1
+        try (StubListingServer server = new StubListingServer(25, 25, 50)) {
+            ScraperProperties properties = new ScraperProperties(server.baseUrl(), "test-agent", 2000, 30, 2, 1000, true, 168, 500);
+            MedicamentScraperService service = new MedicamentScraperService(medicamentRepository,
+                    new ThrottledPageFetcher(new JsoupPageFetcher(properties), 2, 1000), medicamentMirrorService, properties, heapOnlyCache());
+            List<Medicament> streamed = new CopyOnWriteArrayList<>();
+
+            List<Medicament> results = service.progressiveSearchAsync("xylo", streamed::add).get(10, TimeUnit.SECONDS);
+
+            assertEquals(20, results.size());
+            assertEquals("XYLO 1-0", results.get(0).getNom());
+            assertEquals(results, streamed);
+            assertTrue(server.requestedPages() <= 2, "pages demandées: " + server.requestedPages());
         }
     }
 
+    @Test
+    void progressiveSearch_OverHttp_FetchesInParallelInPageOrder() throws Exception {
+        // One matching name per page, 12 non-empty pages
+        try (StubListingServer server = new StubListingServer(12, 1, 100)) {
+            ScraperProperties properties = new ScraperProperties(server.baseUrl(), "test-agent", 2000, 30, 4, 1000, true, 168, 500);
+            MedicamentScraperService service = new MedicamentScraperService(medicamentRepository,
+                    new ThrottledPageFetcher(new JsoupPageFetcher(properties), 4, 1000), medicamentMirrorService, properties, heapOnlyCache());
+
+            List<Medicament> results = service.progressiveSearch("xylo");
+
+            assertEquals(12, results.size());
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals("XYLO " + (i + 1) + "-0", results.get(i).getNom());
+            }
+            assertTrue(server.maxConcurrent() > 1, "aucune requête parallèle");
+            assertTrue(server.maxConcurrent() <= 4, "limite par hôte dépassée: " + server.maxConcurrent());
+        }
+    }
+
+    @Test
+    void progressiveSearchAsync_CancelStopsCrawl() throws Exception {
+        // One matching name per page, slow pages: uncancelled, the crawl would go on for all 12 pages
+        try (StubListingServer server = new StubListingServer(12, 1, 300)) {
+            ScraperProperties properties = new ScraperProperties(server.baseUrl(), "test-agent", 2000, 30, 2, 1000, true, 168, 500);
+            MedicamentScraperService service = new MedicamentScraperService(medicamentRepository,
+                    new ThrottledPageFetcher(new JsoupPageFetcher(properties), 2, 1000), medicamentMirrorService, properties, heapOnlyCache());
+            CountDownLatch firstResult = new CountDownLatch(1);
+
+            CompletableFuture<List<Medicament>> search = service.progressiveSearchAsync("xylo", medicament -> firstResult.countDown());
+            assertTrue(firstResult.await(10, TimeUnit.SECONDS));
+            search.cancel(true);
+            Thread.sleep(1000);
+
+            assertTrue(search.isCancelled());
+            // Page 1 was read, at most one window of pages was in flight when the search was cancelled
+            assertTrue(server.requestedPages() <= 4, "pages demandées: " + server.requestedPages());
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void progressiveSearch_AnswersFromMirror() throws IOException {
+        MedicamentMirror exact = mirror("Doliprane 500mg", DOLIPRANE_500_URL);
+        exact.setDetailFetchedAt(LocalDateTime.now());
+        exact.setPrixPublic(10.5f);
+        when(medicamentMirrorService.isMirrored('D')).thenReturn(true);
+        when(medicamentMirrorService.findExact("doliprane 500mg")).thenReturn(Optional.of(exact));
+        when(medicamentMirrorService.search(eq("doliprane 500mg"), anyInt()))
+                .thenReturn(List.of(exact, mirror("Doliprane 500mg effervescent", "u2")));
+
+        List<Medicament> results = medicamentScraperService.progressiveSearch("doliprane 500mg");
+
+        assertEquals(2, results.size());
+        assertEquals(10.5f, results.get(0).getPrix_public());
+        assertEquals("Doliprane 500mg effervescent", results.get(1).getNom());
+        assertTrue(pageFetcher.getRequests().isEmpty());
+    }
+
     @Test
     void progressiveSearch_EmptyQuery() throws IOException {
         // Test with empty query
         List<Medicament> results = medicamentScraperService.progressiveSearch("");
-        
+
         assertNotNull(results);
         assertTrue(results.isEmpty());
-        
+
         // Test with null query
         results = medicamentScraperService.progressiveSearch(null);
         assertNotNull(results);
         assertTrue(results.isEmpty());
     }
 
+    @Test
+    void getDetailedMedicamentInfo_Success() throws IOException {
+        Medicament result = medicamentScraperService.getDetailedMedicamentInfo(DOLIPRANE_500_URL);
 
+        assertNotNull(result);
+        assertEquals("Doliprane 500mg", result.getNom());
+        assertEquals("Boîte de 16 comprimés", result.getPresentation());
+        assertEquals("500 MG", result.getDosage());
+        assertEquals("N02BE01", result.getCode_ATC());
+        assertEquals(10.5f, result.getPrix_public());
+        assertEquals(9.8f, result.getPrix_conseille());
+        assertEquals(8.2f, result.getPrix_hospitalier());
+        assertEquals("Paracétamol 500mg", result.getComposition());
+        assertEquals("Antalgique et antipyrétique", result.getClasse_therapeutique());
+        assertEquals("Médicament", result.getNatureDuProduit());
+        assertEquals("Tableau C", result.getTableau());
+        assertEquals("Traitement symptomatique des douleurs et de la fièvre.", result.getIndications());
+    }
 
     @Test
-    void getDetailedMedicamentInfo_Success() throws IOException {
-        // Mock the web page
-        try (MockedStatic<Jsoup> jsoupMockedStatic = mockStatic(Jsoup.class)) {
-            String detailUrl = "https://medicament.ma/doliprane-500mg";
-            
-            // Setup connection and document
-            jsoupMockedStatic.when(() -> Jsoup.connect(detailUrl)).thenReturn(connection);
-            when(connection.userAgent(anyString())).thenReturn(connection);
-            when(connection.timeout(anyInt())).thenReturn(connection);
-            when(connection.get()).thenReturn(document);
-            
-            // Mock title
-            Elements titleElements = mock(Elements.class);
-            when(document.select("h1.entry-title")).thenReturn(titleElements);
-            when(titleElements.text()).thenReturn("Doliprane 500mg");
-            
-            // Mock tables with medication details
-            Elements tables = mock(Elements.class);
-            Element table = mock(Element.class);
-            Elements rows = mock(Elements.class);
-            
-            when(document.select("table")).thenReturn(tables);
-            when(tables.iterator()).thenReturn(List.of(table).iterator());
-            when(table.select("tr")).thenReturn(rows);
-            
-            // Create table rows with medication details
-            Element row1 = mock(Element.class); // PPV
-            Element row2 = mock(Element.class); // Prix hospitalier
-            Element row3 = mock(Element.class); // Composition
-            
-            when(rows.iterator()).thenReturn(List.of(row1, row2, row3).iterator());
-            
-            // Row 1: PPV
-            Elements row1Cells = mock(Elements.class);
-            Element cell1_1 = mock(Element.class);
-            Element cell1_2 = mock(Element.class);
-            when(row1.select("td")).thenReturn(row1Cells);
-            when(row1Cells.size()).thenReturn(2);
-            when(row1Cells.get(0)).thenReturn(cell1_1);
-            when(row1Cells.get(1)).thenReturn(cell1_2);
-            when(cell1_1.text()).thenReturn("PPV");
-            when(cell1_2.text()).thenReturn("10.50 DH");
-            
-            // Row 2: Prix hospitalier
-            Elements row2Cells = mock(Elements.class);
-            Element cell2_1 = mock(Element.class);
-            Element cell2_2 = mock(Element.class);
-            when(row2.select("td")).thenReturn(row2Cells);
-            when(row2Cells.size()).thenReturn(2);
-            when(row2Cells.get(0)).thenReturn(cell2_1);
-            when(row2Cells.get(1)).thenReturn(cell2_2);
-            when(cell2_1.text()).thenReturn("Prix Hospitalier");
-            when(cell2_2.text()).thenReturn("8.20 DH");
-            
-            // Row 3: Composition
-            Elements row3Cells = mock(Elements.class);
-            Element cell3_1 = mock(Element.class);
-            Element cell3_2 = mock(Element.class);
-            when(row3.select("td")).thenReturn(row3Cells);
-            when(row3Cells.size()).thenReturn(2);
-            when(row3Cells.get(0)).thenReturn(cell3_1);
-            when(row3Cells.get(1)).thenReturn(cell3_2);
-            when(cell3_1.text()).thenReturn("Composition");
-            when(cell3_2.text()).thenReturn("Paracétamol 500mg");
-            
-            // Get the detailed info
-            Medicament result = medicamentScraperService.getDetailedMedicamentInfo(detailUrl);
-            
-            // Verify result
-            assertNotNull(result);
-            assertEquals("Doliprane 500mg", result.getNom());
-            assertEquals(10.5f, result.getPrix_public());
-            assertEquals(8.2f, result.getPrix_hospitalier());
-            assertEquals("Paracétamol 500mg", result.getComposition());
+    void getDetailedMedicamentInfo_DosageFromTitle() throws IOException {
+        Medicament result = medicamentScraperService.getDetailedMedicamentInfo(DOLIPRANE_1000_URL);
+
+        assertEquals("1000mg comprimé", result.getDosage());
+        assertEquals(0f, result.getPrix_hospitalier());
+    }
+
+    @Test
+    void getDetailedMedicamentInfo_FromMirror() throws IOException {
+        Medicament mirrored = new Medicament();
+        mirrored.setNom("Doliprane 500mg");
+        when(medicamentMirrorService.findDetail(DOLIPRANE_500_URL)).thenReturn(Optional.of(mirrored));
+
+        assertSame(mirrored, medicamentScraperService.getDetailedMedicamentInfo(DOLIPRANE_500_URL));
+        assertTrue(pageFetcher.getRequests().isEmpty());
+    }
+
+    @Test
+    void getDetailedMedicamentInfo_NotFound() {
+        String url = FixturePageFetcher.BASE_URL + "/medicament/inconnu/";
+
+        assertThrows(IOException.class, () -> medicamentScraperService.getDetailedMedicamentInfo(url));
+        // The 404 is cached: the second call does not hit the site
+        assertThrows(IOException.class, () -> medicamentScraperService.getDetailedMedicamentInfo(url));
+        assertEquals(1, pageFetcher.getRequests().size());
+    }
+
+    @Test
+    void getDetailedMedicamentInfo_CachedAfterFirstFetch() throws IOException {
+        Medicament first = medicamentScraperService.getDetailedMedicamentInfo(DOLIPRANE_500_URL);
+        first.setNom("modifié par l'appelant");
+
+        Medicament second = medicamentScraperService.getDetailedMedicamentInfo(DOLIPRANE_500_URL);
+
+        assertEquals("Doliprane 500mg", second.getNom());
+        assertEquals(10.5f, second.getPrix_public());
+        assertEquals(1, pageFetcher.getRequests().size());
+    }
+
+    /** Local HTTP server serving generated listing pages for the letter X, with a fixed delay per page. */
+    private static final class StubListingServer implements AutoCloseable {
+        private final HttpServer server;
+        private final AtomicInteger requested = new AtomicInteger();
+        private final AtomicInteger concurrent = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        StubListingServer(int pages, int matchesPerPage, long delayMs) throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.createContext("/listing-des-medicaments/page/", exchange -> {
+                requested.incrementAndGet();
+                maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(delayMs);
+                    String[] segments = exchange.getRequestURI().getPath().split("/");
+                    int page = Integer.parseInt(segments[segments.length - 1]);
+                    StringBuilder html = new StringBuilder("<html><body><table>");
+                    if (page <= pages) {
+                        for (int i = 0; i < matchesPerPage; i++) {
+                            html.append("<tr><td><a href=\"/medicament/xylo-").append(page).append('-').append(i)
+                                    .append("/\">XYLO ").append(page).append('-').append(i).append(" - PPV: 10 dhs</a></td></tr>");
+                        }
+                        html.append("<tr><td><a href=\"/medicament/xanax-").append(page).append("/\">XANAX ").append(page).append("</a></td></tr>");
+                    }
+                    html.append("</table></body></html>");
+                    byte[] body = html.toString().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+                    exchange.sendResponseHeaders(200, body.length);
+                    exchange.getResponseBody().write(body);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    concurrent.decrementAndGet();
+                    exchange.close();
+                }
+            });
+            server.start();
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
         }
+
+        int requestedPages() {
+            return requested.get();
+        }
+
+        int maxConcurrent() {
+            return maxConcurrent.get();
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+        }
+    }
+
+    private static MedicamentDetailCache heapOnlyCache() {
+        return new MedicamentDetailCache(100, 100, Duration.ofHours(1), Duration.ofMinutes(5), "",
+                new SimpleMeterRegistry(), Clock.systemUTC(), Runnable::run);
     }
 
-} 
\ No newline at end of file
+    private static MedicamentMirror mirror(String nom, String detailUrl) {
+        MedicamentMirror mirror = new MedicamentMirror();
+        mirror.setNom(nom);
+        mirror.setNomRecherche(nom.toLowerCase());
+        mirror.setDetailUrl(detailUrl);
+        return mirror;
+    }
+}
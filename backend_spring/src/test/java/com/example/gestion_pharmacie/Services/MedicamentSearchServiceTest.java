@@ -0,0 +1,131 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.Repositorys.MedicamentRepository;
+import com.example.gestion_pharmacie.entites.Medicament;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.*;
+
+class MedicamentSearchServiceTest {
+
+    private EmbeddedDatabase database;
+    private MedicamentSearchService medicamentSearchService;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("CREATE TABLE medicament (id BIGINT PRIMARY KEY, nom VARCHAR(255), "
+                + "composition VARCHAR(255), classe_therapeutique VARCHAR(255))");
+
+        Map<Long, Medicament> rows = new HashMap<>();
+        insert(jdbcTemplate, rows, 1L, "Efferalgan", "Paracetamol", "Antalgique");
+        insert(jdbcTemplate, rows, 2L, "Doliprane 1000", "Paracetamol", "Antalgique");
+        insert(jdbcTemplate, rows, 3L, "Doliprane", "Paracetamol", "Antalgique");
+        insert(jdbcTemplate, rows, 4L, "Sirop Doliprane", "Paracetamol", "Antalgique");
+        insert(jdbcTemplate, rows, 5L, "Augmentin", "Amoxicilline", "Antibiotique");
+        insert(jdbcTemplate, rows, 6L, "Vitamine C 100%", "Acide ascorbique", "Vitamine");
+
+        MedicamentRepository medicamentRepository = mock(MedicamentRepository.class);
+        when(medicamentRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<Medicament> found = new ArrayList<>();
+            for (Object id : (Iterable<?>) invocation.getArgument(0)) {
+                found.add(rows.get((Long) id));
+            }
+            // The repository gives no ordering guarantee
+            Collections.reverse(found);
+            return found;
+        });
+
+        meterRegistry = new SimpleMeterRegistry();
+        medicamentSearchService = new MedicamentSearchService(jdbcTemplate, medicamentRepository, meterRegistry);
+        medicamentSearchService.installSearchIndexes();
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void installSearchIndexes_UsesFallbackOutsidePostgres() {
+        assertFalse(medicamentSearchService.isFullTextEnabled());
+    }
+
+    @Test
+    void search_RanksExactThenPrefixThenContains() {
+        List<Medicament> result = medicamentSearchService.search("DOLIPRANE", 0, 20);
+
+        assertEquals(List.of(3L, 2L, 4L), ids(result));
+    }
+
+    @Test
+    void search_MatchesCompositionAndClasse() {
+        assertEquals(List.of(3L, 2L, 1L, 4L), ids(medicamentSearchService.search("paracetamol", 0, 20)));
+        assertEquals(List.of(5L), ids(medicamentSearchService.search("antibio", 0, 20)));
+    }
+
+    @Test
+    void search_Paginates() {
+        assertEquals(List.of(3L, 2L), ids(medicamentSearchService.search("doliprane", 0, 2)));
+        assertEquals(List.of(4L), ids(medicamentSearchService.search("doliprane", 1, 2)));
+        assertTrue(medicamentSearchService.search("doliprane", 5, 2).isEmpty());
+    }
+
+    @Test
+    void search_TreatsLikeWildcardsLiterally() {
+        assertEquals(List.of(6L), ids(medicamentSearchService.search("100%", 0, 20)));
+        assertTrue(medicamentSearchService.search("_", 0, 20).isEmpty());
+    }
+
+    @Test
+    void search_BlankQueryReturnsNothing() {
+        assertTrue(medicamentSearchService.search("   ", 0, 20).isEmpty());
+        assertTrue(medicamentSearchService.search(null, 0, 20).isEmpty());
+    }
+
+    @Test
+    void search_RecordsLatency() {
+        medicamentSearchService.search("doli", 0, 20);
+
+        assertEquals(1, meterRegistry.get("medicament.search").timer().count());
+    }
+
+    @Test
+    void toPrefixTsQuery_KeepsOnlyWordCharacters() {
+        assertEquals("dolip:* & 500:*", MedicamentSearchService.toPrefixTsQuery("dolip 500"));
+        assertEquals("amoxicilline:* & acide:*", MedicamentSearchService.toPrefixTsQuery("amoxicilline/acide)':*!"));
+        assertEquals("", MedicamentSearchService.toPrefixTsQuery("&|!"));
+    }
+
+    private static void insert(JdbcTemplate jdbcTemplate, Map<Long, Medicament> rows,
+                               Long id, String nom, String composition, String classe) {
+        jdbcTemplate.update("INSERT INTO medicament VALUES (?, ?, ?, ?)", id, nom, composition, classe);
+        Medicament medicament = new Medicament();
+        medicament.setId(id);
+        medicament.setNom(nom);
+        medicament.setComposition(composition);
+        medicament.setClasse_therapeutique(classe);
+        rows.put(id, medicament);
+    }
+
+    private static List<Long> ids(List<Medicament> medicaments) {
+        return medicaments.stream().map(Medicament::getId).collect(Collectors.toList());
+    }
+}
@@ -3,6 +3,7 @@ package com.example.gestion_pharmacie.Services;
 import com.example.gestion_pharmacie.Repositorys.FournisseurRepository;
 import com.example.gestion_pharmacie.Repositorys.MedicamentRepository;
 import com.example.gestion_pharmacie.Repositorys.UtilisateurRepository;
+import com.example.gestion_pharmacie.Security.CurrentActor;
 import com.example.gestion_pharmacie.entites.Fournisseur;
 import com.example.gestion_pharmacie.entites.Medicament;
 import com.example.gestion_pharmacie.entites.Pharmacien;
@@ -10,6 +11,7 @@ import com.example.gestion_pharmacie.entites.Role;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -36,13 +38,18 @@ class MedicamentServiceTest {
     @Mock
     private ExcelLoaderService excelLoaderService;
 
+    @Mock
+    private MedicamentSearchService medicamentSearchService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @Mock
     private Authentication authentication;
 
     @Mock
     private SecurityContext securityContext;
 
-    @InjectMocks
     private MedicamentService medicamentService;
 
     private Pharmacien pharmacien;
@@ -52,6 +59,8 @@ class MedicamentServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        medicamentService = new MedicamentService(medicamentRepository, fournisseurRepository, utilisateurRepository,
+                excelLoaderService, medicamentSearchService, new CurrentActor(utilisateurRepository), eventPublisher);
 
         // Mock the security context
         when(securityContext.getAuthentication()).thenReturn(authentication);
@@ -237,10 +246,10 @@ class MedicamentServiceTest {
     void searchMedicaments_Success() {
         // Arrange
         List<Medicament> medicaments = Arrays.asList(medicament);
-        when(medicamentRepository.findByNomContainingIgnoreCase("doli")).thenReturn(medicaments);
+        when(medicamentSearchService.search("doli", 0, 20)).thenReturn(medicaments);
         
         // Act
-        List<Medicament> result = medicamentService.searchMedicaments("doli");
+        List<Medicament> result = medicamentService.searchMedicaments("doli", 0, 20);
         
         // Assert
         assertNotNull(result);
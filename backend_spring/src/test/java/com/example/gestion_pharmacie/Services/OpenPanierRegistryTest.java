@@ -0,0 +1,96 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.entites.Panier;
+import com.example.gestion_pharmacie.entites.Pharmacien;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Open-cart lookups against a real schema: the sales history is never loaded, and a remembered cart that
+ * was closed meanwhile is not returned.
+ */
+@Import(OpenPanierRegistry.class)
+public class OpenPanierRegistryTest extends JpaSliceTest {
+
+    @Autowired
+    private OpenPanierRegistry openPanierRegistry;
+
+    private Pharmacien pharmacien;
+    private Panier ouvert;
+
+    @BeforeEach
+    void setUp() {
+        pharmacien = persistPharmacien("pharmacien@example.com");
+
+        for (int i = 0; i < 50; i++) {
+            entityManager.persist(panier(true));
+        }
+        ouvert = entityManager.persist(panier(false));
+        flushAndClear();
+        statistics.clear();
+    }
+
+    @Test
+    void findOpen_LoadsOnlyTheOpenCart() {
+        Optional<Panier> open = openPanierRegistry.findOpen(pharmacien);
+
+        assertEquals(ouvert.getId(), open.orElseThrow().getId());
+        assertEquals(1, panierLoads());
+    }
+
+    @Test
+    void findOpen_RemembersTheCartAndLoadsItByPrimaryKey() {
+        openPanierRegistry.findOpen(pharmacien);
+        entityManager.clear();
+        statistics.clear();
+
+        Optional<Panier> open = openPanierRegistry.findOpen(pharmacien);
+
+        assertEquals(ouvert.getId(), open.orElseThrow().getId());
+        assertEquals(0, statistics.getQueryExecutionCount());
+        assertEquals(1, panierLoads());
+    }
+
+    @Test
+    void findOpen_IgnoresARememberedCartClosedElsewhere() {
+        openPanierRegistry.findOpen(pharmacien);
+        Panier closed = entityManager.find(Panier.class, ouvert.getId());
+        closed.setVendu(true);
+        entityManager.flush();
+
+        assertTrue(openPanierRegistry.findOpen(pharmacien).isEmpty());
+    }
+
+    @Test
+    void registerAndForget() {
+        openPanierRegistry.findOpen(pharmacien);
+        Panier nouveau = entityManager.find(Panier.class, ouvert.getId());
+        nouveau.setVendu(true);
+        openPanierRegistry.forget(pharmacien);
+        Panier suivant = entityManager.persist(panier(false));
+        entityManager.flush();
+
+        openPanierRegistry.register(suivant);
+
+        assertEquals(suivant.getId(), openPanierRegistry.findOpen(pharmacien).orElseThrow().getId());
+    }
+
+    private long panierLoads() {
+        return statistics.getEntityStatistics(Panier.class.getName()).getLoadCount();
+    }
+
+    private Panier panier(boolean vendu) {
+        Panier panier = new Panier();
+        panier.setPharmacien(pharmacien);
+        panier.setDateCreation(LocalDateTime.now());
+        panier.setVendu(vendu);
+        return panier;
+    }
+}
@@ -10,15 +10,20 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.Mockito.*;
 
 class PanierServiceTest {
@@ -32,6 +37,15 @@ class PanierServiceTest {
     @Mock
     private UtilisateurService utilisateurService;
 
+    @Mock
+    private StockService stockService;
+
+    @Mock
+    private OpenPanierRegistry openPanierRegistry;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private PanierService panierService;
 
@@ -118,8 +132,7 @@ class PanierServiceTest {
     @Test
     void createAndSubmitPanier_Success() {
         // Arrange
-        when(medicamentRepository.findById(1L)).thenReturn(Optional.of(medicament1));
-        when(medicamentRepository.findById(2L)).thenReturn(Optional.of(medicament2));
+        when(medicamentRepository.findByIdInOrderByIdAsc(anyCollection())).thenReturn(List.of(medicament1, medicament2));
         when(panierRepository.save(any(Panier.class))).thenReturn(panier);
         
         // Act
@@ -130,20 +143,53 @@ class PanierServiceTest {
         assertEquals(1L, result.getId());
         assertEquals(2, result.getLignesPanier().size());
         
-        verify(medicamentRepository, times(1)).save(medicament1);
-        verify(medicamentRepository, times(1)).save(medicament2);
+        // One lookup for all the lines, one set of conditional decrements
+        verify(medicamentRepository, times(1)).findByIdInOrderByIdAsc(Set.of(1L, 2L));
+        verify(medicamentRepository, never()).findById(any());
+        verify(medicamentRepository, never()).save(any(Medicament.class));
+        verify(stockService, times(1)).take(Map.of(1L, 5, 2L, 3));
         verify(panierRepository, times(1)).save(any(Panier.class));
-        
-        // Verify medicament quantities were decreased
-        assertEquals(95, medicament1.getQuantite());
-        assertEquals(47, medicament2.getQuantite());
+    }
+
+    @Test
+    void createAndSubmitPanier_SameMedicamentTwice_CheckedAgainstRemainingStock() {
+        // Arrange
+        medicament2.setQuantite(5);
+        CreatePanierRequest.PanierItemDto again = new CreatePanierRequest.PanierItemDto();
+        again.setMedicamentId(2L);
+        again.setQuantite(3);
+        createRequest.getItems().add(again);
+
+        when(medicamentRepository.findByIdInOrderByIdAsc(anyCollection())).thenReturn(List.of(medicament1, medicament2));
+
+        // Act & Assert
+        Exception exception = assertThrows(RuntimeException.class, () -> {
+            panierService.createAndSubmitPanier(createRequest);
+        });
+
+        assertTrue(exception.getMessage().contains("disponible: 2, demandé: 3"));
+        verify(panierRepository, never()).save(any(Panier.class));
+    }
+
+    @Test
+    void createAndSubmitPanier_StockTakenConcurrently() {
+        // Arrange: the stock read looks sufficient but another sale got there first
+        when(medicamentRepository.findByIdInOrderByIdAsc(anyCollection())).thenReturn(List.of(medicament1, medicament2));
+        when(stockService.take(anyMap())).thenReturn(List.of(2L));
+
+        // Act & Assert
+        Exception exception = assertThrows(RuntimeException.class, () -> {
+            panierService.createAndSubmitPanier(createRequest);
+        });
+
+        assertTrue(exception.getMessage().contains("Quantité insuffisante pour Aspirine"));
+        verify(panierRepository, never()).save(any(Panier.class));
     }
 
     @Test
     void createAndSubmitPanier_MedicamentNotFound() {
         // Arrange
-        when(medicamentRepository.findById(1L)).thenReturn(Optional.of(medicament1));
-        when(medicamentRepository.findById(2L)).thenReturn(Optional.empty());
+        when(medicamentRepository.findByIdInOrderByIdAsc(anyCollection())).thenReturn(List.of(medicament1));
         
         // Act & Assert
         Exception exception = assertThrows(RuntimeException.class, () -> {
@@ -160,8 +206,7 @@ class PanierServiceTest {
         otherPharmacien.setId(2L);
         medicament2.setUtilisateur(otherPharmacien);
         
-        when(medicamentRepository.findById(1L)).thenReturn(Optional.of(medicament1));
-        when(medicamentRepository.findById(2L)).thenReturn(Optional.of(medicament2));
+        when(medicamentRepository.findByIdInOrderByIdAsc(anyCollection())).thenReturn(List.of(medicament1, medicament2));
         
         // Act & Assert
         Exception exception = assertThrows(RuntimeException.class, () -> {
@@ -176,8 +221,7 @@ class PanierServiceTest {
         // Arrange
         medicament2.setQuantite(2); // Less than requested 3
         
-        when(medicamentRepository.findById(1L)).thenReturn(Optional.of(medicament1));
-        when(medicamentRepository.findById(2L)).thenReturn(Optional.of(medicament2));
+        when(medicamentRepository.findByIdInOrderByIdAsc(anyCollection())).thenReturn(List.of(medicament1, medicament2));
         
         // Act & Assert
         Exception exception = assertThrows(RuntimeException.class, () -> {
@@ -206,8 +250,7 @@ class PanierServiceTest {
     @Test
     void closeCurrentPanier_Success() {
         // Arrange
-        List<Panier> paniers = Arrays.asList(panier);
-        when(panierRepository.findByPharmacien(pharmacien)).thenReturn(paniers);
+        when(openPanierRegistry.findOpen(pharmacien)).thenReturn(Optional.of(panier));
         when(panierRepository.save(panier)).thenReturn(panier);
         
         // Act
@@ -217,29 +260,15 @@ class PanierServiceTest {
         assertNotNull(result);
         assertEquals(1L, result.getId());
         verify(panierRepository, times(1)).save(panier);
+        verify(openPanierRegistry, times(1)).forget(pharmacien);
+        verify(panierRepository, never()).findByPharmacien(any());
         assertTrue(panier.isVendu());
     }
 
     @Test
     void closeCurrentPanier_NoPanierFound() {
         // Arrange
-        List<Panier> emptyList = new ArrayList<>();
-        when(panierRepository.findByPharmacien(pharmacien)).thenReturn(emptyList);
-        
-        // Act & Assert
-        Exception exception = assertThrows(RuntimeException.class, () -> {
-            panierService.closeCurrentPanier();
-        });
-        
-        assertTrue(exception.getMessage().contains("Aucun panier ouvert"));
-    }
-
-    @Test
-    void closeCurrentPanier_OnlyClosedPaniers() {
-        // Arrange
-        panier.setVendu(true);
-        List<Panier> closedPaniers = Arrays.asList(panier);
-        when(panierRepository.findByPharmacien(pharmacien)).thenReturn(closedPaniers);
+        when(openPanierRegistry.findOpen(pharmacien)).thenReturn(Optional.empty());
         
         // Act & Assert
         Exception exception = assertThrows(RuntimeException.class, () -> {
@@ -248,4 +277,4 @@ class PanierServiceTest {
         
         assertTrue(exception.getMessage().contains("Aucun panier ouvert"));
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,181 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.DTO.CreatePanierRequest;
+import com.example.gestion_pharmacie.Security.CurrentActor;
+import com.example.gestion_pharmacie.entites.Medicament;
+import com.example.gestion_pharmacie.entites.Pharmacien;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+/**
+ * Many concurrent sales of the same medicament against a real database: every unit of stock is sold
+ * exactly once and the stock never goes below zero. A catalogue edit running at the same time does not
+ * undo a sale.
+ */
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stock;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "spring.datasource.driver-class-name=org.h2.Driver"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({PanierService.class, StockService.class, OpenPanierRegistry.class, MedicamentService.class})
+public class StockConcurrencyTest extends JpaSliceTest {
+
+    private static final int STOCK = 100;
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS = 250;
+
+    @Autowired
+    private PanierService panierService;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MedicamentService medicamentService;
+
+    @MockitoBean
+    private UtilisateurService utilisateurService;
+
+    @MockitoBean
+    private CurrentActor currentActor;
+
+    @MockitoBean
+    private ExcelLoaderService excelLoaderService;
+
+    @MockitoBean
+    private MedicamentSearchService medicamentSearchService;
+
+    private TransactionTemplate transactionTemplate;
+    private Long medicamentId;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            Pharmacien pharmacien = persistPharmacien("pharmacien@example.com");
+            Medicament medicament = entityManager.persist(medicament("Doliprane", STOCK, pharmacien));
+
+            when(utilisateurService.getCurrentPharmacien()).thenReturn(pharmacien);
+            when(currentActor.getUtilisateur()).thenReturn(pharmacien);
+            medicamentId = medicament.getId();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from ligne_panier");
+        jdbcTemplate.update("delete from panier");
+        jdbcTemplate.update("delete from medicament");
+        jdbcTemplate.update("delete from pharmacien");
+        jdbcTemplate.update("delete from utilisateur");
+    }
+
+    @Test
+    void concurrentSalesNeverOversellTheStock() throws Exception {
+        AtomicInteger vendus = new AtomicInteger();
+        AtomicInteger refuses = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < ATTEMPTS; i++) {
+                boolean viaPanier = i % 2 == 0;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    if (viaPanier) {
+                        try {
+                            panierService.createAndSubmitPanier(request(1));
+                            vendus.incrementAndGet();
+                        } catch (RuntimeException e) {
+                            assertTrue(e.getMessage().contains("Quantité insuffisante"), e.getMessage());
+                            refuses.incrementAndGet();
+                        }
+                    } else {
+                        List<Long> insuffisants = transactionTemplate.execute(
+                                status -> stockService.take(Map.of(medicamentId, 1)));
+                        if (insuffisants.isEmpty()) {
+                            vendus.incrementAndGet();
+                        } else {
+                            refuses.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(STOCK, vendus.get());
+        assertEquals(ATTEMPTS - STOCK, refuses.get());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "select quantite from medicament where id = ?", Integer.class, medicamentId));
+    }
+
+    @Test
+    void catalogueEditKeepsConcurrentSale() {
+        TransactionTemplate vente = new TransactionTemplate(transactionManager);
+        vente.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Medicament edit = spy(new Medicament());
+        edit.setPrix_public(12.5f);
+        // The sale commits while updateMedicament holds the medicament it loaded
+        doAnswer(invocation -> {
+            vente.executeWithoutResult(status -> stockService.take(Map.of(medicamentId, 3)));
+            return invocation.callRealMethod();
+        }).when(edit).getNom();
+
+        medicamentService.updateMedicament(medicamentId, edit);
+
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "select quantite, prix_public from medicament where id = ?", medicamentId);
+        assertEquals(STOCK - 3, ((Number) row.get("quantite")).intValue());
+        assertEquals(12.5f, ((Number) row.get("prix_public")).floatValue());
+    }
+
+    private CreatePanierRequest request(int quantite) {
+        CreatePanierRequest.PanierItemDto item = new CreatePanierRequest.PanierItemDto();
+        item.setMedicamentId(medicamentId);
+        item.setQuantite(quantite);
+        CreatePanierRequest request = new CreatePanierRequest();
+        request.setItems(List.of(item));
+        return request;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.gestion_pharmacie.Services;
+
+import com.example.gestion_pharmacie.DTO.CreatePanierRequest;
+import com.example.gestion_pharmacie.entites.Medicament;
+import com.example.gestion_pharmacie.entites.Pharmacien;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks against a real schema that submitting a cart reads its medicaments in one statement and writes
+ * the stock decrements as one JDBC batch, outside of the entity updates: apart from the line inserts,
+ * the statement count does not depend on the number of lines.
+ */
+@Import({PanierService.class, StockService.class, OpenPanierRegistry.class})
+@RecordApplicationEvents
+public class StockReservationQueryCountTest extends JpaSliceTest {
+
+    @Autowired
+    private PanierService panierService;
+
+    @MockitoBean
+    private UtilisateurService utilisateurService;
+
+    @Autowired
+    private ApplicationEvents applicationEvents;
+
+    private Pharmacien pharmacien;
+
+    @BeforeEach
+    void setUp() {
+        pharmacien = persistPharmacien("pharmacien@example.com");
+        when(utilisateurService.getCurrentPharmacien()).thenReturn(pharmacien);
+    }
+
+    @Test
+    void createAndSubmitPanier_StatementsOtherThanInsertsDoNotGrowWithLines() {
+        long small = statementsOtherThanInserts(5);
+        long large = statementsOtherThanInserts(50);
+
+        assertEquals(small, large);
+        // medicament lookup, owner lookup; the stock batch and resync go through JDBC
+        assertTrue(large <= 3, "statements other than inserts: " + large);
+    }
+
+    @Test
+    void createAndSubmitPanier_DecrementsAreWritten() {
+        List<Medicament> medicaments = persistMedicaments(3);
+
+        panierService.createAndSubmitPanier(request(medicaments));
+        entityManager.flush();
+        entityManager.clear();
+
+        for (Medicament medicament : medicaments) {
+            assertEquals(98, entityManager.find(Medicament.class, medicament.getId()).getQuantite());
+        }
+        // One stock change for the whole cart, for the alert engine
+        List<StockChangeEvent> changes = applicationEvents.stream(StockChangeEvent.class).toList();
+        assertEquals(1, changes.size());
+        assertEquals(medicaments.stream().map(Medicament::getId).toList(), changes.get(0).getMedicamentIds());
+    }
+
+    private long statementsOtherThanInserts(int lines) {
+        List<Medicament> medicaments = persistMedicaments(lines);
+        CreatePanierRequest request = request(medicaments);
+
+        statistics.clear();
+        panierService.createAndSubmitPanier(request);
+        entityManager.flush();
+        assertEquals(0, statistics.getEntityUpdateCount());
+        return statistics.getPrepareStatementCount() - statistics.getEntityInsertCount();
+    }
+
+    private List<Medicament> persistMedicaments(int count) {
+        List<Medicament> medicaments = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            medicaments.add(entityManager.persist(medicament("Medicament " + i, 100, pharmacien)));
+        }
+        flushAndClear();
+        return medicaments;
+    }
+
+    private static CreatePanierRequest request(List<Medicament> medicaments) {
+        List<CreatePanierRequest.PanierItemDto> items = new ArrayList<>();
+        for (Medicament medicament : medicaments) {
+            CreatePanierRequest.PanierItemDto item = new CreatePanierRequest.PanierItemDto();
+            item.setMedicamentId(medicament.getId());
+            item.setQuantite(2);
+            items.add(item);
+        }
+        CreatePanierRequest request = new CreatePanierRequest();
+        request.setItems(items);
+        return request;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.gestion_pharmacie.Services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThrottledPageFetcherTest {
+
+    @Test
+    void fetch_LimitsConcurrencyPerHost() throws Exception {
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        // The first two calls wait for each other, so the limit is reached whatever the scheduling
+        CountDownLatch firstTwo = new CountDownLatch(2);
+        PageFetcher slow = (url, etag, lastModified) -> {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                firstTwo.countDown();
+                firstTwo.await(2, TimeUnit.SECONDS);
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrent.decrementAndGet();
+            }
+            return FetchedPage.ok(url, "<html></html>", null, null);
+        };
+        ThrottledPageFetcher fetcher = new ThrottledPageFetcher(slow, 2, 1000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<FetchedPage>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String url = "https://medicament.ma/page/" + i;
+                futures.add(executor.submit(() -> fetcher.fetch(url)));
+            }
+            for (Future<FetchedPage> future : futures) {
+                assertTrue(future.get(5, TimeUnit.SECONDS).isOk());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(2, maxConcurrent.get());
+    }
+
+    @Test
+    void fetch_HostsHaveSeparateLimits() throws Exception {
+        CountDownLatch bothInside = new CountDownLatch(2);
+        PageFetcher blocking = (url, etag, lastModified) -> {
+            bothInside.countDown();
+            try {
+                bothInside.await(2, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return FetchedPage.ok(url, "", null, null);
+        };
+        ThrottledPageFetcher fetcher = new ThrottledPageFetcher(blocking, 1, 1000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<FetchedPage> a = executor.submit(() -> fetcher.fetch("https://a.example/x"));
+            Future<FetchedPage> b = executor.submit(() -> fetcher.fetch("https://b.example/x"));
+            a.get(5, TimeUnit.SECONDS);
+            b.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, bothInside.getCount());
+    }
+
+    @Test
+    void tokenBucket_SpacesRequestsOnceBurstIsUsed() throws Exception {
+        TokenBucket bucket = new TokenBucket(20, 2);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 6; i++) {
+            bucket.acquire();
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // 2 tokens in reserve, then 4 more at 20/s: at least ~200 ms
+        assertTrue(elapsedMs >= 180, "trop rapide: " + elapsedMs + " ms");
+    }
+
+    @Test
+    void tokenBucket_RejectsInvalidRate() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.gestion_pharmacie.Services;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XlsxRowReaderTest {
+
+    @Test
+    void stream_ReadsRowsWithGapsAndTypes() throws IOException {
+        byte[] xlsx = workbook(sheet -> {
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("CODE");
+            header.createCell(1).setCellValue("NOM");
+            header.createCell(2).setCellValue("EN_VENTE");
+
+            Row row = sheet.createRow(1);
+            row.createCell(0).setCellValue(42);
+            row.createCell(2).setCellValue(true);
+
+            Row sparse = sheet.createRow(3);
+            sparse.createCell(1).setCellValue("DOLIPRANE");
+        });
+
+        try (XlsxRowReader reader = XlsxRowReader.open(new ByteArrayInputStream(xlsx));
+             Stream<String[]> rows = reader.stream()) {
+            List<List<String>> values = rows.map(List::of).collect(Collectors.toList());
+
+            assertEquals(3, values.size());
+            assertEquals(List.of("CODE", "NOM", "EN_VENTE"), values.get(0));
+            assertEquals(List.of("42", "", "TRUE"), values.get(1));
+            assertEquals(List.of("", "DOLIPRANE"), values.get(2));
+        }
+    }
+
+    @Test
+    void next_ReportsSheetRowNumbers() throws IOException {
+        byte[] xlsx = workbook(sheet -> {
+            sheet.createRow(0).createCell(0).setCellValue("NOM");
+            sheet.createRow(2).createCell(0).setCellValue("DOLIPRANE");
+            sheet.createRow(5).createCell(0).setCellValue("SMECTA");
+        });
+        List<Long> rowNumbers = new ArrayList<>();
+
+        try (XlsxRowReader reader = XlsxRowReader.open(new ByteArrayInputStream(xlsx))) {
+            while (reader.hasNext()) {
+                reader.next();
+                rowNumbers.add(reader.getRowNumber());
+            }
+        }
+
+        assertEquals(List.of(1L, 3L, 6L), rowNumbers);
+    }
+
+    @Test
+    void forEachRow_ReportsProgress() throws IOException {
+        byte[] xlsx = workbook(sheet -> {
+            for (int i = 0; i < 25; i++) {
+                sheet.createRow(i).createCell(0).setCellValue("row " + i);
+            }
+        });
+        List<Long> progress = new ArrayList<>();
+        List<String> firstCells = new ArrayList<>();
+
+        long count = XlsxRowReader.forEachRow(new ByteArrayInputStream(xlsx),
+                row -> firstCells.add(row[0]), 10, progress::add);
+
+        assertEquals(25, count);
+        assertEquals("row 24", firstCells.get(24));
+        assertEquals(List.of(10L, 20L, 25L), progress);
+    }
+
+    @Test
+    void open_RejectsInvalidFile() {
+        assertThrows(IOException.class,
+                () -> XlsxRowReader.open(new ByteArrayInputStream("not a workbook".getBytes())));
+    }
+
+    private byte[] workbook(java.util.function.Consumer<Sheet> filler) throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook();
+             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            filler.accept(workbook.createSheet());
+            workbook.write(out);
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.gestion_pharmacie.benchmark;
+
+import com.example.gestion_pharmacie.Services.IntentClassifier;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Intent detection of a chat question, current {@link IntentClassifier} against the previous chain of
+ * {@code String.contains} calls (kept below as {@link LegacyIntents}).
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IntentClassifierBenchmark {
+
+    @Param({
+            "Do you have Doliprane in stock?",
+            "Combien de commandes et quelles alertes pour le Paracétamol ce mois-ci ?",
+            "Bonjour, pouvez-vous me dire quels fournisseurs livrent encore de l'Amoxicilline 500 mg en gélules, "
+                    + "et combien de ventes nous avons faites cette semaine dans mon panier ?"
+    })
+    public String question;
+
+    private IntentClassifier classifier;
+
+    @Setup
+    public void setUp() {
+        classifier = new IntentClassifier(IntentClassifier.DEFAULT_DICTIONARY);
+    }
+
+    @Benchmark
+    public IntentClassifier.Classification classify_current() {
+        return classifier.classify(question);
+    }
+
+    @Benchmark
+    public void classify_legacy(Blackhole blackhole) {
+        LegacyIntents.classify(question, blackhole);
+    }
+
+    /** Intent detection as it was in DatabaseQueryService before the classifier, for comparison. */
+    static final class LegacyIntents {
+
+        static void classify(String userQuery, Blackhole blackhole) {
+            String q = userQuery.toLowerCase();
+            blackhole.consume(q.contains("medicament") || q.contains("médicament") || q.contains("medicine") || q.contains("medicin") || q.contains("drug") || q.contains("drugs") || q.contains("pill") || q.contains("pills") || q.contains("meds")
+                    || q.contains("supply") || q.contains("supplies") || q.contains("supplied")
+                    || q.contains("provide") || q.contains("provides") || q.contains("provided")
+                    || q.contains("have") || q.contains("has") || q.contains("having")
+                    || q.contains("possess") || q.contains("posess") || q.contains("possession")
+                    || q.contains("stock") || q.contains("stocked") || q.contains("stocking")
+                    || q.contains("carry") || q.contains("carries") || q.contains("carried")
+                    || q.contains("sell") || q.contains("sells") || q.contains("selling")
+                    || q.contains("offer") || q.contains("offers") || q.contains("offering"));
+            blackhole.consume(q.contains("commande") || q.contains("order") || q.contains("orders"));
+            blackhole.consume(q.contains("fournisseur") || q.contains("supplier") || q.contains("suppliers"));
+            blackhole.consume(q.contains("pharmacien") || q.contains("pharmacist") || q.contains("pharmacists"));
+            blackhole.consume(q.contains("alerte") || q.contains("alert") || q.contains("alerts"));
+            blackhole.consume(q.contains("panier") || q.contains("cart") || q.contains("basket") || q.contains("vente") || q.contains("sale") || q.contains("sell"));
+            blackhole.consume(q.contains("nombre") || q.contains("statistique") || q.contains("combien") || q.contains("total") || q.contains("count") || q.contains("how many") || q.contains("stats"));
+            blackhole.consume(extractSpecificMedName(q));
+        }
+
+        private static String extractSpecificMedName(String q) {
+            Set<String> generic = Set.of("medicament","médicament","medicine","medicines","medicin","drug","drugs","pill","pills","meds","supply","supplies","supplied","provide","provides","provided","have","has","having","possess","posess","possession","stock","stocked","stocking","carry","carries","carried","sell","sells","selling","offer","offers","offering","list","i","do","my","the","what","which");
+            for (String token : q.replaceAll("[^a-zA-Z0-9 ]"," ").split(" ")) {
+                String t = token.trim().toLowerCase();
+                if (t.length() > 3 && !generic.contains(t)) {
+                    return t;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.gestion_pharmacie.benchmark;
+
+import com.example.gestion_pharmacie.Services.JwtService;
+import com.example.gestion_pharmacie.Services.ParsedToken;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Token signing and request verification, current {@link JwtService} against the previous implementation
+ * (kept below as {@link LegacyJwtService}), which rebuilt the key and the parser on every call and parsed
+ * a token three times per request (subject, then subject and expiry for validation).
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark.include=JwtServiceBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtServiceBenchmark {
+
+    private static final String SECRET_KEY = "3cfa76ef14937c1c0ea519f8fc057a80fcd04a7420f8e8bcd0a7567c272e007b";
+    private static final long EXPIRATION = 86400000L;
+
+    private JwtService jwtService;
+    private LegacyJwtService legacyJwtService;
+    private UserDetails user;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService(SECRET_KEY, EXPIRATION);
+        legacyJwtService = new LegacyJwtService(SECRET_KEY, EXPIRATION);
+        user = User.withUsername("pharmacien@example.com").password("").roles("PHARMACIEN").build();
+        token = jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public String sign_current() {
+        return jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public String sign_legacy() {
+        return legacyJwtService.generateToken(user);
+    }
+
+    /** What the JWT filter does for an authenticated request. */
+    @Benchmark
+    public boolean verify_current() {
+        ParsedToken parsed = jwtService.parse(token);
+        return parsed.getSubject() != null && jwtService.isTokenValid(parsed, user);
+    }
+
+    @Benchmark
+    public boolean verify_legacy() {
+        String username = legacyJwtService.extractUsername(token);
+        return username != null && legacyJwtService.isTokenValid(token, user);
+    }
+
+    /** JwtService as it was before the key and parser were cached. */
+    static final class LegacyJwtService {
+        private final String secretKey;
+        private final long jwtExpiration;
+
+        LegacyJwtService(String secretKey, long jwtExpiration) {
+            this.secretKey = secretKey;
+            this.jwtExpiration = jwtExpiration;
+        }
+
+        String extractUsername(String token) {
+            return extractClaim(token, Claims::getSubject);
+        }
+
+        <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
+            return claimsResolver.apply(extractAllClaims(token));
+        }
+
+        String generateToken(UserDetails userDetails) {
+            return Jwts.builder()
+                    .setClaims(new HashMap<>())
+                    .setSubject(userDetails.getUsername())
+                    .setIssuedAt(new Date(System.currentTimeMillis()))
+                    .setExpiration(new Date(System.currentTimeMillis() + jwtExpiration))
+                    .signWith(getSignInKey(), SignatureAlgorithm.HS256)
+                    .compact();
+        }
+
+        boolean isTokenValid(String token, UserDetails userDetails) {
+            final String username = extractUsername(token);
+            return username.equals(userDetails.getUsername()) && !extractClaim(token, Claims::getExpiration).before(new Date());
+        }
+
+        private Claims extractAllClaims(String token) {
+            return Jwts.parserBuilder()
+                    .setSigningKey(getSignInKey())
+                    .build()
+                    .parseClaimsJws(token)
+                    .getBody();
+        }
+
+        private Key getSignInKey() {
+            return Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        }
+    }
+}
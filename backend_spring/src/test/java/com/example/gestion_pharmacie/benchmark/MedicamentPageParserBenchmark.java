@@ -0,0 +1,164 @@
+package com.example.gestion_pharmacie.benchmark;
+
+import com.example.gestion_pharmacie.Services.MedicamentPageParser;
+import com.example.gestion_pharmacie.entites.Medicament;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Detail-page extraction on the hand-written fixture pages of src/test/resources/scraper, current
+ * {@link MedicamentPageParser} against the previous implementation (kept below as {@link LegacyParser}).
+ * Documents are parsed once in setup so only the extraction is measured.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MedicamentPageParserBenchmark {
+
+    /** Fixture page as served, and the same page with the "related medicaments" tables real pages carry. */
+    @Param({"detail-doliprane-500mg.html", "detail-doliprane-500mg.html+related"})
+    public String page;
+
+    private Document document;
+    private Document listing;
+
+    @Setup
+    public void setUp() {
+        boolean related = page.endsWith("+related");
+        String html = load(related ? page.substring(0, page.length() - "+related".length()) : page);
+        if (related) {
+            StringBuilder tables = new StringBuilder();
+            for (int t = 0; t < 5; t++) {
+                tables.append("<table class=\"related\">");
+                for (int r = 0; r < 40; r++) {
+                    tables.append("<tr><td><a href=\"/medicament/m-").append(t).append('-').append(r)
+                            .append("/\">MEDICAMENT ").append(r).append(" 500 MG - PPV: 12.30 dhs</a></td><td>Comprimé</td></tr>");
+                }
+                tables.append("</table>");
+            }
+            html = html.replace("</article>", "</article>" + tables);
+        }
+        document = Jsoup.parse(html, "https://medicament.ma/medicament/doliprane-500mg/");
+        listing = Jsoup.parse(load("listing-D-1.html"), "https://medicament.ma/listing-des-medicaments/page/1/?lettre=D");
+    }
+
+    @Benchmark
+    public Medicament parseDetail_current() {
+        return MedicamentPageParser.parseDetail(document);
+    }
+
+    @Benchmark
+    public Medicament parseDetail_legacy() {
+        return LegacyParser.parseDetail(document);
+    }
+
+    @Benchmark
+    public List<MedicamentPageParser.ListingEntry> parseListing_current() {
+        return MedicamentPageParser.parseListing(listing);
+    }
+
+    private static String load(String fixture) {
+        try (InputStream in = MedicamentPageParserBenchmark.class.getResourceAsStream("/scraper/" + fixture)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Fixture introuvable: " + fixture);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** The detail extraction as it was before the parser rewrite, for comparison. */
+    static final class LegacyParser {
+
+        static Medicament parseDetail(Document doc) {
+            Medicament medicament = new Medicament();
+            String title = doc.select("h1.entry-title").text().trim();
+            if (title.isEmpty()) {
+                title = doc.select("h1").text().trim();
+            }
+            medicament.setNom(title);
+
+            Elements tables = doc.select("table");
+            for (Element table : tables) {
+                Elements rows = table.select("tr");
+                for (Element row : rows) {
+                    Elements cells = row.select("td");
+                    if (cells.size() < 2) continue;
+
+                    String label = cells.get(0).text().trim();
+                    String value = cells.get(1).text().trim();
+                    if (value.isEmpty()) continue;
+
+                    switch (label.toLowerCase()) {
+                        case "présentation": medicament.setPresentation(value); break;
+                        case "composition": medicament.setComposition(value); break;
+                        case "classe thérapeutique": medicament.setClasse_therapeutique(value); break;
+                        case "code atc": medicament.setCode_ATC(value); break;
+                        case "dosage": medicament.setDosage(value); break;
+                        case "ppv":
+                            try {
+                                medicament.setPrix_public(parsePrice(value));
+                            } catch (NumberFormatException ignored) {
+                            }
+                            break;
+                        case "ppc":
+                            try {
+                                medicament.setPrix_conseille(parsePrice(value));
+                            } catch (NumberFormatException ignored) {
+                            }
+                            break;
+                        case "prix hospitalier":
+                            try {
+                                medicament.setPrix_hospitalier(parsePrice(value));
+                            } catch (NumberFormatException ignored) {
+                            }
+                            break;
+                        case "indication(s)":
+                        case "indications": medicament.setIndications(value); break;
+                        case "nature du produit": medicament.setNatureDuProduit(value); break;
+                        case "tableau": medicament.setTableau(value); break;
+                        default: break;
+                    }
+                }
+            }
+
+            if (medicament.getDosage() == null && title.contains(" ")) {
+                String[] parts = title.split(" ");
+                for (int i = 1; i < parts.length; i++) {
+                    if (parts[i].matches(".*\\d+.*")) {
+                        medicament.setDosage(parts[i] + (i + 1 < parts.length ? " " + parts[i + 1] : ""));
+                        break;
+                    }
+                }
+            }
+            return medicament;
+        }
+
+        private static float parsePrice(String priceText) {
+            Pattern pattern = Pattern.compile("(\\d+(?:[.,]\\d+)?)");
+            Matcher matcher = pattern.matcher(priceText);
+            if (matcher.find()) {
+                return Float.parseFloat(matcher.group(1).replace(",", "."));
+            }
+            throw new NumberFormatException("Could not parse price from: " + priceText);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.gestion_pharmacie.rag;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RagClientTest {
+
+    private static final String ANSWER = "{\"response\":\"Doliprane en stock\",\"context_used\":[\"ctx\"],\"sources\":[],\"extra\":1}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final AtomicReference<String> lastBody = new AtomicReference<>();
+    private final AtomicReference<String> lastToken = new AtomicReference<>();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    private HttpServer server;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/chat", exchange -> {
+            concurrent.incrementAndGet();
+            try {
+                lastBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+                lastToken.set(exchange.getRequestHeaders().getFirst("X-Service-Auth"));
+                release.await(10, TimeUnit.SECONDS);
+                byte[] body = (status == 200 ? ANSWER : "{\"detail\":\"boom\"}").getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, body.length);
+                exchange.getResponseBody().write(body);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrent.decrementAndGet();
+                exchange.close();
+            }
+        });
+        server.start();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void chatWithRag_PostsTheCappedContextAndParsesTheAnswer() throws Exception {
+        RagClient client = client(2, 10, "secret");
+
+        RagResponse response = client.chatWithRag("Avez-vous du Doliprane ?",
+                List.of("  ligne 1  ", "", "ligne 2", "ligne 3"), null, 0.2, null).get(5, TimeUnit.SECONDS);
+
+        assertEquals("Doliprane en stock", response.getResponse());
+        assertEquals(List.of("ctx"), response.getContextUsed());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> sent = objectMapper.readValue(lastBody.get(), Map.class);
+        assertEquals("Avez-vous du Doliprane ?", sent.get("prompt"));
+        assertEquals(List.of("ligne 1", "ligne 2"), sent.get("external_context"));
+        assertEquals(300, sent.get("max_new_tokens"));
+        assertEquals(0.2, sent.get("temperature"));
+        assertEquals("secret", lastToken.get());
+        assertEquals(1, meterRegistry.get("rag.client.requests").tag("outcome", "SUCCESS").timer().count());
+        assertEquals(0.0, meterRegistry.get("rag.client.in-flight").gauge().value());
+    }
+
+    @Test
+    void chatWithRag_ErrorStatusFailsTheFuture() {
+        status = 500;
+        RagClient client = client(10, 10, "");
+
+        ExecutionException ex = assertThrows(ExecutionException.class,
+                () -> client.chatWithRag("hi", List.of(), null, null, null).get(5, TimeUnit.SECONDS));
+
+        RestClientResponseException cause = assertInstanceOf(RestClientResponseException.class, ex.getCause());
+        assertEquals(500, cause.getStatusCode().value());
+        assertTrue(cause.getResponseBodyAsString().contains("boom"));
+        assertEquals(1, meterRegistry.get("rag.client.requests").tag("outcome", "HTTP_ERROR").timer().count());
+    }
+
+    @Test
+    void chatWithRag_UnreachableServiceFailsTheFuture() {
+        server.stop(0);
+        RagClient client = client(10, 10, "");
+
+        ExecutionException ex = assertThrows(ExecutionException.class,
+                () -> client.chatWithRag("hi", List.of(), null, null, null).get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(ResourceAccessException.class, ex.getCause());
+        assertEquals(0.0, meterRegistry.get("rag.client.in-flight").gauge().value());
+    }
+
+    @Test
+    void chatWithRag_ConcurrentChatsDoNotBlockTheCaller() throws Exception {
+        release = new CountDownLatch(1);
+        RagClient client = client(10, 200, "");
+
+        List<CompletableFuture<RagResponse>> calls = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            calls.add(client.chatWithRag("question " + i, List.of(), null, null, null));
+        }
+        // Every call is pending at the service while the caller already holds its futures
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (concurrent.get() < 50 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(50, concurrent.get());
+        assertEquals(50.0, meterRegistry.get("rag.client.in-flight").gauge().value());
+        assertTrue(calls.stream().noneMatch(CompletableFuture::isDone));
+
+        release.countDown();
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        assertEquals(50, meterRegistry.get("rag.client.requests").tag("outcome", "SUCCESS").timer().count());
+        assertEquals(0.0, meterRegistry.get("rag.client.in-flight").gauge().value());
+    }
+
+    @Test
+    void chatWithRag_BeyondMaxInFlightFailsFast() throws Exception {
+        release = new CountDownLatch(1);
+        RagClient client = client(10, 2, "");
+
+        CompletableFuture<RagResponse> first = client.chatWithRag("a", List.of(), null, null, null);
+        CompletableFuture<RagResponse> second = client.chatWithRag("b", List.of(), null, null, null);
+        CompletableFuture<RagResponse> third = client.chatWithRag("c", List.of(), null, null, null);
+
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> third.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(ResourceAccessException.class, ex.getCause());
+        assertEquals(1.0, meterRegistry.get("rag.client.rejected").counter().count());
+
+        release.countDown();
+        CompletableFuture.allOf(first, second).get(10, TimeUnit.SECONDS);
+        assertEquals(2.0, meterRegistry.get("rag.client.in-flight.available").gauge().value());
+    }
+
+    private RagClient client(int maxItems, int maxInFlight, String token) {
+        RagProperties props = new RagProperties();
+        ReflectionTestUtils.setField(props, "baseUrl", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(props, "serviceToken", token);
+        ReflectionTestUtils.setField(props, "contextMaxItems", maxItems);
+        ReflectionTestUtils.setField(props, "contextMaxCharsPerItem", 1200);
+        ReflectionTestUtils.setField(props, "httpVersion", "HTTP_1_1");
+        ReflectionTestUtils.setField(props, "connectTimeoutMs", 2000L);
+        ReflectionTestUtils.setField(props, "requestTimeoutMs", 10000L);
+        ReflectionTestUtils.setField(props, "maxInFlight", maxInFlight);
+        return new RagClient(props, objectMapper, meterRegistry);
+    }
+}
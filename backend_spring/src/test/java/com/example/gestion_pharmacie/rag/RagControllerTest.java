@@ -1,5 +1,7 @@
 package com.example.gestion_pharmacie.rag;
 
+import com.example.gestion_pharmacie.Services.DatabaseQueryService;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -11,13 +13,20 @@ import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.context.SecurityContextImpl;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 
@@ -27,7 +36,7 @@ class RagControllerTest {
     private RagClient ragClient;
 
     @Mock
-    private CuratedContextService curatedContextService;
+    private DatabaseQueryService databaseQueryService;
 
     @InjectMocks
     private RagController ragController;
@@ -46,30 +55,121 @@ class RagControllerTest {
         SecurityContextHolder.setContext(context);
     }
 
+    @AfterEach
+    void tearDown() {
+        // MockMvc leaves its request bound to the thread when the handler throws
+        RequestContextHolder.resetRequestAttributes();
+        SecurityContextHolder.clearContext();
+    }
+
     @Test
     void chat_authenticated_returnsOk() throws Exception {
-        when(curatedContextService.buildContext(anyString())).thenReturn(List.of("ctx1", "ctx2"));
+        when(databaseQueryService.getRelevantData(anyString())).thenReturn(Map.of(
+                "role", "PHARMACIEN", "commandes", List.of("Commande: 1")));
         RagResponse resp = new RagResponse();
         resp.setResponse("hello");
         resp.setContextUsed(List.of("ctx1"));
         resp.setSources(List.of());
-        when(ragClient.chatWithRag(anyString(), anyList(), any(), any(), any())).thenReturn(resp);
+        when(ragClient.chatWithRag(anyString(), anyList(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(resp));
 
-        mockMvc.perform(post("/api/rag/chat")
+        MvcResult result = mockMvc.perform(post("/api/rag/chat")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content("{\"message\":\"hi\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.response").value("hello"));
+        verify(ragClient).chatWithRag(eq("hi"), eq(List.of("Role: PHARMACIEN", "Commande: 1")), any(), any(), any());
+    }
+
+    @Test
+    void chat_pharmaciensCountComesFromTheStats() throws Exception {
+        when(databaseQueryService.getRelevantData(anyString())).thenReturn(Map.of(
+                "role", "FOURNISSEUR",
+                "pharmaciens", List.of("Pharmacien: 1 | Alami", "Pharmacien: 2 | Bennani"),
+                "stats", Map.of("pharmaciensUniques", 57L)));
+        when(ragClient.chatWithRag(anyString(), anyList(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(new RagResponse()));
+
+        mockMvc.perform(post("/api/rag/chat")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"message\":\"combien de pharmaciens\"}"))
+                .andExpect(request().asyncStarted());
+
+        verify(ragClient).chatWithRag(anyString(), argThat(context -> context.contains("Pharmaciens count: 57")),
+                any(), any(), any());
+    }
+
+    @Test
+    void chat_pharmaciensWithoutStatsAreLabelledAsAPartialList() throws Exception {
+        when(databaseQueryService.getRelevantData(anyString())).thenReturn(Map.of(
+                "role", "FOURNISSEUR",
+                "pharmaciens", List.of("Pharmacien: 1 | Alami", "Pharmacien: 2 | Bennani")));
+        when(ragClient.chatWithRag(anyString(), anyList(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(new RagResponse()));
+
+        mockMvc.perform(post("/api/rag/chat")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"message\":\"mes pharmaciens\"}"))
+                .andExpect(request().asyncStarted());
+
+        verify(ragClient).chatWithRag(anyString(),
+                argThat(context -> context.contains("Pharmaciens listed (most recent customers only): 2")
+                        && context.stream().noneMatch(line -> line.startsWith("Pharmaciens count"))),
+                any(), any(), any());
+    }
+
+    @Test
+    void chat_doesNotWaitForTheRagService() throws Exception {
+        when(databaseQueryService.getRelevantData(anyString())).thenReturn(Map.of());
+        CompletableFuture<RagResponse> pending = new CompletableFuture<>();
+        when(ragClient.chatWithRag(anyString(), anyList(), any(), any(), any())).thenReturn(pending);
+
+        MvcResult result = mockMvc.perform(post("/api/rag/chat")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"message\":\"hi\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        RagResponse resp = new RagResponse();
+        resp.setResponse("later");
+        pending.complete(resp);
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.response").value("later"));
+    }
+
+    @Test
+    void chat_ragServiceFailure_returns502() throws Exception {
+        when(databaseQueryService.getRelevantData(anyString())).thenReturn(Map.of());
+        when(ragClient.chatWithRag(anyString(), anyList(), any(), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new ResourceAccessException("Connection refused")));
+
+        MvcResult result = mockMvc.perform(post("/api/rag/chat")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"message\":\"hi\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadGateway());
     }
 
     @Test
     void chat_unauthenticated_returns401() throws Exception {
         SecurityContextHolder.clearContext();
 
-        mockMvc.perform(post("/api/rag/chat")
+        MvcResult result = mockMvc.perform(post("/api/rag/chat")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content("{\"message\":\"hi\"}"))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isUnauthorized());
+        verifyNoInteractions(ragClient, databaseQueryService);
     }
 }
 